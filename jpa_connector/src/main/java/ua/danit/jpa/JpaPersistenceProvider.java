@@ -1,20 +1,26 @@
 package ua.danit.jpa;
 
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceException;
 import javax.persistence.spi.PersistenceProvider;
 import javax.persistence.spi.PersistenceUnitInfo;
 import javax.persistence.spi.ProviderUtil;
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.JAXBException;
-import javax.xml.bind.Unmarshaller;
+import javax.sql.DataSource;
 
 import ua.danit.jpa.configuration.PersistedUnit;
 import ua.danit.jpa.configuration.PersistenceRoot;
 import ua.danit.jpa.configuration.Property;
+import ua.danit.jpa.parsing.EntityIndex;
+import ua.danit.jpa.parsing.PersistenceXmlParser;
 import ua.danit.jpa.sessions.JpaEntityManagerFactory;
 
 /**
@@ -28,38 +34,60 @@ public class JpaPersistenceProvider implements PersistenceProvider {
     if (emName == null || emName.isEmpty()) {
       throw new IllegalArgumentException("Persistence unit must not be null!");
     }
-    try {
-      JAXBContext context = JAXBContext.newInstance(PersistenceRoot.class);
-      Unmarshaller unmarshaller = context.createUnmarshaller();
+    ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+    PersistenceRoot providers = PersistenceXmlParser
+        .parse(classLoader != null ? classLoader : getClass().getClassLoader());
+    PersistedUnit unit = providers.getUnits().stream()
+                                  .filter(u -> emName.equals(u.getName())).findFirst()
+                                  .orElseThrow(() -> new IllegalArgumentException(
+                                      "PersistedUnit with name " + emName
+                                      + " is not find in persistence.xml!"));
 
-      URL url = getClass().getResource("/META-INF/persistence.xml");
-      if (url == null) {
-        throw new IllegalArgumentException("Unable to locate persistence.xml!");
-      }
-      PersistenceRoot providers = (PersistenceRoot) unmarshaller.unmarshal(url);
-      PersistedUnit unit = providers.getUnits().stream()
-                                    .filter(u -> emName.equals(u.getName())).findFirst()
-                                    .orElseThrow(() -> new IllegalArgumentException(
-                                               "PersistedUnit with name " + emName
-                                               + " is not find in persistence.xml!"));
-
-      Map<String, String> properties = Collections.emptyMap();
-      if (unit.getProperties() != null && unit.getProperties().getValues() != null) {
-        properties = unit.getProperties().getValues().stream().collect(Collectors
-            .toMap(Property::getName, Property::getValue));
-      }
-      return new JpaEntityManagerFactory(properties, unit.getClasses());
-    } catch (JAXBException e) {
-      throw new RuntimeException(
-          "Persistence cannot" + " be created due to persistence.xml parse error!", e);
+    Map<String, String> properties = Collections.emptyMap();
+    if (unit.getProperties() != null && unit.getProperties().getValues() != null) {
+      properties = unit.getProperties().getValues().stream().collect(Collectors
+          .toMap(Property::getName, Property::getValue));
     }
-
+    return new JpaEntityManagerFactory(properties, unit.getClasses());
   }
 
   @Override
   public EntityManagerFactory createContainerEntityManagerFactory(PersistenceUnitInfo info,
                                                                   Map map) {
-    return new JpaEntityManagerFactory(info.getJtaDataSource());
+    // Provider has no JTA integration, so non JTA data source is preferred when both are set.
+    DataSource dataSource = info.getNonJtaDataSource() != null ? info.getNonJtaDataSource()
+        : info.getJtaDataSource();
+    if (dataSource == null) {
+      throw new PersistenceException(
+          "Data source is not provided for unit " + info.getPersistenceUnitName());
+    }
+    Map<String, String> properties = new HashMap<>();
+    if (info.getProperties() != null) {
+      for (String name : info.getProperties().stringPropertyNames()) {
+        properties.put(name, info.getProperties().getProperty(name));
+      }
+    }
+    if (map != null) {
+      for (Object entry : map.entrySet()) {
+        Map.Entry<?, ?> property = (Map.Entry<?, ?>) entry;
+        if (property.getKey() instanceof String && property.getValue() instanceof String) {
+          properties.put((String) property.getKey(), (String) property.getValue());
+        }
+      }
+    }
+    ClassLoader classLoader = info.getClassLoader() != null ? info.getClassLoader()
+        : getClass().getClassLoader();
+    Set<String> classes = new LinkedHashSet<>(info.getManagedClassNames());
+    if (!info.excludeUnlistedClasses()) {
+      List<URL> roots = new ArrayList<>();
+      roots.add(info.getPersistenceUnitRootUrl());
+      if (info.getJarFileUrls() != null) {
+        roots.addAll(info.getJarFileUrls());
+      }
+      classes.addAll(EntityIndex.read(roots));
+    }
+    return new JpaEntityManagerFactory(dataSource, properties, new ArrayList<>(classes),
+        classLoader);
   }
 
   @Override
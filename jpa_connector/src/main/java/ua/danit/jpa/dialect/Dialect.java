@@ -0,0 +1,44 @@
+package ua.danit.jpa.dialect;
+
+import javax.persistence.LockModeType;
+
+/**
+ * Database specific SQL rendering used by JPA executions.
+ *
+ * @author Andrey Minov
+ */
+public interface Dialect {
+  /**
+   * Lock timeout value meaning wait until lock is released.
+   */
+  int WAIT_FOREVER = -1;
+  /**
+   * Lock timeout value meaning fail immediately when row is locked.
+   */
+  int NO_WAIT = 0;
+  /**
+   * Lock timeout value meaning skip rows locked by other transactions.
+   */
+  int SKIP_LOCKED = -2;
+
+  /**
+   * Get clause appended to select statement to lock selected rows.
+   *
+   * @param lockMode the lock mode for selected rows
+   * @param timeout  the lock timeout in milliseconds or one of {@link #WAIT_FOREVER},
+   *                 {@link #NO_WAIT}, {@link #SKIP_LOCKED}
+   * @return the lock clause with leading space or empty string when no lock is required.
+   */
+  String getLockClause(LockModeType lockMode, int timeout);
+
+  /**
+   * Check if lock mode requires row locks in database.
+   *
+   * @param lockMode the lock mode to check
+   * @return true if lock mode is pessimistic.
+   */
+  static boolean isPessimistic(LockModeType lockMode) {
+    return lockMode == LockModeType.PESSIMISTIC_READ || lockMode == LockModeType.PESSIMISTIC_WRITE
+           || lockMode == LockModeType.PESSIMISTIC_FORCE_INCREMENT;
+  }
+}
@@ -0,0 +1,45 @@
+package ua.danit.jpa.dialect;
+
+import javax.persistence.PersistenceException;
+
+/**
+ * Resolution of SQL dialect from provider properties.
+ *
+ * @author Andrey Minov
+ */
+public final class Dialects {
+
+  private Dialects() {
+  }
+
+  /**
+   * Resolve dialect by explicit class name or by JDBC connection URL.
+   *
+   * @param dialectClass  the dialect class name, may be null
+   * @param connectionUrl the JDBC connection URL, may be null
+   * @return resolved dialect, {@link StandardDialect} when database is not recognized.
+   * @throws PersistenceException when dialect class cannot be instantiated.
+   */
+  public static Dialect resolve(String dialectClass, String connectionUrl) {
+    if (dialectClass != null && !dialectClass.isEmpty()) {
+      try {
+        return (Dialect) Class.forName(dialectClass).newInstance();
+      } catch (Exception e) {
+        throw new PersistenceException("Unable to create dialect " + dialectClass, e);
+      }
+    }
+    if (connectionUrl == null) {
+      return new StandardDialect();
+    }
+    if (connectionUrl.startsWith("jdbc:postgresql:")) {
+      return new PostgreSqlDialect();
+    }
+    if (connectionUrl.startsWith("jdbc:mysql:")) {
+      return new MySqlDialect();
+    }
+    if (connectionUrl.startsWith("jdbc:oracle:")) {
+      return new OracleDialect();
+    }
+    return new StandardDialect();
+  }
+}
@@ -0,0 +1,27 @@
+package ua.danit.jpa.dialect;
+
+import javax.persistence.LockModeType;
+
+/**
+ * MySQL dialect. Shared locks use LOCK IN SHARE MODE unless NOWAIT or SKIP LOCKED is
+ * requested, which require MySQL 8.0 or later. Positive timeouts are ignored as MySQL
+ * configures them with innodb_lock_wait_timeout.
+ *
+ * @author Andrey Minov
+ */
+public class MySqlDialect implements Dialect {
+  @Override
+  public String getLockClause(LockModeType lockMode, int timeout) {
+    if (!Dialect.isPessimistic(lockMode)) {
+      return "";
+    }
+    boolean shared = lockMode == LockModeType.PESSIMISTIC_READ;
+    if (timeout == NO_WAIT) {
+      return shared ? " FOR SHARE NOWAIT" : " FOR UPDATE NOWAIT";
+    }
+    if (timeout == SKIP_LOCKED) {
+      return shared ? " FOR SHARE SKIP LOCKED" : " FOR UPDATE SKIP LOCKED";
+    }
+    return shared ? " LOCK IN SHARE MODE" : " FOR UPDATE";
+  }
+}
@@ -0,0 +1,28 @@
+package ua.danit.jpa.dialect;
+
+import javax.persistence.LockModeType;
+
+/**
+ * Oracle dialect. Oracle has no shared row locks so all pessimistic locks are exclusive.
+ * Positive timeouts are rounded up to whole seconds.
+ *
+ * @author Andrey Minov
+ */
+public class OracleDialect implements Dialect {
+  @Override
+  public String getLockClause(LockModeType lockMode, int timeout) {
+    if (!Dialect.isPessimistic(lockMode)) {
+      return "";
+    }
+    if (timeout == NO_WAIT) {
+      return " FOR UPDATE NOWAIT";
+    }
+    if (timeout == SKIP_LOCKED) {
+      return " FOR UPDATE SKIP LOCKED";
+    }
+    if (timeout > 0) {
+      return " FOR UPDATE WAIT " + (timeout + 999) / 1000;
+    }
+    return " FOR UPDATE";
+  }
+}
@@ -0,0 +1,26 @@
+package ua.danit.jpa.dialect;
+
+import javax.persistence.LockModeType;
+
+/**
+ * PostgreSQL dialect with shared locks, NOWAIT and SKIP LOCKED support.
+ * Positive timeouts are ignored as PostgreSQL configures them with lock_timeout setting.
+ *
+ * @author Andrey Minov
+ */
+public class PostgreSqlDialect implements Dialect {
+  @Override
+  public String getLockClause(LockModeType lockMode, int timeout) {
+    if (!Dialect.isPessimistic(lockMode)) {
+      return "";
+    }
+    String clause = lockMode == LockModeType.PESSIMISTIC_READ ? " FOR SHARE" : " FOR UPDATE";
+    if (timeout == NO_WAIT) {
+      return clause + " NOWAIT";
+    }
+    if (timeout == SKIP_LOCKED) {
+      return clause + " SKIP LOCKED";
+    }
+    return clause;
+  }
+}
@@ -0,0 +1,16 @@
+package ua.danit.jpa.dialect;
+
+import javax.persistence.LockModeType;
+
+/**
+ * SQL standard dialect. All pessimistic locks are rendered as exclusive FOR UPDATE lock,
+ * lock timeouts are ignored as they have no standard syntax.
+ *
+ * @author Andrey Minov
+ */
+public class StandardDialect implements Dialect {
+  @Override
+  public String getLockClause(LockModeType lockMode, int timeout) {
+    return Dialect.isPessimistic(lockMode) ? " FOR UPDATE" : "";
+  }
+}
@@ -0,0 +1,71 @@
+package ua.danit.jpa.parsing;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import javax.persistence.PersistenceException;
+
+/**
+ * Index of entity classes written at build time, so entities are discovered without
+ * scanning of classpath. Index resource contains one class name per line, empty lines and
+ * lines started with '#' are ignored.
+ *
+ * @author Andrey Minov
+ */
+public final class EntityIndex {
+  /**
+   * Location of index resource inside of each jar or classes directory.
+   */
+  public static final String LOCATION = "META-INF/ua.danit.jpa.entities";
+
+  private EntityIndex() {
+  }
+
+  /**
+   * Read entity class names from index resources of provided roots. Roots are jars or classes
+   * directories of persistence unit, index resources of other jars visible to class loader
+   * are not read, so each unit registers only own entities.
+   *
+   * @param roots the URLs of persistence unit root and jar files, null entries are skipped
+   * @return the distinct entity class names in order of roots.
+   * @throws PersistenceException when index resource cannot be read.
+   */
+  public static List<String> read(List<URL> roots) {
+    Set<String> classes = new LinkedHashSet<>();
+    for (URL root : roots) {
+      if (root == null) {
+        continue;
+      }
+      // Class loader without parent finds resources only inside of the root itself.
+      try (URLClassLoader rootLoader = new URLClassLoader(new URL[] {root}, null)) {
+        URL resource = rootLoader.findResource(LOCATION);
+        if (resource != null) {
+          read(resource, classes);
+        }
+      } catch (IOException e) {
+        throw new PersistenceException("Unable to read entity index of " + root + "!", e);
+      }
+    }
+    return new ArrayList<>(classes);
+  }
+
+  private static void read(URL resource, Set<String> classes) throws IOException {
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+        resource.openStream(), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        line = line.trim();
+        if (!line.isEmpty() && !line.startsWith("#")) {
+          classes.add(line);
+        }
+      }
+    }
+  }
+}
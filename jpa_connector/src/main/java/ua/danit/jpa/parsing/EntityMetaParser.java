@@ -3,26 +3,38 @@ package ua.danit.jpa.parsing;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
-import java.math.BigDecimal;
-import java.sql.Time;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
 import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.ArrayList;
-import java.util.Date;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Optional;
+import java.util.Set;
+import javax.persistence.Access;
+import javax.persistence.AccessType;
+import javax.persistence.AttributeConverter;
 import javax.persistence.Column;
+import javax.persistence.Convert;
+import javax.persistence.EmbeddedId;
 import javax.persistence.Entity;
+import javax.persistence.Enumerated;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.IdClass;
 import javax.persistence.Table;
+import javax.persistence.Version;
 
 import ua.danit.jpa.entity.ColumnMeta;
+import ua.danit.jpa.entity.EmbeddedAccessor;
 import ua.danit.jpa.entity.EntityMeta;
 import ua.danit.jpa.entity.IdMeta;
+import ua.danit.jpa.entity.PropertyAccessor;
+import ua.danit.jpa.types.TypeHandler;
+import ua.danit.jpa.types.TypeHandlerRegistry;
 
 /**
  * Parser for parsing information about entities.
@@ -31,33 +43,39 @@ import ua.danit.jpa.entity.IdMeta;
  */
 public class EntityMetaParser {
 
-  private static final Map<Class<?>, Integer> TYPES_MAP;
-
-  static {
-    TYPES_MAP = new HashMap<>();
-    TYPES_MAP.put(Integer.class, Types.INTEGER);
-    TYPES_MAP.put(int.class, Types.INTEGER);
-    TYPES_MAP.put(Long.class, Types.BIGINT);
-    TYPES_MAP.put(long.class, Types.BIGINT);
-    TYPES_MAP.put(Double.class, Types.DOUBLE);
-    TYPES_MAP.put(double.class, Types.DOUBLE);
-    TYPES_MAP.put(char.class, Types.CHAR);
-    TYPES_MAP.put(BigDecimal.class, Types.DECIMAL);
-    TYPES_MAP.put(String.class, Types.VARCHAR);
-    TYPES_MAP.put(Date.class, Types.TIMESTAMP);
-    TYPES_MAP.put(Timestamp.class, Types.TIMESTAMP);
-    TYPES_MAP.put(java.sql.Date.class, Types.DATE);
-    TYPES_MAP.put(Time.class, Types.TIME);
-  }
+  private static final Set<Class<?>> VERSION_TYPES = new HashSet<>(Arrays
+      .asList(int.class, Integer.class, long.class, Long.class, Timestamp.class));
 
   /**
-   * Parse new persisted entity metadata from class using reflection.
+   * Parse new persisted entity metadata from class using reflection. Mapping annotations are
+   * read from fields, so field access is used unless {@link Access} annotation of entity
+   * class or field selects property access through getters and setters. Columns are bound
+   * by built-in type handlers.
    *
    * @param entityClazz the entity clazz
    * @return the metainformation about persisted entity.
-   * @throws NoSuchMethodException when exists no getter or setter existed for some of field.
+   * @throws NoSuchMethodException when getter or setter does not exist for some of fields
+   *                               with property access.
    */
   public static EntityMeta parseEntity(Class<?> entityClazz) throws NoSuchMethodException {
+    return parseEntity(entityClazz, TypeHandlerRegistry.defaults());
+  }
+
+  /**
+   * Parse new persisted entity metadata from class using reflection, binding columns by
+   * handlers of provided registry. Enum fields are bound as declared by {@link Enumerated}
+   * annotation and fields annotated with {@link Convert} are converted to column type
+   * by attribute converter. Composite id is mapped either by several {@link Id} fields with
+   * optional {@link IdClass} or by fields of {@link EmbeddedId} object.
+   *
+   * @param entityClazz  the entity clazz
+   * @param typeHandlers the registry of type handlers
+   * @return the metainformation about persisted entity.
+   * @throws NoSuchMethodException when getter or setter does not exist for some of fields
+   *                               with property access.
+   */
+  public static EntityMeta parseEntity(Class<?> entityClazz, TypeHandlerRegistry typeHandlers)
+      throws NoSuchMethodException {
     if (!entityClazz.isAnnotationPresent(Entity.class)) {
       return null;
     }
@@ -72,36 +90,59 @@ public class EntityMetaParser {
       //Both indexes and uniques are used in DDL generation and do not supported at this phase.
     }
     Constructor<?> constructor = entityClazz.getConstructor();
+    Access access = entityClazz.getAnnotation(Access.class);
+    AccessType defaultAccess = access != null ? access.value() : AccessType.FIELD;
     List<ColumnMeta> idColumns = new ArrayList<>();
     List<ColumnMeta> columns = new ArrayList<>();
     GenerationType generationType = GenerationType.AUTO;
     String strategy = "";
+    ColumnMeta version = null;
+    IdClass idClassAnnotation = entityClazz.getAnnotation(IdClass.class);
+    Class<?> idClass = idClassAnnotation != null ? idClassAnnotation.value() : null;
     for (Field field : entityClazz.getDeclaredFields()) {
-      if (!TYPES_MAP.containsKey(field.getType())) {
-        throw new IllegalArgumentException("Not supported class for mapping:" + field.getType());
+      if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic()) {
+        continue;
       }
-      String name = field.getName();
-      int type = TYPES_MAP.get(field.getType());
-      Method getter = getGetter(entityClazz, field);
-      Method setter = getSetter(entityClazz, field);
-      ColumnMeta columnMeta;
-      if (field.isAnnotationPresent(Column.class)) {
-        Column column = field.getDeclaredAnnotation(Column.class);
-        if (!column.name().isEmpty()) {
-          name = column.name();
+      if (field.isAnnotationPresent(EmbeddedId.class)) {
+        if (idClass != null || !idColumns.isEmpty()) {
+          throw new IllegalArgumentException(
+              "Entity class must have either single @EmbeddedId field or @Id fields!");
         }
-        columnMeta = new ColumnMeta(name, tableName, type, field
-            .getType(), field, getter, setter, column.nullable(), column.insertable(), column
-            .updatable(), column.length(), column.scale());
-      } else {
-        columnMeta = new ColumnMeta(name, tableName, type, field.getType(), getter, setter, field);
+        idClass = field.getType();
+        for (Field property : idClass.getDeclaredFields()) {
+          if (!Modifier.isStatic(property.getModifiers()) && !property.isSynthetic()) {
+            idColumns.add(parseColumn(property, tableName, null, null,
+                EmbeddedAccessor.of(field, property), typeHandlers));
+          }
+        }
+        continue;
       }
+      Method getter = null;
+      Method setter = null;
+      if (getAccessType(field, defaultAccess) == AccessType.PROPERTY) {
+        getter = getGetter(entityClazz, field);
+        setter = getSetter(entityClazz, field);
+      }
+      ColumnMeta columnMeta = parseColumn(field, tableName, getter, setter, null, typeHandlers);
       if (!field.isAnnotationPresent(Id.class)) {
         columns.add(columnMeta);
+      } else if (idClass != null && idClassAnnotation == null) {
+        throw new IllegalArgumentException(
+            "Entity class must have either single @EmbeddedId field or @Id fields!");
       } else {
         idColumns.add(columnMeta);
       }
 
+      if (field.isAnnotationPresent(Version.class)) {
+        if (version != null) {
+          throw new IllegalArgumentException("Entity class must have single @Version field!");
+        }
+        if (!VERSION_TYPES.contains(field.getType())) {
+          throw new IllegalArgumentException("Not supported class for version:" + field.getType());
+        }
+        version = columnMeta;
+      }
+
       if (field.isAnnotationPresent(GeneratedValue.class)) {
         GeneratedValue gv = field.getDeclaredAnnotation(GeneratedValue.class);
         generationType = gv.strategy();
@@ -111,20 +152,105 @@ public class EntityMetaParser {
     if (idColumns.isEmpty()) {
       throw new IllegalArgumentException("Table entity class must have @Id field!");
     }
-    IdMeta id = new IdMeta(idColumns, generationType, strategy);
-    return new EntityMeta(tableName, schema, null, constructor, id, columns);
+    IdMeta id = new IdMeta(idColumns, generationType, strategy, idClass);
+    return new EntityMeta(tableName, schema, null, constructor, id, columns, version);
+  }
+
+  private static ColumnMeta parseColumn(Field field, String tableName, Method getter,
+                                        Method setter, PropertyAccessor accessor,
+                                        TypeHandlerRegistry typeHandlers) {
+    AttributeConverter<?, ?> converter = getConverter(field);
+    TypeHandler<?> handler = getTypeHandler(field, converter, typeHandlers);
+    int type = handler.getSqlType();
+    String name = field.getName();
+    Column column = field.getDeclaredAnnotation(Column.class);
+    if (column != null && !column.name().isEmpty()) {
+      name = column.name();
+    }
+    ColumnMeta columnMeta;
+    if (accessor != null) {
+      columnMeta = column != null ? new ColumnMeta(field.getName(), name, tableName, type,
+          field.getType(), accessor, column.nullable(), column.insertable(),
+          column.updatable(), column.length(), column.scale())
+          : new ColumnMeta(field.getName(), name, tableName, type, field.getType(), accessor,
+              true, true, true, 256, 0);
+    } else if (column != null) {
+      columnMeta = new ColumnMeta(name, tableName, type, field
+          .getType(), field, getter, setter, column.nullable(), column.insertable(), column
+          .updatable(), column.length(), column.scale());
+    } else {
+      columnMeta = new ColumnMeta(name, tableName, type, field.getType(), getter, setter, field);
+    }
+    if (converter != null || !TypeHandlerRegistry.isJdbcHandler(handler)) {
+      columnMeta = columnMeta.withTypeHandler(handler, converter);
+    }
+    return columnMeta;
   }
 
   /**
    * Gets sql type one of {@link Types} by class name.
    *
    * @param clazz the clazz type for column.
-   * @return one of {@link Types} mapped on class provided.
+   * @return one of {@link Types} mapped on class provided by built-in type handlers.
    * @throws IllegalArgumentException when type has not SQL mapping.
    */
   public static int getSqlType(Class<?> clazz) {
-    return Optional.ofNullable(TYPES_MAP.get(clazz)).orElseThrow(() -> new IllegalArgumentException(
-        "Class " + clazz + " is not supported as SQL type!"));
+    return TypeHandlerRegistry.defaults().get(clazz).getSqlType();
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static TypeHandler<?> getTypeHandler(Field field, AttributeConverter<?, ?> converter,
+                                               TypeHandlerRegistry typeHandlers) {
+    Class<?> type = converter != null ? getColumnType(converter.getClass()) : field.getType();
+    try {
+      Enumerated enumerated = field.getAnnotation(Enumerated.class);
+      if (converter == null && enumerated != null && type.isEnum()) {
+        return typeHandlers.getEnum((Class) type, enumerated.value());
+      }
+      return typeHandlers.get(type);
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Not supported class for mapping:" + type, e);
+    }
+  }
+
+  private static AttributeConverter<?, ?> getConverter(Field field) {
+    Convert convert = field.getAnnotation(Convert.class);
+    if (convert == null || convert.disableConversion() || convert.converter() == void.class) {
+      return null;
+    }
+    Class<?> converterClass = convert.converter();
+    if (!AttributeConverter.class.isAssignableFrom(converterClass)) {
+      throw new IllegalArgumentException(
+          "Class " + converterClass + " is not an attribute converter!");
+    }
+    try {
+      Constructor<?> constructor = converterClass.getDeclaredConstructor();
+      constructor.setAccessible(true);
+      return (AttributeConverter<?, ?>) constructor.newInstance();
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalArgumentException("Unable to create converter " + converterClass, e);
+    }
+  }
+
+  private static Class<?> getColumnType(Class<?> converterClass) {
+    for (Class<?> clazz = converterClass; clazz != null; clazz = clazz.getSuperclass()) {
+      for (Type type : clazz.getGenericInterfaces()) {
+        if (type instanceof ParameterizedType
+            && ((ParameterizedType) type).getRawType() == AttributeConverter.class) {
+          Type columnType = ((ParameterizedType) type).getActualTypeArguments()[1];
+          if (columnType instanceof Class) {
+            return (Class<?>) columnType;
+          }
+        }
+      }
+    }
+    throw new IllegalArgumentException(
+        "Column type of converter " + converterClass + " cannot be resolved!");
+  }
+
+  private static AccessType getAccessType(Field field, AccessType defaultAccess) {
+    Access access = field.getAnnotation(Access.class);
+    return access != null ? access.value() : defaultAccess;
   }
 
   private static Method getGetter(Class<?> entityClazz, Field field) throws NoSuchMethodException {
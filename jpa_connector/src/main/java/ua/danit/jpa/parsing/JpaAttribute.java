@@ -0,0 +1,107 @@
+package ua.danit.jpa.parsing;
+
+import java.lang.reflect.Member;
+import javax.persistence.metamodel.ManagedType;
+import javax.persistence.metamodel.SingularAttribute;
+import javax.persistence.metamodel.Type;
+
+import ua.danit.jpa.entity.ColumnMeta;
+
+/**
+ * Immutable singular attribute of entity mapped to single column.
+ *
+ * @param <X> the type containing the attribute
+ * @param <T> the type of the attribute
+ * @author Andrey Minov
+ */
+final class JpaAttribute<X, T> implements SingularAttribute<X, T> {
+  private final ColumnMeta columnMeta;
+  private final ManagedType<X> declaringType;
+  private final Type<T> type;
+  private final boolean id;
+  private final boolean version;
+
+  @SuppressWarnings("unchecked")
+  JpaAttribute(ColumnMeta columnMeta, ManagedType<X> declaringType, boolean id,
+               boolean version) {
+    this.columnMeta = columnMeta;
+    this.declaringType = declaringType;
+    this.type = new JpaBasicType<>((Class<T>) columnMeta.getType());
+    this.id = id;
+    this.version = version;
+  }
+
+  ColumnMeta getColumnMeta() {
+    return columnMeta;
+  }
+
+  @Override
+  public boolean isId() {
+    return id;
+  }
+
+  @Override
+  public boolean isVersion() {
+    return version;
+  }
+
+  @Override
+  public boolean isOptional() {
+    return !columnMeta.isNullable();
+  }
+
+  @Override
+  public Type<T> getType() {
+    return type;
+  }
+
+  @Override
+  public String getName() {
+    return columnMeta.getAttribute();
+  }
+
+  @Override
+  public PersistentAttributeType getPersistentAttributeType() {
+    return PersistentAttributeType.BASIC;
+  }
+
+  @Override
+  public ManagedType<X> getDeclaringType() {
+    return declaringType;
+  }
+
+  @Override
+  public Class<T> getJavaType() {
+    return type.getJavaType();
+  }
+
+  @Override
+  public Member getJavaMember() {
+    return columnMeta.getField();
+  }
+
+  @Override
+  public boolean isAssociation() {
+    return false;
+  }
+
+  @Override
+  public boolean isCollection() {
+    return false;
+  }
+
+  @Override
+  public BindableType getBindableType() {
+    return BindableType.SINGULAR_ATTRIBUTE;
+  }
+
+  @Override
+  public Class<T> getBindableJavaType() {
+    return type.getJavaType();
+  }
+
+  @Override
+  public String toString() {
+    return declaringType.getJavaType().getSimpleName() + "." + getName();
+  }
+}
@@ -0,0 +1,27 @@
+package ua.danit.jpa.parsing;
+
+import javax.persistence.metamodel.BasicType;
+
+/**
+ * Basic type of attribute value.
+ *
+ * @param <T> the java type of value
+ * @author Andrey Minov
+ */
+final class JpaBasicType<T> implements BasicType<T> {
+  private final Class<T> javaType;
+
+  JpaBasicType(Class<T> javaType) {
+    this.javaType = javaType;
+  }
+
+  @Override
+  public PersistenceType getPersistenceType() {
+    return PersistenceType.BASIC;
+  }
+
+  @Override
+  public Class<T> getJavaType() {
+    return javaType;
+  }
+}
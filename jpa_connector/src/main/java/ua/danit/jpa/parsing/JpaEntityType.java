@@ -0,0 +1,332 @@
+package ua.danit.jpa.parsing;
+
+import java.lang.invoke.MethodType;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import javax.persistence.Entity;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.CollectionAttribute;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.IdentifiableType;
+import javax.persistence.metamodel.ListAttribute;
+import javax.persistence.metamodel.MapAttribute;
+import javax.persistence.metamodel.PluralAttribute;
+import javax.persistence.metamodel.SetAttribute;
+import javax.persistence.metamodel.SingularAttribute;
+import javax.persistence.metamodel.Type;
+
+import ua.danit.jpa.entity.ColumnMeta;
+import ua.danit.jpa.entity.EntityMeta;
+
+/**
+ * Immutable metamodel type of entity. Attributes are created once from entity metadata and
+ * indexed by name. Entities have neither supertypes nor plural attributes, so declared
+ * attributes are the same as all attributes.
+ *
+ * @param <X> the entity type
+ * @author Andrey Minov
+ */
+final class JpaEntityType<X> implements EntityType<X> {
+  private final Class<X> clazz;
+  private final String name;
+  private final Map<String, JpaAttribute<X, ?>> attributes;
+  private final Set<SingularAttribute<X, ?>> singularAttributes;
+  private final Set<SingularAttribute<X, ?>> idAttributes;
+  private final JpaAttribute<X, ?> version;
+  private final Type<?> idType;
+
+  /**
+   * Instantiates a new entity type from entity metadata.
+   *
+   * @param entityMeta the entity metadata
+   * @param clazz      the entity class
+   */
+  JpaEntityType(EntityMeta entityMeta, Class<X> clazz) {
+    this.clazz = clazz;
+    Entity entity = clazz.getAnnotation(Entity.class);
+    this.name = entity != null && !entity.name().isEmpty() ? entity.name()
+        : clazz.getSimpleName();
+    Map<String, JpaAttribute<X, ?>> attributes = new LinkedHashMap<>();
+    Set<SingularAttribute<X, ?>> ids = new LinkedHashSet<>();
+    for (ColumnMeta column : entityMeta.getId().getColumns()) {
+      JpaAttribute<X, ?> attribute = new JpaAttribute<>(column, this, true, false);
+      attributes.put(attribute.getName(), attribute);
+      ids.add(attribute);
+    }
+    JpaAttribute<X, ?> version = null;
+    for (ColumnMeta column : entityMeta.getColumns()) {
+      JpaAttribute<X, ?> attribute =
+          new JpaAttribute<>(column, this, false, column == entityMeta.getVersion());
+      attributes.put(attribute.getName(), attribute);
+      if (attribute.isVersion()) {
+        version = attribute;
+      }
+    }
+    this.attributes = Collections.unmodifiableMap(attributes);
+    this.singularAttributes = Collections.unmodifiableSet(new LinkedHashSet<>(attributes
+        .values()));
+    this.idAttributes = Collections.unmodifiableSet(ids);
+    this.version = version;
+    this.idType = ids.size() == 1 ? ids.iterator().next().getType() : null;
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public BindableType getBindableType() {
+    return BindableType.ENTITY_TYPE;
+  }
+
+  @Override
+  public Class<X> getBindableJavaType() {
+    return clazz;
+  }
+
+  @Override
+  public <Y> SingularAttribute<? super X, Y> getId(Class<Y> type) {
+    return getDeclaredId(type);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public <Y> SingularAttribute<X, Y> getDeclaredId(Class<Y> type) {
+    if (idAttributes.size() != 1) {
+      throw new IllegalArgumentException("Entity " + name + " has no single id attribute!");
+    }
+    SingularAttribute<X, ?> id = idAttributes.iterator().next();
+    if (!isOfType(id, type)) {
+      throw new IllegalArgumentException("Id attribute of type " + type + " not found!");
+    }
+    return (SingularAttribute<X, Y>) id;
+  }
+
+  @Override
+  public <Y> SingularAttribute<? super X, Y> getVersion(Class<Y> type) {
+    return getDeclaredVersion(type);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public <Y> SingularAttribute<X, Y> getDeclaredVersion(Class<Y> type) {
+    if (version == null || !isOfType(version, type)) {
+      throw new IllegalArgumentException("Version attribute of type " + type + " not found!");
+    }
+    return (SingularAttribute<X, Y>) version;
+  }
+
+  @Override
+  public IdentifiableType<? super X> getSupertype() {
+    return null;
+  }
+
+  @Override
+  public boolean hasSingleIdAttribute() {
+    return idAttributes.size() == 1;
+  }
+
+  @Override
+  public boolean hasVersionAttribute() {
+    return version != null;
+  }
+
+  @Override
+  public Set<SingularAttribute<? super X, ?>> getIdClassAttributes() {
+    return widen(idAttributes);
+  }
+
+  @Override
+  public Type<?> getIdType() {
+    return idType;
+  }
+
+  @Override
+  public Set<Attribute<? super X, ?>> getAttributes() {
+    return widen(singularAttributes);
+  }
+
+  @Override
+  public Set<Attribute<X, ?>> getDeclaredAttributes() {
+    return widen(singularAttributes);
+  }
+
+  @Override
+  public <Y> SingularAttribute<? super X, Y> getSingularAttribute(String name, Class<Y> type) {
+    return getDeclaredSingularAttribute(name, type);
+  }
+
+  @Override
+  public SingularAttribute<? super X, ?> getSingularAttribute(String name) {
+    return getDeclaredSingularAttribute(name);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public <Y> SingularAttribute<X, Y> getDeclaredSingularAttribute(String name, Class<Y> type) {
+    JpaAttribute<X, ?> attribute = getDeclaredSingularAttribute(name);
+    if (!isOfType(attribute, type)) {
+      throw new IllegalArgumentException(
+          "Attribute " + name + " of type " + type + " not found in entity " + this.name + "!");
+    }
+    return (SingularAttribute<X, Y>) attribute;
+  }
+
+  @Override
+  public JpaAttribute<X, ?> getDeclaredSingularAttribute(String name) {
+    JpaAttribute<X, ?> attribute = attributes.get(name);
+    if (attribute == null) {
+      throw missing(name);
+    }
+    return attribute;
+  }
+
+  @Override
+  public Set<SingularAttribute<? super X, ?>> getSingularAttributes() {
+    return widen(singularAttributes);
+  }
+
+  @Override
+  public Set<SingularAttribute<X, ?>> getDeclaredSingularAttributes() {
+    return singularAttributes;
+  }
+
+  @Override
+  public CollectionAttribute<? super X, ?> getCollection(String name) {
+    throw missing(name);
+  }
+
+  @Override
+  public <E> CollectionAttribute<? super X, E> getCollection(String name, Class<E> elementType) {
+    throw missing(name);
+  }
+
+  @Override
+  public CollectionAttribute<X, ?> getDeclaredCollection(String name) {
+    throw missing(name);
+  }
+
+  @Override
+  public <E> CollectionAttribute<X, E> getDeclaredCollection(String name, Class<E> elementType) {
+    throw missing(name);
+  }
+
+  @Override
+  public <E> SetAttribute<? super X, E> getSet(String name, Class<E> elementType) {
+    throw missing(name);
+  }
+
+  @Override
+  public SetAttribute<? super X, ?> getSet(String name) {
+    throw missing(name);
+  }
+
+  @Override
+  public <E> SetAttribute<X, E> getDeclaredSet(String name, Class<E> elementType) {
+    throw missing(name);
+  }
+
+  @Override
+  public SetAttribute<X, ?> getDeclaredSet(String name) {
+    throw missing(name);
+  }
+
+  @Override
+  public <E> ListAttribute<? super X, E> getList(String name, Class<E> elementType) {
+    throw missing(name);
+  }
+
+  @Override
+  public ListAttribute<? super X, ?> getList(String name) {
+    throw missing(name);
+  }
+
+  @Override
+  public <E> ListAttribute<X, E> getDeclaredList(String name, Class<E> elementType) {
+    throw missing(name);
+  }
+
+  @Override
+  public ListAttribute<X, ?> getDeclaredList(String name) {
+    throw missing(name);
+  }
+
+  @Override
+  public MapAttribute<? super X, ?, ?> getMap(String name) {
+    throw missing(name);
+  }
+
+  @Override
+  public <K, V> MapAttribute<? super X, K, V> getMap(String name, Class<K> keyType,
+                                                     Class<V> valueType) {
+    throw missing(name);
+  }
+
+  @Override
+  public MapAttribute<X, ?, ?> getDeclaredMap(String name) {
+    throw missing(name);
+  }
+
+  @Override
+  public <K, V> MapAttribute<X, K, V> getDeclaredMap(String name, Class<K> keyType,
+                                                     Class<V> valueType) {
+    throw missing(name);
+  }
+
+  @Override
+  public Set<PluralAttribute<? super X, ?, ?>> getPluralAttributes() {
+    return Collections.emptySet();
+  }
+
+  @Override
+  public Set<PluralAttribute<X, ?, ?>> getDeclaredPluralAttributes() {
+    return Collections.emptySet();
+  }
+
+  @Override
+  public Attribute<? super X, ?> getAttribute(String name) {
+    return getDeclaredSingularAttribute(name);
+  }
+
+  @Override
+  public Attribute<X, ?> getDeclaredAttribute(String name) {
+    return getDeclaredSingularAttribute(name);
+  }
+
+  @Override
+  public PersistenceType getPersistenceType() {
+    return PersistenceType.ENTITY;
+  }
+
+  @Override
+  public Class<X> getJavaType() {
+    return clazz;
+  }
+
+  @Override
+  public String toString() {
+    return name;
+  }
+
+  private IllegalArgumentException missing(String attribute) {
+    return new IllegalArgumentException(
+        "Attribute " + attribute + " not found in entity " + name + "!");
+  }
+
+  private static boolean isOfType(Attribute<?, ?> attribute, Class<?> type) {
+    Class<?> javaType = attribute.getJavaType();
+    return type.isAssignableFrom(javaType)
+           || javaType.isPrimitive() && type == MethodType.methodType(javaType).wrap()
+                                                          .returnType();
+  }
+
+  // Entities have no supertypes, so attributes of entity are also attributes of its supertypes.
+  @SuppressWarnings("unchecked")
+  private static <T> Set<T> widen(Set<?> attributes) {
+    return (Set<T>) attributes;
+  }
+}
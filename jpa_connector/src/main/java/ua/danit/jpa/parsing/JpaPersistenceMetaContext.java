@@ -1,37 +1,70 @@
 package ua.danit.jpa.parsing;
 
-import java.lang.reflect.Member;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import javax.persistence.PersistenceException;
 import javax.persistence.metamodel.Attribute;
-import javax.persistence.metamodel.CollectionAttribute;
 import javax.persistence.metamodel.EmbeddableType;
 import javax.persistence.metamodel.EntityType;
-import javax.persistence.metamodel.IdentifiableType;
-import javax.persistence.metamodel.ListAttribute;
 import javax.persistence.metamodel.ManagedType;
-import javax.persistence.metamodel.MapAttribute;
 import javax.persistence.metamodel.Metamodel;
-import javax.persistence.metamodel.PluralAttribute;
-import javax.persistence.metamodel.SetAttribute;
-import javax.persistence.metamodel.SingularAttribute;
-import javax.persistence.metamodel.Type;
 
-import ua.danit.jpa.entity.ColumnMeta;
 import ua.danit.jpa.entity.EntityMeta;
+import ua.danit.jpa.entity.EntityMetaFactory;
+import ua.danit.jpa.parsing.executions.ExecutionPlan;
+import ua.danit.jpa.types.TypeHandlerRegistry;
 
 /**
- * Context for holding parsing entries.
+ * Context for holding parsing entries. Registered entries and their metamodel types are
+ * kept in immutable snapshot which is replaced on each registration, so lookups need no
+ * synchronization and allocate nothing.
+ *
+ * <p>Copies of metadata and execution plans for tenant schemas are cached per schema and
+ * class. The caches are not bounded and hold an entry for every used schema and entity, so
+ * their size is limited only by number of tenant schemas. Copies of re-registered classes
+ * are dropped on registration.
  *
  * @author Andrey Minov
  */
 public class JpaPersistenceMetaContext implements Metamodel {
-  private Map<Class<?>, EntityMeta> entityMetas = new ConcurrentHashMap<>();
+  private final TypeHandlerRegistry typeHandlers;
+  private volatile Snapshot snapshot = new Snapshot(Collections.emptyMap());
+  private final Map<String, Map<Class<?>, EntityMeta>> schemaEntityMetas =
+      new ConcurrentHashMap<>();
+  private final Map<String, Map<Class<?>, ExecutionPlan>> schemaExecutionPlans =
+      new ConcurrentHashMap<>();
+
+  /**
+   * Instantiates a new context binding columns by built-in type handlers.
+   */
+  public JpaPersistenceMetaContext() {
+    this(TypeHandlerRegistry.defaults());
+  }
+
+  /**
+   * Instantiates a new context binding columns of reflectively parsed entities by handlers
+   * of provided registry.
+   *
+   * @param typeHandlers the registry of type handlers
+   */
+  public JpaPersistenceMetaContext(TypeHandlerRegistry typeHandlers) {
+    this.typeHandlers = typeHandlers;
+  }
+
+  public TypeHandlerRegistry getTypeHandlers() {
+    return typeHandlers;
+  }
 
   /**
    * Get entity metadata for then class.
@@ -41,411 +74,270 @@ public class JpaPersistenceMetaContext implements Metamodel {
    * @throws IllegalArgumentException when class is not registered in persistence metacontext
    */
   public EntityMeta get(Class<?> clazz) {
-    return Optional.ofNullable(entityMetas.get(clazz))
-                   .orElseThrow(() -> new IllegalArgumentException(
-                       "Metadata for class " + clazz + " is not found!"));
+    return registration(clazz).meta;
   }
 
   /**
-   * Register class into persistence metacontext.
+   * Get entity metadata for the class in provided schema. Metadata is parsed once
+   * and copied for each schema on first use.
    *
-   * @param clazz the clazz to register
-   * @throws IllegalArgumentException when provided class is not marked
-   *                                  as @{@link javax.persistence.Entity}
-   *                                  or when getter or setter not existed
-   *                                  for some of entities field.
+   * @param clazz  the clazz
+   * @param schema the schema name, null for schema from entity mapping
+   * @return the metainformation for the entity in schema
+   * @throws IllegalArgumentException when class is not registered in persistence metacontext
    */
-  public void register(Class<?> clazz) {
-    try {
-      EntityMeta meta = EntityMetaParser.parseEntity(clazz);
-      if (meta == null) {
-        throw new IllegalArgumentException(
-            "Provided class " + clazz + " is not marked as JPA entity!");
-      }
-      entityMetas.put(clazz, meta);
-    } catch (NoSuchMethodException e) {
-      throw new IllegalArgumentException("Getter or setter for one of fields incorrect!", e);
+  public EntityMeta get(Class<?> clazz, String schema) {
+    if (schema == null) {
+      return get(clazz);
     }
+    return schemaEntityMetas.computeIfAbsent(schema, s -> new ConcurrentHashMap<>())
+                            .computeIfAbsent(clazz, c -> get(c).withSchema(schema));
   }
 
-  @SuppressWarnings("unchecked")
-  @Override
-  public <X> EntityType<X> entity(Class<X> cls) {
-    return new JpaEntityType<>(get(cls), cls);
-  }
-
-  @Override
-  public <X> ManagedType<X> managedType(Class<X> cls) {
-    return null;
-  }
-
-  @Override
-  public <X> EmbeddableType<X> embeddable(Class<X> cls) {
-    return null;
+  /**
+   * Get class of registered entity by its entity name.
+   *
+   * @param entityName the entity name, by default simple name of entity class
+   * @return the entity class.
+   * @throws IllegalArgumentException when no entity with the name is registered
+   */
+  public Class<?> getEntityClass(String entityName) {
+    for (EntityType<?> entity : snapshot.entities) {
+      if (entity.getName().equals(entityName)) {
+        return entity.getJavaType();
+      }
+    }
+    throw new IllegalArgumentException("Entity " + entityName + " is not registered!");
   }
 
-  @Override
-  public Set<ManagedType<?>> getManagedTypes() {
-    return new HashSet<>(getEntities());
+  /**
+   * Get cached execution plan for the class.
+   *
+   * @param clazz the clazz
+   * @return the execution plan for the entity
+   * @throws IllegalArgumentException when class is not registered in persistence metacontext
+   */
+  public ExecutionPlan getPlan(Class<?> clazz) {
+    return registration(clazz).plan;
   }
 
-  @SuppressWarnings("unchecked")
-  @Override
-  public Set<EntityType<?>> getEntities() {
-    Set<EntityType<?>> out = new HashSet<>();
-    entityMetas.entrySet().stream().map(e -> new JpaEntityType(e.getValue(), e.getKey()))
-               .forEach(out::add);
-    return out;
+  /**
+   * Get cached execution plan for the class in provided schema.
+   *
+   * @param clazz  the clazz
+   * @param schema the schema name, null for schema from entity mapping
+   * @return the execution plan for the entity in schema
+   * @throws IllegalArgumentException when class is not registered in persistence metacontext
+   */
+  public ExecutionPlan getPlan(Class<?> clazz, String schema) {
+    if (schema == null) {
+      return getPlan(clazz);
+    }
+    return schemaExecutionPlans.computeIfAbsent(schema, s -> new ConcurrentHashMap<>())
+                               .computeIfAbsent(clazz,
+                                   c -> ExecutionPlan.fromMeta(get(c, schema)));
   }
 
-  @Override
-  public Set<EmbeddableType<?>> getEmbeddables() {
-    return Collections.emptySet();
+  /**
+   * Register class into persistence metacontext. Metadata factory generated at compile time
+   * is used when present, otherwise class is parsed by reflection. Static metamodel class
+   * of entity is populated when present.
+   *
+   * @param clazz the clazz to register
+   * @throws IllegalArgumentException when provided class is not marked
+   *                                  as @{@link javax.persistence.Entity}
+   *                                  or when getter or setter not existed
+   *                                  for some of entities field.
+   */
+  public void register(Class<?> clazz) {
+    Registration registration = parse(clazz);
+    publish(Collections.singletonMap(clazz, registration));
+    populateStaticMetamodel(clazz, registration.type);
   }
 
-  private static class JpaEntityType<T> implements EntityType<T> {
-
-    private EntityMeta entityMeta;
-    private Class<T> clazz;
-
-    public JpaEntityType(EntityMeta entityMeta, Class<T> clazz) {
-      this.entityMeta = entityMeta;
-      this.clazz = clazz;
-    }
-
-    @Override
-    public String getName() {
-      return entityMeta.getTableName();
-    }
-
-    @Override
-    public BindableType getBindableType() {
-      return BindableType.ENTITY_TYPE;
-    }
-
-    @Override
-    public Class<T> getBindableJavaType() {
-      return clazz;
-    }
-
-    @SuppressWarnings("unchecked")
-    @Override
-    public <Y> SingularAttribute<? super T, Y> getId(Class<Y> type) {
-      List<ColumnMeta> ids = entityMeta.getId().getColumns();
-      return ids.stream().filter(v -> v.getType().equals(type))
-                .map(v -> new JpaAttribute(v, this, true)).findFirst().orElse(null);
-    }
-
-    @SuppressWarnings("unchecked")
-    @Override
-    public <Y> SingularAttribute<T, Y> getDeclaredId(Class<Y> type) {
-      return (SingularAttribute<T, Y>) getId(type);
-    }
-
-    @Override
-    public <Y> SingularAttribute<? super T, Y> getVersion(Class<Y> type) {
-      throw new UnsupportedOperationException("Versions is not supported!");
-    }
-
-    @Override
-    public <Y> SingularAttribute<T, Y> getDeclaredVersion(Class<Y> type) {
-      throw new UnsupportedOperationException("Versions is not supported!");
-    }
-
-    @Override
-    public IdentifiableType<? super T> getSupertype() {
-      throw new UnsupportedOperationException("Method is not supported!");
-    }
-
-    @Override
-    public boolean hasSingleIdAttribute() {
-      return entityMeta.getId().getColumns().size() == 1;
-    }
-
-    @Override
-    public boolean hasVersionAttribute() {
-      return false;
-    }
-
-    @SuppressWarnings("unchecked")
-    @Override
-    public Set<SingularAttribute<? super T, ?>> getIdClassAttributes() {
-      List<ColumnMeta> ids = entityMeta.getId().getColumns();
-      Set<SingularAttribute<? super T, ?>> out = new HashSet<>();
-      ids.stream().map(v -> new JpaAttribute(v, this, true)).forEach(out::add);
-      return out;
-    }
-
-    @Override
-    public Type<?> getIdType() {
-      ColumnMeta id = entityMeta.getId().getColumns().get(0);
-      return new Type<Object>() {
-        @Override
-        public PersistenceType getPersistenceType() {
-          return PersistenceType.BASIC;
-        }
-
-        @SuppressWarnings("unchecked")
-        @Override
-        public Class<Object> getJavaType() {
-          return (Class<Object>) id.getType();
-        }
-      };
-    }
-
-    @SuppressWarnings("unchecked")
-    @Override
-    public Set<Attribute<? super T, ?>> getAttributes() {
-      Set<Attribute<? super T, ?>> out = new HashSet<>();
-      entityMeta.getColumns().stream().map(v -> new JpaAttribute(v, this, false)).forEach(out::add);
-      return out;
-    }
-
-    @Override
-    public Set<Attribute<T, ?>> getDeclaredAttributes() {
-      return Collections.emptySet();
-    }
-
-    @SuppressWarnings("unchecked")
-    @Override
-    public <Y> SingularAttribute<? super T, Y> getSingularAttribute(String name, Class<Y> type) {
-      return entityMeta.getColumns().stream().filter(v -> v.getType().equals(type))
-                       .map(v -> new JpaAttribute(v, this, false)).findFirst().orElse(null);
-    }
-
-    @SuppressWarnings("unchecked")
-    @Override
-    public SingularAttribute<? super T, ?> getSingularAttribute(String name) {
-      return entityMeta.getColumns().stream().filter(v -> v.getName().equals(name))
-                       .map(v -> new JpaAttribute(v, this, false)).findFirst().orElse(null);
-    }
-
-    @Override
-    public <Y> SingularAttribute<T, Y> getDeclaredSingularAttribute(String name, Class<Y> type) {
-      return null;
-    }
-
-    @Override
-    public SingularAttribute<T, ?> getDeclaredSingularAttribute(String name) {
-      return null;
-    }
-
-
-    @SuppressWarnings("unchecked")
-    @Override
-    public Set<SingularAttribute<? super T, ?>> getSingularAttributes() {
-      Set<SingularAttribute<? super T, ?>> out = new HashSet<>();
-      entityMeta.getColumns().stream().map(v -> new JpaAttribute(v, this, false)).forEach(out::add);
-      return out;
-    }
-
-    @Override
-    public Set<SingularAttribute<T, ?>> getDeclaredSingularAttributes() {
-      return Collections.emptySet();
-    }
-
-
-    @Override
-    public CollectionAttribute<? super T, ?> getCollection(String name) {
-      return null;
-    }
-
-    @Override
-    public <E> CollectionAttribute<? super T, E> getCollection(String name, Class<E> elementType) {
-      return null;
-    }
-
-    @Override
-    public CollectionAttribute<T, ?> getDeclaredCollection(String name) {
-      return null;
-    }
-
-    @Override
-    public <E> CollectionAttribute<T, E> getDeclaredCollection(String name, Class<E> elementType) {
-      return null;
-    }
-
-    @Override
-    public <E> SetAttribute<? super T, E> getSet(String name, Class<E> elementType) {
-      return null;
-    }
-
-
-    @Override
-    public SetAttribute<? super T, ?> getSet(String name) {
-      return null;
-    }
-
-    @Override
-    public <E> SetAttribute<T, E> getDeclaredSet(String name, Class<E> elementType) {
-      return null;
-    }
-
-    @Override
-    public SetAttribute<T, ?> getDeclaredSet(String name) {
-      return null;
-    }
-
-    @Override
-    public <E> ListAttribute<? super T, E> getList(String name, Class<E> elementType) {
-      return null;
+  /**
+   * Load and register classes into persistence metacontext. Classes are parsed in parallel
+   * on common fork-join pool and published together when all of them are parsed.
+   *
+   * @param classNames  the names of classes to register
+   * @param classLoader the class loader used to load classes
+   * @return the registered classes in order of names.
+   * @throws PersistenceException when any of classes cannot be loaded or registered, with
+   *                              failures of all classes in message and suppressed exceptions.
+   */
+  public List<Class<?>> registerAll(List<String> classNames, ClassLoader classLoader) {
+    List<CompletableFuture<Class<?>>> loads = new ArrayList<>(classNames.size());
+    List<CompletableFuture<Registration>> parses = new ArrayList<>(classNames.size());
+    for (String className : classNames) {
+      CompletableFuture<Class<?>> load = CompletableFuture
+          .supplyAsync(() -> loadClass(className, classLoader), ForkJoinPool.commonPool());
+      loads.add(load);
+      // Parsing is submitted to the pool, so it never runs on calling thread when class
+      // is already loaded.
+      parses.add(load.thenApplyAsync(this::parse, ForkJoinPool.commonPool()));
+    }
+    List<Class<?>> classes = new ArrayList<>(classNames.size());
+    Map<Class<?>, Registration> parsed = new HashMap<>();
+    StringBuilder failures = new StringBuilder();
+    List<Throwable> errors = new ArrayList<>();
+    for (int i = 0; i < classNames.size(); i++) {
+      try {
+        Class<?> clazz = loads.get(i).join();
+        parsed.put(clazz, parses.get(i).join());
+        classes.add(clazz);
+      } catch (CompletionException e) {
+        Throwable cause = e.getCause() != null ? e.getCause() : e;
+        errors.add(cause);
+        failures.append(System.lineSeparator()).append("  ").append(classNames.get(i))
+                .append(": ").append(cause.getMessage());
+      }
     }
-
-    @Override
-    public ListAttribute<? super T, ?> getList(String name) {
-      return null;
+    if (!errors.isEmpty()) {
+      PersistenceException exception = new PersistenceException(
+          "Unable to register " + errors.size() + " of " + classNames.size()
+          + " entity classes:" + failures, errors.get(0));
+      errors.subList(1, errors.size()).forEach(exception::addSuppressed);
+      throw exception;
     }
+    publish(parsed);
+    parsed.forEach((clazz, registration) -> populateStaticMetamodel(clazz, registration.type));
+    return classes;
+  }
 
-    @Override
-    public <E> ListAttribute<T, E> getDeclaredList(String name, Class<E> elementType) {
-      return null;
+  private Registration registration(Class<?> clazz) {
+    Registration registration = snapshot.registrations.get(clazz);
+    if (registration == null) {
+      throw new IllegalArgumentException("Metadata for class " + clazz + " is not found!");
     }
+    return registration;
+  }
 
-    @Override
-    public ListAttribute<T, ?> getDeclaredList(String name) {
-      return null;
-    }
+  private synchronized void publish(Map<Class<?>, Registration> parsed) {
+    Map<Class<?>, Registration> registrations = new HashMap<>(snapshot.registrations);
+    registrations.putAll(parsed);
+    snapshot = new Snapshot(registrations);
+    // Schema copies are dropped after snapshot is replaced, so they are copied again from
+    // new registrations.
+    schemaEntityMetas.values().forEach(metas -> metas.keySet().removeAll(parsed.keySet()));
+    schemaExecutionPlans.values().forEach(plans -> plans.keySet().removeAll(parsed.keySet()));
+  }
 
-    @Override
-    public MapAttribute<? super T, ?, ?> getMap(String name) {
-      return null;
+  private static Class<?> loadClass(String className, ClassLoader classLoader) {
+    try {
+      return Class.forName(className, true, classLoader);
+    } catch (ClassNotFoundException e) {
+      throw new IllegalArgumentException("Class " + className + " is not found!", e);
     }
+  }
 
-    @Override
-    public <K, V> MapAttribute<? super T, K, V> getMap(String name, Class<K> keyType,
-                                                       Class<V> valueType) {
-      return null;
+  private Registration parse(Class<?> clazz) {
+    EntityMeta meta = generatedMeta(clazz);
+    if (meta == null) {
+      try {
+        meta = EntityMetaParser.parseEntity(clazz, typeHandlers);
+      } catch (NoSuchMethodException e) {
+        throw new IllegalArgumentException("Getter or setter for one of fields incorrect!", e);
+      }
     }
-
-    @Override
-    public MapAttribute<T, ?, ?> getDeclaredMap(String name) {
-      return null;
+    if (meta == null) {
+      throw new IllegalArgumentException(
+          "Provided class " + clazz + " is not marked as JPA entity!");
     }
+    return new Registration(meta, ExecutionPlan.fromMeta(meta), new JpaEntityType<>(meta, clazz));
+  }
 
-
-    @Override
-    public <K, V> MapAttribute<T, K, V> getDeclaredMap(String name, Class<K> keyType,
-                                                       Class<V> valueType) {
+  private static EntityMeta generatedMeta(Class<?> clazz) {
+    Class<?> factory = companion(clazz, "_Meta");
+    if (factory == null || !EntityMetaFactory.class.isAssignableFrom(factory)) {
       return null;
     }
-
-    @Override
-    public Set<PluralAttribute<? super T, ?, ?>> getPluralAttributes() {
-      return Collections.emptySet();
+    try {
+      return ((EntityMetaFactory) factory.getConstructor().newInstance()).create();
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalArgumentException("Unable to create metadata factory " + factory, e);
     }
+  }
 
-    @Override
-    public Set<PluralAttribute<T, ?, ?>> getDeclaredPluralAttributes() {
-      return Collections.emptySet();
+  private static void populateStaticMetamodel(Class<?> clazz, JpaEntityType<?> type) {
+    Class<?> metamodel = companion(clazz, "_");
+    if (metamodel == null) {
+      return;
     }
-
-    @Override
-    public Attribute<? super T, ?> getAttribute(String name) {
-      return null;
+    for (Field field : metamodel.getDeclaredFields()) {
+      if (!Modifier.isStatic(field.getModifiers())
+          || !Attribute.class.isAssignableFrom(field.getType())) {
+        continue;
+      }
+      try {
+        field.set(null, type.getDeclaredSingularAttribute(field.getName()));
+      } catch (IllegalArgumentException | IllegalAccessException e) {
+        throw new IllegalArgumentException("Unable to populate " + field, e);
+      }
     }
+  }
 
-    @Override
-    public Attribute<T, ?> getDeclaredAttribute(String name) {
+  private static Class<?> companion(Class<?> clazz, String suffix) {
+    try {
+      return Class.forName(clazz.getName() + suffix, true, clazz.getClassLoader());
+    } catch (ClassNotFoundException e) {
       return null;
     }
-
-
-    @Override
-    public PersistenceType getPersistenceType() {
-      return PersistenceType.ENTITY;
-    }
-
-    @Override
-    public Class<T> getJavaType() {
-      return clazz;
-    }
   }
 
-  private static class JpaAttribute implements SingularAttribute {
-
-    private ColumnMeta columnMeta;
-    private ManagedType declaredType;
-    private boolean id;
-
-    JpaAttribute(ColumnMeta columnMeta, ManagedType declaredType, boolean id) {
-      this.columnMeta = columnMeta;
-      this.declaredType = declaredType;
-      this.id = id;
-    }
-
-    @Override
-    public boolean isId() {
-      return id;
-    }
-
-    @Override
-    public boolean isVersion() {
-      return false;
-    }
-
-    @Override
-    public boolean isOptional() {
-      return !columnMeta.isNullable();
-    }
-
-    @Override
-    public Type getType() {
-      return new Type() {
-        @Override
-        public PersistenceType getPersistenceType() {
-          return PersistenceType.BASIC;
-        }
-
-        @Override
-        public Class getJavaType() {
-          return columnMeta.getType();
-        }
-      };
-    }
+  @SuppressWarnings("unchecked")
+  @Override
+  public <X> EntityType<X> entity(Class<X> cls) {
+    return (EntityType<X>) registration(cls).type;
+  }
 
-    @Override
-    public String getName() {
-      return columnMeta.getName();
-    }
+  @Override
+  public <X> ManagedType<X> managedType(Class<X> cls) {
+    return entity(cls);
+  }
 
-    @Override
-    public PersistentAttributeType getPersistentAttributeType() {
-      return PersistentAttributeType.BASIC;
-    }
+  @Override
+  public <X> EmbeddableType<X> embeddable(Class<X> cls) {
+    throw new IllegalArgumentException("Class " + cls + " is not an embeddable!");
+  }
 
-    @Override
-    public ManagedType getDeclaringType() {
-      return declaredType;
-    }
+  @Override
+  public Set<ManagedType<?>> getManagedTypes() {
+    return snapshot.managedTypes;
+  }
 
-    @Override
-    public Class getJavaType() {
-      return columnMeta.getType();
-    }
+  @Override
+  public Set<EntityType<?>> getEntities() {
+    return snapshot.entities;
+  }
 
-    @Override
-    public Member getJavaMember() {
-      return columnMeta.getField();
-    }
+  @Override
+  public Set<EmbeddableType<?>> getEmbeddables() {
+    return Collections.emptySet();
+  }
 
-    @Override
-    public boolean isAssociation() {
-      return false;
-    }
+  private static final class Snapshot {
+    private final Map<Class<?>, Registration> registrations;
+    private final Set<EntityType<?>> entities;
+    private final Set<ManagedType<?>> managedTypes;
 
-    @Override
-    public boolean isCollection() {
-      return false;
+    private Snapshot(Map<Class<?>, Registration> registrations) {
+      Set<EntityType<?>> entities = new HashSet<>();
+      registrations.values().forEach(registration -> entities.add(registration.type));
+      this.registrations = Collections.unmodifiableMap(registrations);
+      this.entities = Collections.unmodifiableSet(entities);
+      this.managedTypes = Collections.unmodifiableSet(new HashSet<>(entities));
     }
+  }
 
-    @Override
-    public BindableType getBindableType() {
-      return BindableType.SINGULAR_ATTRIBUTE;
-    }
+  private static final class Registration {
+    private final EntityMeta meta;
+    private final ExecutionPlan plan;
+    private final JpaEntityType<?> type;
 
-    @Override
-    public Class getBindableJavaType() {
-      return columnMeta.getType();
+    private Registration(EntityMeta meta, ExecutionPlan plan, JpaEntityType<?> type) {
+      this.meta = meta;
+      this.plan = plan;
+      this.type = type;
     }
   }
 }
@@ -0,0 +1,141 @@
+package ua.danit.jpa.parsing;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.persistence.PersistenceException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import ua.danit.jpa.configuration.PersistedUnit;
+import ua.danit.jpa.configuration.PersistenceRoot;
+import ua.danit.jpa.configuration.Property;
+
+/**
+ * Parser for persistence.xml resources. Resources are read with StAX, so no JAXB context
+ * is created, and parsed configuration is cached per class loader.
+ *
+ * @author Andrey Minov
+ */
+public final class PersistenceXmlParser {
+  private static final String PERSISTENCE_XML = "META-INF/persistence.xml";
+  private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+  // Weak keys allow class loaders of redeployed applications to be collected.
+  private static final Map<ClassLoader, PersistenceRoot> CACHE =
+      Collections.synchronizedMap(new WeakHashMap<>());
+
+  private PersistenceXmlParser() {
+  }
+
+  /**
+   * Get persistence configuration merged from all persistence.xml resources visible to
+   * class loader. When same unit is declared in several resources first declaration is used.
+   *
+   * @param classLoader the class loader to look resources up
+   * @return the merged persistence configuration
+   * @throws IllegalArgumentException when no persistence.xml resource is found.
+   * @throws PersistenceException     when one of resources cannot be parsed.
+   */
+  public static PersistenceRoot parse(ClassLoader classLoader) {
+    PersistenceRoot root = CACHE.get(classLoader);
+    if (root == null) {
+      root = parseResources(classLoader);
+      CACHE.putIfAbsent(classLoader, root);
+    }
+    return root;
+  }
+
+  private static PersistenceRoot parseResources(ClassLoader classLoader) {
+    Map<String, PersistedUnit> units = new LinkedHashMap<>();
+    try {
+      Enumeration<URL> resources = classLoader.getResources(PERSISTENCE_XML);
+      if (!resources.hasMoreElements()) {
+        throw new IllegalArgumentException("Unable to locate persistence.xml!");
+      }
+      while (resources.hasMoreElements()) {
+        URL url = resources.nextElement();
+        for (PersistedUnit unit : parseResource(url)) {
+          if (units.putIfAbsent(unit.getName(), unit) != null) {
+            Logger.getGlobal().log(Level.WARNING,
+                () -> "Duplicate persistence unit " + unit.getName() + " in " + url
+                      + " is ignored!");
+          }
+        }
+      }
+    } catch (IOException | XMLStreamException e) {
+      throw new PersistenceException(
+          "Persistence cannot be created due to persistence.xml parse error!", e);
+    }
+    return new PersistenceRoot(Collections.unmodifiableList(new ArrayList<>(units.values())));
+  }
+
+  private static List<PersistedUnit> parseResource(URL url)
+      throws IOException, XMLStreamException {
+    List<PersistedUnit> units = new ArrayList<>();
+    try (InputStream stream = url.openStream()) {
+      XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(stream);
+      try {
+        while (reader.hasNext()) {
+          if (reader.next() == XMLStreamConstants.START_ELEMENT
+              && "persistence-unit".equals(reader.getLocalName())) {
+            units.add(parseUnit(reader));
+          }
+        }
+      } finally {
+        reader.close();
+      }
+    }
+    return units;
+  }
+
+  private static PersistedUnit parseUnit(XMLStreamReader reader) throws XMLStreamException {
+    String name = reader.getAttributeValue(null, "name");
+    String provider = null;
+    List<String> classes = new ArrayList<>();
+    List<Property> properties = new ArrayList<>();
+    int depth = 1;
+    while (depth > 0) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.END_ELEMENT) {
+        depth--;
+      } else if (event == XMLStreamConstants.START_ELEMENT) {
+        switch (reader.getLocalName()) {
+          case "provider":
+            provider = reader.getElementText().trim();
+            break;
+          case "class":
+            classes.add(reader.getElementText().trim());
+            break;
+          case "property":
+            properties.add(new Property(reader.getAttributeValue(null, "name"),
+                reader.getAttributeValue(null, "value")));
+            depth++;
+            break;
+          default:
+            depth++;
+        }
+      }
+    }
+    return new PersistedUnit(name, provider, new PersistenceRoot.Properties(properties),
+        classes);
+  }
+
+  private static XMLInputFactory createInputFactory() {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+    return factory;
+  }
+}
@@ -0,0 +1,58 @@
+package ua.danit.jpa.parsing.executions;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import javax.persistence.PersistenceException;
+
+/**
+ * Execution for SQL JPA operation which can be executed as JDBC batch for many entities.
+ *
+ * @author Andrey Minov
+ */
+public interface BatchExecution extends JpaExecution<Integer> {
+  /**
+   * Get execution which statement matches the entity. Execution which SQL depends on entity
+   * state, as check of NULL version, returns other execution for such entities.
+   *
+   * @param entity the entity used on JPA action
+   * @return the execution used to prepare statement and add entity to the batch.
+   * @throws PersistenceException in case entity state cannot be read.
+   */
+  default BatchExecution forEntity(Object entity) {
+    return this;
+  }
+
+  /**
+   * Prepare statement for the batch.
+   *
+   * @param connection the JDBC connection used to execute batch
+   * @return the prepared statement for the batch.
+   * @throws SQLException in case statement cannot be prepared.
+   */
+  PreparedStatement prepare(Connection connection) throws SQLException;
+
+  /**
+   * Bind entity values to the statement and add them to the batch.
+   *
+   * @param statement the statement prepared with {@link #prepare(Connection)}
+   * @param entity    the entity used on JPA action
+   * @return the value applied to the entity when batch is executed, may be null.
+   * @throws PersistenceException in case entity cannot be bound.
+   */
+  Object addBatch(PreparedStatement statement, Object entity);
+
+  /**
+   * Complete executed batch, checking update counts and applying generated values
+   * to entities.
+   *
+   * @param statement the statement batch was executed with
+   * @param entities  the entities in order they were added to the batch
+   * @param values    the values returned by {@link #addBatch(PreparedStatement, Object)}
+   * @param counts    the update counts returned by the batch execution
+   * @throws PersistenceException in case batch result is not expected.
+   */
+  void completeBatch(PreparedStatement statement, List<Object> entities, List<Object> values,
+                     int[] counts);
+}
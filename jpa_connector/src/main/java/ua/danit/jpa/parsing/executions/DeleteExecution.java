@@ -1,11 +1,12 @@
 package ua.danit.jpa.parsing.executions;
 
-import java.lang.reflect.Method;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import javax.persistence.OptimisticLockException;
 import javax.persistence.PersistenceException;
 
-import ua.danit.jpa.entity.ColumnMeta;
 import ua.danit.jpa.entity.EntityMeta;
 
 /**
@@ -13,45 +14,119 @@ import ua.danit.jpa.entity.EntityMeta;
  *
  * @author Andrey Minov
  */
-public class DeleteExecution implements JpaExecution<Integer> {
-  private static final String SQL_FORMAT = "DELETE FROM %s WHERE %s=?";
+public class DeleteExecution implements BatchExecution {
+  private static final String SQL_FORMAT = "DELETE FROM %s WHERE %s";
+  private static final String VERSION_FORMAT = " AND %s=?";
+  private static final String NULL_VERSION_FORMAT = " AND %s IS NULL";
 
   private String sql;
-  private int idType;
-  private Method idGetter;
+  private IdColumns idColumns;
+  private VersionColumn version;
+  // Delete of row with NULL version, null when version is not bound in where clause.
+  private DeleteExecution nullVersionDelete;
 
-  private DeleteExecution(String sql, int idType, Method idGetter) {
+  private DeleteExecution(String sql, IdColumns idColumns, VersionColumn version,
+                          DeleteExecution nullVersionDelete) {
     this.sql = sql;
-    this.idType = idType;
-    this.idGetter = idGetter;
+    this.idColumns = idColumns;
+    this.version = version;
+    this.nullVersionDelete = nullVersionDelete;
   }
 
   /**
-   * Create new delete statement execution from metadata.
+   * Create new delete statement execution from metadata. When entity has version column
+   * the version is checked in where clause, NULL version is matched by IS NULL condition.
    *
    * @param meta the meta for entity to persist
    * @return delete statement execution from metadata.
    */
-  public static JpaExecution<Integer> fromMeta(EntityMeta meta) {
+  public static BatchExecution fromMeta(EntityMeta meta) {
     String tableName =
         meta.getSchema() != null && !meta.getSchema().isEmpty() ? meta.getSchema() + "." + meta
             .getTableName() : meta.getTableName();
 
 
-    ColumnMeta idColumn = meta.getId().getColumns().get(0);
+    IdColumns idColumns = IdColumns.of(meta.getId());
+    VersionColumn version = VersionColumn.of(meta.getVersion());
 
-    String sql = String.format(SQL_FORMAT, tableName, idColumn.getName());
-    return new DeleteExecution(sql, idColumn.getSqlType(), idColumn.getGetter());
+    String sql = String.format(SQL_FORMAT, tableName, idColumns.getCondition());
+    if (version == null) {
+      return new DeleteExecution(sql, idColumns, null, null);
+    }
+    String versionName = version.getColumn().getName();
+    DeleteExecution nullVersionDelete = new DeleteExecution(
+        sql + String.format(NULL_VERSION_FORMAT, versionName), idColumns, version, null);
+    return new DeleteExecution(sql + String.format(VERSION_FORMAT, versionName), idColumns,
+        version, nullVersionDelete);
+  }
+
+  @Override
+  public DeleteExecution forEntity(Object entity) {
+    if (nullVersionDelete == null) {
+      return this;
+    }
+    try {
+      return version.current(entity) == null ? nullVersionDelete : this;
+    } catch (Exception e) {
+      throw new PersistenceException("Unable to get entity version!", e);
+    }
   }
 
   @Override
   public Integer execute(Connection connection, Object entity) {
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
-      Object id = idGetter.invoke(entity);
-      statement.setObject(1, id, idType);
-      return statement.executeUpdate();
+    DeleteExecution execution = forEntity(entity);
+    if (execution != this) {
+      return execution.execute(connection, entity);
+    }
+    int deleted;
+    try (PreparedStatement statement = prepare(connection)) {
+      bind(statement, entity);
+      deleted = statement.executeUpdate();
     } catch (Exception e) {
       throw new PersistenceException("Unable to execute statement:" + sql, e);
     }
+    if (version != null && deleted == 0) {
+      throw new OptimisticLockException("Entity was updated or deleted concurrently!", null,
+          entity);
+    }
+    return deleted;
+  }
+
+  @Override
+  public PreparedStatement prepare(Connection connection) throws SQLException {
+    return connection.prepareStatement(sql);
+  }
+
+  @Override
+  public Object addBatch(PreparedStatement statement, Object entity) {
+    try {
+      bind(statement, entity);
+      statement.addBatch();
+      return null;
+    } catch (Exception e) {
+      throw new PersistenceException("Unable to add batch for statement:" + sql, e);
+    }
+  }
+
+  @Override
+  public void completeBatch(PreparedStatement statement, List<Object> entities,
+                            List<Object> values, int[] counts) {
+    if (version == null) {
+      return;
+    }
+    for (int i = 0; i < counts.length && i < entities.size(); i++) {
+      if (counts[i] == 0) {
+        throw new OptimisticLockException("Entity was updated or deleted concurrently!", null,
+            entities.get(i));
+      }
+    }
+  }
+
+  private void bind(PreparedStatement statement, Object entity) throws Exception {
+    idColumns.bind(statement, 1, entity);
+    if (nullVersionDelete != null) {
+      version.getColumn().getBinder().bindValue(statement, idColumns.size() + 1,
+          version.current(entity));
+    }
   }
 }
@@ -0,0 +1,83 @@
+package ua.danit.jpa.parsing.executions;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import ua.danit.jpa.entity.EntityMeta;
+
+/**
+ * Executions prepared once for the entity and shared between sessions.
+ *
+ * @author Andrey Minov
+ */
+public final class ExecutionPlan {
+  private final BatchExecution insert;
+  private final BatchExecution update;
+  private final BatchExecution delete;
+  private final SelectExecution select;
+  private final JpaExecution<Void> refresh;
+
+  private ExecutionPlan(BatchExecution insert, BatchExecution update, BatchExecution delete,
+                        SelectExecution select, JpaExecution<Void> refresh) {
+    this.insert = insert;
+    this.update = update;
+    this.delete = delete;
+    this.select = select;
+    this.refresh = refresh;
+  }
+
+  /**
+   * Create execution plan from entity metadata.
+   *
+   * @param meta the entity metadata
+   * @return the execution plan for the entity.
+   */
+  public static ExecutionPlan fromMeta(EntityMeta meta) {
+    return new ExecutionPlan(InsertExecution.fromMeta(meta), UpdateExecution.fromMeta(meta),
+        DeleteExecution.fromMeta(meta), SelectExecution.fromMeta(meta),
+        RefreshExecution.fromMeta(meta));
+  }
+
+  public BatchExecution getInsert() {
+    return insert;
+  }
+
+  public BatchExecution getUpdate() {
+    return update;
+  }
+
+  public BatchExecution getDelete() {
+    return delete;
+  }
+
+  public SelectExecution getSelect() {
+    return select;
+  }
+
+  public JpaExecution<Void> getRefresh() {
+    return refresh;
+  }
+
+  /**
+   * Prepare and close insert, update, delete and select statements of the entity, so pooled
+   * connection with statement cache keeps them prepared for sessions. Refresh reuses select
+   * statement.
+   *
+   * @param connection the pooled connection
+   * @return the number of prepared statements.
+   * @throws SQLException in case statement cannot be prepared.
+   */
+  public int prepare(Connection connection) throws SQLException {
+    int prepared = 0;
+    for (BatchExecution execution : new BatchExecution[] {insert, update, delete}) {
+      try (PreparedStatement ignored = execution.prepare(connection)) {
+        prepared++;
+      }
+    }
+    try (PreparedStatement ignored = connection.prepareStatement(select.getSql())) {
+      prepared++;
+    }
+    return prepared;
+  }
+}
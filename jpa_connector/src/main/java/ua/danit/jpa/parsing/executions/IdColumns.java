@@ -0,0 +1,93 @@
+package ua.danit.jpa.parsing.executions;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import ua.danit.jpa.entity.ColumnBinder;
+import ua.danit.jpa.entity.ColumnMeta;
+import ua.danit.jpa.entity.IdMeta;
+
+/**
+ * Id columns of entity with condition matching single row by all of them.
+ *
+ * @author Andrey Minov
+ */
+final class IdColumns {
+  private static final String PARAM_FORMAT = "%s=?";
+
+  private final IdMeta id;
+  private final ColumnBinder[] binders;
+  private final List<String> names;
+  private final String condition;
+
+  private IdColumns(IdMeta id) {
+    this.id = id;
+    List<ColumnMeta> columns = id.getColumns();
+    this.binders = new ColumnBinder[columns.size()];
+    this.names = new ArrayList<>(columns.size());
+    List<String> params = new ArrayList<>(columns.size());
+    for (int i = 0; i < binders.length; i++) {
+      binders[i] = columns.get(i).getBinder();
+      names.add(columns.get(i).getName());
+      params.add(String.format(PARAM_FORMAT, columns.get(i).getName()));
+    }
+    this.condition = String.join(" AND ", params);
+  }
+
+  /**
+   * Create id columns from identity metadata.
+   *
+   * @param id the identity metadata
+   * @return the id columns.
+   */
+  static IdColumns of(IdMeta id) {
+    return new IdColumns(id);
+  }
+
+  List<String> getNames() {
+    return names;
+  }
+
+  /**
+   * Get condition matching row by all id columns.
+   *
+   * @return the condition such as {@code a=? AND b=?}.
+   */
+  String getCondition() {
+    return condition;
+  }
+
+  int size() {
+    return binders.length;
+  }
+
+  /**
+   * Bind id column values of entity as statement parameters.
+   *
+   * @param statement the statement
+   * @param index     the index of first id parameter
+   * @param entity    the entity
+   * @throws SQLException when parameter cannot be set.
+   */
+  void bind(PreparedStatement statement, int index, Object entity) throws SQLException {
+    for (int i = 0; i < binders.length; i++) {
+      binders[i].bind(statement, index + i, entity);
+    }
+  }
+
+  /**
+   * Bind id column values of key as statement parameters.
+   *
+   * @param statement the statement
+   * @param index     the index of first id parameter
+   * @param key       the key identifying entity
+   * @throws SQLException when parameter cannot be set.
+   */
+  void bindKey(PreparedStatement statement, int index, Object key) throws SQLException {
+    for (int i = 0; i < binders.length; i++) {
+      binders[i].bindValue(statement, index + i, id.getValue(key, i));
+    }
+  }
+}
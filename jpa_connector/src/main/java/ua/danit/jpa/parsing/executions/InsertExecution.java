@@ -1,9 +1,9 @@
 package ua.danit.jpa.parsing.executions;
 
-import java.lang.reflect.Method;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
@@ -12,6 +12,7 @@ import java.util.stream.Stream;
 import javax.persistence.GenerationType;
 import javax.persistence.PersistenceException;
 
+import ua.danit.jpa.entity.ColumnBinder;
 import ua.danit.jpa.entity.ColumnMeta;
 import ua.danit.jpa.entity.EntityMeta;
 
@@ -20,20 +21,23 @@ import ua.danit.jpa.entity.EntityMeta;
  *
  * @author Andrey Minov
  */
-public class InsertExecution implements JpaExecution<Integer> {
+public class InsertExecution implements BatchExecution {
   private static final String SQL_FORMAT = "INSERT INTO %s (%s) VALUES (%s)";
 
   private String sql;
   private List<ColumnMeta> columnMetas;
-  private Method idSetter;
+  private ColumnBinder idBinder;
   private boolean generatedId;
+  private VersionColumn version;
 
-  private InsertExecution(String sql, List<ColumnMeta> columnMetas, Method idSetter,
-                          boolean generatedId) {
+  private InsertExecution(String sql, List<ColumnMeta> columnMetas,
+                          ColumnBinder idBinder, boolean generatedId,
+                          VersionColumn version) {
     this.sql = sql;
     this.columnMetas = columnMetas;
-    this.idSetter = idSetter;
+    this.idBinder = idBinder;
     this.generatedId = generatedId;
+    this.version = version;
   }
 
   /**
@@ -42,7 +46,12 @@ public class InsertExecution implements JpaExecution<Integer> {
    * @param meta the meta for entity to persist
    * @return insert statement execution from metadata.
    */
-  public static JpaExecution<Integer> fromMeta(EntityMeta meta) {
+  public static BatchExecution fromMeta(EntityMeta meta) {
+    List<ColumnMeta> idColumns = meta.getId().getColumns();
+    boolean generatedId = meta.getId().getGenerationType() == GenerationType.IDENTITY;
+    if (generatedId && idColumns.size() > 1) {
+      throw new IllegalArgumentException("Identity generation is not supported for composite id!");
+    }
     String tableName =
         meta.getSchema() != null && !meta.getSchema().isEmpty() ? meta.getSchema() + "." + meta
             .getTableName() : meta.getTableName();
@@ -54,35 +63,30 @@ public class InsertExecution implements JpaExecution<Integer> {
       columnMetas.add(columnMeta);
       names.add(columnMeta.getName());
     }
-    ColumnMeta idColumn = meta.getId().getColumns().get(0);
-    boolean generatedId = meta.getId().getGenerationType() == GenerationType.IDENTITY;
     if (!generatedId) {
-      columnMetas.add(idColumn);
-      names.add(idColumn.getName());
+      for (ColumnMeta idColumn : idColumns) {
+        columnMetas.add(idColumn);
+        names.add(idColumn.getName());
+      }
     }
     String sql = String
         .format(SQL_FORMAT, tableName, String.join(",", names), Stream.generate(() -> "?")
                                                                       .limit(names.size())
                                                                       .collect(Collectors
                                                                           .joining(",")));
-    return new InsertExecution(sql, columnMetas, idColumn.getSetter(), generatedId);
+    return new InsertExecution(sql, columnMetas, idColumns.get(0).getBinder(), generatedId,
+        VersionColumn.of(meta.getVersion()));
   }
 
   @Override
   public Integer execute(Connection connection, Object entity) {
-    try (PreparedStatement statement = generatedId ? connection
-        .prepareStatement(sql, Statement.RETURN_GENERATED_KEYS) : connection
-        .prepareStatement(sql)) {
-
-      for (int i = 0; i < columnMetas.size(); i++) {
-        ColumnMeta meta = columnMetas.get(i);
-        statement.setObject(i + 1, meta.getGetter().invoke(entity), meta.getSqlType());
-      }
+    try (PreparedStatement statement = prepare(connection)) {
+      bind(statement, entity);
       int result = statement.executeUpdate();
       if (generatedId) {
         try (ResultSet set = statement.getGeneratedKeys()) {
           if (set.next()) {
-            idSetter.invoke(entity, set.getObject(1));
+            idBinder.read(set, 1, entity);
           }
         }
       }
@@ -91,4 +95,48 @@ public class InsertExecution implements JpaExecution<Integer> {
       throw new PersistenceException("Error execute statement : " + sql, e);
     }
   }
+
+  @Override
+  public PreparedStatement prepare(Connection connection) throws SQLException {
+    return generatedId ? connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)
+        : connection.prepareStatement(sql);
+  }
+
+  @Override
+  public Object addBatch(PreparedStatement statement, Object entity) {
+    try {
+      bind(statement, entity);
+      statement.addBatch();
+      return null;
+    } catch (Exception e) {
+      throw new PersistenceException("Error add batch for statement : " + sql, e);
+    }
+  }
+
+  @Override
+  public void completeBatch(PreparedStatement statement, List<Object> entities,
+                            List<Object> values, int[] counts) {
+    if (!generatedId) {
+      return;
+    }
+    try (ResultSet set = statement.getGeneratedKeys()) {
+      for (Object entity : entities) {
+        if (!set.next()) {
+          break;
+        }
+        idBinder.read(set, 1, entity);
+      }
+    } catch (Exception e) {
+      throw new PersistenceException("Unable to set generated keys for statement : " + sql, e);
+    }
+  }
+
+  private void bind(PreparedStatement statement, Object entity) throws Exception {
+    if (version != null) {
+      version.initialize(entity);
+    }
+    for (int i = 0; i < columnMetas.size(); i++) {
+      columnMetas.get(i).getBinder().bind(statement, i + 1, entity);
+    }
+  }
 }
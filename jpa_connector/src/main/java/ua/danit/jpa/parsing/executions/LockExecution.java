@@ -0,0 +1,132 @@
+package ua.danit.jpa.parsing.executions;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Objects;
+import javax.persistence.EntityNotFoundException;
+import javax.persistence.LockModeType;
+import javax.persistence.OptimisticLockException;
+import javax.persistence.PersistenceException;
+
+import ua.danit.jpa.entity.ColumnBinder;
+import ua.danit.jpa.entity.EntityMeta;
+
+/**
+ * Execution for locking existed entry. Entry row is selected with dialect lock clause,
+ * version is verified and incremented for forcing lock modes.
+ *
+ * @author Andrey Minov
+ */
+public class LockExecution implements JpaExecution<Void> {
+  private static final String SQL_FORMAT = "SELECT %s FROM %s WHERE %s";
+  private static final String INCREMENT_FORMAT = "UPDATE %s SET %s=? WHERE %s AND %s=?";
+  private static final String NULL_INCREMENT_FORMAT = "UPDATE %s SET %s=? WHERE %s AND %s IS NULL";
+
+  private String sql;
+  private String incrementSql;
+  private String nullIncrementSql;
+  private IdColumns idColumns;
+  private VersionColumn version;
+
+  private LockExecution(String sql, String incrementSql, String nullIncrementSql,
+                        IdColumns idColumns, VersionColumn version) {
+    this.sql = sql;
+    this.incrementSql = incrementSql;
+    this.nullIncrementSql = nullIncrementSql;
+    this.idColumns = idColumns;
+    this.version = version;
+  }
+
+  /**
+   * Create new lock execution from entity metadata.
+   *
+   * @param meta       the meta data for locked entity
+   * @param lockMode   the lock mode to acquire
+   * @param lockClause the dialect lock clause appended to select statement
+   * @return new lock execution for entity.
+   * @throws PersistenceException when lock mode requires version and entity is not versioned.
+   */
+  public static JpaExecution<Void> fromMeta(EntityMeta meta, LockModeType lockMode,
+                                            String lockClause) {
+    String tableName =
+        meta.getSchema() != null && !meta.getSchema().isEmpty() ? meta.getSchema() + "." + meta
+            .getTableName() : meta.getTableName();
+    IdColumns idColumns = IdColumns.of(meta.getId());
+    VersionColumn version = VersionColumn.of(meta.getVersion());
+    boolean increment = lockMode == LockModeType.OPTIMISTIC_FORCE_INCREMENT
+                        || lockMode == LockModeType.WRITE
+                        || lockMode == LockModeType.PESSIMISTIC_FORCE_INCREMENT;
+    boolean optimistic = lockMode == LockModeType.OPTIMISTIC || lockMode == LockModeType.READ;
+    if (version == null && (increment || optimistic)) {
+      throw new PersistenceException("Lock mode " + lockMode + " requires versioned entity!");
+    }
+
+    String selected = version != null ? version.getColumn().getName()
+        : idColumns.getNames().get(0);
+    String sql = String.format(SQL_FORMAT, selected, tableName, idColumns.getCondition())
+                 + lockClause;
+    String incrementSql = increment ? String
+        .format(INCREMENT_FORMAT, tableName, selected, idColumns.getCondition(), selected) : null;
+    String nullIncrementSql = increment ? String.format(NULL_INCREMENT_FORMAT, tableName,
+        selected, idColumns.getCondition(), selected) : null;
+    return new LockExecution(sql, incrementSql, nullIncrementSql, idColumns, version);
+  }
+
+  @Override
+  public Void execute(Connection connection, Object entity) {
+    Object currentVersion;
+    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+      idColumns.bind(statement, 1, entity);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        if (!resultSet.next()) {
+          throw new EntityNotFoundException("Entity " + entity + " is not found in database!");
+        }
+        currentVersion = version != null ? version.current(entity) : null;
+        if (version != null && !versionEquals(currentVersion,
+            version.getColumn().getBinder().readValue(resultSet, 1))) {
+          throw new OptimisticLockException("Entity was updated or deleted concurrently!", null,
+              entity);
+        }
+      }
+    } catch (PersistenceException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new PersistenceException("Unable to execute statement:" + sql, e);
+    }
+    if (incrementSql != null) {
+      increment(connection, entity, currentVersion);
+    }
+    return null;
+  }
+
+  private void increment(Connection connection, Object entity, Object currentVersion) {
+    Object nextVersion = version.next(currentVersion);
+    ColumnBinder binder = version.getColumn().getBinder();
+    // NULL version never equals bound parameter, so it is matched by IS NULL condition.
+    String updateSql = currentVersion == null ? nullIncrementSql : incrementSql;
+    try (PreparedStatement statement = connection.prepareStatement(updateSql)) {
+      binder.bindValue(statement, 1, nextVersion);
+      idColumns.bind(statement, 2, entity);
+      if (currentVersion != null) {
+        binder.bindValue(statement, idColumns.size() + 2, currentVersion);
+      }
+      if (statement.executeUpdate() == 0) {
+        throw new OptimisticLockException("Entity was updated or deleted concurrently!", null,
+            entity);
+      }
+      version.set(entity, nextVersion);
+    } catch (PersistenceException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new PersistenceException("Unable to execute statement:" + updateSql, e);
+    }
+  }
+
+  private static boolean versionEquals(Object entityVersion, Object databaseVersion) {
+    if (entityVersion instanceof Number && databaseVersion instanceof Number) {
+      return ((Number) entityVersion).longValue() == ((Number) databaseVersion).longValue();
+    }
+    return Objects.equals(entityVersion, databaseVersion);
+  }
+}
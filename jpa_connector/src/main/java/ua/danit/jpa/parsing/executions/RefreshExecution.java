@@ -3,10 +3,12 @@ package ua.danit.jpa.parsing.executions;
 import java.sql.Connection;
 import java.util.ArrayList;
 import java.util.List;
+import javax.persistence.EntityNotFoundException;
 import javax.persistence.PersistenceException;
 
 import ua.danit.jpa.entity.ColumnMeta;
 import ua.danit.jpa.entity.EntityMeta;
+import ua.danit.jpa.entity.IdMeta;
 
 /**
  * Execution for entry refreshing.
@@ -16,13 +18,13 @@ import ua.danit.jpa.entity.EntityMeta;
 public class RefreshExecution implements JpaExecution<Void> {
 
   private JpaExecution<Object> selectExecution;
-  private ColumnMeta idColumn;
+  private IdMeta id;
   private List<ColumnMeta> columnMetas;
 
-  private RefreshExecution(JpaExecution<Object> selectExecution, ColumnMeta idColumn,
+  private RefreshExecution(JpaExecution<Object> selectExecution, IdMeta id,
                            List<ColumnMeta> columnMetas) {
     this.selectExecution = selectExecution;
-    this.idColumn = idColumn;
+    this.id = id;
     this.columnMetas = columnMetas;
   }
 
@@ -33,27 +35,40 @@ public class RefreshExecution implements JpaExecution<Void> {
    * @return new refresh execution which select entry from database and when update existed entity.
    */
   public static JpaExecution<Void> fromMeta(EntityMeta meta) {
-    JpaExecution<Object> selectExecution = SelectExecution.fromMeta(meta);
-    ColumnMeta idColumn = meta.getId().getColumns().get(0);
-    List<ColumnMeta> columnMetas = new ArrayList<>();
-    columnMetas.add(idColumn);
+    return fromMeta(meta, "");
+  }
+
+  /**
+   * Create new refresh execution which select and lock entry in database and when update
+   * existed entity.
+   *
+   * @param meta       the meta data for selected entity
+   * @param lockClause the dialect lock clause appended to select statement
+   * @return new refresh execution which select and lock entry in database.
+   */
+  public static JpaExecution<Void> fromMeta(EntityMeta meta, String lockClause) {
+    JpaExecution<Object> selectExecution = SelectExecution.fromMeta(meta, lockClause);
+    List<ColumnMeta> columnMetas = new ArrayList<>(meta.getId().getColumns());
     columnMetas.addAll(meta.getColumns());
-    return new RefreshExecution(selectExecution, idColumn, columnMetas);
+    return new RefreshExecution(selectExecution, meta.getId(), columnMetas);
   }
 
   @Override
   public Void execute(Connection connection, Object entity) {
     Object primaryKey;
     try {
-      primaryKey = idColumn.getGetter().invoke(entity);
+      primaryKey = id.getKey(entity);
     } catch (Exception e) {
       throw new RuntimeException("Unable to get primary key object!", e);
     }
     Object newObject = selectExecution.execute(connection, primaryKey);
+    if (newObject == null) {
+      throw new EntityNotFoundException("Entity " + entity + " is not found in database!");
+    }
     try {
       for (ColumnMeta meta : columnMetas) {
-        Object value = meta.getGetter().invoke(newObject);
-        meta.getSetter().invoke(entity, value);
+        Object value = meta.getAccessor().get(newObject);
+        meta.getAccessor().set(entity, value);
       }
       return null;
     } catch (Exception e) {
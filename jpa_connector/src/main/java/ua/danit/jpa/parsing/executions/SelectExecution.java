@@ -1,15 +1,16 @@
 package ua.danit.jpa.parsing.executions;
 
-import java.lang.reflect.Constructor;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
+import java.util.function.Supplier;
 import javax.persistence.PersistenceException;
 
+import ua.danit.jpa.entity.ColumnBinder;
 import ua.danit.jpa.entity.ColumnMeta;
 import ua.danit.jpa.entity.EntityMeta;
 
@@ -19,19 +20,24 @@ import ua.danit.jpa.entity.EntityMeta;
  * @author Andrey Minov
  */
 public class SelectExecution implements JpaExecution<Object> {
-  private static final String SQL_FORMAT = "SELECT %s FROM %s WHERE %s=?";
+  private static final String SQL_FORMAT = "SELECT %s FROM %s WHERE ";
 
   private String sql;
-  private int idType;
-  private Constructor<?> constructor;
-  private Map<String, ColumnMeta> columns;
+  private String selectSql;
+  private String lockClause;
+  private IdColumns idColumns;
+  private Supplier<?> instantiator;
+  // Binders in order of selected columns.
+  private ColumnBinder[] binders;
 
-  private SelectExecution(String sql, int idType, Constructor<?> constructor,
-                          Map<String, ColumnMeta> columns) {
-    this.sql = sql;
-    this.idType = idType;
-    this.constructor = constructor;
-    this.columns = columns;
+  private SelectExecution(String selectSql, String lockClause, IdColumns idColumns,
+                          Supplier<?> instantiator, ColumnBinder[] binders) {
+    this.sql = selectSql + idColumns.getCondition() + lockClause;
+    this.selectSql = selectSql;
+    this.lockClause = lockClause;
+    this.idColumns = idColumns;
+    this.instantiator = instantiator;
+    this.binders = binders;
   }
 
   /**
@@ -40,50 +46,96 @@ public class SelectExecution implements JpaExecution<Object> {
    * @param meta the meta data for selected entity
    * @return new select execution which select data from database, create new entry and return.
    */
-  public static JpaExecution<Object> fromMeta(EntityMeta meta) {
+  public static SelectExecution fromMeta(EntityMeta meta) {
+    return fromMeta(meta, "");
+  }
 
-    List<String> names = new ArrayList<>(meta.getColumns().size());
-    Map<String, ColumnMeta> columns = new HashMap<>();
-    ColumnMeta idColumn = meta.getId().getColumns().get(0);
-    columns.put(idColumn.getName(), idColumn);
-    names.add(idColumn.getName());
+  /**
+   * Create new select execution which select data from database with row lock,
+   * create new entry and return.
+   *
+   * @param meta       the meta data for selected entity
+   * @param lockClause the dialect lock clause appended to select statement
+   * @return new select execution which select and lock data in database.
+   */
+  public static SelectExecution fromMeta(EntityMeta meta, String lockClause) {
+    IdColumns idColumns = IdColumns.of(meta.getId());
+    List<String> names = new ArrayList<>(idColumns.getNames());
+    List<ColumnBinder> binders = new ArrayList<>(meta.getColumns().size() + idColumns.size());
+    for (ColumnMeta idColumn : meta.getId().getColumns()) {
+      binders.add(idColumn.getBinder());
+    }
 
     for (ColumnMeta columnMeta : meta.getColumns()) {
       names.add(columnMeta.getName());
-      columns.put(columnMeta.getName(), columnMeta);
+      binders.add(columnMeta.getBinder());
     }
 
     String tableName =
         meta.getSchema() != null && !meta.getSchema().isEmpty() ? meta.getSchema() + "." + meta
             .getTableName() : meta.getTableName();
 
-    String sql = String.format(SQL_FORMAT, String.join(",", names), tableName, idColumn.getName());
-    return new SelectExecution(sql, idColumn.getSqlType(), meta.getConstructor(), columns);
+    String selectSql = String.format(SQL_FORMAT, String.join(",", names), tableName);
+    return new SelectExecution(selectSql, lockClause, idColumns, meta::newInstance,
+        binders.toArray(new ColumnBinder[0]));
   }
 
   @Override
   public Object execute(Connection connection, Object id) {
-    Object entity;
-    try {
-      entity = constructor.newInstance();
+    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+      idColumns.bindKey(statement, 1, id);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        return resultSet.next() ? read(resultSet) : null;
+      }
     } catch (Exception e) {
-      throw new RuntimeException("Unable to create new object entity!");
+      throw new PersistenceException(e);
     }
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
-      statement.setObject(1, id, idType);
+  }
+
+  /**
+   * Select entities by many keys with single statement. Single id column is matched by IN
+   * list, composite id by disjunction of conditions on all id columns.
+   *
+   * @param connection the connection
+   * @param keys       the keys identifying entities, not empty
+   * @return the found entities in order of rows, entities not found are missing.
+   * @throws PersistenceException when statement cannot be executed.
+   */
+  public List<Object> executeAll(Connection connection, List<?> keys) {
+    String condition;
+    if (idColumns.size() == 1) {
+      condition = idColumns.getNames().get(0) + " IN ("
+                  + String.join(",", Collections.nCopies(keys.size(), "?")) + ")";
+    } else {
+      condition = String.join(" OR ",
+          Collections.nCopies(keys.size(), "(" + idColumns.getCondition() + ")"));
+    }
+    String multiSql = selectSql + condition + lockClause;
+    try (PreparedStatement statement = connection.prepareStatement(multiSql)) {
+      for (int i = 0; i < keys.size(); i++) {
+        idColumns.bindKey(statement, i * idColumns.size() + 1, keys.get(i));
+      }
+      List<Object> entities = new ArrayList<>(keys.size());
       try (ResultSet resultSet = statement.executeQuery()) {
-        if (!resultSet.next()) {
-          return null;
-        }
-        for (Map.Entry<String, ColumnMeta> entry : columns.entrySet()) {
-          ColumnMeta columnMeta = entry.getValue();
-          Object o = resultSet.getObject(entry.getKey());
-          columnMeta.getSetter().invoke(entity, o);
+        while (resultSet.next()) {
+          entities.add(read(resultSet));
         }
       }
-      return entity;
+      return entities;
     } catch (Exception e) {
-      throw new PersistenceException(e);
+      throw new PersistenceException("Unable to execute statement:" + multiSql, e);
+    }
+  }
+
+  private Object read(ResultSet resultSet) throws SQLException {
+    Object entity = instantiator.get();
+    for (int i = 0; i < binders.length; i++) {
+      binders[i].read(resultSet, i + 1, entity);
     }
+    return entity;
+  }
+
+  String getSql() {
+    return sql;
   }
 }
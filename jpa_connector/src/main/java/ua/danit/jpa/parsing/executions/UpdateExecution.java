@@ -2,8 +2,10 @@ package ua.danit.jpa.parsing.executions;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
+import javax.persistence.OptimisticLockException;
 import javax.persistence.PersistenceException;
 
 import ua.danit.jpa.entity.ColumnMeta;
@@ -14,27 +16,37 @@ import ua.danit.jpa.entity.EntityMeta;
  *
  * @author Andrey Minov
  */
-public class UpdateExecution implements JpaExecution<Integer> {
-  private static final String SQL_FORMAT = "UPDATE %s SET %s WHERE %s=?";
+public class UpdateExecution implements BatchExecution {
+  private static final String SQL_FORMAT = "UPDATE %s SET %s WHERE %s";
   private static final String PARAM_FORMAT = "%s=?";
+  private static final String VERSION_FORMAT = " AND %s=?";
+  private static final String NULL_VERSION_FORMAT = " AND %s IS NULL";
 
   private String sql;
   private List<ColumnMeta> columnMetas;
-  private ColumnMeta idColumn;
+  private IdColumns idColumns;
+  private VersionColumn version;
+  // Update of row with NULL version, null when version is not bound in where clause.
+  private UpdateExecution nullVersionUpdate;
 
-  private UpdateExecution(String sql, List<ColumnMeta> columnMetas, ColumnMeta idColumn) {
+  private UpdateExecution(String sql, List<ColumnMeta> columnMetas, IdColumns idColumns,
+                          VersionColumn version, UpdateExecution nullVersionUpdate) {
     this.sql = sql;
     this.columnMetas = columnMetas;
-    this.idColumn = idColumn;
+    this.idColumns = idColumns;
+    this.version = version;
+    this.nullVersionUpdate = nullVersionUpdate;
   }
 
   /**
-   * Create new update execution from entity metadata.
+   * Create new update execution from entity metadata. When entity has version column
+   * it is incremented on update and checked in where clause. Entity with NULL version,
+   * as row inserted without provider, is matched by IS NULL condition.
    *
    * @param meta the meta data for entity for update.
    * @return new update execution from entity metadata.
    */
-  public static JpaExecution<Integer> fromMeta(EntityMeta meta) {
+  public static BatchExecution fromMeta(EntityMeta meta) {
     String tableName =
         meta.getSchema() != null && !meta.getSchema().isEmpty() ? meta.getSchema() + "." + meta
             .getTableName() : meta.getTableName();
@@ -43,26 +55,115 @@ public class UpdateExecution implements JpaExecution<Integer> {
     List<String> names = new ArrayList<>(meta.getColumns().size());
 
     for (ColumnMeta columnMeta : meta.getColumns()) {
+      if (columnMeta == meta.getVersion()) {
+        continue;
+      }
       columnMetas.add(columnMeta);
       names.add(String.format(PARAM_FORMAT, columnMeta.getName()));
     }
-    ColumnMeta idColumn = meta.getId().getColumns().get(0);
-    String sql = String.format(SQL_FORMAT, tableName, String.join(",", names), idColumn.getName());
-    return new UpdateExecution(sql, columnMetas, idColumn);
+    IdColumns idColumns = IdColumns.of(meta.getId());
+    VersionColumn version = VersionColumn.of(meta.getVersion());
+    if (version != null) {
+      names.add(String.format(PARAM_FORMAT, version.getColumn().getName()));
+    }
+    String sql = String.format(SQL_FORMAT, tableName, String.join(",", names),
+        idColumns.getCondition());
+    if (version == null) {
+      return new UpdateExecution(sql, columnMetas, idColumns, null, null);
+    }
+    String versionName = version.getColumn().getName();
+    UpdateExecution nullVersionUpdate = new UpdateExecution(
+        sql + String.format(NULL_VERSION_FORMAT, versionName), columnMetas, idColumns, version,
+        null);
+    return new UpdateExecution(sql + String.format(VERSION_FORMAT, versionName), columnMetas,
+        idColumns, version, nullVersionUpdate);
+  }
+
+  @Override
+  public UpdateExecution forEntity(Object entity) {
+    if (nullVersionUpdate == null) {
+      return this;
+    }
+    try {
+      return version.current(entity) == null ? nullVersionUpdate : this;
+    } catch (Exception e) {
+      throw new PersistenceException("Unable to get entity version!", e);
+    }
   }
 
   @Override
   public Integer execute(Connection connection, Object entity) {
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
-      int i = 0;
-      for (; i < columnMetas.size(); i++) {
-        ColumnMeta meta = columnMetas.get(i);
-        statement.setObject(i + 1, meta.getGetter().invoke(entity), meta.getSqlType());
-      }
-      statement.setObject(i + 1, idColumn.getGetter().invoke(entity), idColumn.getSqlType());
-      return statement.executeUpdate();
+    UpdateExecution execution = forEntity(entity);
+    if (execution != this) {
+      return execution.execute(connection, entity);
+    }
+    int updated;
+    Object nextVersion;
+    try (PreparedStatement statement = prepare(connection)) {
+      nextVersion = bind(statement, entity);
+      updated = statement.executeUpdate();
     } catch (Exception e) {
       throw new PersistenceException("Enable to run script: " + sql, e);
     }
+    complete(entity, nextVersion, updated);
+    return updated;
+  }
+
+  @Override
+  public PreparedStatement prepare(Connection connection) throws SQLException {
+    return connection.prepareStatement(sql);
+  }
+
+  @Override
+  public Object addBatch(PreparedStatement statement, Object entity) {
+    try {
+      Object nextVersion = bind(statement, entity);
+      statement.addBatch();
+      return nextVersion;
+    } catch (Exception e) {
+      throw new PersistenceException("Unable to add batch for script: " + sql, e);
+    }
+  }
+
+  @Override
+  public void completeBatch(PreparedStatement statement, List<Object> entities,
+                            List<Object> values, int[] counts) {
+    for (int i = 0; i < counts.length && i < entities.size(); i++) {
+      complete(entities.get(i), values.get(i), counts[i]);
+    }
+  }
+
+  private Object bind(PreparedStatement statement, Object entity) throws Exception {
+    int i = 0;
+    for (; i < columnMetas.size(); i++) {
+      columnMetas.get(i).getBinder().bind(statement, i + 1, entity);
+    }
+    Object currentVersion = null;
+    Object nextVersion = null;
+    if (version != null) {
+      currentVersion = version.current(entity);
+      nextVersion = version.next(currentVersion);
+      version.getColumn().getBinder().bindValue(statement, ++i, nextVersion);
+    }
+    idColumns.bind(statement, i + 1, entity);
+    if (nullVersionUpdate != null) {
+      version.getColumn().getBinder().bindValue(statement, i + 1 + idColumns.size(),
+          currentVersion);
+    }
+    return nextVersion;
+  }
+
+  private void complete(Object entity, Object nextVersion, int updated) {
+    if (version != null) {
+      if (updated == 0) {
+        throw new OptimisticLockException("Entity was updated or deleted concurrently!", null,
+            entity);
+      }
+      try {
+        version.set(entity, nextVersion);
+      } catch (Exception e) {
+        throw new PersistenceException("Unable to set entity version!", e);
+      }
+    }
   }
 }
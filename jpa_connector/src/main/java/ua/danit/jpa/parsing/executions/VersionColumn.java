@@ -0,0 +1,98 @@
+package ua.danit.jpa.parsing.executions;
+
+import java.sql.Timestamp;
+
+import ua.danit.jpa.entity.ColumnMeta;
+
+/**
+ * Optimistic lock version column with increment rules for supported version types.
+ *
+ * @author Andrey Minov
+ */
+final class VersionColumn {
+  private final ColumnMeta column;
+
+  private VersionColumn(ColumnMeta column) {
+    this.column = column;
+  }
+
+  /**
+   * Create version column from column metadata.
+   *
+   * @param column the version column metadata, may be null
+   * @return version column or null when entity is not versioned.
+   */
+  static VersionColumn of(ColumnMeta column) {
+    return column == null ? null : new VersionColumn(column);
+  }
+
+  ColumnMeta getColumn() {
+    return column;
+  }
+
+  /**
+   * Get current version value of the entity.
+   *
+   * @param entity the versioned entity
+   * @return current version value.
+   * @throws Exception when getter invocation fails.
+   */
+  Object current(Object entity) throws Exception {
+    return column.getAccessor().get(entity);
+  }
+
+  /**
+   * Set initial version value for the entity when it is not set yet.
+   *
+   * @param entity the entity to initialize version on
+   * @throws Exception when getter or setter invocation fails.
+   */
+  void initialize(Object entity) throws Exception {
+    if (current(entity) == null) {
+      column.getAccessor().set(entity, initial());
+    }
+  }
+
+  /**
+   * Calculate next version value following the current one.
+   *
+   * @param current the current version value
+   * @return the next version value.
+   */
+  Object next(Object current) {
+    if (current == null) {
+      return initial();
+    }
+    if (current instanceof Integer) {
+      return (Integer) current + 1;
+    }
+    if (current instanceof Long) {
+      return (Long) current + 1;
+    }
+    long now = System.currentTimeMillis();
+    long prev = ((Timestamp) current).getTime();
+    return new Timestamp(now > prev ? now : prev + 1);
+  }
+
+  /**
+   * Set version value on entity.
+   *
+   * @param entity the entity
+   * @param value  the version value
+   * @throws Exception when setter invocation fails.
+   */
+  void set(Object entity, Object value) throws Exception {
+    column.getAccessor().set(entity, value);
+  }
+
+  private Object initial() {
+    Class<?> type = column.getType();
+    if (type == int.class || type == Integer.class) {
+      return 0;
+    }
+    if (type == long.class || type == Long.class) {
+      return 0L;
+    }
+    return new Timestamp(System.currentTimeMillis());
+  }
+}
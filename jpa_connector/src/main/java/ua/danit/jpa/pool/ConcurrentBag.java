@@ -0,0 +1,118 @@
+package ua.danit.jpa.pool;
+
+import static ua.danit.jpa.pool.PoolEntry.STATE_IN_USE;
+import static ua.danit.jpa.pool.PoolEntry.STATE_NOT_IN_USE;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lock-free container of pool entries. Borrowing thread first checks entries it released
+ * before, then scans shared entries and only then waits for entry handed off by
+ * releasing thread. Entries are claimed with compare-and-set of their state, so borrow and
+ * release never take a lock.
+ *
+ * @author Andrey Minov
+ */
+final class ConcurrentBag {
+  private static final int THREAD_LOCAL_SIZE = 16;
+
+  private final CopyOnWriteArrayList<PoolEntry> sharedList = new CopyOnWriteArrayList<>();
+  private final ThreadLocal<List<PoolEntry>> threadList =
+      ThreadLocal.withInitial(() -> new ArrayList<>(THREAD_LOCAL_SIZE));
+  private final SynchronousQueue<PoolEntry> handoffQueue = new SynchronousQueue<>(true);
+  private final AtomicInteger waiters = new AtomicInteger();
+
+  /**
+   * Borrow entry from the bag.
+   *
+   * @param timeoutNanos the time to wait for released entry, zero to return immediately
+   * @return the borrowed entry or null when no entry is available in time.
+   * @throws InterruptedException when waiting thread is interrupted.
+   */
+  PoolEntry borrow(long timeoutNanos) throws InterruptedException {
+    List<PoolEntry> list = threadList.get();
+    for (int i = list.size() - 1; i >= 0; i--) {
+      PoolEntry entry = list.remove(i);
+      if (entry.compareAndSet(STATE_NOT_IN_USE, STATE_IN_USE)) {
+        return entry;
+      }
+    }
+    if (timeoutNanos <= 0) {
+      return borrowShared();
+    }
+    waiters.incrementAndGet();
+    try {
+      PoolEntry entry = borrowShared();
+      long remaining = timeoutNanos;
+      while (entry == null && remaining > 0) {
+        long start = System.nanoTime();
+        PoolEntry candidate = handoffQueue.poll(remaining, TimeUnit.NANOSECONDS);
+        if (candidate == null) {
+          return null;
+        }
+        if (candidate.compareAndSet(STATE_NOT_IN_USE, STATE_IN_USE)) {
+          entry = candidate;
+        }
+        remaining -= System.nanoTime() - start;
+      }
+      return entry;
+    } finally {
+      waiters.decrementAndGet();
+    }
+  }
+
+  /**
+   * Return borrowed entry to the bag. Entry is handed off directly to waiting thread if any,
+   * otherwise it is remembered for next borrow of current thread.
+   *
+   * @param entry the entry to return
+   */
+  void requite(PoolEntry entry) {
+    entry.setState(STATE_NOT_IN_USE);
+    for (int i = 0; waiters.get() > 0; i++) {
+      if (entry.getState() != STATE_NOT_IN_USE || handoffQueue.offer(entry)) {
+        return;
+      }
+      if ((i & 0xff) == 0xff) {
+        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(10));
+      } else {
+        Thread.yield();
+      }
+    }
+    List<PoolEntry> list = threadList.get();
+    if (list.size() < THREAD_LOCAL_SIZE) {
+      list.add(entry);
+    }
+  }
+
+  void add(PoolEntry entry) {
+    sharedList.add(entry);
+  }
+
+  void remove(PoolEntry entry) {
+    sharedList.remove(entry);
+  }
+
+  List<PoolEntry> values() {
+    return new ArrayList<>(sharedList);
+  }
+
+  int getWaiters() {
+    return waiters.get();
+  }
+
+  private PoolEntry borrowShared() {
+    for (PoolEntry entry : sharedList) {
+      if (entry.compareAndSet(STATE_NOT_IN_USE, STATE_IN_USE)) {
+        return entry;
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,108 @@
+package ua.danit.jpa.pool;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Handler of pooled connection proxy. Closing proxy returns physical connection to the pool,
+ * statements prepared by SQL, optionally with generated keys flag, are taken from statement
+ * cache of connection when it is enabled, any other call except of close checks is delegated
+ * to physical connection.
+ *
+ * @author Andrey Minov
+ */
+final class ConnectionHandler implements InvocationHandler {
+  private final PoolEntry entry;
+  private final JpaConnectionPool pool;
+  private final ScheduledFuture<?> leakTask;
+  private boolean closed;
+  private boolean autoCommitChanged;
+  private boolean schemaChanged;
+
+  private ConnectionHandler(PoolEntry entry, JpaConnectionPool pool,
+                            ScheduledFuture<?> leakTask) {
+    this.entry = entry;
+    this.pool = pool;
+    this.leakTask = leakTask;
+  }
+
+  /**
+   * Create pooled connection proxy for borrowed entry.
+   *
+   * @param entry    the borrowed pool entry
+   * @param pool     the pool entry is borrowed from
+   * @param leakTask the leak report cancelled on close, may be null
+   * @return the connection returning entry to the pool on close.
+   */
+  static Connection proxy(PoolEntry entry, JpaConnectionPool pool, ScheduledFuture<?> leakTask) {
+    return (Connection) Proxy.newProxyInstance(ConnectionHandler.class.getClassLoader(),
+        new Class<?>[] {Connection.class}, new ConnectionHandler(entry, pool, leakTask));
+  }
+
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    switch (method.getName()) {
+      case "close":
+        if (!closed) {
+          closed = true;
+          if (leakTask != null) {
+            leakTask.cancel(false);
+          }
+          pool.release(entry, autoCommitChanged, schemaChanged);
+        }
+        return null;
+      case "isClosed":
+        return closed || entry.getConnection().isClosed();
+      case "equals":
+        return proxy == args[0];
+      case "hashCode":
+        return System.identityHashCode(proxy);
+      case "toString":
+        return "Pooled " + entry.getConnection();
+      default:
+        break;
+    }
+    if (closed) {
+      throw new SQLException("Connection is closed!");
+    }
+    if ("setAutoCommit".equals(method.getName())) {
+      autoCommitChanged = true;
+    } else if ("setSchema".equals(method.getName())) {
+      schemaChanged = true;
+      // Cached statements resolve table names in schema they were prepared in.
+      entry.getStatements().clear();
+    } else if ("prepareStatement".equals(method.getName()) && isCacheable(args)) {
+      return prepareCached((Connection) proxy, args);
+    }
+    try {
+      return method.invoke(entry.getConnection(), args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+
+  private boolean isCacheable(Object[] args) {
+    return entry.getStatements().isEnabled()
+           && (args.length == 1 || args.length == 2 && args[1] instanceof Integer);
+  }
+
+  private PreparedStatement prepareCached(Connection proxy, Object[] args) throws SQLException {
+    List<Object> key = Arrays.asList(args);
+    StatementCache cache = entry.getStatements();
+    PreparedStatement statement = cache.take(key);
+    if (statement == null || statement.isClosed()) {
+      Connection connection = entry.getConnection();
+      statement = args.length == 1 ? connection.prepareStatement((String) args[0])
+          : connection.prepareStatement((String) args[0], (Integer) args[1]);
+    }
+    return StatementHandler.proxy(key, statement, cache, proxy);
+  }
+}
@@ -0,0 +1,95 @@
+package ua.danit.jpa.pool;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Properties;
+import java.util.logging.Logger;
+import javax.sql.DataSource;
+
+/**
+ * Non pooled data source opening new physical connection with driver manager on each call.
+ *
+ * @author Andrey Minov
+ */
+final class DriverDataSource implements DataSource {
+  private final String url;
+  private final Properties properties;
+
+  /**
+   * Instantiates a new driver data source.
+   *
+   * @param url             the JDBC connection URL
+   * @param username        the database username, may be null
+   * @param password        the database password, may be null
+   * @param driverClassName the JDBC driver class name, may be null when driver is registered
+   * @throws IllegalArgumentException when driver class is not found.
+   */
+  DriverDataSource(String url, String username, String password, String driverClassName) {
+    if (driverClassName != null && !driverClassName.isEmpty()) {
+      try {
+        Class.forName(driverClassName);
+      } catch (ClassNotFoundException e) {
+        throw new IllegalArgumentException("Driver class " + driverClassName + " not found!", e);
+      }
+    }
+    this.url = url;
+    this.properties = new Properties();
+    if (username != null) {
+      properties.setProperty("user", username);
+    }
+    if (password != null) {
+      properties.setProperty("password", password);
+    }
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    return DriverManager.getConnection(url, properties);
+  }
+
+  @Override
+  public Connection getConnection(String username, String password) throws SQLException {
+    return DriverManager.getConnection(url, username, password);
+  }
+
+  @Override
+  public PrintWriter getLogWriter() throws SQLException {
+    return DriverManager.getLogWriter();
+  }
+
+  @Override
+  public void setLogWriter(PrintWriter out) throws SQLException {
+    DriverManager.setLogWriter(out);
+  }
+
+  @Override
+  public void setLoginTimeout(int seconds) throws SQLException {
+    DriverManager.setLoginTimeout(seconds);
+  }
+
+  @Override
+  public int getLoginTimeout() throws SQLException {
+    return DriverManager.getLoginTimeout();
+  }
+
+  @Override
+  public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+    throw new SQLFeatureNotSupportedException("This method is not supported!");
+  }
+
+  @Override
+  public <T> T unwrap(Class<T> iface) throws SQLException {
+    if (iface.isInstance(this)) {
+      return iface.cast(this);
+    }
+    throw new SQLException("Data source is not a wrapper for " + iface);
+  }
+
+  @Override
+  public boolean isWrapperFor(Class<?> iface) {
+    return iface.isInstance(this);
+  }
+}
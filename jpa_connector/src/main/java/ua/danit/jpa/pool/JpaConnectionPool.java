@@ -0,0 +1,555 @@
+package ua.danit.jpa.pool;
+
+import static ua.danit.jpa.pool.PoolEntry.STATE_NOT_IN_USE;
+import static ua.danit.jpa.pool.PoolEntry.STATE_REMOVED;
+
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.sql.DataSource;
+
+import ua.danit.jpa.configuration.JpaProviderProperties;
+
+/**
+ * Connection pool owned by JPA provider. Connections are borrowed from {@link ConcurrentBag}
+ * without locks, validated when they were idle for a while, retired after max lifetime and
+ * trimmed to min idle size by background housekeeper. Each connection may keep cache of
+ * prepared statements reused by following borrowers. Pool statistics are collected in
+ * {@link PoolMetrics} and may be registered in JMX.
+ *
+ * @author Andrey Minov
+ */
+public class JpaConnectionPool implements DataSource, JpaConnectionPoolMxBean, AutoCloseable {
+  private static final long VALIDATION_BYPASS_MILLIS = 500;
+  private static final long HOUSEKEEPING_PERIOD_MILLIS = 30_000;
+  private static final AtomicInteger POOL_COUNTER = new AtomicInteger();
+
+  private final DataSource dataSource;
+  private final int maxPoolSize;
+  private final int minIdle;
+  private final long connectionTimeout;
+  private final long idleTimeout;
+  private final long maxLifetime;
+  private final int validationTimeout;
+  private final long leakDetectionThreshold;
+  private final int statementCacheSize;
+  private final String poolName;
+  private final PoolMetrics metrics;
+  private final ObjectName objectName;
+  private final ConcurrentBag bag;
+  private final AtomicInteger totalConnections;
+  private final AtomicInteger pendingIdleConnections;
+  private final ScheduledExecutorService housekeeper;
+  private final AtomicBoolean closed;
+
+  /**
+   * Instantiates a new connection pool over non pooled data source.
+   *
+   * @param dataSource the data source opening physical connections
+   * @param properties the pool properties, see {@link JpaProviderProperties}
+   */
+  public JpaConnectionPool(DataSource dataSource, Map<String, String> properties) {
+    this.dataSource = dataSource;
+    this.maxPoolSize = getInt(properties, JpaProviderProperties.POOL_MAX_SIZE, 10);
+    this.minIdle = Math.min(getInt(properties, JpaProviderProperties.POOL_MIN_IDLE, 0),
+        maxPoolSize);
+    this.connectionTimeout =
+        getInt(properties, JpaProviderProperties.POOL_CONNECTION_TIMEOUT, 30_000);
+    this.idleTimeout = getInt(properties, JpaProviderProperties.POOL_IDLE_TIMEOUT, 600_000);
+    this.maxLifetime = getInt(properties, JpaProviderProperties.POOL_MAX_LIFETIME, 1_800_000);
+    this.validationTimeout = (int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(
+        getInt(properties, JpaProviderProperties.POOL_VALIDATION_TIMEOUT, 5_000)));
+    this.leakDetectionThreshold =
+        getInt(properties, JpaProviderProperties.POOL_LEAK_DETECTION_THRESHOLD, 0);
+    this.statementCacheSize =
+        getInt(properties, JpaProviderProperties.POOL_STATEMENT_CACHE_SIZE, 0);
+    String name = properties.get(JpaProviderProperties.POOL_NAME);
+    this.poolName = name == null || name.isEmpty()
+        ? "jpa-pool-" + POOL_COUNTER.incrementAndGet() : name;
+    if (maxPoolSize < 1) {
+      throw new IllegalArgumentException("Pool max size must be positive!");
+    }
+    if (statementCacheSize < 0) {
+      throw new IllegalArgumentException("Statement cache size cannot be negative!");
+    }
+    this.bag = new ConcurrentBag();
+    this.totalConnections = new AtomicInteger();
+    this.pendingIdleConnections = new AtomicInteger();
+    this.closed = new AtomicBoolean();
+    this.metrics = new PoolMetrics();
+    this.objectName = Boolean.parseBoolean(properties.get(JpaProviderProperties.POOL_JMX))
+        ? registerMBean() : null;
+    ThreadFactory threadFactory = runnable -> {
+      Thread thread = new Thread(runnable, poolName + "-housekeeper");
+      thread.setDaemon(true);
+      return thread;
+    };
+    this.housekeeper = Executors.newSingleThreadScheduledExecutor(threadFactory);
+    // Initial fill is left to warm-up, so housekeeper runs first after full period.
+    housekeeper.scheduleWithFixedDelay(this::housekeep, HOUSEKEEPING_PERIOD_MILLIS,
+        HOUSEKEEPING_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Create connection pool opening connections with JDBC driver manager.
+   *
+   * @param properties the connection and pool properties, see {@link JpaProviderProperties}
+   * @return the new connection pool.
+   * @throws IllegalArgumentException when driver class is not found.
+   */
+  public static JpaConnectionPool fromProperties(Map<String, String> properties) {
+    DataSource dataSource = new DriverDataSource(
+        properties.get(JpaProviderProperties.CONNECTION_URL),
+        properties.get(JpaProviderProperties.USERNAME),
+        properties.get(JpaProviderProperties.PASSWORD),
+        properties.get(JpaProviderProperties.DRIVER));
+    return new JpaConnectionPool(dataSource, properties);
+  }
+
+  /**
+   * Create connection pools for comma separated connection URLs. Pools share credentials,
+   * driver and pool settings from properties.
+   *
+   * @param properties the connection and pool properties, see {@link JpaProviderProperties}
+   * @param urls       the comma separated connection URLs
+   * @param role       the role of pools appended to configured pool name
+   * @return the new connection pools in order of URLs.
+   * @throws IllegalArgumentException when driver class is not found, pools created before
+   *                                  failure are closed.
+   */
+  public static List<JpaConnectionPool> fromUrls(Map<String, String> properties, String urls,
+                                                 String role) {
+    List<JpaConnectionPool> pools = new ArrayList<>();
+    String name = properties.get(JpaProviderProperties.POOL_NAME);
+    int index = 0;
+    for (String url : urls.split(",")) {
+      Map<String, String> poolProperties = new HashMap<>(properties);
+      poolProperties.put(JpaProviderProperties.CONNECTION_URL, url.trim());
+      if (name != null && !name.isEmpty()) {
+        poolProperties.put(JpaProviderProperties.POOL_NAME, name + "-" + role + "-" + index);
+      }
+      try {
+        pools.add(fromProperties(poolProperties));
+      } catch (IllegalArgumentException e) {
+        pools.forEach(JpaConnectionPool::close);
+        throw e;
+      }
+      index++;
+    }
+    return pools;
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    if (closed.get()) {
+      throw new SQLException("Connection pool is closed!");
+    }
+    long start = System.nanoTime();
+    long deadline = start + TimeUnit.MILLISECONDS.toNanos(connectionTimeout);
+    try {
+      while (true) {
+        PoolEntry entry = bag.borrow(0);
+        if (entry == null) {
+          entry = createEntry(maxPoolSize);
+        }
+        if (entry == null) {
+          long remaining = deadline - System.nanoTime();
+          if (remaining <= 0) {
+            metrics.recordTimeout();
+            throw new SQLException(
+                "Connection is not available, request timed out after " + connectionTimeout
+                + "ms!");
+          }
+          entry = bag.borrow(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(100)));
+          if (entry == null) {
+            continue;
+          }
+        }
+        if (isAlive(entry)) {
+          entry.touch();
+          metrics.recordBorrow(System.nanoTime() - start);
+          return ConnectionHandler.proxy(entry, this, scheduleLeakDetection());
+        }
+        closeEntry(entry);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SQLException("Interrupted during connection acquisition!", e);
+    }
+  }
+
+  @Override
+  public Connection getConnection(String username, String password) throws SQLException {
+    throw new SQLFeatureNotSupportedException("This method is not supported!");
+  }
+
+  @Override
+  public int getTotalConnections() {
+    return totalConnections.get();
+  }
+
+  @Override
+  public int getActiveConnections() {
+    return Math.max(0, getTotalConnections() - getIdleConnections());
+  }
+
+  @Override
+  public int getIdleConnections() {
+    int idle = 0;
+    for (PoolEntry entry : bag.values()) {
+      if (entry.getState() == STATE_NOT_IN_USE) {
+        idle++;
+      }
+    }
+    return idle;
+  }
+
+  @Override
+  public int getThreadsAwaiting() {
+    return bag.getWaiters();
+  }
+
+  @Override
+  public int getCachedStatements() {
+    int cached = 0;
+    for (PoolEntry entry : bag.values()) {
+      cached += entry.getStatements().size();
+    }
+    return cached;
+  }
+
+  @Override
+  public long getBorrowCount() {
+    return metrics.getBorrowCount();
+  }
+
+  @Override
+  public long getAverageBorrowTimeMicros() {
+    return metrics.getAverageBorrowTimeMicros();
+  }
+
+  @Override
+  public long getMaxBorrowTimeMicros() {
+    return metrics.getMaxBorrowTimeMicros();
+  }
+
+  @Override
+  public long getBorrowTime95thPercentileMicros() {
+    return metrics.getBorrowTimePercentileMicros(95);
+  }
+
+  @Override
+  public long getBorrowTime99thPercentileMicros() {
+    return metrics.getBorrowTimePercentileMicros(99);
+  }
+
+  @Override
+  public long[] getBorrowHistogram() {
+    return metrics.getBorrowHistogram();
+  }
+
+  @Override
+  public long[] getBorrowHistogramBoundsMicros() {
+    return metrics.getBorrowHistogramBoundsMicros();
+  }
+
+  @Override
+  public long getConnectionTimeouts() {
+    return metrics.getTimeoutCount();
+  }
+
+  @Override
+  public long getLeakedConnections() {
+    return metrics.getLeakCount();
+  }
+
+  public PoolMetrics getMetrics() {
+    return metrics;
+  }
+
+  public String getPoolName() {
+    return poolName;
+  }
+
+  public int getMinIdle() {
+    return minIdle;
+  }
+
+  public int getStatementCacheSize() {
+    return statementCacheSize;
+  }
+
+  /**
+   * Open connections missing up to minimum idle size in parallel and wait until they
+   * are added into pool. Housekeeper first runs after its period, so pool is filled by
+   * warm-up and connections failed to open are left to housekeeper.
+   *
+   * @param executor the executor used to open connections
+   * @return the number of opened connections.
+   */
+  public int warmUp(Executor executor) {
+    int missing = minIdle - totalConnections.get();
+    if (missing <= 0) {
+      return 0;
+    }
+    pendingIdleConnections.addAndGet(missing);
+    List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+    for (int i = 0; i < missing; i++) {
+      Supplier<Boolean> task = () -> {
+        try {
+          return addIdleEntry(minIdle);
+        } catch (SQLException e) {
+          Logger.getGlobal().log(Level.WARNING, e, () -> "Unable to open connection on warm-up!");
+          return false;
+        } finally {
+          pendingIdleConnections.decrementAndGet();
+        }
+      };
+      futures.add(CompletableFuture.supplyAsync(task, executor));
+    }
+    int opened = 0;
+    for (CompletableFuture<Boolean> future : futures) {
+      if (future.join()) {
+        opened++;
+      }
+    }
+    return opened;
+  }
+
+  @Override
+  public void close() {
+    if (!closed.compareAndSet(false, true)) {
+      return;
+    }
+    housekeeper.shutdownNow();
+    if (objectName != null) {
+      try {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+      } catch (JMException e) {
+        Logger.getGlobal().log(Level.WARNING, e, () -> "Unable to unregister pool MBean!");
+      }
+    }
+    for (PoolEntry entry : bag.values()) {
+      if (entry.compareAndSet(STATE_NOT_IN_USE, STATE_REMOVED)) {
+        closeEntry(entry);
+      }
+    }
+  }
+
+  public boolean isClosed() {
+    return closed.get();
+  }
+
+  @Override
+  public PrintWriter getLogWriter() throws SQLException {
+    return dataSource.getLogWriter();
+  }
+
+  @Override
+  public void setLogWriter(PrintWriter out) throws SQLException {
+    dataSource.setLogWriter(out);
+  }
+
+  @Override
+  public void setLoginTimeout(int seconds) throws SQLException {
+    dataSource.setLoginTimeout(seconds);
+  }
+
+  @Override
+  public int getLoginTimeout() throws SQLException {
+    return dataSource.getLoginTimeout();
+  }
+
+  @Override
+  public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+    throw new SQLFeatureNotSupportedException("This method is not supported!");
+  }
+
+  @Override
+  public <T> T unwrap(Class<T> iface) throws SQLException {
+    if (iface.isInstance(this)) {
+      return iface.cast(this);
+    }
+    return dataSource.unwrap(iface);
+  }
+
+  @Override
+  public boolean isWrapperFor(Class<?> iface) throws SQLException {
+    return iface.isInstance(this) || dataSource.isWrapperFor(iface);
+  }
+
+  @Override
+  public String toString() {
+    return "JpaConnectionPool{" + "poolName='" + poolName + '\'' + '}';
+  }
+
+  /**
+   * Return borrowed entry back to the pool.
+   *
+   * @param entry             the borrowed entry
+   * @param autoCommitChanged whether auto commit mode was changed by the borrower
+   * @param schemaChanged     whether current schema was changed by the borrower
+   */
+  void release(PoolEntry entry, boolean autoCommitChanged, boolean schemaChanged) {
+    try {
+      Connection connection = entry.getConnection();
+      if (autoCommitChanged && !connection.getAutoCommit()) {
+        connection.rollback();
+        connection.setAutoCommit(true);
+      }
+      if (schemaChanged) {
+        if (entry.getDefaultSchema() == null) {
+          // Default schema is unknown, so connection cannot be safely reused.
+          closeEntry(entry);
+          return;
+        }
+        entry.getStatements().clear();
+        connection.setSchema(entry.getDefaultSchema());
+      }
+    } catch (SQLException e) {
+      closeEntry(entry);
+      return;
+    }
+    entry.touch();
+    if (closed.get() || isExpired(entry, System.currentTimeMillis())) {
+      closeEntry(entry);
+    } else {
+      bag.requite(entry);
+    }
+  }
+
+  private boolean addIdleEntry(int limit) throws SQLException {
+    PoolEntry entry = createEntry(limit);
+    if (entry == null) {
+      return false;
+    }
+    bag.requite(entry);
+    return true;
+  }
+
+  private PoolEntry createEntry(int limit) throws SQLException {
+    int total;
+    do {
+      total = totalConnections.get();
+      if (total >= limit) {
+        return null;
+      }
+    } while (!totalConnections.compareAndSet(total, total + 1));
+    try {
+      Connection connection = dataSource.getConnection();
+      PoolEntry entry = new PoolEntry(connection, connection.getSchema(), statementCacheSize);
+      metrics.recordCreated();
+      bag.add(entry);
+      return entry;
+    } catch (SQLException | RuntimeException e) {
+      totalConnections.decrementAndGet();
+      throw e;
+    }
+  }
+
+  private ScheduledFuture<?> scheduleLeakDetection() {
+    if (leakDetectionThreshold <= 0) {
+      return null;
+    }
+    Exception borrowTrace = new Exception(
+        "Apparent connection leak, connection borrowed by " + Thread.currentThread().getName()
+        + " was not returned in " + leakDetectionThreshold + "ms");
+    Runnable leakReport = () -> {
+      metrics.recordLeak();
+      Logger.getGlobal().log(Level.WARNING, borrowTrace, borrowTrace::getMessage);
+    };
+    return housekeeper.schedule(leakReport, leakDetectionThreshold, TimeUnit.MILLISECONDS);
+  }
+
+  private ObjectName registerMBean() {
+    try {
+      ObjectName name = new ObjectName("ua.danit.jpa:type=Pool,name=" + poolName);
+      ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+      return name;
+    } catch (JMException e) {
+      Logger.getGlobal().log(Level.WARNING, e, () -> "Unable to register pool MBean!");
+      return null;
+    }
+  }
+
+  private boolean isAlive(PoolEntry entry) {
+    long now = System.currentTimeMillis();
+    if (isExpired(entry, now)) {
+      return false;
+    }
+    if (now - entry.getLastAccessed() < VALIDATION_BYPASS_MILLIS) {
+      return true;
+    }
+    try {
+      return entry.getConnection().isValid(validationTimeout);
+    } catch (SQLException e) {
+      return false;
+    }
+  }
+
+  private boolean isExpired(PoolEntry entry, long now) {
+    return maxLifetime > 0 && now - entry.getCreatedAt() > maxLifetime;
+  }
+
+  private void closeEntry(PoolEntry entry) {
+    entry.setState(STATE_REMOVED);
+    bag.remove(entry);
+    totalConnections.decrementAndGet();
+    metrics.recordClosed();
+    entry.getStatements().clear();
+    try {
+      entry.getConnection().close();
+    } catch (SQLException e) {
+      Logger.getGlobal().log(Level.WARNING, e, () -> "Unable to close pooled connection!");
+    }
+  }
+
+  private void housekeep() {
+    try {
+      long now = System.currentTimeMillis();
+      int idle = getIdleConnections();
+      for (PoolEntry entry : bag.values()) {
+        boolean idleTooLong = idleTimeout > 0 && idle > minIdle
+                              && now - entry.getLastAccessed() > idleTimeout;
+        if ((idleTooLong || isExpired(entry, now))
+            && entry.compareAndSet(STATE_NOT_IN_USE, STATE_REMOVED)) {
+          closeEntry(entry);
+          idle--;
+        }
+      }
+      // Connections still opened by warm-up are counted, so pool is not filled twice.
+      while (!closed.get() && getIdleConnections() + pendingIdleConnections.get() < minIdle) {
+        if (!addIdleEntry(maxPoolSize)) {
+          break;
+        }
+      }
+    } catch (Exception e) {
+      Logger.getGlobal().log(Level.SEVERE, e, () -> "Connection pool housekeeping failed!");
+    }
+  }
+
+  private static int getInt(Map<String, String> properties, String name, int defaultValue) {
+    String value = properties.get(name);
+    return value == null || value.isEmpty() ? defaultValue : Integer.parseInt(value);
+  }
+}
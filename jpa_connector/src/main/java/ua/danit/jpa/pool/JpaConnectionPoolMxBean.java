@@ -0,0 +1,39 @@
+package ua.danit.jpa.pool;
+
+import javax.management.MXBean;
+
+/**
+ * JMX view of provider connection pool.
+ *
+ * @author Andrey Minov
+ */
+@MXBean
+public interface JpaConnectionPoolMxBean {
+  int getTotalConnections();
+
+  int getActiveConnections();
+
+  int getIdleConnections();
+
+  int getThreadsAwaiting();
+
+  int getCachedStatements();
+
+  long getBorrowCount();
+
+  long getAverageBorrowTimeMicros();
+
+  long getMaxBorrowTimeMicros();
+
+  long getBorrowTime95thPercentileMicros();
+
+  long getBorrowTime99thPercentileMicros();
+
+  long[] getBorrowHistogram();
+
+  long[] getBorrowHistogramBoundsMicros();
+
+  long getConnectionTimeouts();
+
+  long getLeakedConnections();
+}
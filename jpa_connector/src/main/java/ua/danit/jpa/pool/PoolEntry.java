@@ -0,0 +1,77 @@
+package ua.danit.jpa.pool;
+
+import java.sql.Connection;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Physical connection held by the pool with its borrow state and cached statements.
+ *
+ * @author Andrey Minov
+ */
+final class PoolEntry {
+  static final int STATE_NOT_IN_USE = 0;
+  static final int STATE_IN_USE = 1;
+  static final int STATE_REMOVED = -1;
+
+  private static final AtomicIntegerFieldUpdater<PoolEntry> STATE_UPDATER =
+      AtomicIntegerFieldUpdater.newUpdater(PoolEntry.class, "state");
+
+  private final Connection connection;
+  private final String defaultSchema;
+  private final StatementCache statements;
+  private final long createdAt;
+  private volatile long lastAccessed;
+  private volatile int state;
+
+  /**
+   * Instantiates a new pool entry borrowed by creating thread.
+   *
+   * @param connection    the physical connection
+   * @param defaultSchema the schema of connection when it was opened, may be null
+   * @param cacheSize     the maximum number of cached statements, zero disables caching
+   */
+  PoolEntry(Connection connection, String defaultSchema, int cacheSize) {
+    this.connection = connection;
+    this.defaultSchema = defaultSchema;
+    this.statements = new StatementCache(cacheSize);
+    this.createdAt = System.currentTimeMillis();
+    this.lastAccessed = createdAt;
+    this.state = STATE_IN_USE;
+  }
+
+  Connection getConnection() {
+    return connection;
+  }
+
+  String getDefaultSchema() {
+    return defaultSchema;
+  }
+
+  StatementCache getStatements() {
+    return statements;
+  }
+
+  long getCreatedAt() {
+    return createdAt;
+  }
+
+  long getLastAccessed() {
+    return lastAccessed;
+  }
+
+  void touch() {
+    lastAccessed = System.currentTimeMillis();
+  }
+
+  int getState() {
+    return state;
+  }
+
+  void setState(int state) {
+    this.state = state;
+  }
+
+  boolean compareAndSet(int expect, int update) {
+    return STATE_UPDATER.compareAndSet(this, expect, update);
+  }
+}
@@ -0,0 +1,137 @@
+package ua.danit.jpa.pool;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Connection pool statistics. Counters are striped, so recording from many borrowing threads
+ * does not contend. Borrow latency is kept as histogram with fixed exponential buckets.
+ *
+ * @author Andrey Minov
+ */
+public final class PoolMetrics {
+  private static final long[] BUCKET_BOUNDS_MICROS =
+      {10, 50, 100, 500, 1_000, 5_000, 10_000, 50_000, 100_000, 500_000, 1_000_000,
+       Long.MAX_VALUE};
+
+  private final LongAdder borrowCount = new LongAdder();
+  private final LongAdder borrowTimeMicros = new LongAdder();
+  private final LongAccumulator maxBorrowTimeMicros = new LongAccumulator(Math::max, 0);
+  private final LongAdder[] borrowHistogram = new LongAdder[BUCKET_BOUNDS_MICROS.length];
+  private final LongAdder timeoutCount = new LongAdder();
+  private final LongAdder createdCount = new LongAdder();
+  private final LongAdder closedCount = new LongAdder();
+  private final LongAdder leakCount = new LongAdder();
+
+  PoolMetrics() {
+    for (int i = 0; i < borrowHistogram.length; i++) {
+      borrowHistogram[i] = new LongAdder();
+    }
+  }
+
+  void recordBorrow(long nanos) {
+    long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+    borrowCount.increment();
+    borrowTimeMicros.add(micros);
+    maxBorrowTimeMicros.accumulate(micros);
+    for (int i = 0; i < BUCKET_BOUNDS_MICROS.length; i++) {
+      if (micros <= BUCKET_BOUNDS_MICROS[i]) {
+        borrowHistogram[i].increment();
+        return;
+      }
+    }
+  }
+
+  void recordTimeout() {
+    timeoutCount.increment();
+  }
+
+  void recordCreated() {
+    createdCount.increment();
+  }
+
+  void recordClosed() {
+    closedCount.increment();
+  }
+
+  void recordLeak() {
+    leakCount.increment();
+  }
+
+  public long getBorrowCount() {
+    return borrowCount.sum();
+  }
+
+  /**
+   * Get average time of successful connection borrow.
+   *
+   * @return the average borrow time in microseconds.
+   */
+  public long getAverageBorrowTimeMicros() {
+    long count = borrowCount.sum();
+    return count == 0 ? 0 : borrowTimeMicros.sum() / count;
+  }
+
+  public long getMaxBorrowTimeMicros() {
+    return maxBorrowTimeMicros.get();
+  }
+
+  /**
+   * Get approximate borrow time percentile. Result is upper bound of histogram bucket
+   * containing requested percentile.
+   *
+   * @param percentile the percentile from 0 to 100
+   * @return the borrow time percentile in microseconds.
+   */
+  public long getBorrowTimePercentileMicros(double percentile) {
+    long[] histogram = getBorrowHistogram();
+    long total = 0;
+    for (long count : histogram) {
+      total += count;
+    }
+    long threshold = (long) Math.ceil(total * percentile / 100);
+    long seen = 0;
+    for (int i = 0; i < histogram.length; i++) {
+      seen += histogram[i];
+      if (seen >= threshold && seen > 0) {
+        return Math.min(BUCKET_BOUNDS_MICROS[i], getMaxBorrowTimeMicros());
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Get borrow time histogram. Value at index is number of borrows with time not greater
+   * than bound at same index of {@link #getBorrowHistogramBoundsMicros()}.
+   *
+   * @return the borrow counts per bucket.
+   */
+  public long[] getBorrowHistogram() {
+    long[] histogram = new long[borrowHistogram.length];
+    for (int i = 0; i < histogram.length; i++) {
+      histogram[i] = borrowHistogram[i].sum();
+    }
+    return histogram;
+  }
+
+  public long[] getBorrowHistogramBoundsMicros() {
+    return BUCKET_BOUNDS_MICROS.clone();
+  }
+
+  public long getTimeoutCount() {
+    return timeoutCount.sum();
+  }
+
+  public long getCreatedCount() {
+    return createdCount.sum();
+  }
+
+  public long getClosedCount() {
+    return closedCount.sum();
+  }
+
+  public long getLeakCount() {
+    return leakCount.sum();
+  }
+}
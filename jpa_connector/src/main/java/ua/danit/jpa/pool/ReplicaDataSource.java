@@ -0,0 +1,138 @@
+package ua.danit.jpa.pool;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import javax.sql.DataSource;
+
+import ua.danit.jpa.configuration.JpaProviderProperties;
+
+/**
+ * Data source over pools of read replicas. Each connection request selects replica
+ * with configured {@link ReplicaSelection}.
+ *
+ * @author Andrey Minov
+ */
+public class ReplicaDataSource implements DataSource, AutoCloseable {
+  private final List<JpaConnectionPool> replicas;
+  private final ReplicaSelection selection;
+  private final AtomicInteger counter;
+
+  /**
+   * Instantiates a new replica data source.
+   *
+   * @param replicas  the replica connection pools
+   * @param selection the replica selection
+   */
+  public ReplicaDataSource(List<JpaConnectionPool> replicas, ReplicaSelection selection) {
+    if (replicas.isEmpty()) {
+      throw new IllegalArgumentException("At least one replica must be provided!");
+    }
+    this.replicas = Collections.unmodifiableList(new ArrayList<>(replicas));
+    this.selection = selection;
+    this.counter = new AtomicInteger();
+  }
+
+  /**
+   * Create replica data source from comma separated replica connection URLs. Replicas
+   * share username, password, driver and pool settings of primary connection.
+   *
+   * @param properties the connection and pool properties, see {@link JpaProviderProperties}
+   * @return the new replica data source or null when replicas are not configured.
+   */
+  public static ReplicaDataSource fromProperties(Map<String, String> properties) {
+    String urls = properties.get(JpaProviderProperties.REPLICA_CONNECTION_URLS);
+    if (urls == null || urls.trim().isEmpty()) {
+      return null;
+    }
+    // Selection is resolved first, so invalid value does not leave replica pools open.
+    ReplicaSelection selection =
+        ReplicaSelection.fromProperty(properties.get(JpaProviderProperties.REPLICA_SELECTION));
+    return new ReplicaDataSource(JpaConnectionPool.fromUrls(properties, urls, "replica"),
+        selection);
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    return select().getConnection();
+  }
+
+  @Override
+  public Connection getConnection(String username, String password) throws SQLException {
+    throw new SQLFeatureNotSupportedException("This method is not supported!");
+  }
+
+  public List<JpaConnectionPool> getReplicas() {
+    return replicas;
+  }
+
+  @Override
+  public void close() {
+    replicas.forEach(JpaConnectionPool::close);
+  }
+
+  @Override
+  public PrintWriter getLogWriter() throws SQLException {
+    return replicas.get(0).getLogWriter();
+  }
+
+  @Override
+  public void setLogWriter(PrintWriter out) throws SQLException {
+    for (JpaConnectionPool replica : replicas) {
+      replica.setLogWriter(out);
+    }
+  }
+
+  @Override
+  public void setLoginTimeout(int seconds) throws SQLException {
+    for (JpaConnectionPool replica : replicas) {
+      replica.setLoginTimeout(seconds);
+    }
+  }
+
+  @Override
+  public int getLoginTimeout() throws SQLException {
+    return replicas.get(0).getLoginTimeout();
+  }
+
+  @Override
+  public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+    throw new SQLFeatureNotSupportedException("This method is not supported!");
+  }
+
+  @Override
+  public <T> T unwrap(Class<T> iface) throws SQLException {
+    if (iface.isInstance(this)) {
+      return iface.cast(this);
+    }
+    throw new SQLException("Data source is not a wrapper for " + iface);
+  }
+
+  @Override
+  public boolean isWrapperFor(Class<?> iface) {
+    return iface.isInstance(this);
+  }
+
+  private JpaConnectionPool select() {
+    if (selection == ReplicaSelection.LEAST_LOADED) {
+      JpaConnectionPool selected = replicas.get(0);
+      int minLoad = Integer.MAX_VALUE;
+      for (JpaConnectionPool replica : replicas) {
+        int load = replica.getActiveConnections() + replica.getThreadsAwaiting();
+        if (load < minLoad) {
+          minLoad = load;
+          selected = replica;
+        }
+      }
+      return selected;
+    }
+    return replicas.get(Math.floorMod(counter.getAndIncrement(), replicas.size()));
+  }
+}
@@ -0,0 +1,31 @@
+package ua.danit.jpa.pool;
+
+/**
+ * Defines how replica is selected for read-only statement.
+ *
+ * @author Andrey Minov
+ */
+public enum ReplicaSelection {
+  /**
+   * Replicas are used one after another.
+   */
+  ROUND_ROBIN,
+  /**
+   * Replica with least number of active connections and waiting threads is used.
+   */
+  LEAST_LOADED;
+
+  /**
+   * Resolve replica selection from property value.
+   *
+   * @param value the property value, case insensitive, may be null
+   * @return resolved selection, {@link #ROUND_ROBIN} when value is not set.
+   * @throws IllegalArgumentException when value is not one of selections.
+   */
+  public static ReplicaSelection fromProperty(String value) {
+    if (value == null || value.isEmpty()) {
+      return ROUND_ROBIN;
+    }
+    return valueOf(value.trim().toUpperCase());
+  }
+}
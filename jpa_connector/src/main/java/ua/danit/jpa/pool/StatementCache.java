@@ -0,0 +1,94 @@
+package ua.danit.jpa.pool;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bounded cache of idle prepared statements of one physical connection. Statement is taken
+ * out of cache while it is used, so the same SQL prepared twice at once gets two statements.
+ * When cache is full statement used least recently is closed.
+ *
+ * @author Andrey Minov
+ */
+final class StatementCache {
+  private final int maxSize;
+  private final Map<Object, PreparedStatement> statements;
+
+  /**
+   * Instantiates a new statement cache.
+   *
+   * @param maxSize the maximum number of cached statements, zero disables caching
+   */
+  StatementCache(int maxSize) {
+    this.maxSize = maxSize;
+    this.statements = new LinkedHashMap<Object, PreparedStatement>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Object, PreparedStatement> eldest) {
+        if (size() <= StatementCache.this.maxSize) {
+          return false;
+        }
+        close(eldest.getValue());
+        return true;
+      }
+    };
+  }
+
+  boolean isEnabled() {
+    return maxSize > 0;
+  }
+
+  /**
+   * Take idle statement out of cache.
+   *
+   * @param key the key of statement, made of SQL and prepare options
+   * @return the idle statement or null when there is no one.
+   */
+  synchronized PreparedStatement take(Object key) {
+    return statements.remove(key);
+  }
+
+  /**
+   * Return statement into cache. Statement is closed when idle statement with the same key
+   * is already cached.
+   *
+   * @param key       the key of statement, made of SQL and prepare options
+   * @param statement the statement with cleared parameters
+   */
+  synchronized void put(Object key, PreparedStatement statement) {
+    if (statements.putIfAbsent(key, statement) != null) {
+      close(statement);
+    }
+  }
+
+  synchronized int size() {
+    return statements.size();
+  }
+
+  /**
+   * Close all cached statements, as when connection is closed or its schema is changed.
+   */
+  void clear() {
+    List<PreparedStatement> closed;
+    synchronized (this) {
+      closed = new ArrayList<>(statements.values());
+      statements.clear();
+    }
+    closed.forEach(StatementCache::close);
+  }
+
+  private static void close(PreparedStatement statement) {
+    try {
+      statement.close();
+    } catch (SQLException e) {
+      Logger.getGlobal().log(Level.WARNING, e, () -> "Unable to close cached statement!");
+    }
+  }
+}
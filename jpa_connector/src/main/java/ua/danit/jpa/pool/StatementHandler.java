@@ -0,0 +1,109 @@
+package ua.danit.jpa.pool;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Handler of cached statement proxy. Closing proxy clears parameters and returns physical
+ * statement to the statement cache of connection. Statement which settings were changed
+ * is closed instead, so next borrower gets statement with driver defaults.
+ *
+ * @author Andrey Minov
+ */
+final class StatementHandler implements InvocationHandler {
+  private static final Set<String> SETTINGS = new HashSet<>(Arrays.asList("setMaxRows",
+      "setLargeMaxRows", "setMaxFieldSize", "setFetchSize", "setFetchDirection",
+      "setQueryTimeout", "setEscapeProcessing", "setPoolable", "setCursorName",
+      "closeOnCompletion"));
+
+  private final Object key;
+  private final PreparedStatement statement;
+  private final StatementCache cache;
+  private final Connection connection;
+  private boolean closed;
+  private boolean changed;
+
+  private StatementHandler(Object key, PreparedStatement statement, StatementCache cache,
+                           Connection connection) {
+    this.key = key;
+    this.statement = statement;
+    this.cache = cache;
+    this.connection = connection;
+  }
+
+  /**
+   * Create cached statement proxy.
+   *
+   * @param key        the key of statement in cache
+   * @param statement  the physical statement
+   * @param cache      the cache statement is returned to
+   * @param connection the pooled connection proxy statement belongs to
+   * @return the statement returned to cache on close.
+   */
+  static PreparedStatement proxy(Object key, PreparedStatement statement, StatementCache cache,
+                                 Connection connection) {
+    return (PreparedStatement) Proxy.newProxyInstance(StatementHandler.class.getClassLoader(),
+        new Class<?>[] {PreparedStatement.class},
+        new StatementHandler(key, statement, cache, connection));
+  }
+
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    switch (method.getName()) {
+      case "close":
+        if (!closed) {
+          closed = true;
+          release();
+        }
+        return null;
+      case "isClosed":
+        return closed || statement.isClosed();
+      case "getConnection":
+        return connection;
+      case "equals":
+        return proxy == args[0];
+      case "hashCode":
+        return System.identityHashCode(proxy);
+      case "toString":
+        return "Cached " + statement;
+      default:
+        break;
+    }
+    if (closed) {
+      throw new SQLException("Statement is closed!");
+    }
+    if (SETTINGS.contains(method.getName())) {
+      changed = true;
+    }
+    try {
+      return method.invoke(statement, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+
+  private void release() throws SQLException {
+    // Statement left open after connection was returned may belong to other borrower now.
+    if (changed || connection.isClosed()) {
+      statement.close();
+      return;
+    }
+    try {
+      statement.clearParameters();
+      statement.clearBatch();
+      statement.clearWarnings();
+    } catch (SQLException e) {
+      statement.close();
+      return;
+    }
+    cache.put(key, statement);
+  }
+}
@@ -0,0 +1,44 @@
+package ua.danit.jpa.query;
+
+/**
+ * Immutable native query compiled once by entity manager factory and shared between
+ * threads. Compiled query is bound into session as reusable {@link NativeQuery}, which keeps
+ * its statement prepared between executions until closed.
+ *
+ * @param <T> the type of query results
+ * @author Andrey Minov
+ */
+public final class CompiledQuery<T> {
+  private final SqlTemplate template;
+  private final Class<T> resultClass;
+
+  private CompiledQuery(SqlTemplate template, Class<T> resultClass) {
+    this.template = template;
+    this.resultClass = resultClass;
+  }
+
+  /**
+   * Create compiled query from parsed SQL.
+   *
+   * @param <T>         the type of query results
+   * @param template    the parsed query SQL
+   * @param resultClass the entity class of query results, null for update queries
+   * @return the compiled query.
+   */
+  public static <T> CompiledQuery<T> of(SqlTemplate template, Class<T> resultClass) {
+    return new CompiledQuery<>(template, resultClass);
+  }
+
+  public SqlTemplate getTemplate() {
+    return template;
+  }
+
+  public Class<T> getResultClass() {
+    return resultClass;
+  }
+
+  @Override
+  public String toString() {
+    return "CompiledQuery{" + "sql='" + template + '\'' + ", resultClass=" + resultClass + '}';
+  }
+}
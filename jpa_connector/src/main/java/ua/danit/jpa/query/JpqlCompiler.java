@@ -0,0 +1,666 @@
+package ua.danit.jpa.query;
+
+import java.lang.invoke.MethodType;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import ua.danit.jpa.entity.ColumnBinder;
+import ua.danit.jpa.entity.ColumnMeta;
+import ua.danit.jpa.entity.EntityMeta;
+import ua.danit.jpa.parsing.JpaPersistenceMetaContext;
+
+/**
+ * Recursive descent translator of JPQL subset into native SQL. Attribute paths are replaced
+ * with column names of entity metadata and named parameters are kept, so translated SQL is
+ * parsed into template with parameter positions.
+ *
+ * @author Andrey Minov
+ */
+final class JpqlCompiler {
+  private static final String TABLE_ALIAS = "t0";
+  private static final Set<String> AGGREGATES =
+      new HashSet<>(Arrays.asList("COUNT", "SUM", "AVG", "MIN", "MAX"));
+  private static final Set<String> FUNCTIONS = new HashSet<>(
+      Arrays.asList("UPPER", "LOWER", "LENGTH", "ABS", "SQRT", "MOD", "TRIM", "SUBSTRING"));
+  private static final Set<String> CONSTANTS = new HashSet<>(
+      Arrays.asList("TRUE", "FALSE", "NULL", "CURRENT_DATE", "CURRENT_TIME",
+          "CURRENT_TIMESTAMP"));
+  private static final Set<String> RESERVED = new HashSet<>(
+      Arrays.asList("SELECT", "FROM", "WHERE", "GROUP", "HAVING", "ORDER", "BY", "SET", "AS",
+          "JOIN", "INNER", "LEFT", "OUTER", "FETCH", "AND", "OR", "NOT", "DISTINCT"));
+  private static final List<String> COMPARISONS =
+      Arrays.asList("=", "<>", "!=", "<", ">", "<=", ">=");
+
+  private final String jpql;
+  private final JpaPersistenceMetaContext metaContext;
+  private final String schema;
+  private final List<Token> tokens;
+  private int index;
+
+  private Class<?> entityClass;
+  private EntityMeta meta;
+  private Map<String, ColumnMeta> columns;
+  private String alias;
+  // Select queries qualify columns with table alias, update and delete use bare columns.
+  private boolean qualify;
+
+  JpqlCompiler(String jpql, JpaPersistenceMetaContext metaContext, String schema) {
+    this.jpql = jpql;
+    this.metaContext = metaContext;
+    this.schema = schema;
+    this.tokens = tokenize(jpql);
+  }
+
+  JpqlQuery compile() {
+    JpqlQuery query;
+    if (accept("SELECT")) {
+      query = select();
+    } else if (accept("UPDATE")) {
+      query = update();
+    } else if (accept("DELETE")) {
+      query = delete();
+    } else {
+      throw error("Expected SELECT, UPDATE or DELETE");
+    }
+    if (peek().type != TokenType.END) {
+      throw error("Unexpected " + peek().text);
+    }
+    return query;
+  }
+
+  private JpqlQuery select() {
+    qualify = true;
+    final boolean distinct = accept("DISTINCT");
+    final int selectStart = index;
+    // Select items refer to alias declared in FROM clause, so FROM clause is parsed first.
+    while (peek().type != TokenType.END && !peek().is("FROM")) {
+      index++;
+    }
+    expect("FROM");
+    from(true);
+    final int fromEnd = index;
+    index = selectStart;
+
+    List<String> items = new ArrayList<>();
+    List<ItemReader> readers = new ArrayList<>();
+    List<Class<?>> types = new ArrayList<>();
+    boolean entityResult = false;
+    do {
+      if (isAlias(peek()) && !peekAt(1).is(".")) {
+        index++;
+        entityResult = true;
+      } else {
+        selectItem(items, readers, types);
+      }
+    } while (accept(","));
+    if (entityResult && !items.isEmpty()) {
+      throw error("Entity cannot be selected together with other items");
+    }
+    if (!peek().is("FROM")) {
+      throw error("Expected FROM but found " + peek().text);
+    }
+    index = fromEnd;
+
+    StringBuilder sql = new StringBuilder("SELECT ");
+    if (distinct) {
+      sql.append("DISTINCT ");
+    }
+    List<ColumnMeta> entityColumns = new ArrayList<>(meta.getId().getColumns());
+    entityColumns.addAll(meta.getColumns());
+    if (entityResult) {
+      for (ColumnMeta column : entityColumns) {
+        items.add(TABLE_ALIAS + "." + column.getName());
+      }
+    }
+    sql.append(String.join(", ", items)).append(" FROM ").append(table()).append(' ')
+       .append(TABLE_ALIAS);
+    where(sql);
+    if (accept("GROUP")) {
+      expect("BY");
+      List<String> groups = new ArrayList<>();
+      do {
+        groups.add(path());
+      } while (accept(","));
+      sql.append(" GROUP BY ").append(String.join(", ", groups));
+    }
+    if (accept("HAVING")) {
+      sql.append(" HAVING ").append(condition());
+    }
+    if (accept("ORDER")) {
+      expect("BY");
+      List<String> orders = new ArrayList<>();
+      do {
+        String order = expression();
+        if (accept("DESC")) {
+          order += " DESC";
+        } else if (accept("ASC")) {
+          order += " ASC";
+        }
+        orders.add(order);
+      } while (accept(","));
+      sql.append(" ORDER BY ").append(String.join(", ", orders));
+    }
+    SqlTemplate template = SqlTemplate.parse(sql.toString());
+    if (entityResult) {
+      return new JpqlQuery(jpql, template, entityClass, meta, entityMapper(entityColumns));
+    }
+    if (readers.size() == 1) {
+      ItemReader reader = readers.get(0);
+      return new JpqlQuery(jpql, template, types.get(0), null,
+          resultSet -> reader.read(resultSet, 1));
+    }
+    ItemReader[] itemReaders = readers.toArray(new ItemReader[0]);
+    return new JpqlQuery(jpql, template, Object[].class, null, resultSet -> {
+      Object[] row = new Object[itemReaders.length];
+      for (int i = 0; i < itemReaders.length; i++) {
+        row[i] = itemReaders[i].read(resultSet, i + 1);
+      }
+      return row;
+    });
+  }
+
+  private void selectItem(List<String> items, List<ItemReader> readers, List<Class<?>> types) {
+    Token token = peek();
+    if (token.type == TokenType.IDENTIFIER && AGGREGATES.contains(token.upper())
+        && peekAt(1).is("(")) {
+      index += 2;
+      String function = token.upper();
+      boolean distinct = accept("DISTINCT");
+      ColumnMeta column;
+      if (isAlias(peek()) && !peekAt(1).is(".")) {
+        if (!function.equals("COUNT")) {
+          throw error(function + " of entity is not supported");
+        }
+        index++;
+        column = meta.getId().getColumns().get(0);
+      } else {
+        column = column();
+      }
+      expect(")");
+      items.add(function + "(" + (distinct ? "DISTINCT " : "") + render(column) + ")");
+      aggregateReader(function, column, readers, types);
+      return;
+    }
+    ColumnMeta column = column();
+    ColumnBinder binder = column.getBinder();
+    items.add(render(column));
+    readers.add(binder::readValue);
+    types.add(column.getType());
+  }
+
+  private static void aggregateReader(String function, ColumnMeta column,
+                                      List<ItemReader> readers, List<Class<?>> types) {
+    Class<?> type = MethodType.methodType(column.getType()).wrap().returnType();
+    switch (function) {
+      case "COUNT":
+        readers.add(ResultSet::getLong);
+        types.add(Long.class);
+        break;
+      case "AVG":
+        readers.add((resultSet, index) -> {
+          double value = resultSet.getDouble(index);
+          return resultSet.wasNull() ? null : value;
+        });
+        types.add(Double.class);
+        break;
+      case "SUM":
+        if (type == Integer.class || type == Long.class || type == Short.class
+            || type == Byte.class) {
+          readers.add((resultSet, index) -> {
+            long value = resultSet.getLong(index);
+            return resultSet.wasNull() ? null : value;
+          });
+          types.add(Long.class);
+        } else if (type == Double.class || type == Float.class) {
+          readers.add((resultSet, index) -> {
+            double value = resultSet.getDouble(index);
+            return resultSet.wasNull() ? null : value;
+          });
+          types.add(Double.class);
+        } else if (type == BigDecimal.class) {
+          readers.add(ResultSet::getBigDecimal);
+          types.add(BigDecimal.class);
+        } else {
+          readers.add(ResultSet::getObject);
+          types.add(Object.class);
+        }
+        break;
+      default:
+        // MIN and MAX are of the same type as attribute.
+        readers.add(column.getBinder()::readValue);
+        types.add(type);
+        break;
+    }
+  }
+
+  private JpqlQuery update() {
+    from(false);
+    expect("SET");
+    List<String> assignments = new ArrayList<>();
+    do {
+      String column = path();
+      expect("=");
+      assignments.add(column + " = " + expression());
+    } while (accept(","));
+    StringBuilder sql = new StringBuilder("UPDATE ").append(table()).append(" SET ")
+                                                    .append(String.join(", ", assignments));
+    where(sql);
+    return new JpqlQuery(jpql, SqlTemplate.parse(sql.toString()), null, null, null);
+  }
+
+  private JpqlQuery delete() {
+    expect("FROM");
+    from(false);
+    StringBuilder sql = new StringBuilder("DELETE FROM ").append(table());
+    where(sql);
+    return new JpqlQuery(jpql, SqlTemplate.parse(sql.toString()), null, null, null);
+  }
+
+  private void from(boolean aliasRequired) {
+    Token name = expectIdentifier("entity name");
+    try {
+      entityClass = metaContext.getEntityClass(name.text);
+      meta = metaContext.get(entityClass, schema);
+    } catch (IllegalArgumentException e) {
+      throw error(e.getMessage());
+    }
+    columns = new HashMap<>();
+    meta.getId().getColumns().forEach(column -> columns.put(column.getAttribute(), column));
+    meta.getColumns().forEach(column -> columns.put(column.getAttribute(), column));
+    boolean as = accept("AS");
+    if (as || aliasRequired || peek().type == TokenType.IDENTIFIER && !peek().isReserved()) {
+      alias = expectIdentifier("identification variable").text;
+    }
+    if (peek().is(",") || peek().is("JOIN") || peek().is("INNER") || peek().is("LEFT")) {
+      throw error("Joins are not supported, entity " + name.text
+                  + " has no mapped associations");
+    }
+  }
+
+  private void where(StringBuilder sql) {
+    if (accept("WHERE")) {
+      sql.append(" WHERE ").append(condition());
+    }
+  }
+
+  private String table() {
+    return meta.getSchema() != null && !meta.getSchema().isEmpty()
+        ? meta.getSchema() + "." + meta.getTableName() : meta.getTableName();
+  }
+
+  private String condition() {
+    String condition = conjunction();
+    while (accept("OR")) {
+      condition += " OR " + conjunction();
+    }
+    return condition;
+  }
+
+  private String conjunction() {
+    String condition = negation();
+    while (accept("AND")) {
+      condition += " AND " + negation();
+    }
+    return condition;
+  }
+
+  private String negation() {
+    if (accept("NOT")) {
+      return "NOT " + negation();
+    }
+    return predicate();
+  }
+
+  private String predicate() {
+    if (peek().is("(")) {
+      // Parenthesis starts either nested condition or arithmetic operand of comparison.
+      int start = index;
+      try {
+        index++;
+        String nested = condition();
+        expect(")");
+        if (!isPredicateOperator(peek())) {
+          return "(" + nested + ")";
+        }
+      } catch (IllegalArgumentException e) {
+        // Not a condition, parsed again as operand.
+      }
+      index = start;
+    }
+    String left = expression();
+    boolean not = accept("NOT");
+    if (accept("IS")) {
+      boolean notNull = accept("NOT");
+      expect("NULL");
+      if (not) {
+        throw error("Unexpected NOT before IS");
+      }
+      return left + (notNull ? " IS NOT NULL" : " IS NULL");
+    }
+    String negated = not ? " NOT" : "";
+    if (accept("LIKE")) {
+      String like = left + negated + " LIKE " + expression();
+      return accept("ESCAPE") ? like + " ESCAPE " + expression() : like;
+    }
+    if (accept("IN")) {
+      expect("(");
+      List<String> values = new ArrayList<>();
+      do {
+        values.add(expression());
+      } while (accept(","));
+      expect(")");
+      return left + negated + " IN (" + String.join(", ", values) + ")";
+    }
+    if (accept("BETWEEN")) {
+      String from = expression();
+      expect("AND");
+      return left + negated + " BETWEEN " + from + " AND " + expression();
+    }
+    if (not) {
+      throw error("Expected LIKE, IN or BETWEEN after NOT");
+    }
+    Token operator = peek();
+    if (operator.type != TokenType.SYMBOL || !COMPARISONS.contains(operator.text)) {
+      throw error("Expected comparison operator but found " + operator.text);
+    }
+    index++;
+    String sqlOperator = operator.text.equals("!=") ? "<>" : operator.text;
+    return left + " " + sqlOperator + " " + expression();
+  }
+
+  private static boolean isPredicateOperator(Token token) {
+    return token.type == TokenType.SYMBOL && (COMPARISONS.contains(token.text)
+        || token.is("+") || token.is("-") || token.is("*") || token.is("/"))
+        || token.is("IS") || token.is("LIKE") || token.is("IN") || token.is("BETWEEN")
+        || token.is("NOT");
+  }
+
+  private String expression() {
+    String expression = term();
+    while (peek().is("+") || peek().is("-")) {
+      expression += " " + next().text + " " + term();
+    }
+    return expression;
+  }
+
+  private String term() {
+    String term = factor();
+    while (peek().is("*") || peek().is("/")) {
+      term += " " + next().text + " " + factor();
+    }
+    return term;
+  }
+
+  private String factor() {
+    Token token = next();
+    switch (token.type) {
+      case NUMBER:
+      case STRING:
+        return token.text;
+      case PARAMETER:
+        return ":" + token.text;
+      case SYMBOL:
+        if (token.is("-")) {
+          return "-" + factor();
+        }
+        if (token.is("(")) {
+          String expression = expression();
+          expect(")");
+          return "(" + expression + ")";
+        }
+        throw error("Unexpected " + token.text);
+      case IDENTIFIER:
+        index--;
+        return identifierFactor();
+      default:
+        throw error("Unexpected end of query");
+    }
+  }
+
+  private String identifierFactor() {
+    Token token = peek();
+    String name = token.upper();
+    if (CONSTANTS.contains(name)) {
+      index++;
+      return name;
+    }
+    if (!peekAt(1).is("(")) {
+      return path();
+    }
+    index += 2;
+    if (AGGREGATES.contains(name)) {
+      String distinct = accept("DISTINCT") ? "DISTINCT " : "";
+      String argument;
+      if (isAlias(peek()) && !peekAt(1).is(".")) {
+        index++;
+        argument = render(meta.getId().getColumns().get(0));
+      } else {
+        argument = path();
+      }
+      expect(")");
+      return name + "(" + distinct + argument + ")";
+    }
+    if (!FUNCTIONS.contains(name) && !name.equals("CONCAT")) {
+      throw error("Function " + token.text + " is not supported");
+    }
+    List<String> arguments = new ArrayList<>();
+    do {
+      arguments.add(expression());
+    } while (accept(","));
+    expect(")");
+    return name.equals("CONCAT") ? "(" + String.join(" || ", arguments) + ")"
+        : name + "(" + String.join(", ", arguments) + ")";
+  }
+
+  private String path() {
+    return render(column());
+  }
+
+  private ColumnMeta column() {
+    Token first = expectIdentifier("attribute path");
+    boolean qualified = isAlias(first);
+    if (!qualified && (qualify || alias != null)) {
+      throw error("Attribute " + first.text + " must be qualified with "
+                  + (alias == null ? "identification variable" : alias));
+    }
+    Token attribute = first;
+    if (qualified) {
+      expect(".");
+      attribute = expectIdentifier("attribute name");
+    }
+    // Attributes of embedded id are columns of entity itself, so embedded path is skipped.
+    if (!columns.containsKey(attribute.text) && accept(".")) {
+      attribute = expectIdentifier("attribute name");
+    }
+    if (peek().is(".")) {
+      throw error("Association paths are not supported");
+    }
+    ColumnMeta column = columns.get(attribute.text);
+    if (column == null) {
+      throw error("Attribute " + attribute.text + " is not found in entity "
+                  + entityClass.getSimpleName());
+    }
+    return column;
+  }
+
+  private String render(ColumnMeta column) {
+    return qualify ? TABLE_ALIAS + "." + column.getName() : column.getName();
+  }
+
+  private RowMapper<Object> entityMapper(List<ColumnMeta> entityColumns) {
+    ColumnBinder[] binders = new ColumnBinder[entityColumns.size()];
+    for (int i = 0; i < binders.length; i++) {
+      binders[i] = entityColumns.get(i).getBinder();
+    }
+    EntityMeta entityMeta = meta;
+    return resultSet -> {
+      Object entity = entityMeta.newInstance();
+      for (int i = 0; i < binders.length; i++) {
+        binders[i].read(resultSet, i + 1, entity);
+      }
+      return entity;
+    };
+  }
+
+  private boolean isAlias(Token token) {
+    return alias != null && token.type == TokenType.IDENTIFIER
+           && token.text.equalsIgnoreCase(alias);
+  }
+
+  private Token peek() {
+    return tokens.get(index);
+  }
+
+  private Token peekAt(int offset) {
+    return tokens.get(Math.min(index + offset, tokens.size() - 1));
+  }
+
+  private Token next() {
+    Token token = tokens.get(index);
+    if (token.type != TokenType.END) {
+      index++;
+    }
+    return token;
+  }
+
+  private boolean accept(String text) {
+    if (peek().is(text)) {
+      index++;
+      return true;
+    }
+    return false;
+  }
+
+  private void expect(String text) {
+    if (!accept(text)) {
+      throw error("Expected " + text + " but found " + peek().text);
+    }
+  }
+
+  private Token expectIdentifier(String description) {
+    Token token = next();
+    if (token.type != TokenType.IDENTIFIER) {
+      throw error("Expected " + description + " but found " + token.text);
+    }
+    return token;
+  }
+
+  private IllegalArgumentException error(String message) {
+    return new IllegalArgumentException(message + " in query: " + jpql);
+  }
+
+  private static List<Token> tokenize(String jpql) {
+    List<Token> tokens = new ArrayList<>();
+    int length = jpql.length();
+    int i = 0;
+    while (i < length) {
+      char c = jpql.charAt(i);
+      if (Character.isWhitespace(c)) {
+        i++;
+      } else if (Character.isJavaIdentifierStart(c)) {
+        int end = i + 1;
+        while (end < length && Character.isJavaIdentifierPart(jpql.charAt(end))) {
+          end++;
+        }
+        tokens.add(new Token(TokenType.IDENTIFIER, jpql.substring(i, end)));
+        i = end;
+      } else if (Character.isDigit(c)
+                 || c == '.' && i + 1 < length && Character.isDigit(jpql.charAt(i + 1))) {
+        int end = i;
+        while (end < length && (Character.isDigit(jpql.charAt(end)) || jpql.charAt(end) == '.'
+                                || jpql.charAt(end) == 'e' || jpql.charAt(end) == 'E')) {
+          end++;
+        }
+        tokens.add(new Token(TokenType.NUMBER, jpql.substring(i, end)));
+        // Java type suffix of numeric literal has no meaning in SQL.
+        if (end < length && "lLdDfF".indexOf(jpql.charAt(end)) >= 0) {
+          end++;
+        }
+        i = end;
+      } else if (c == '\'') {
+        int end = i + 1;
+        while (true) {
+          if (end >= length) {
+            throw new IllegalArgumentException("Unterminated string literal in query: " + jpql);
+          }
+          if (jpql.charAt(end) == '\'') {
+            if (end + 1 < length && jpql.charAt(end + 1) == '\'') {
+              end += 2;
+              continue;
+            }
+            break;
+          }
+          end++;
+        }
+        tokens.add(new Token(TokenType.STRING, jpql.substring(i, end + 1)));
+        i = end + 1;
+      } else if (c == ':') {
+        int end = i + 1;
+        while (end < length && Character.isJavaIdentifierPart(jpql.charAt(end))) {
+          end++;
+        }
+        if (end == i + 1) {
+          throw new IllegalArgumentException("Parameter name expected in query: " + jpql);
+        }
+        tokens.add(new Token(TokenType.PARAMETER, jpql.substring(i + 1, end)));
+        i = end;
+      } else if (c == '?') {
+        throw new IllegalArgumentException(
+            "Positional parameters are not supported, use named parameters in query: " + jpql);
+      } else {
+        String two = i + 1 < length ? jpql.substring(i, i + 2) : "";
+        if (two.equals("<>") || two.equals("<=") || two.equals(">=") || two.equals("!=")) {
+          tokens.add(new Token(TokenType.SYMBOL, two));
+          i += 2;
+        } else if ("=<>(),.*+-/".indexOf(c) >= 0) {
+          tokens.add(new Token(TokenType.SYMBOL, String.valueOf(c)));
+          i++;
+        } else {
+          throw new IllegalArgumentException("Unexpected character " + c + " in query: " + jpql);
+        }
+      }
+    }
+    tokens.add(new Token(TokenType.END, "end of query"));
+    return tokens;
+  }
+
+  private interface ItemReader {
+    Object read(ResultSet resultSet, int index) throws SQLException;
+  }
+
+  private enum TokenType {
+    IDENTIFIER, NUMBER, STRING, PARAMETER, SYMBOL, END
+  }
+
+  private static final class Token {
+    private final TokenType type;
+    private final String text;
+
+    private Token(TokenType type, String text) {
+      this.type = type;
+      this.text = text;
+    }
+
+    private String upper() {
+      return text.toUpperCase(Locale.ROOT);
+    }
+
+    private boolean is(String value) {
+      return type == TokenType.SYMBOL ? text.equals(value)
+          : type == TokenType.IDENTIFIER && text.equalsIgnoreCase(value);
+    }
+
+    private boolean isReserved() {
+      return type == TokenType.IDENTIFIER && RESERVED.contains(upper());
+    }
+  }
+}
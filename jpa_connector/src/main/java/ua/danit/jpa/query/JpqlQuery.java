@@ -0,0 +1,106 @@
+package ua.danit.jpa.query;
+
+import java.lang.invoke.MethodType;
+
+import ua.danit.jpa.entity.EntityMeta;
+import ua.danit.jpa.parsing.JpaPersistenceMetaContext;
+
+/**
+ * JPQL query translated into native SQL through entity metadata. Translation is immutable
+ * and shared between sessions, results of select queries are read by compiled row mapper.
+ *
+ * <p>Supported subset is single entity {@code SELECT} of entity, attributes or aggregates
+ * with {@code WHERE}, {@code GROUP BY}, {@code HAVING} and {@code ORDER BY} clauses, and bulk
+ * {@code UPDATE} and {@code DELETE}. Entities have no mapped associations, so joins are not
+ * supported, and only named parameters are.
+ *
+ * @author Andrey Minov
+ */
+public final class JpqlQuery {
+  private final String jpql;
+  private final SqlTemplate template;
+  private final Class<?> resultClass;
+  private final EntityMeta entityMeta;
+  private final RowMapper<?> rowMapper;
+
+  /**
+   * Instantiates a new translated query.
+   *
+   * @param jpql        the JPQL query
+   * @param template    the translated SQL
+   * @param resultClass the class of query results, null for update queries
+   * @param entityMeta  the metadata of resulting entity, null when results are not entities
+   * @param rowMapper   the mapper of result rows, null for update queries
+   */
+  JpqlQuery(String jpql, SqlTemplate template, Class<?> resultClass, EntityMeta entityMeta,
+            RowMapper<?> rowMapper) {
+    this.jpql = jpql;
+    this.template = template;
+    this.resultClass = resultClass;
+    this.entityMeta = entityMeta;
+    this.rowMapper = rowMapper;
+  }
+
+  /**
+   * Translate JPQL query into native SQL.
+   *
+   * @param jpql        the JPQL query
+   * @param metaContext the context of registered entities
+   * @param schema      the schema of entity tables, null for schema from entity mapping
+   * @return the translated query.
+   * @throws IllegalArgumentException when query is not valid or not supported.
+   */
+  public static JpqlQuery compile(String jpql, JpaPersistenceMetaContext metaContext,
+                                  String schema) {
+    if (jpql == null || jpql.trim().isEmpty()) {
+      throw new IllegalArgumentException("Query cannot be empty!");
+    }
+    return new JpqlCompiler(jpql, metaContext, schema).compile();
+  }
+
+  /**
+   * Check that query results are instances of provided class.
+   *
+   * @param type the expected class of results
+   * @throws IllegalArgumentException when query has no results or results of other class.
+   */
+  public void checkResultClass(Class<?> type) {
+    if (resultClass == null) {
+      throw new IllegalArgumentException("Query " + jpql + " has no results!");
+    }
+    Class<?> boxed = MethodType.methodType(resultClass).wrap().returnType();
+    if (!type.isAssignableFrom(boxed)) {
+      throw new IllegalArgumentException("Results of query " + jpql + " are of " + resultClass
+                                         + ", not " + type + "!");
+    }
+  }
+
+  public String getJpql() {
+    return jpql;
+  }
+
+  public SqlTemplate getTemplate() {
+    return template;
+  }
+
+  public Class<?> getResultClass() {
+    return resultClass;
+  }
+
+  public EntityMeta getEntityMeta() {
+    return entityMeta;
+  }
+
+  public RowMapper<?> getRowMapper() {
+    return rowMapper;
+  }
+
+  public boolean isSelect() {
+    return rowMapper != null;
+  }
+
+  @Override
+  public String toString() {
+    return "JpqlQuery{" + "jpql='" + jpql + '\'' + ", sql='" + template + '\'' + '}';
+  }
+}
@@ -0,0 +1,80 @@
+package ua.danit.jpa.query;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import javax.persistence.LockModeType;
+
+/**
+ * Immutable definition of named native query registered in entity manager factory. SQL of
+ * query is parsed into template on registration, so queries are created from definition
+ * without parsing.
+ *
+ * @author Andrey Minov
+ */
+public final class NamedQueryDefinition {
+  private final String name;
+  private final SqlTemplate template;
+  private final Class<?> resultClass;
+  private final Map<String, Object> hints;
+  private final LockModeType lockMode;
+  private final int maxResults;
+  private final int firstResult;
+
+  /**
+   * Instantiates a new named query definition.
+   *
+   * @param name        the query name
+   * @param template    the parsed query SQL
+   * @param resultClass the entity class of query results, null for update queries
+   * @param hints       the query hints
+   * @param lockMode    the lock mode of query
+   * @param maxResults  the maximum number of results
+   * @param firstResult the position of first result
+   */
+  public NamedQueryDefinition(String name, SqlTemplate template, Class<?> resultClass,
+                              Map<String, Object> hints, LockModeType lockMode,
+                              int maxResults, int firstResult) {
+    this.name = name;
+    this.template = template;
+    this.resultClass = resultClass;
+    this.hints = Collections.unmodifiableMap(new HashMap<>(hints));
+    this.lockMode = lockMode;
+    this.maxResults = maxResults;
+    this.firstResult = firstResult;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public SqlTemplate getTemplate() {
+    return template;
+  }
+
+  public Class<?> getResultClass() {
+    return resultClass;
+  }
+
+  public Map<String, Object> getHints() {
+    return hints;
+  }
+
+  public LockModeType getLockMode() {
+    return lockMode;
+  }
+
+  public int getMaxResults() {
+    return maxResults;
+  }
+
+  public int getFirstResult() {
+    return firstResult;
+  }
+
+  @Override
+  public String toString() {
+    return "NamedQueryDefinition{" + "name='" + name + '\'' + ", sql='" + template + '\''
+           + ", resultClass=" + resultClass + '}';
+  }
+}
@@ -1,17 +1,24 @@
 package ua.danit.jpa.query;
 
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -24,99 +31,151 @@ import javax.persistence.PersistenceException;
 import javax.persistence.TemporalType;
 import javax.persistence.TypedQuery;
 
+import ua.danit.jpa.configuration.JpaProviderProperties;
+import ua.danit.jpa.dialect.Dialect;
+import ua.danit.jpa.entity.ColumnBinder;
 import ua.danit.jpa.entity.ColumnMeta;
 import ua.danit.jpa.entity.EntityMeta;
-import ua.danit.jpa.parsing.EntityMetaParser;
+import ua.danit.jpa.sessions.ConnectionRouter;
+import ua.danit.jpa.sessions.LogicalConnection;
+import ua.danit.jpa.types.TypeHandler;
+import ua.danit.jpa.types.TypeHandlerRegistry;
 
 /**
- * Native JDBC query with limited functionalities.
+ * Native JDBC query with limited functionalities. Statement of query is closed after every
+ * execution unless query is reusable, in which case statement is kept prepared on the same
+ * connection between executions until query is closed. Connection of reusable statement is
+ * pinned, so it is not released to the pool until query is closed.
  *
  * @author Andrey Minov
  */
-public class NativeQuery<T> implements TypedQuery<T> {
-
-  private static final Pattern PARAM_REGEXP = Pattern.compile(":\\w+");
-
-  private final PreparedStatement statement;
-  private final Map<String, Integer> parameters;
+public class NativeQuery<T> implements TypedQuery<T>, AutoCloseable {
+
+  private static final int DEFAULT_BATCH_SIZE = 50;
+  private static final Pattern ORDER_BY_KEYWORD = Pattern.compile("(?i)\\border\\s+by\\b");
+  private static final Pattern ORDER_BY_REGEXP =
+      Pattern.compile("(?i)\\border\\s+by\\s+([^()]+)$");
+  private static final Pattern ORDER_ITEM_REGEXP = Pattern
+      .compile("(?i)^(?:\\w+\\.)?(\\w+)(?:\\s+(asc|desc))?(?:\\s+nulls\\s+(first|last))?$");
+
+  private final ConnectionRouter router;
+  private final String sql;
+  private final SqlTemplate template;
+  private final Class<T> resultClass;
   private final EntityMeta entityMeta;
+  private final RowMapper<T> rowMapper;
   private final Map<Integer, Parameter<?>> boundedParameters;
   private final Map<Integer, Object> parameterValues;
   private final FlushModeType flushMode;
-
+  private final Dialect dialect;
+  private final TypeHandlerRegistry typeHandlers;
+  private final Map<String, Object> hints;
+  private final boolean reusable;
+  private final List<Map<Integer, Object>> batch;
+
+  private PreparedStatement statement;
+  private LogicalConnection connection;
+  private LockModeType lockMode;
   private int maxResult;
   private int startPosition;
 
   /**
    * Instantiates a new Native query.
    *
-   * @param connection the JDBC connection
-   * @param query      the query for selected
-   * @param entityMeta the entity meta used in execution result.
-   * @param flushMode  the entity manager flush model.
+   * @param router       the session connection router
+   * @param template     the parsed query SQL
+   * @param resultClass  the entity class of query results, null for update queries.
+   * @param entityMeta   the entity meta used in execution result.
+   * @param flushMode    the entity manager flush model.
+   * @param dialect      the dialect used to render lock clause.
+   * @param typeHandlers the registry of handlers used to bind parameters.
+   */
+  public NativeQuery(ConnectionRouter router, SqlTemplate template, Class<T> resultClass,
+                     EntityMeta entityMeta, FlushModeType flushMode, Dialect dialect,
+                     TypeHandlerRegistry typeHandlers) {
+    this(router, template, resultClass, entityMeta, flushMode, dialect, typeHandlers, false);
+  }
+
+  /**
+   * Instantiates a new Native query.
+   *
+   * @param router       the session connection router
+   * @param template     the parsed query SQL
+   * @param resultClass  the entity class of query results, null for update queries.
+   * @param entityMeta   the entity meta used in execution result.
+   * @param flushMode    the entity manager flush model.
+   * @param dialect      the dialect used to render lock clause.
+   * @param typeHandlers the registry of handlers used to bind parameters.
+   * @param reusable     whether statement is kept prepared between executions.
+   */
+  public NativeQuery(ConnectionRouter router, SqlTemplate template, Class<T> resultClass,
+                     EntityMeta entityMeta, FlushModeType flushMode, Dialect dialect,
+                     TypeHandlerRegistry typeHandlers, boolean reusable) {
+    this(router, template, resultClass, entityMeta, null, flushMode, dialect, typeHandlers,
+        reusable);
+  }
+
+  /**
+   * Instantiates a new Native query which results are read by row mapper.
+   *
+   * @param router       the session connection router
+   * @param template     the parsed query SQL
+   * @param resultClass  the class of query results, null for update queries.
+   * @param entityMeta   the entity meta of results, null when results are not entities.
+   * @param rowMapper    the mapper of result rows, null to map rows into entities by name.
+   * @param flushMode    the entity manager flush model.
+   * @param dialect      the dialect used to render lock clause.
+   * @param typeHandlers the registry of handlers used to bind parameters.
+   * @param reusable     whether statement is kept prepared between executions.
    */
-  public NativeQuery(Connection connection, String query, EntityMeta entityMeta,
-                     FlushModeType flushMode) {
+  public NativeQuery(ConnectionRouter router, SqlTemplate template, Class<T> resultClass,
+                     EntityMeta entityMeta, RowMapper<T> rowMapper, FlushModeType flushMode,
+                     Dialect dialect, TypeHandlerRegistry typeHandlers, boolean reusable) {
+    this.reusable = reusable;
+    this.rowMapper = rowMapper;
+    this.router = router;
+    this.sql = template.getSql();
+    this.template = template;
+    this.resultClass = resultClass;
     this.flushMode = flushMode;
+    this.dialect = dialect;
+    this.typeHandlers = typeHandlers;
     this.maxResult = Integer.MAX_VALUE;
     this.entityMeta = entityMeta;
     this.startPosition = 0;
+    this.lockMode = LockModeType.NONE;
     this.boundedParameters = new HashMap<>();
     this.parameterValues = new HashMap<>();
+    this.hints = new HashMap<>();
+    this.batch = new ArrayList<>();
+  }
 
-    if (query == null || query.isEmpty()) {
-      throw new IllegalArgumentException("Query SQL cannot be empty!");
-    }
-
-    parameters = new HashMap<>();
-    Matcher matcher = PARAM_REGEXP.matcher(query);
-    boolean found = matcher.find();
-    if (!found) {
-      try {
-        this.statement = connection.prepareStatement(query);
-      } catch (SQLException e) {
-        throw new IllegalArgumentException("Unable to create statement query!", e);
-      }
-      return;
-    }
-
-    StringBuilder stringBuilder = new StringBuilder();
-    int start;
-    int end = 0;
-    int counter = 1;
-    do {
-      start = matcher.start();
-      stringBuilder.append(query, end, start);
-      end = matcher.end();
-
-      parameters.put(query.substring(start + 1, end), counter++);
-      stringBuilder.append("?");
-
-      found = matcher.find(end);
-    } while (found);
-    if (end > 0) {
-      stringBuilder.append(query, end, query.length());
-    }
-
-    try {
-      this.statement = connection.prepareStatement(stringBuilder.toString());
-    } catch (SQLException e) {
-      throw new IllegalArgumentException("Unable to create statement query!", e);
-    }
-
+  /**
+   * Create definition of named query with SQL and settings of this query.
+   *
+   * @param name the query name
+   * @return the named query definition.
+   */
+  public NamedQueryDefinition toDefinition(String name) {
+    return new NamedQueryDefinition(name, template, resultClass, hints, lockMode, maxResult,
+        startPosition);
   }
 
   @SuppressWarnings("unchecked")
   @Override
   public List<T> getResultList() {
-    if (entityMeta == null) {
+    if (entityMeta == null && rowMapper == null) {
       throw new IllegalStateException("Query is not supported select operations!");
     }
+    if (router.shards().size() > 1) {
+      return gatherResultList();
+    }
     try {
       int idx = 0;
       int count = 0;
       List<T> result = new ArrayList<>();
-      try (ResultSet resultSet = statement.executeQuery()) {
+      try (ResultSet resultSet = statement(readConnection()).executeQuery()) {
+        RowMapper<T> mapper = rowMapper(resultSet);
         while (resultSet.next()) {
           if (idx++ < startPosition) {
             continue;
@@ -124,61 +183,123 @@ public class NativeQuery<T> implements TypedQuery<T> {
           if (++count > maxResult) {
             break;
           }
-          result.add(createEntity(resultSet, entityMeta));
+          result.add(mapper.map(resultSet));
         }
       }
       return result;
     } catch (Exception e) {
       throw new PersistenceException("Unable to execute query!", e);
     } finally {
-      try {
-        statement.close();
-      } catch (SQLException e) {
-        Logger.getGlobal().log(Level.SEVERE, e, () -> "Unable to execute query!");
-      }
+      afterExecution();
     }
   }
 
   @SuppressWarnings("unchecked")
   @Override
   public T getSingleResult() {
-    if (entityMeta == null) {
+    if (entityMeta == null && rowMapper == null) {
       throw new IllegalStateException("Query is not supported select operations!");
     }
+    if (router.shards().size() > 1) {
+      List<T> result = gatherResultList();
+      if (result.size() > 1) {
+        throw new NonUniqueResultException();
+      }
+      return result.isEmpty() ? null : result.get(0);
+    }
     try {
       T entity = null;
-      try (ResultSet resultSet = statement.executeQuery()) {
+      try (ResultSet resultSet = statement(readConnection()).executeQuery()) {
+        RowMapper<T> mapper = rowMapper(resultSet);
         while (resultSet.next()) {
           if (entity != null) {
             throw new NonUniqueResultException();
           }
-          entity = createEntity(resultSet, entityMeta);
+          entity = mapper.map(resultSet);
         }
       }
       return entity;
     } catch (Exception e) {
       throw new PersistenceException("Unable to execute query!", e);
     } finally {
-      try {
-        statement.close();
-      } catch (SQLException e) {
-        Logger.getGlobal().log(Level.SEVERE, e, () -> "Unable to execute query!");
-      }
+      afterExecution();
     }
   }
 
   @Override
   public int executeUpdate() {
+    if (router.shards().size() > 1) {
+      router.forWrite();
+      int updated = 0;
+      for (Integer count : scatter(PreparedStatement::executeUpdate)) {
+        updated += count;
+      }
+      return updated;
+    }
     try {
-      return statement.executeUpdate();
+      return statement(router.forWrite()).executeUpdate();
     } catch (SQLException e) {
       throw new PersistenceException("Unable to execute query!", e);
     } finally {
-      try {
-        statement.close();
-      } catch (SQLException e) {
-        Logger.getGlobal().log(Level.SEVERE, e, () -> "Unable to execute query!");
+      afterExecution();
+    }
+  }
+
+  /**
+   * Add current parameter values as next set of batch parameters and clear them, so values of
+   * next set are bound.
+   *
+   * @return the same query.
+   * @throws IllegalStateException when any named parameter of query is not bound.
+   */
+  public NativeQuery<T> addBatch() {
+    for (String name : template.getParameterNames()) {
+      for (int position : template.getPositions(name)) {
+        if (!parameterValues.containsKey(position)) {
+          throw new IllegalStateException("Parameter " + name + " is not bound!");
+        }
+      }
+    }
+    batch.add(new HashMap<>(parameterValues));
+    boundedParameters.clear();
+    parameterValues.clear();
+    return this;
+  }
+
+  /**
+   * Execute update with all added sets of batch parameters. Sets are sent to database in
+   * JDBC batches of size set by {@link JpaProviderProperties#BATCH_SIZE} hint, on shards
+   * every set is executed on each shard and counts are summed. Merged count is
+   * {@link java.sql.Statement#EXECUTE_FAILED} when set failed on any shard.
+   *
+   * @return the update counts in order of added parameter sets, count may be
+   *     {@link java.sql.Statement#SUCCESS_NO_INFO} when driver does not report it.
+   * @throws PersistenceException when batch cannot be executed.
+   */
+  public int[] executeBatch() {
+    List<Map<Integer, Object>> rows = new ArrayList<>(batch);
+    batch.clear();
+    if (rows.isEmpty()) {
+      return new int[0];
+    }
+    int batchSize = getBatchSize();
+    if (router.shards().size() > 1) {
+      router.forWrite();
+      int[] counts = new int[rows.size()];
+      for (int[] shardCounts : scatter(shardStatement -> runBatch(shardStatement, rows,
+          batchSize))) {
+        for (int i = 0; i < counts.length; i++) {
+          counts[i] = mergeCounts(counts[i], shardCounts[i]);
+        }
       }
+      return counts;
+    }
+    try {
+      return runBatch(statement(router.forWrite()), rows, batchSize);
+    } catch (SQLException e) {
+      throw new PersistenceException("Unable to execute batch!", e);
+    } finally {
+      afterExecution();
     }
   }
 
@@ -206,21 +327,30 @@ public class NativeQuery<T> implements TypedQuery<T> {
 
   @Override
   public TypedQuery<T> setHint(String hintName, Object value) {
-    throw new UnsupportedOperationException();
+    if (JpaProviderProperties.LOCK_TIMEOUT.equals(hintName)) {
+      // Lock timeout is part of prepared SQL.
+      closeStatement();
+    }
+    hints.put(hintName, value);
+    return this;
   }
 
   @Override
   public Map<String, Object> getHints() {
-    throw new UnsupportedOperationException();
+    return new HashMap<>(hints);
   }
 
   @Override
-  public <X> TypedQuery<T> setParameter(Parameter<X> param, X value) {
+  public <X> NativeQuery<T> setParameter(Parameter<X> param, X value) {
+    int[] positions = positions(param);
     try {
-      statement.setObject(param.getPosition(), value, EntityMetaParser
-          .getSqlType(param.getParameterType()));
-      boundedParameters.put(param.getPosition(), param);
-      parameterValues.put(param.getPosition(), value);
+      if (param.getParameterType() != Object.class) {
+        typeHandlers.get(param.getParameterType());
+      }
+      for (int position : positions) {
+        boundedParameters.put(position, param);
+        parameterValues.put(position, value);
+      }
     } catch (Exception e) {
       throw new PersistenceException("Unable to set parameter!", e);
     }
@@ -228,22 +358,15 @@ public class NativeQuery<T> implements TypedQuery<T> {
   }
 
 
-  @SuppressWarnings("unchecked")
   @Override
-  public TypedQuery<T> setParameter(String name, Object value) {
-    if (!parameters.containsKey(name)) {
-      throw new IllegalArgumentException("Parameter " + name + " is not existed in mapping!");
-    }
-    int position = parameters.get(name);
-    return setParameter(new QueryParameter<>(name, position, (Class<Object>) value
-        .getClass()), value);
+  public NativeQuery<T> setParameter(String name, Object value) {
+    int position = template.getPosition(name);
+    return setParameter(new QueryParameter<>(name, position, parameterType(value)), value);
   }
 
-  @SuppressWarnings("unchecked")
   @Override
-  public TypedQuery<T> setParameter(int position, Object value) {
-    return setParameter(new QueryParameter<>(null, position, (Class<Object>) value
-        .getClass()), value);
+  public NativeQuery<T> setParameter(int position, Object value) {
+    return setParameter(new QueryParameter<>(null, position, parameterType(value)), value);
   }
 
   @Override
@@ -256,24 +379,26 @@ public class NativeQuery<T> implements TypedQuery<T> {
 
   @Override
   public TypedQuery<T> setParameter(Parameter<Date> param, Date value, TemporalType temporalType) {
+    int[] positions = positions(param);
     try {
+      Date bound;
       switch (temporalType) {
         case DATE:
-          statement.setDate(param.getPosition(), new java.sql.Date(value.getTime()));
-          parameterValues.put(param.getPosition(), new java.sql.Date(value.getTime()));
+          bound = new java.sql.Date(value.getTime());
           break;
         case TIME:
-          statement.setTime(param.getPosition(), new java.sql.Time(value.getTime()));
-          parameterValues.put(param.getPosition(), new java.sql.Time(value.getTime()));
+          bound = new java.sql.Time(value.getTime());
           break;
         case TIMESTAMP:
-          statement.setTimestamp(param.getPosition(), new java.sql.Timestamp(value.getTime()));
-          parameterValues.put(param.getPosition(), new java.sql.Timestamp(value.getTime()));
+          bound = new java.sql.Timestamp(value.getTime());
           break;
         default:
-          break;
+          return this;
+      }
+      for (int position : positions) {
+        parameterValues.put(position, bound);
+        boundedParameters.put(position, param);
       }
-      boundedParameters.put(param.getPosition(), param);
       return this;
     } catch (Exception e) {
       throw new PersistenceException("Unable to set parameter!", e);
@@ -287,11 +412,8 @@ public class NativeQuery<T> implements TypedQuery<T> {
 
   @Override
   public TypedQuery<T> setParameter(String name, Date value, TemporalType temporalType) {
-    if (!parameters.containsKey(name)) {
-      throw new IllegalArgumentException("Parameter " + name + " is not existed in mapping!");
-    }
-    int position = parameters.get(name);
-    return setParameter(position, value, temporalType);
+    return setParameter(new QueryParameter<>(name, template.getPosition(name), Date.class), value,
+        temporalType);
   }
 
 
@@ -312,10 +434,7 @@ public class NativeQuery<T> implements TypedQuery<T> {
 
   @Override
   public Parameter<?> getParameter(String name) {
-    if (!parameters.containsKey(name)) {
-      throw new IllegalArgumentException("Parameter " + name + " is not existed in mapping!");
-    }
-    int position = parameters.get(name);
+    int position = template.getPosition(name);
     return boundedParameters.get(position);
   }
 
@@ -349,10 +468,7 @@ public class NativeQuery<T> implements TypedQuery<T> {
 
   @Override
   public Object getParameterValue(String name) {
-    if (!parameters.containsKey(name)) {
-      throw new IllegalArgumentException("Parameter " + name + " is not existed in mapping!");
-    }
-    int position = parameters.get(name);
+    int position = template.getPosition(name);
     return parameterValues.get(position);
   }
 
@@ -373,42 +489,362 @@ public class NativeQuery<T> implements TypedQuery<T> {
 
   @Override
   public TypedQuery<T> setLockMode(LockModeType lockMode) {
-    throw new UnsupportedOperationException();
+    if (entityMeta == null) {
+      throw new IllegalStateException("Lock mode is supported only for select queries!");
+    }
+    closeStatement();
+    this.lockMode = lockMode;
+    return this;
   }
 
   @Override
   public LockModeType getLockMode() {
-    throw new UnsupportedOperationException();
+    return lockMode;
+  }
+
+  /**
+   * Clear values of all parameters, so query is executed again with new values.
+   * Prepared statement of reusable query is kept.
+   *
+   * @return the same query.
+   * @throws PersistenceException when parameters of statement cannot be cleared.
+   */
+  public NativeQuery<T> clearParameters() {
+    boundedParameters.clear();
+    parameterValues.clear();
+    if (statement != null) {
+      try {
+        statement.clearParameters();
+      } catch (SQLException e) {
+        throw new PersistenceException("Unable to clear parameters!", e);
+      }
+    }
+    return this;
+  }
+
+  /**
+   * Close prepared statement of query and release its connection.
+   */
+  @Override
+  public void close() {
+    closeStatement();
   }
 
   @SuppressWarnings("unchecked")
   @Override
   public <X> X unwrap(Class<X> cls) {
     if (cls.isAssignableFrom(PreparedStatement.class)) {
-      return (X) statement;
+      try {
+        return (X) statement(router.primary());
+      } catch (SQLException e) {
+        throw new PersistenceException("Unable to create statement query!", e);
+      }
     }
     return null;
   }
 
+  // Named parameter is bound at every position it is used in query.
+  private int[] positions(Parameter<?> param) {
+    return param.getName() == null ? new int[] {param.getPosition()}
+        : template.getPositions(param.getName());
+  }
+
+  private int[] runBatch(PreparedStatement statement, List<Map<Integer, Object>> rows,
+                         int batchSize) throws SQLException {
+    int[] counts = new int[rows.size()];
+    int executed = 0;
+    for (int i = 0; i < rows.size(); i++) {
+      bind(statement, rows.get(i));
+      statement.addBatch();
+      if (i + 1 - executed == batchSize || i == rows.size() - 1) {
+        int[] chunk = statement.executeBatch();
+        System.arraycopy(chunk, 0, counts, executed, chunk.length);
+        executed = i + 1;
+      }
+    }
+    return counts;
+  }
+
+  /**
+   * Merge update counts of the same parameter set on two shards. Failure on any shard is
+   * kept, unknown count on any shard makes merged count unknown.
+   */
+  private static int mergeCounts(int count, int shardCount) {
+    if (count == Statement.EXECUTE_FAILED || shardCount == Statement.EXECUTE_FAILED) {
+      return Statement.EXECUTE_FAILED;
+    }
+    if (count == Statement.SUCCESS_NO_INFO || shardCount == Statement.SUCCESS_NO_INFO) {
+      return Statement.SUCCESS_NO_INFO;
+    }
+    return count + shardCount;
+  }
+
+  private int getBatchSize() {
+    Object batchSize = hints.get(JpaProviderProperties.BATCH_SIZE);
+    int size = batchSize == null ? DEFAULT_BATCH_SIZE : Integer.parseInt(batchSize.toString());
+    if (size < 1) {
+      throw new IllegalArgumentException("Batch size must be positive: " + size);
+    }
+    return size;
+  }
+
+  private LogicalConnection readConnection() {
+    Object readOnly = hints.get(JpaProviderProperties.READ_ONLY);
+    return lockMode == LockModeType.NONE && readOnly != null && Boolean
+        .parseBoolean(readOnly.toString()) ? router.forRead() : router.primary();
+  }
+
+  private PreparedStatement statement(LogicalConnection target) throws SQLException {
+    // Connection is left without statement when statement cannot be prepared.
+    if (connection != null && (statement == null || connection != target)) {
+      closeStatement();
+    }
+    if (statement == null) {
+      connection = target;
+      // Reusable statement pins its connection, so it is not released to the pool
+      // by other statements of session while statement is open.
+      if (reusable) {
+        connection.pin();
+      }
+      statement = prepare(target);
+    }
+    bind(statement);
+    return statement;
+  }
+
+  private PreparedStatement prepare(LogicalConnection target) throws SQLException {
+    Object timeout = hints.get(JpaProviderProperties.LOCK_TIMEOUT);
+    String lockClause = dialect.getLockClause(lockMode, timeout == null ? Dialect.WAIT_FOREVER
+        : Integer.parseInt(timeout.toString()));
+    return target.acquire().prepareStatement(sql + lockClause);
+  }
+
+  private void bind(PreparedStatement statement) throws SQLException {
+    bind(statement, parameterValues);
+  }
+
   @SuppressWarnings("unchecked")
-  private T createEntity(ResultSet resultSet, EntityMeta entityMeta) throws Exception {
-    T entity = (T) entityMeta.getConstructor().newInstance();
-    List<ColumnMeta> columns = new ArrayList<>();
-    columns.addAll(entityMeta.getColumns());
-    columns.addAll(entityMeta.getId().getColumns());
-    for (ColumnMeta columnMeta : columns) {
-      try {
-        if (resultSet.findColumn(columnMeta.getName()) > 0) {
-          Object value = resultSet.getObject(columnMeta.getName());
-          columnMeta.getSetter().invoke(entity, value);
+  private void bind(PreparedStatement statement, Map<Integer, Object> values)
+      throws SQLException {
+    for (Map.Entry<Integer, Object> entry : values.entrySet()) {
+      Object value = entry.getValue();
+      if (value == null) {
+        statement.setNull(entry.getKey(), nullSqlType(entry.getKey()));
+        continue;
+      }
+      TypeHandler<Object> handler = (TypeHandler<Object>) typeHandlers.get(value.getClass());
+      handler.bind(statement, entry.getKey(), value);
+    }
+  }
+
+  /**
+   * Get SQL type of null parameter value. Type is taken from handler of declared parameter
+   * type, when parameter has no declared type it is unknown to the driver.
+   */
+  private int nullSqlType(int position) {
+    Parameter<?> parameter = boundedParameters.get(position);
+    if (parameter == null || parameter.getParameterType() == Object.class) {
+      return Types.NULL;
+    }
+    return typeHandlers.get(parameter.getParameterType()).getSqlType();
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Class<Object> parameterType(Object value) {
+    return value == null ? Object.class : (Class<Object>) value.getClass();
+  }
+
+  /**
+   * Execute query on all shards and merge results. Each shard returns at most
+   * first result plus max results rows, merged rows are sorted by ORDER BY of the query
+   * and then offset and limit are applied. Only ORDER BY of plain entity columns is merged,
+   * other ordering is rejected. Values are compared in Java order: strings by characters
+   * regardless of database collation, enums stored by name by their names and converted
+   * attributes by attribute values. NULL values are merged only when ordering item has
+   * explicit NULLS FIRST or NULLS LAST.
+   */
+  private List<T> gatherResultList() {
+    long shardLimit = Math.min((long) startPosition + maxResult, Integer.MAX_VALUE);
+    Comparator<T> order = orderComparator();
+    ShardWork<List<T>> readRows = shardStatement -> {
+      List<T> rows = new ArrayList<>();
+      try (ResultSet resultSet = shardStatement.executeQuery()) {
+        RowMapper<T> mapper = rowMapper(resultSet);
+        while (rows.size() < shardLimit && resultSet.next()) {
+          rows.add(mapper.map(resultSet));
         }
-      } catch (SQLException e) {
-        // unable to locate column. Assign to null.
+      }
+      return rows;
+    };
+    List<T> result = new ArrayList<>();
+    for (List<T> shardResult : scatter(readRows)) {
+      result.addAll(shardResult);
+    }
+    if (order != null) {
+      result.sort(order);
+    }
+    int from = Math.min(startPosition, result.size());
+    int to = (int) Math.min(shardLimit, result.size());
+    return new ArrayList<>(result.subList(from, to));
+  }
+
+  private <R> List<R> scatter(ShardWork<R> work) {
+    // Asynchronous flushes run on the same executor as shard tasks, so they are awaited here
+    // and shard tasks never wait for work queued behind them.
+    router.shards().forEach(LogicalConnection::await);
+    List<CompletableFuture<R>> futures = new ArrayList<>();
+    for (LogicalConnection shard : router.shards()) {
+      Supplier<R> task = () -> {
+        try (PreparedStatement shardStatement = prepare(shard)) {
+          bind(shardStatement);
+          return work.execute(shardStatement);
+        } catch (Exception e) {
+          throw new CompletionException(e);
+        } finally {
+          shard.afterStatement();
+        }
+      };
+      futures.add(CompletableFuture.supplyAsync(task, router.executor()));
+    }
+    List<R> results = new ArrayList<>(futures.size());
+    try {
+      for (CompletableFuture<R> future : futures) {
+        results.add(future.join());
+      }
+    } catch (CompletionException e) {
+      throw new PersistenceException("Unable to execute query on shards!", e.getCause());
+    }
+    return results;
+  }
+
+  private Comparator<T> orderComparator() {
+    if (!ORDER_BY_KEYWORD.matcher(sql).find()) {
+      return null;
+    }
+    Matcher matcher = ORDER_BY_REGEXP.matcher(sql.trim());
+    if (!matcher.find()) {
+      throw new PersistenceException("Unable to merge shard results ordered by expression!");
+    }
+    List<ColumnMeta> columns = new ArrayList<>(entityMeta.getColumns());
+    columns.addAll(entityMeta.getId().getColumns());
+    Comparator<T> comparator = null;
+    for (String item : matcher.group(1).split(",")) {
+      Matcher itemMatcher = ORDER_ITEM_REGEXP.matcher(item.trim());
+      ColumnMeta column = itemMatcher.matches() ? columns.stream().filter(
+          c -> c.getName().equalsIgnoreCase(itemMatcher.group(1))).findFirst().orElse(null)
+          : null;
+      if (column == null) {
+        throw new PersistenceException(
+            "Unable to merge shard results ordered by " + item.trim() + "!");
+      }
+      Comparator<Comparable<Object>> values = "desc".equalsIgnoreCase(itemMatcher.group(2))
+          ? Comparator.reverseOrder() : Comparator.naturalOrder();
+      String nulls = itemMatcher.group(3);
+      Comparator<T> next = Comparator.comparing(entity -> columnValue(column, entity),
+          nulls == null ? nullsRejected(values, item.trim()) : "first".equalsIgnoreCase(nulls)
+              ? Comparator.nullsFirst(values) : Comparator.nullsLast(values));
+      comparator = comparator == null ? next : comparator.thenComparing(next);
+    }
+    return comparator;
+  }
+
+  /**
+   * Order of NULL values differs between databases, so they are merged only with explicit
+   * NULLS FIRST or NULLS LAST.
+   */
+  private static Comparator<Comparable<Object>> nullsRejected(
+      Comparator<Comparable<Object>> values, String item) {
+    return (first, second) -> {
+      if (first == null || second == null) {
+        throw new PersistenceException("Unable to merge shard results ordered by " + item
+                                       + " with NULL values, NULLS FIRST or NULLS LAST "
+                                       + "is required!");
+      }
+      return values.compare(first, second);
+    };
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Comparable<Object> columnValue(ColumnMeta column, Object entity) {
+    try {
+      Object value = column.getAccessor().get(entity);
+      // Enum stored by name is ordered by database as string.
+      if (value instanceof Enum && column.getSqlType() == Types.VARCHAR) {
+        return (Comparable<Object>) (Object) ((Enum<?>) value).name();
+      }
+      return (Comparable<Object>) value;
+    } catch (Exception e) {
+      throw new PersistenceException("Unable to get value of " + column.getName() + "!", e);
+    }
+  }
+
+  private void afterExecution() {
+    if (!reusable) {
+      closeStatement();
+    }
+  }
+
+  private void closeStatement() {
+    try {
+      if (statement != null) {
+        statement.close();
+      }
+    } catch (SQLException e) {
+      Logger.getGlobal().log(Level.SEVERE, e, () -> "Unable to execute query!");
+    } finally {
+      statement = null;
+      if (connection != null && reusable) {
+        connection.unpin();
+      } else if (connection != null) {
+        connection.afterStatement();
+      }
+      connection = null;
+    }
+  }
+
+  /**
+   * Get mapper of result set rows. Without compiled row mapper entity columns are looked up
+   * by name once per result set, columns missing in result set are left unset.
+   */
+  @SuppressWarnings("unchecked")
+  private RowMapper<T> rowMapper(ResultSet resultSet) throws SQLException {
+    if (rowMapper != null) {
+      return rowMapper;
+    }
+    Map<String, Integer> labels = new HashMap<>();
+    ResultSetMetaData metaData = resultSet.getMetaData();
+    for (int i = metaData.getColumnCount(); i > 0; i--) {
+      // Iterated backwards, so first of columns with the same label is kept.
+      labels.put(metaData.getColumnLabel(i).toUpperCase(Locale.ROOT), i);
+    }
+    List<ColumnMeta> columns = new ArrayList<>(entityMeta.getColumns());
+    columns.addAll(entityMeta.getId().getColumns());
+    List<ColumnBinder> binders = new ArrayList<>();
+    List<Integer> indexes = new ArrayList<>();
+    for (ColumnMeta column : columns) {
+      Integer index = labels.get(column.getName().toUpperCase(Locale.ROOT));
+      if (index == null) {
         Logger.getGlobal()
-              .log(Level.FINEST, e, () -> "Column " + columnMeta.getName() + " not existed!");
+              .log(Level.FINEST, () -> "Column " + column.getName() + " not existed!");
+      } else {
+        binders.add(column.getBinder());
+        indexes.add(index);
       }
     }
-    return entity;
+    ColumnBinder[] columnBinders = binders.toArray(new ColumnBinder[0]);
+    int[] columnIndexes = indexes.stream().mapToInt(Integer::intValue).toArray();
+    EntityMeta meta = entityMeta;
+    return row -> {
+      T entity = (T) meta.newInstance();
+      for (int i = 0; i < columnBinders.length; i++) {
+        columnBinders[i].read(row, columnIndexes[i], entity);
+      }
+      return entity;
+    };
+  }
+
+  private interface ShardWork<R> {
+    R execute(PreparedStatement statement) throws Exception;
   }
 
   private static class QueryParameter<T> implements Parameter<T> {
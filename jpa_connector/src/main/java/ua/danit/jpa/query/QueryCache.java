@@ -0,0 +1,85 @@
+package ua.danit.jpa.query;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Bounded cache of compiled queries, such as parsed SQL templates or translated JPQL. When
+ * cache is full query used least recently is evicted. Query is compiled outside of lock, so
+ * concurrent first uses of the same query may compile it more than once.
+ *
+ * @param <K> the type of query key
+ * @param <V> the type of compiled query
+ * @author Andrey Minov
+ */
+public final class QueryCache<K, V> {
+  private final int maxSize;
+  private final LruMap<K, V> queries;
+
+  /**
+   * Instantiates a new query cache.
+   *
+   * @param maxSize the maximum number of cached queries, zero disables caching
+   * @throws IllegalArgumentException when maximum size is negative.
+   */
+  public QueryCache(int maxSize) {
+    if (maxSize < 0) {
+      throw new IllegalArgumentException("Cache size cannot be negative: " + maxSize);
+    }
+    this.maxSize = maxSize;
+    this.queries = new LruMap<>(maxSize);
+  }
+
+  /**
+   * Get compiled query, compiling it on cache miss.
+   *
+   * @param key      the query key
+   * @param compiler the function compiling query by key
+   * @return the compiled query.
+   * @throws IllegalArgumentException when query cannot be compiled.
+   */
+  public V get(K key, Function<? super K, ? extends V> compiler) {
+    if (maxSize == 0) {
+      return compiler.apply(key);
+    }
+    V query;
+    synchronized (queries) {
+      query = queries.get(key);
+    }
+    if (query == null) {
+      query = compiler.apply(key);
+      synchronized (queries) {
+        queries.put(key, query);
+      }
+    }
+    return query;
+  }
+
+  /**
+   * Get number of cached queries.
+   *
+   * @return the cache size.
+   */
+  public int size() {
+    synchronized (queries) {
+      return queries.size();
+    }
+  }
+
+  private static final class LruMap<K, V> extends LinkedHashMap<K, V> {
+    private static final long serialVersionUID = 1L;
+
+    private final int maxSize;
+
+    private LruMap(int maxSize) {
+      super(16, 0.75f, true);
+      this.maxSize = maxSize;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+      return size() > maxSize;
+    }
+  }
+}
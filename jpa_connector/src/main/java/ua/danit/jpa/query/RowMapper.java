@@ -0,0 +1,23 @@
+package ua.danit.jpa.query;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Mapper of current result set row into query result. Mapper is compiled once together with
+ * query and reads columns by their positions.
+ *
+ * @param <T> the type of query result
+ * @author Andrey Minov
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+  /**
+   * Map current row of result set.
+   *
+   * @param resultSet the result set positioned at row
+   * @return the query result of row.
+   * @throws SQLException when columns cannot be read.
+   */
+  T map(ResultSet resultSet) throws SQLException;
+}
@@ -0,0 +1,161 @@
+package ua.danit.jpa.query;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Native SQL with named parameters parsed once. Every {@code :name} parameter is replaced
+ * with JDBC placeholder and its positions are remembered, so template is reused by any number
+ * of queries without parsing SQL again. Parameter used several times is bound at all its
+ * positions. Colons inside string literals, quoted identifiers and comments as well as
+ * {@code ::} casts are not parameters.
+ *
+ * @author Andrey Minov
+ */
+public final class SqlTemplate {
+  private static final int[] NO_POSITIONS = new int[0];
+
+  private final String sql;
+  private final Map<String, int[]> parameters;
+
+  private SqlTemplate(String sql, Map<String, int[]> parameters) {
+    this.sql = sql;
+    this.parameters = parameters;
+  }
+
+  /**
+   * Parse SQL with named parameters.
+   *
+   * @param query the SQL with named parameters
+   * @return the parsed template.
+   * @throws IllegalArgumentException when query is empty or has unterminated literal or
+   *                                  comment.
+   */
+  public static SqlTemplate parse(String query) {
+    if (query == null || query.isEmpty()) {
+      throw new IllegalArgumentException("Query SQL cannot be empty!");
+    }
+    Map<String, int[]> parameters = new LinkedHashMap<>();
+    StringBuilder out = null;
+    int copied = 0;
+    int counter = 1;
+    int length = query.length();
+    int i = 0;
+    while (i < length) {
+      char c = query.charAt(i);
+      if (c == '\'' || c == '"') {
+        i = skipQuoted(query, i, c);
+      } else if (c == '-' && i + 1 < length && query.charAt(i + 1) == '-') {
+        int end = query.indexOf('\n', i);
+        i = end < 0 ? length : end + 1;
+      } else if (c == '/' && i + 1 < length && query.charAt(i + 1) == '*') {
+        int end = query.indexOf("*/", i + 2);
+        if (end < 0) {
+          throw new IllegalArgumentException("Unterminated comment in query: " + query);
+        }
+        i = end + 2;
+      } else if (c == ':' && i + 1 < length && query.charAt(i + 1) == ':') {
+        i += 2;
+      } else if (c == ':' && i + 1 < length && isNameChar(query.charAt(i + 1))) {
+        int end = i + 1;
+        while (end < length && isNameChar(query.charAt(end))) {
+          end++;
+        }
+        if (out == null) {
+          out = new StringBuilder(length);
+        }
+        out.append(query, copied, i).append('?');
+        copied = end;
+        String name = query.substring(i + 1, end);
+        int[] positions = parameters.getOrDefault(name, NO_POSITIONS);
+        positions = Arrays.copyOf(positions, positions.length + 1);
+        positions[positions.length - 1] = counter++;
+        parameters.put(name, positions);
+        i = end;
+      } else {
+        i++;
+      }
+    }
+    if (out == null) {
+      return new SqlTemplate(query, Collections.emptyMap());
+    }
+    out.append(query, copied, length);
+    return new SqlTemplate(out.toString(), parameters);
+  }
+
+  /**
+   * Get SQL with parameters replaced by JDBC placeholders.
+   *
+   * @return the JDBC SQL.
+   */
+  public String getSql() {
+    return sql;
+  }
+
+  /**
+   * Get names of parameters in order of their first use.
+   *
+   * @return the parameter names.
+   */
+  public Set<String> getParameterNames() {
+    return Collections.unmodifiableSet(parameters.keySet());
+  }
+
+  /**
+   * Get positions of named parameter.
+   *
+   * @param name the parameter name
+   * @return the copy of parameter positions in ascending order.
+   * @throws IllegalArgumentException when query has no parameter with the name.
+   */
+  public int[] getPositions(String name) {
+    int[] positions = parameters.get(name);
+    if (positions == null) {
+      throw new IllegalArgumentException("Parameter " + name + " is not existed in mapping!");
+    }
+    return positions.clone();
+  }
+
+  /**
+   * Get first position of named parameter.
+   *
+   * @param name the parameter name
+   * @return the position of first use of parameter.
+   * @throws IllegalArgumentException when query has no parameter with the name.
+   */
+  public int getPosition(String name) {
+    int[] positions = parameters.get(name);
+    if (positions == null) {
+      throw new IllegalArgumentException("Parameter " + name + " is not existed in mapping!");
+    }
+    return positions[0];
+  }
+
+  @Override
+  public String toString() {
+    return sql;
+  }
+
+  private static int skipQuoted(String query, int start, char quote) {
+    int i = start + 1;
+    while (i < query.length()) {
+      if (query.charAt(i) == quote) {
+        // Doubled quote is escaped quote inside literal.
+        if (i + 1 < query.length() && query.charAt(i + 1) == quote) {
+          i += 2;
+          continue;
+        }
+        return i + 1;
+      }
+      i++;
+    }
+    throw new IllegalArgumentException("Unterminated quoted text in query: " + query);
+  }
+
+  private static boolean isNameChar(char c) {
+    return Character.isLetterOrDigit(c) || c == '_';
+  }
+}
@@ -0,0 +1,32 @@
+package ua.danit.jpa.sessions;
+
+/**
+ * Defines when entity manager acquires JDBC connection and when it is returned to the pool.
+ *
+ * @author Andrey Minov
+ */
+public enum ConnectionHandlingMode {
+  /**
+   * Connection is acquired when entity manager is created and held until it is closed.
+   */
+  HOLD,
+  /**
+   * Connection is acquired on first SQL statement and released after transaction
+   * commit or rollback, or after each statement when no transaction is active.
+   */
+  RELEASE_AFTER_TRANSACTION;
+
+  /**
+   * Resolve connection handling mode from property value.
+   *
+   * @param value the property value, case insensitive, may be null
+   * @return resolved mode, {@link #HOLD} when value is not set.
+   * @throws IllegalArgumentException when value is not one of modes.
+   */
+  public static ConnectionHandlingMode fromProperty(String value) {
+    if (value == null || value.isEmpty()) {
+      return HOLD;
+    }
+    return valueOf(value.trim().toUpperCase());
+  }
+}
@@ -0,0 +1,48 @@
+package ua.danit.jpa.sessions;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Routes statements of entity manager to primary or replica logical connection.
+ *
+ * @author Andrey Minov
+ */
+public interface ConnectionRouter {
+  /**
+   * Get connection for statement which must observe latest data, like locking reads.
+   *
+   * @return the primary logical connection.
+   */
+  LogicalConnection primary();
+
+  /**
+   * Get connection for read-only statement. Replica connection is returned when replicas are
+   * configured, current transaction is read-only or absent and session did not write recently.
+   *
+   * @return the replica or primary logical connection.
+   */
+  LogicalConnection forRead();
+
+  /**
+   * Get connection for modifying statement. Following reads of the session are routed
+   * to primary during read-your-writes window.
+   *
+   * @return the primary logical connection.
+   */
+  LogicalConnection forWrite();
+
+  /**
+   * Get connections to all shards of the session.
+   *
+   * @return the shard connections, single primary connection when session is not sharded.
+   */
+  List<LogicalConnection> shards();
+
+  /**
+   * Get executor used to run statements on shards in parallel.
+   *
+   * @return the executor for shard statements.
+   */
+  Executor executor();
+}
@@ -1,37 +1,77 @@
 package ua.danit.jpa.sessions;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
 import javax.persistence.Cache;
 import javax.persistence.EntityGraph;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
+import javax.persistence.LockModeType;
+import javax.persistence.NamedNativeQueries;
+import javax.persistence.NamedNativeQuery;
 import javax.persistence.PersistenceException;
 import javax.persistence.PersistenceUnitUtil;
 import javax.persistence.Query;
+import javax.persistence.QueryHint;
 import javax.persistence.SynchronizationType;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.metamodel.Metamodel;
 import javax.sql.DataSource;
 
-import org.apache.commons.dbcp.BasicDataSource;
 import ua.danit.jpa.configuration.JpaProviderProperties;
+import ua.danit.jpa.dialect.Dialect;
+import ua.danit.jpa.dialect.Dialects;
 import ua.danit.jpa.parsing.JpaPersistenceMetaContext;
+import ua.danit.jpa.pool.JpaConnectionPool;
+import ua.danit.jpa.pool.PoolMetrics;
+import ua.danit.jpa.pool.ReplicaDataSource;
+import ua.danit.jpa.query.CompiledQuery;
+import ua.danit.jpa.query.JpqlQuery;
+import ua.danit.jpa.query.NamedQueryDefinition;
+import ua.danit.jpa.query.NativeQuery;
+import ua.danit.jpa.query.QueryCache;
+import ua.danit.jpa.query.SqlTemplate;
+import ua.danit.jpa.types.TypeHandlerRegistry;
 
 /**
- * Basic entity manager factory with DataSource inside.
+ * Basic entity manager factory with connection pool inside.
  *
  * @author Andrey Minov
  */
 public class JpaEntityManagerFactory implements EntityManagerFactory {
+  private static final Pattern SCHEMA_NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
 
   private JpaPersistenceMetaContext metaContext;
   private DataSource dataSource;
+  private ReplicaDataSource replicaDataSource;
+  private List<JpaConnectionPool> shardDataSources;
   private boolean open;
   private Map<String, String> properties;
+  private Dialect dialect;
+  private ConnectionHandlingMode connectionHandlingMode;
+  private volatile ExecutorService flushExecutor;
+  private final Map<String, NamedQueryDefinition> namedQueries = new ConcurrentHashMap<>();
+  private QueryCache<String, SqlTemplate> sqlTemplates;
+  private QueryCache<List<String>, JpqlQuery> jpqlQueries;
 
   /**
    * Instantiates a new entity manager factory.
@@ -40,28 +80,23 @@ public class JpaEntityManagerFactory implements EntityManagerFactory {
    * @param classes    the classes that must be added to persistence context.
    */
   public JpaEntityManagerFactory(Map<String, String> properties, List<String> classes) {
-    String connectionUrl = properties.get(JpaProviderProperties.CONNECTION_URL);
-    String username = properties.get(JpaProviderProperties.USERNAME);
-    String password = properties.get(JpaProviderProperties.PASSWORD);
-    String driverName = properties.get(JpaProviderProperties.DRIVER);
-    BasicDataSource dataSource = new BasicDataSource();
-    dataSource.setUrl(connectionUrl);
-    dataSource.setUsername(username);
-    dataSource.setPassword(password);
-    dataSource.setDriverClassName(driverName);
-    this.dataSource = dataSource;
-    this.metaContext = new JpaPersistenceMetaContext();
-    this.open = true;
-    this.properties = properties;
-    if (classes != null) {
-      for (String clazz : classes) {
-        try {
-          metaContext.register(Class.forName(clazz));
-        } catch (ClassNotFoundException e) {
-          throw new PersistenceException(e);
-        }
-      }
+    try {
+      String shardUrls = properties.get(JpaProviderProperties.SHARD_CONNECTION_URLS);
+      this.shardDataSources = shardUrls == null || shardUrls.trim().isEmpty()
+          ? Collections.emptyList() : JpaConnectionPool.fromUrls(properties, shardUrls, "shard");
+      this.dataSource = shardDataSources.isEmpty() ? JpaConnectionPool.fromProperties(properties)
+          : shardDataSources.get(0);
+      this.replicaDataSource = ReplicaDataSource.fromProperties(properties);
+    } catch (IllegalArgumentException e) {
+      // Pools created before failure already run housekeepers and may be registered in JMX.
+      close();
+      throw new PersistenceException(e);
+    }
+    if (!shardDataSources.isEmpty() && replicaDataSource != null) {
+      close();
+      throw new PersistenceException("Replicas are not supported together with shards!");
     }
+    initialize(properties, classes, JpaEntityManagerFactory.class.getClassLoader());
   }
 
   /**
@@ -70,7 +105,24 @@ public class JpaEntityManagerFactory implements EntityManagerFactory {
    * @param dataSource the data source
    */
   public JpaEntityManagerFactory(DataSource dataSource) {
+    this(dataSource, Collections.emptyMap(), Collections.emptyList(),
+        JpaEntityManagerFactory.class.getClassLoader());
+  }
+
+  /**
+   * Instantiates a new entity manager factory over data source provided by container.
+   * Connection properties are ignored, other provider properties are applied.
+   *
+   * @param dataSource  the data source
+   * @param properties  the provider properties
+   * @param classes     the classes that must be added to persistence context
+   * @param classLoader the class loader used to load entity classes
+   */
+  public JpaEntityManagerFactory(DataSource dataSource, Map<String, String> properties,
+                                 List<String> classes, ClassLoader classLoader) {
     this.dataSource = dataSource;
+    this.shardDataSources = Collections.emptyList();
+    initialize(properties, classes, classLoader);
   }
 
   @Override
@@ -80,11 +132,25 @@ public class JpaEntityManagerFactory implements EntityManagerFactory {
 
   @Override
   public EntityManager createEntityManager(Map map) {
-    try {
-      return new JpaSession(dataSource.getConnection(), metaContext, this);
-    } catch (SQLException e) {
-      throw new PersistenceException("Unable to get connection from pool!", e);
+    String schema = getTenantSchema(map.get(JpaProviderProperties.TENANT_ID));
+    if (shardDataSources.size() > 1) {
+      List<LogicalConnection> shards = new ArrayList<>(shardDataSources.size());
+      for (DataSource shard : shardDataSources) {
+        shards.add(new LogicalConnection(shard, connectionHandlingMode, schema));
+      }
+      return new JpaSession(shards, metaContext, this, dialect);
     }
+    LogicalConnection connection =
+        new LogicalConnection(dataSource, connectionHandlingMode, schema);
+    if (replicaDataSource == null) {
+      return new JpaSession(connection, metaContext, this, dialect);
+    }
+    // Replica is selected per statement, so replica connection is never held between them.
+    LogicalConnection replicaConnection = new LogicalConnection(replicaDataSource,
+        ConnectionHandlingMode.RELEASE_AFTER_TRANSACTION, schema);
+    return new JpaSession(connection, replicaConnection,
+        getIntProperty(JpaProviderProperties.READ_YOUR_WRITES_WINDOW, 1000), metaContext, this,
+        dialect);
   }
 
   @Override
@@ -97,6 +163,21 @@ public class JpaEntityManagerFactory implements EntityManagerFactory {
     throw new UnsupportedOperationException("Current provider is not ready to work with JTA!");
   }
 
+  /**
+   * Create stateless session for bulk operations. Session has own connection and
+   * must be closed after use.
+   *
+   * @return the new stateless session.
+   */
+  public JpaStatelessSession createStatelessSession() {
+    if (shardDataSources.size() > 1) {
+      throw new UnsupportedOperationException("Stateless session is not supported with shards!");
+    }
+    LogicalConnection connection = new LogicalConnection(dataSource, connectionHandlingMode);
+    return new JpaStatelessSession(connection, metaContext,
+        getIntProperty(JpaProviderProperties.BATCH_SIZE, 50));
+  }
+
   @Override
   public CriteriaBuilder getCriteriaBuilder() {
     throw new UnsupportedOperationException("Method is not yet supported");
@@ -114,11 +195,18 @@ public class JpaEntityManagerFactory implements EntityManagerFactory {
 
   @Override
   public void close() {
-    try {
-      open = false;
-      ((BasicDataSource) dataSource).close();
-    } catch (SQLException e) {
-      throw new PersistenceException(e);
+    open = false;
+    if (flushExecutor != null) {
+      flushExecutor.shutdown();
+    }
+    if (dataSource instanceof JpaConnectionPool) {
+      ((JpaConnectionPool) dataSource).close();
+    }
+    if (shardDataSources != null) {
+      shardDataSources.forEach(JpaConnectionPool::close);
+    }
+    if (replicaDataSource != null) {
+      replicaDataSource.close();
     }
   }
 
@@ -139,14 +227,321 @@ public class JpaEntityManagerFactory implements EntityManagerFactory {
 
   @Override
   public void addNamedQuery(String name, Query query) {
-    throw new UnsupportedOperationException("Method is not yet supported");
+    if (!(query instanceof NativeQuery)) {
+      throw new IllegalArgumentException("Query " + query + " is not created by provider!");
+    }
+    NamedQueryDefinition definition = ((NativeQuery<?>) query).toDefinition(name);
+    validate(Collections.singletonList(definition));
+    namedQueries.put(name, definition);
+  }
+
+  /**
+   * Compile native query once, so it is bound into any session without parsing.
+   *
+   * @param <T>         the type of query results
+   * @param sql         the SQL with named parameters
+   * @param resultClass the entity class of query results, null for update queries
+   * @return the compiled query.
+   * @throws IllegalArgumentException when SQL cannot be parsed or result class is not entity.
+   */
+  public <T> CompiledQuery<T> compileQuery(String sql, Class<T> resultClass) {
+    if (resultClass != null) {
+      metaContext.get(resultClass);
+    }
+    return CompiledQuery.of(getSqlTemplate(sql), resultClass);
   }
 
   @Override
   public <T> T unwrap(Class<T> cls) {
+    if (cls.isInstance(this)) {
+      return cls.cast(this);
+    }
+    if (cls.isInstance(dataSource)) {
+      return cls.cast(dataSource);
+    }
+    if (replicaDataSource != null && cls.isInstance(replicaDataSource)) {
+      return cls.cast(replicaDataSource);
+    }
+    if (cls == PoolMetrics.class && dataSource instanceof JpaConnectionPool) {
+      return cls.cast(((JpaConnectionPool) dataSource).getMetrics());
+    }
     return null;
   }
 
+  /**
+   * Get bounded executor used for asynchronous flushes of entity managers. When executor
+   * queue is full flush is executed by calling thread.
+   *
+   * @return the executor for asynchronous flushes.
+   */
+  Executor getFlushExecutor() {
+    if (flushExecutor == null) {
+      synchronized (this) {
+        if (flushExecutor == null) {
+          int threads = getIntProperty(JpaProviderProperties.ASYNC_FLUSH_THREADS,
+              Runtime.getRuntime().availableProcessors());
+          int queueSize = getIntProperty(JpaProviderProperties.ASYNC_FLUSH_QUEUE_SIZE, 256);
+          AtomicInteger counter = new AtomicInteger();
+          ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "jpa-flush-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          };
+          flushExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+              new ArrayBlockingQueue<>(queueSize), threadFactory,
+              new ThreadPoolExecutor.CallerRunsPolicy());
+        }
+      }
+    }
+    return flushExecutor;
+  }
+
+  /**
+   * Get definition of named query.
+   *
+   * @param name the query name
+   * @return the named query definition.
+   * @throws IllegalArgumentException when query with name is not defined.
+   */
+  NamedQueryDefinition getNamedQuery(String name) {
+    NamedQueryDefinition definition = namedQueries.get(name);
+    if (definition == null) {
+      throw new IllegalArgumentException("Named query " + name + " is not defined!");
+    }
+    return definition;
+  }
+
+  /**
+   * Get parsed template of native SQL from factory cache.
+   *
+   * @param sql the SQL with named parameters
+   * @return the parsed template.
+   * @throws IllegalArgumentException when SQL cannot be parsed.
+   */
+  SqlTemplate getSqlTemplate(String sql) {
+    return sqlTemplates.get(sql, SqlTemplate::parse);
+  }
+
+  /**
+   * Get JPQL query translated for tables of schema from bounded cache of translations.
+   *
+   * @param jpql   the JPQL query
+   * @param schema the schema of session tables, null for schema from entity mapping
+   * @return the translated query.
+   * @throws IllegalArgumentException when query is not valid or not supported.
+   */
+  JpqlQuery getJpqlQuery(String jpql, String schema) {
+    return jpqlQueries.get(Arrays.asList(schema, jpql),
+        key -> JpqlQuery.compile(jpql, metaContext, schema));
+  }
+
+  private void initialize(Map<String, String> properties, List<String> classes,
+                          ClassLoader classLoader) {
+    try {
+      this.metaContext = new JpaPersistenceMetaContext(TypeHandlerRegistry
+          .fromProperties(properties, classLoader));
+    } catch (PersistenceException e) {
+      close();
+      throw e;
+    }
+    this.open = true;
+    this.properties = properties;
+    this.dialect = Dialects.resolve(properties.get(JpaProviderProperties.DIALECT),
+        properties.get(JpaProviderProperties.CONNECTION_URL));
+    this.connectionHandlingMode = ConnectionHandlingMode
+        .fromProperty(properties.get(JpaProviderProperties.CONNECTION_HANDLING));
+    int cacheSize = getIntProperty(JpaProviderProperties.QUERY_TEMPLATE_CACHE_SIZE, 256);
+    this.sqlTemplates = new QueryCache<>(cacheSize);
+    this.jpqlQueries = new QueryCache<>(cacheSize);
+    List<Class<?>> entityClasses;
+    try {
+      entityClasses = classes == null ? Collections.emptyList()
+          : metaContext.registerAll(classes, classLoader);
+    } catch (PersistenceException e) {
+      close();
+      throw e;
+    }
+    try {
+      registerNamedQueries(entityClasses);
+    } catch (PersistenceException e) {
+      close();
+      throw e;
+    }
+    if (Boolean.parseBoolean(properties.get(JpaProviderProperties.WARM_UP))) {
+      warmUp(entityClasses);
+    }
+  }
+
+  private void registerNamedQueries(List<Class<?>> entityClasses) {
+    List<NamedQueryDefinition> definitions = new ArrayList<>();
+    for (Class<?> entityClass : entityClasses) {
+      NamedNativeQueries queries = entityClass.getAnnotation(NamedNativeQueries.class);
+      if (queries != null) {
+        for (NamedNativeQuery query : queries.value()) {
+          definitions.add(parseNamedQuery(query));
+        }
+      }
+      NamedNativeQuery query = entityClass.getAnnotation(NamedNativeQuery.class);
+      if (query != null) {
+        definitions.add(parseNamedQuery(query));
+      }
+    }
+    for (NamedQueryDefinition definition : definitions) {
+      if (namedQueries.putIfAbsent(definition.getName(), definition) != null) {
+        throw new PersistenceException("Named query " + definition.getName()
+                                       + " is defined more than once!");
+      }
+    }
+    validate(definitions);
+  }
+
+  private NamedQueryDefinition parseNamedQuery(NamedNativeQuery query) {
+    if (!query.resultSetMapping().isEmpty()) {
+      throw new PersistenceException("Result set mapping of named query " + query.name()
+                                     + " is not supported!");
+    }
+    Class<?> resultClass = query.resultClass() == void.class ? null : query.resultClass();
+    try {
+      if (resultClass != null) {
+        metaContext.get(resultClass);
+      }
+      Map<String, Object> hints = new HashMap<>();
+      for (QueryHint hint : query.hints()) {
+        hints.put(hint.name(), hint.value());
+      }
+      return new NamedQueryDefinition(query.name(), SqlTemplate.parse(query.query()),
+          resultClass, hints, LockModeType.NONE, Integer.MAX_VALUE, 0);
+    } catch (IllegalArgumentException e) {
+      throw new PersistenceException("Named query " + query.name() + " is invalid!", e);
+    }
+  }
+
+  /**
+   * Prepare SQL of named queries, so errors in them are reported on registration. By default
+   * errors are logged, as tables and tenant schemas may be created after factory, with
+   * {@link JpaProviderProperties#NAMED_QUERY_VALIDATION} set to true they fail registration.
+   */
+  private void validate(List<NamedQueryDefinition> definitions) {
+    if (definitions.isEmpty()) {
+      return;
+    }
+    boolean strict = Boolean.parseBoolean(
+        properties.get(JpaProviderProperties.NAMED_QUERY_VALIDATION));
+    try (Connection connection = dataSource.getConnection()) {
+      for (NamedQueryDefinition definition : definitions) {
+        try (PreparedStatement ignored = connection
+            .prepareStatement(definition.getTemplate().getSql())) {
+          Logger.getGlobal().log(Level.FINE, () -> "Named query " + definition + " is valid");
+        } catch (SQLException e) {
+          if (strict) {
+            throw new PersistenceException("Named query " + definition.getName()
+                                           + " is invalid!", e);
+          }
+          Logger.getGlobal().log(Level.WARNING,
+              () -> "Named query " + definition.getName() + " is invalid: " + e.getMessage());
+        }
+      }
+    } catch (SQLException e) {
+      if (strict) {
+        throw new PersistenceException("Unable to validate named queries!", e);
+      }
+      Logger.getGlobal().log(Level.WARNING,
+          () -> "Unable to validate named queries on " + dataSource + ": " + e.getMessage());
+    }
+  }
+
+  private void warmUp(List<Class<?>> entityClasses) {
+    final long start = System.nanoTime();
+    List<JpaConnectionPool> pools = new ArrayList<>(shardDataSources);
+    if (pools.isEmpty() && dataSource instanceof JpaConnectionPool) {
+      pools.add((JpaConnectionPool) dataSource);
+    }
+    if (replicaDataSource != null) {
+      pools.addAll(replicaDataSource.getReplicas());
+    }
+    int threads = 0;
+    for (JpaConnectionPool pool : pools) {
+      threads = Math.max(threads, pool.getMinIdle());
+    }
+    if (threads == 0) {
+      return;
+    }
+    // Connections are opened on short-lived threads, so flush executor is not created for it.
+    AtomicInteger counter = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+      Thread thread = new Thread(runnable, "jpa-warm-up-" + counter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    int connections = 0;
+    int statements = 0;
+    try {
+      for (JpaConnectionPool pool : pools) {
+        connections += pool.warmUp(executor);
+        if (pool.getStatementCacheSize() > 0) {
+          statements += prepare(pool, entityClasses);
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+    long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    int opened = connections;
+    int prepared = statements;
+    Logger.getGlobal().log(Level.INFO, () -> String.format(
+        "Warm-up finished in %d ms: %d connections opened, %d statements prepared", millis,
+        opened, prepared));
+  }
+
+  /**
+   * Prepare generated statements of entities on every idle connection of the pool. All idle
+   * connections are borrowed at once, so each of them caches the statements.
+   */
+  private int prepare(JpaConnectionPool pool, List<Class<?>> entityClasses) {
+    List<Connection> connections = new ArrayList<>();
+    int prepared = 0;
+    try {
+      for (int i = pool.getIdleConnections(); i > 0; i--) {
+        connections.add(pool.getConnection());
+      }
+      for (Connection connection : connections) {
+        for (Class<?> entityClass : entityClasses) {
+          prepared += metaContext.getPlan(entityClass).prepare(connection);
+        }
+      }
+    } catch (SQLException e) {
+      Logger.getGlobal().log(Level.WARNING, e,
+          () -> "Unable to prepare statements on warm-up of " + pool);
+    } finally {
+      for (Connection connection : connections) {
+        try {
+          connection.close();
+        } catch (SQLException e) {
+          Logger.getGlobal().log(Level.WARNING, e, () -> "Unable to release connection!");
+        }
+      }
+    }
+    return prepared;
+  }
+
+  private String getTenantSchema(Object tenantId) {
+    if (tenantId == null) {
+      return null;
+    }
+    String format = properties.getOrDefault(JpaProviderProperties.TENANT_SCHEMA_FORMAT, "%s");
+    String schema = String.format(format, tenantId);
+    // Schema name is written into SQL as is, so only plain identifiers are allowed.
+    if (!SCHEMA_NAME.matcher(schema).matches()) {
+      throw new IllegalArgumentException("Illegal tenant schema name: " + schema);
+    }
+    return schema;
+  }
+
+  private int getIntProperty(String name, int defaultValue) {
+    String value = properties.get(name);
+    return value == null || value.isEmpty() ? defaultValue : Integer.parseInt(value);
+  }
+
   @Override
   public <T> void addNamedEntityGraph(String graphName, EntityGraph<T> entityGraph) {
 
@@ -4,12 +4,19 @@ import static ua.danit.jpa.parsing.executions.SelectExecution.fromMeta;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.persistence.EntityExistsException;
@@ -19,6 +26,7 @@ import javax.persistence.EntityManagerFactory;
 import javax.persistence.EntityNotFoundException;
 import javax.persistence.EntityTransaction;
 import javax.persistence.FlushModeType;
+import javax.persistence.GenerationType;
 import javax.persistence.LockModeType;
 import javax.persistence.PersistenceException;
 import javax.persistence.Query;
@@ -32,15 +40,24 @@ import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.CriteriaUpdate;
 import javax.persistence.metamodel.Metamodel;
 
-import ua.danit.jpa.entity.ColumnMeta;
+import ua.danit.jpa.configuration.JpaProviderProperties;
+import ua.danit.jpa.dialect.Dialect;
+import ua.danit.jpa.dialect.StandardDialect;
 import ua.danit.jpa.entity.EntityMeta;
+import ua.danit.jpa.entity.IdMeta;
 import ua.danit.jpa.parsing.JpaPersistenceMetaContext;
-import ua.danit.jpa.parsing.executions.DeleteExecution;
-import ua.danit.jpa.parsing.executions.InsertExecution;
+import ua.danit.jpa.parsing.executions.ExecutionPlan;
 import ua.danit.jpa.parsing.executions.JpaExecution;
+import ua.danit.jpa.parsing.executions.LockExecution;
 import ua.danit.jpa.parsing.executions.RefreshExecution;
+import ua.danit.jpa.parsing.executions.SelectExecution;
 import ua.danit.jpa.parsing.executions.UpdateExecution;
+import ua.danit.jpa.query.CompiledQuery;
+import ua.danit.jpa.query.JpqlQuery;
+import ua.danit.jpa.query.NamedQueryDefinition;
 import ua.danit.jpa.query.NativeQuery;
+import ua.danit.jpa.query.RowMapper;
+import ua.danit.jpa.query.SqlTemplate;
 
 /**
  * Basic implementation for JPA entity manager.
@@ -48,16 +65,26 @@ import ua.danit.jpa.query.NativeQuery;
  * @author Andrey Minov
  */
 public class JpaSession implements EntityManager {
-  private Connection connection;
+  private LogicalConnection connection;
   private JpaPersistenceMetaContext metaContext;
   private Map<Object, Object> context;
   private Queue<ExecutionEntry> pendingExecution;
   private FlushModeType flushModeType;
   private boolean open;
   private EntityManagerFactory entityManagerFactory;
+  private Dialect dialect;
+  private Map<Object, LockModeType> lockModes;
+  private Map<String, Object> properties;
+  private ConnectionTransaction transaction;
+  private LogicalConnection replicaConnection;
+  private long readYourWritesWindow;
+  private long lastWriteTime;
+  private ConnectionRouter router;
+  private List<LogicalConnection> shards;
+  private final List<NativeQuery<?>> reusableQueries = new ArrayList<>();
 
   /**
-   * Instantiates a new Jpa session.
+   * Instantiates a new Jpa session with standard SQL dialect.
    *
    * @param connection           the JDBC connection
    * @param metaContext          the meta context for entries
@@ -65,25 +92,104 @@ public class JpaSession implements EntityManager {
    */
   public JpaSession(Connection connection, JpaPersistenceMetaContext metaContext,
                     EntityManagerFactory entityManagerFactory) {
-    this.connection = connection;
+    this(connection, metaContext, entityManagerFactory, new StandardDialect());
+  }
+
+  /**
+   * Instantiates a new Jpa session.
+   *
+   * @param connection           the JDBC connection
+   * @param metaContext          the meta context for entries
+   * @param entityManagerFactory the entity manager factory created this session.
+   * @param dialect              the SQL dialect used to render locks.
+   */
+  public JpaSession(Connection connection, JpaPersistenceMetaContext metaContext,
+                    EntityManagerFactory entityManagerFactory, Dialect dialect) {
+    this(new LogicalConnection(connection), metaContext, entityManagerFactory, dialect);
+  }
+
+  /**
+   * Instantiates a new Jpa session over logical connection.
+   *
+   * @param connection           the logical connection acquiring JDBC connections on demand
+   * @param metaContext          the meta context for entries
+   * @param entityManagerFactory the entity manager factory created this session.
+   * @param dialect              the SQL dialect used to render locks.
+   */
+  public JpaSession(LogicalConnection connection, JpaPersistenceMetaContext metaContext,
+                    EntityManagerFactory entityManagerFactory, Dialect dialect) {
+    this(connection, null, 0, metaContext, entityManagerFactory, dialect);
+  }
+
+  /**
+   * Instantiates a new Jpa session routing reads to replicas.
+   *
+   * @param connection           the primary logical connection
+   * @param replicaConnection    the logical connection to read replicas, may be null
+   * @param readYourWritesWindow the time in milliseconds after write when reads use primary
+   * @param metaContext          the meta context for entries
+   * @param entityManagerFactory the entity manager factory created this session.
+   * @param dialect              the SQL dialect used to render locks.
+   */
+  public JpaSession(LogicalConnection connection, LogicalConnection replicaConnection,
+                    long readYourWritesWindow, JpaPersistenceMetaContext metaContext,
+                    EntityManagerFactory entityManagerFactory, Dialect dialect) {
+    this(Collections.singletonList(connection), replicaConnection, readYourWritesWindow,
+        metaContext, entityManagerFactory, dialect);
+  }
+
+  /**
+   * Instantiates a new Jpa session over shards. Entities are routed to shard by hash of
+   * primary key, native queries are executed on all shards.
+   *
+   * @param shards               the logical connections to shards
+   * @param metaContext          the meta context for entries
+   * @param entityManagerFactory the entity manager factory created this session.
+   * @param dialect              the SQL dialect used to render locks.
+   */
+  public JpaSession(List<LogicalConnection> shards, JpaPersistenceMetaContext metaContext,
+                    EntityManagerFactory entityManagerFactory, Dialect dialect) {
+    this(shards, null, 0, metaContext, entityManagerFactory, dialect);
+  }
+
+  private JpaSession(List<LogicalConnection> shards, LogicalConnection replicaConnection,
+                     long readYourWritesWindow, JpaPersistenceMetaContext metaContext,
+                     EntityManagerFactory entityManagerFactory, Dialect dialect) {
+    if (shards.isEmpty()) {
+      throw new IllegalArgumentException("At least one connection must be provided!");
+    }
+    this.shards = Collections.unmodifiableList(new ArrayList<>(shards));
+    this.connection = shards.get(0);
+    this.replicaConnection = replicaConnection;
+    this.readYourWritesWindow = readYourWritesWindow;
+    this.router = new SessionConnectionRouter();
     this.metaContext = metaContext;
     this.entityManagerFactory = entityManagerFactory;
+    this.dialect = dialect;
     this.pendingExecution = new LinkedList<>();
     this.context = new HashMap<>();
+    this.lockModes = new HashMap<>();
+    this.properties = new HashMap<>();
     this.flushModeType = FlushModeType.AUTO;
+    this.transaction = new ConnectionTransaction();
     this.open = true;
   }
 
   @Override
   public void persist(Object entity) {
     checkOpen();
-    EntityMeta meta = metaContext.get(entity.getClass());
+    checkWritable();
+    EntityMeta meta = getMeta(entity.getClass());
+    if (shards.size() > 1 && meta.getId().getGenerationType() == GenerationType.IDENTITY) {
+      throw new PersistenceException(
+          "Entity with identity generated id cannot be persisted to shards!");
+    }
     Object key = getPrimaryKey(meta, entity);
     if (context.containsKey(key)) {
       throw new EntityExistsException("Entity already exists in persistence context!");
     }
     context.put(key, entity);
-    pendingExecution.offer(ExecutionEntry.create(InsertExecution.fromMeta(meta), entity));
+    pendingExecution.offer(ExecutionEntry.create(getPlan(entity).getInsert(), entity));
     if (flushModeType == FlushModeType.AUTO) {
       flush();
     }
@@ -93,12 +199,13 @@ public class JpaSession implements EntityManager {
   @Override
   public <T> T merge(T entity) {
     checkOpen();
-    EntityMeta meta = metaContext.get(entity.getClass());
+    checkWritable();
+    EntityMeta meta = getMeta(entity.getClass());
     T prev = (T) context.put(getPrimaryKey(meta, entity), entity);
     if (prev == null) {
-      pendingExecution.offer(ExecutionEntry.create(InsertExecution.fromMeta(meta), entity));
+      pendingExecution.offer(ExecutionEntry.create(getPlan(entity).getInsert(), entity));
     } else {
-      pendingExecution.offer(ExecutionEntry.create(UpdateExecution.fromMeta(meta), entity));
+      pendingExecution.offer(ExecutionEntry.create(getPlan(entity).getUpdate(), entity));
     }
     if (flushModeType == FlushModeType.AUTO) {
       flush();
@@ -109,9 +216,12 @@ public class JpaSession implements EntityManager {
   @Override
   public void remove(Object entity) {
     checkOpen();
-    EntityMeta meta = metaContext.get(entity.getClass());
-    context.remove(getPrimaryKey(meta, entity));
-    pendingExecution.offer(ExecutionEntry.create(DeleteExecution.fromMeta(meta), entity));
+    checkWritable();
+    EntityMeta meta = getMeta(entity.getClass());
+    Object key = getPrimaryKey(meta, entity);
+    context.remove(key);
+    lockModes.remove(key);
+    pendingExecution.offer(ExecutionEntry.create(getPlan(entity).getDelete(), entity));
     if (flushModeType == FlushModeType.AUTO) {
       flush();
     }
@@ -120,12 +230,12 @@ public class JpaSession implements EntityManager {
   @Override
   public void refresh(Object entity) {
     checkOpen();
-    EntityMeta meta = metaContext.get(entity.getClass());
+    EntityMeta meta = getMeta(entity.getClass());
     if (!context.containsKey(getPrimaryKey(meta, entity))) {
       throw new EntityNotFoundException(
           "Entity " + entity + " is not found in persistence context!");
     }
-    pendingExecution.offer(ExecutionEntry.create(RefreshExecution.fromMeta(meta), entity));
+    pendingExecution.offer(ExecutionEntry.create(getPlan(entity).getRefresh(), entity));
     if (flushModeType == FlushModeType.AUTO) {
       flush();
     }
@@ -138,20 +248,38 @@ public class JpaSession implements EntityManager {
 
   @Override
   public void refresh(Object entity, LockModeType lockMode) {
-    throw new UnsupportedOperationException("This method is not supported!");
+    refresh(entity, lockMode, Collections.emptyMap());
   }
 
   @Override
   public void refresh(Object entity, LockModeType lockMode, Map<String, Object> properties) {
-    throw new UnsupportedOperationException("This method is not supported!");
+    if (!Dialect.isPessimistic(lockMode)) {
+      refresh(entity);
+      return;
+    }
+    checkOpen();
+    checkTransaction();
+    EntityMeta meta = getMeta(entity.getClass());
+    Object key = getPrimaryKey(meta, entity);
+    if (!context.containsKey(key)) {
+      throw new EntityNotFoundException(
+          "Entity " + entity + " is not found in persistence context!");
+    }
+    flush();
+    execute(shardFor(key), RefreshExecution.fromMeta(meta, getLockClause(lockMode, properties)),
+        entity);
+    lockModes.put(key, lockMode);
   }
 
   @SuppressWarnings("unchecked")
   @Override
   public <T> T find(Class<T> entityClass, Object primaryKey) {
     checkOpen();
-    EntityMeta meta = metaContext.get(entityClass);
-    return (T) context.computeIfAbsent(primaryKey, pk -> fromMeta(meta).execute(connection, pk));
+    Object key = getMeta(entityClass).getId().toKey(primaryKey);
+    JpaExecution<Object> select =
+        metaContext.getPlan(entityClass, connection.getSchema()).getSelect();
+    LogicalConnection target = shards.size() > 1 ? shardFor(key) : router.forRead();
+    return (T) context.computeIfAbsent(key, pk -> execute(target, select, pk));
   }
 
   @Override
@@ -161,13 +289,89 @@ public class JpaSession implements EntityManager {
 
   @Override
   public <T> T find(Class<T> entityClass, Object primaryKey, LockModeType lockMode) {
-    throw new UnsupportedOperationException("This method is not supported!");
+    return find(entityClass, primaryKey, lockMode, Collections.emptyMap());
   }
 
+  @SuppressWarnings("unchecked")
   @Override
   public <T> T find(Class<T> entityClass, Object primaryKey, LockModeType lockMode,
                     Map<String, Object> properties) {
-    throw new UnsupportedOperationException("This method is not supported!");
+    if (lockMode == LockModeType.NONE) {
+      return find(entityClass, primaryKey);
+    }
+    checkOpen();
+    checkTransaction();
+    EntityMeta meta = getMeta(entityClass);
+    Object primaryKeyValue = meta.getId().toKey(primaryKey);
+    T entity = (T) context.get(primaryKeyValue);
+    if (entity != null || !Dialect.isPessimistic(lockMode)) {
+      entity = entity != null ? entity : find(entityClass, primaryKeyValue);
+      if (entity != null) {
+        lock(entity, lockMode, properties);
+      }
+      return entity;
+    }
+    flush();
+    entity = (T) execute(shardFor(primaryKeyValue),
+        fromMeta(meta, getLockClause(lockMode, properties)), primaryKeyValue);
+    if (entity != null) {
+      Object key = getPrimaryKey(meta, entity);
+      context.put(key, entity);
+      lockModes.put(key, lockMode);
+      if (lockMode == LockModeType.PESSIMISTIC_FORCE_INCREMENT) {
+        execute(shardFor(key), LockExecution.fromMeta(meta, lockMode, ""), entity);
+      }
+    }
+    return entity;
+  }
+
+  /**
+   * Find entities by primary keys. Entities of persistence context are returned as is, all
+   * others are selected together with single statement per shard and added to persistence
+   * context.
+   *
+   * @param <T>         the entity type
+   * @param entityClass the entity class
+   * @param primaryKeys the primary keys, for composite id instances of id class or entity keys
+   * @return the found entities in order of primary keys, entities not found are missing.
+   * @throws IllegalArgumentException when primary key does not match entity id.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> List<T> findAll(Class<T> entityClass, Collection<?> primaryKeys) {
+    checkOpen();
+    IdMeta id = getMeta(entityClass).getId();
+    List<Object> keys = new ArrayList<>(primaryKeys.size());
+    Map<LogicalConnection, List<Object>> missingByShard = new LinkedHashMap<>();
+    LogicalConnection readTarget = shards.size() > 1 ? null : router.forRead();
+    for (Object primaryKey : primaryKeys) {
+      Object key = id.toKey(primaryKey);
+      keys.add(key);
+      if (!context.containsKey(key)) {
+        LogicalConnection target = readTarget != null ? readTarget : shardFor(key);
+        missingByShard.computeIfAbsent(target, t -> new ArrayList<>()).add(key);
+      }
+    }
+    SelectExecution select = metaContext.getPlan(entityClass, connection.getSchema())
+                                        .getSelect();
+    for (Map.Entry<LogicalConnection, List<Object>> entry : missingByShard.entrySet()) {
+      List<Object> found;
+      try {
+        found = select.executeAll(entry.getKey().acquire(), entry.getValue());
+      } finally {
+        entry.getKey().afterStatement();
+      }
+      for (Object entity : found) {
+        context.putIfAbsent(id.getKey(entity), entity);
+      }
+    }
+    List<T> entities = new ArrayList<>(keys.size());
+    for (Object key : keys) {
+      Object entity = context.get(key);
+      if (entity != null) {
+        entities.add((T) entity);
+      }
+    }
+    return entities;
   }
 
   @Override
@@ -178,13 +382,65 @@ public class JpaSession implements EntityManager {
   @Override
   public void flush() {
     checkOpen();
-    if (connection != null) {
-      ExecutionEntry entry;
-      while ((entry = pendingExecution.poll()) != null) {
-        entry.getExecution().execute(connection, entry.getEntry());
+    if (pendingExecution.isEmpty()) {
+      shards.forEach(LogicalConnection::await);
+      return;
+    }
+    List<ExecutionEntry> entries = drainPendingExecution();
+    router.forWrite();
+    try {
+      for (ExecutionEntry entry : entries) {
+        LogicalConnection target = connectionFor(entry.getEntry());
+        entry.getExecution().execute(target.acquire(), entry.getEntry());
       }
+    } finally {
+      shards.forEach(LogicalConnection::afterStatement);
     }
-    context.clear();
+  }
+
+  /**
+   * Flush pending changes asynchronously on factory flush executor.
+   *
+   * @return the future completed when pending changes are written to database.
+   * @see #flushAsync(Executor)
+   */
+  public CompletableFuture<Void> flushAsync() {
+    return flushAsync(getExecutor());
+  }
+
+  /**
+   * Flush pending changes asynchronously. Changes made after this call are queued behind
+   * flushed ones, any other database access of this entity manager including commit
+   * waits until flush is completed. Flushed entities must not be modified until then.
+   *
+   * @param executor the executor to write changes on
+   * @return the future completed when pending changes are written to database.
+   */
+  public CompletableFuture<Void> flushAsync(Executor executor) {
+    checkOpen();
+    List<ExecutionEntry> entries = drainPendingExecution();
+    if (!entries.isEmpty()) {
+      router.forWrite();
+    }
+    Map<LogicalConnection, List<ExecutionEntry>> entriesByShard = new LinkedHashMap<>();
+    for (ExecutionEntry entry : entries) {
+      entriesByShard.computeIfAbsent(connectionFor(entry.getEntry()), c -> new ArrayList<>())
+                    .add(entry);
+    }
+    if (entriesByShard.isEmpty()) {
+      entriesByShard.put(connection, Collections.emptyList());
+    }
+    List<CompletableFuture<Void>> futures = new ArrayList<>(entriesByShard.size());
+    for (Map.Entry<LogicalConnection, List<ExecutionEntry>> shardEntries : entriesByShard
+        .entrySet()) {
+      Consumer<Connection> work = jdbcConnection -> {
+        for (ExecutionEntry entry : shardEntries.getValue()) {
+          entry.getExecution().execute(jdbcConnection, entry.getEntry());
+        }
+      };
+      futures.add(shardEntries.getKey().submit(work, executor));
+    }
+    return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
   }
 
   @Override
@@ -199,52 +455,75 @@ public class JpaSession implements EntityManager {
 
   @Override
   public void lock(Object entity, LockModeType lockMode) {
-    throw new UnsupportedOperationException("This method is not supported!");
+    lock(entity, lockMode, Collections.emptyMap());
   }
 
   @Override
   public void lock(Object entity, LockModeType lockMode, Map<String, Object> properties) {
-    throw new UnsupportedOperationException("This method is not supported!");
+    checkOpen();
+    checkTransaction();
+    EntityMeta meta = getMeta(entity.getClass());
+    Object key = getPrimaryKey(meta, entity);
+    if (!context.containsKey(key)) {
+      throw new IllegalArgumentException("Entity " + entity + " is not managed!");
+    }
+    if (lockMode == LockModeType.NONE) {
+      return;
+    }
+    flush();
+    execute(shardFor(key),
+        LockExecution.fromMeta(meta, lockMode, getLockClause(lockMode, properties)), entity);
+    lockModes.put(key, lockMode);
   }
 
   @Override
   public void clear() {
     context.clear();
+    lockModes.clear();
     pendingExecution.clear();
   }
 
   @Override
   public void detach(Object entity) {
     checkOpen();
-    EntityMeta meta = metaContext.get(entity.getClass());
-    context.remove(getPrimaryKey(meta, entity));
+    EntityMeta meta = getMeta(entity.getClass());
+    Object key = getPrimaryKey(meta, entity);
+    context.remove(key);
+    lockModes.remove(key);
   }
 
   @Override
   public boolean contains(Object entity) {
     checkOpen();
-    EntityMeta meta = metaContext.get(entity.getClass());
+    EntityMeta meta = getMeta(entity.getClass());
     return context.containsKey(getPrimaryKey(meta, entity));
   }
 
   @Override
   public LockModeType getLockMode(Object entity) {
-    throw new UnsupportedOperationException("This method is not supported!");
+    checkOpen();
+    checkTransaction();
+    EntityMeta meta = getMeta(entity.getClass());
+    Object key = getPrimaryKey(meta, entity);
+    if (!context.containsKey(key)) {
+      throw new IllegalArgumentException("Entity " + entity + " is not managed!");
+    }
+    return lockModes.getOrDefault(key, LockModeType.NONE);
   }
 
   @Override
   public void setProperty(String propertyName, Object value) {
-
+    properties.put(propertyName, value);
   }
 
   @Override
   public Map<String, Object> getProperties() {
-    return Collections.emptyMap();
+    return new HashMap<>(properties);
   }
 
   @Override
   public Query createQuery(String qlString) {
-    throw new UnsupportedOperationException("This method is not supported!");
+    return createQuery(qlString, getJpqlQuery(qlString).getResultClass());
   }
 
   @Override
@@ -262,31 +541,71 @@ public class JpaSession implements EntityManager {
     throw new UnsupportedOperationException("This method is not supported!");
   }
 
+  @SuppressWarnings("unchecked")
   @Override
   public <T> TypedQuery<T> createQuery(String qlString, Class<T> resultClass) {
-    throw new UnsupportedOperationException("This method is not supported!");
+    checkOpen();
+    JpqlQuery query = getJpqlQuery(qlString);
+    if (resultClass != null) {
+      query.checkResultClass(resultClass);
+    }
+    if (query.isSelect() && query.getEntityMeta() == null && router.shards().size() > 1) {
+      throw new IllegalArgumentException("Results of query " + qlString
+                                         + " cannot be merged from shards!");
+    }
+    return nativeQuery(query.getTemplate(), resultClass, query.getEntityMeta(),
+        (RowMapper<T>) query.getRowMapper(), false);
+  }
+
+  /**
+   * Bind compiled query into session. Returned query keeps its statement prepared between
+   * executions, so it is executed many times with parameters cleared in between. Query must
+   * be closed after use, otherwise it is closed together with session.
+   *
+   * @param <T>   the type of query results
+   * @param query the compiled query
+   * @return the reusable query bound to session.
+   */
+  public <T> NativeQuery<T> createQuery(CompiledQuery<T> query) {
+    checkOpen();
+    NativeQuery<T> nativeQuery = nativeQuery(query.getTemplate(), query.getResultClass(), true);
+    reusableQueries.add(nativeQuery);
+    return nativeQuery;
   }
 
   @Override
   public Query createNamedQuery(String name) {
-    throw new UnsupportedOperationException("This method is not supported!");
+    return createNamedQuery(name, getNamedQuery(name).getResultClass());
   }
 
+  @SuppressWarnings("unchecked")
   @Override
   public <T> TypedQuery<T> createNamedQuery(String name, Class<T> resultClass) {
-    throw new UnsupportedOperationException("This method is not supported!");
+    checkOpen();
+    NamedQueryDefinition definition = getNamedQuery(name);
+    if (resultClass != definition.getResultClass()) {
+      throw new IllegalArgumentException("Named query " + name + " has no results of "
+                                         + resultClass + "!");
+    }
+    TypedQuery<T> query = nativeQuery(definition.getTemplate(), resultClass, false)
+        .setMaxResults(definition.getMaxResults())
+        .setFirstResult(definition.getFirstResult());
+    definition.getHints().forEach(query::setHint);
+    if (definition.getLockMode() != LockModeType.NONE) {
+      query.setLockMode(definition.getLockMode());
+    }
+    return query;
   }
 
   @Override
   public Query createNativeQuery(String sqlString) {
-    checkOpen();
-    return new NativeQuery(connection, sqlString, null, flushModeType);
+    return nativeQuery(getSqlTemplate(sqlString), null, false);
   }
 
+  @SuppressWarnings("unchecked")
   @Override
   public Query createNativeQuery(String sqlString, Class resultClass) {
-    checkOpen();
-    return new NativeQuery(connection, sqlString, metaContext.get(resultClass), flushModeType);
+    return nativeQuery(getSqlTemplate(sqlString), (Class<Object>) resultClass, false);
   }
 
   @Override
@@ -330,7 +649,10 @@ public class JpaSession implements EntityManager {
   @Override
   public <T> T unwrap(Class<T> cls) {
     if (cls.isAssignableFrom(Connection.class)) {
-      return (T) connection;
+      return (T) connection.acquire();
+    }
+    if (cls.isInstance(this)) {
+      return (T) this;
     }
     return null;
   }
@@ -343,13 +665,18 @@ public class JpaSession implements EntityManager {
   @Override
   public void close() {
     flush();
+    reusableQueries.forEach(NativeQuery::close);
+    reusableQueries.clear();
 
-    if (connection != null) {
-      try {
-        connection.close();
-      } catch (SQLException e) {
-        throw new PersistenceException("Unable to close connection:" + e, e);
+    try {
+      for (LogicalConnection shard : shards) {
+        shard.close();
+      }
+      if (replicaConnection != null) {
+        replicaConnection.close();
       }
+    } catch (SQLException e) {
+      throw new PersistenceException("Unable to close connection:" + e, e);
     }
     this.open = false;
   }
@@ -361,7 +688,7 @@ public class JpaSession implements EntityManager {
 
   @Override
   public EntityTransaction getTransaction() {
-    return new ConnectionTransaction();
+    return transaction;
   }
 
   @Override
@@ -400,20 +727,147 @@ public class JpaSession implements EntityManager {
   }
 
   private Object getPrimaryKey(EntityMeta meta, Object entity) {
-    ColumnMeta idColumn = meta.getId().getColumns().get(0);
     try {
-      return idColumn.getGetter().invoke(entity);
+      return meta.getId().getKey(entity);
     } catch (Exception e) {
       throw new PersistenceException("Unable to get entity id!", e);
     }
   }
 
+  private ExecutionPlan getPlan(Object entity) {
+    return metaContext.getPlan(entity.getClass(), connection.getSchema());
+  }
+
+  private <T> NativeQuery<T> nativeQuery(SqlTemplate template, Class<T> resultClass,
+                                         boolean reusable) {
+    return nativeQuery(template, resultClass, resultClass == null ? null : getMeta(resultClass),
+        null, reusable);
+  }
+
+  private <T> NativeQuery<T> nativeQuery(SqlTemplate template, Class<T> resultClass,
+                                         EntityMeta entityMeta, RowMapper<T> rowMapper,
+                                         boolean reusable) {
+    checkOpen();
+    NativeQuery<T> query = new NativeQuery<>(router, template, resultClass, entityMeta,
+        rowMapper, flushModeType, dialect, metaContext.getTypeHandlers(), reusable);
+    query.setHint(JpaProviderProperties.LOCK_TIMEOUT, getLockTimeout(Collections.emptyMap()));
+    Object batchSize = getProperty(JpaProviderProperties.BATCH_SIZE);
+    if (batchSize != null) {
+      query.setHint(JpaProviderProperties.BATCH_SIZE, batchSize);
+    }
+    return query;
+  }
+
+  private SqlTemplate getSqlTemplate(String sql) {
+    return entityManagerFactory instanceof JpaEntityManagerFactory
+        ? ((JpaEntityManagerFactory) entityManagerFactory).getSqlTemplate(sql)
+        : SqlTemplate.parse(sql);
+  }
+
+  private JpqlQuery getJpqlQuery(String jpql) {
+    return entityManagerFactory instanceof JpaEntityManagerFactory
+        ? ((JpaEntityManagerFactory) entityManagerFactory)
+            .getJpqlQuery(jpql, connection.getSchema())
+        : JpqlQuery.compile(jpql, metaContext, connection.getSchema());
+  }
+
+  private NamedQueryDefinition getNamedQuery(String name) {
+    if (!(entityManagerFactory instanceof JpaEntityManagerFactory)) {
+      throw new IllegalArgumentException("Named query " + name + " is not defined!");
+    }
+    return ((JpaEntityManagerFactory) entityManagerFactory).getNamedQuery(name);
+  }
+
+  private EntityMeta getMeta(Class<?> entityClass) {
+    return metaContext.get(entityClass, connection.getSchema());
+  }
+
   private void checkOpen() {
     if (!open) {
       throw new PersistenceException("Entity manager is closed!");
     }
   }
 
+  private List<ExecutionEntry> drainPendingExecution() {
+    List<ExecutionEntry> entries = new ArrayList<>(pendingExecution.size());
+    ExecutionEntry entry;
+    while ((entry = pendingExecution.poll()) != null) {
+      ExecutionEntry last = entries.isEmpty() ? null : entries.get(entries.size() - 1);
+      // Update writes current entity state, so repeated update of same entity is redundant.
+      if (last != null && last.getEntry() == entry.getEntry()
+          && last.getExecution() instanceof UpdateExecution
+          && entry.getExecution() instanceof UpdateExecution) {
+        continue;
+      }
+      entries.add(entry);
+    }
+    return entries;
+  }
+
+  private LogicalConnection shardFor(Object primaryKey) {
+    return shards.size() == 1 ? connection
+        : shards.get(ShardResolver.shardOf(primaryKey, shards.size()));
+  }
+
+  private LogicalConnection connectionFor(Object entity) {
+    return shards.size() == 1 ? connection
+        : shardFor(getPrimaryKey(getMeta(entity.getClass()), entity));
+  }
+
+  private Executor getExecutor() {
+    return entityManagerFactory instanceof JpaEntityManagerFactory
+        ? ((JpaEntityManagerFactory) entityManagerFactory).getFlushExecutor()
+        : ForkJoinPool.commonPool();
+  }
+
+  private <R> R execute(LogicalConnection target, JpaExecution<R> execution, Object entity) {
+    try {
+      return execution.execute(target.acquire(), entity);
+    } finally {
+      target.afterStatement();
+    }
+  }
+
+  private void checkWritable() {
+    if (transaction.isActive() && transaction.isReadOnly()) {
+      throw new PersistenceException("Entity cannot be changed in read-only transaction!");
+    }
+  }
+
+  private boolean isReadOnlyRequested() {
+    Object readOnly = properties.get(JpaProviderProperties.READ_ONLY);
+    if (readOnly == null && entityManagerFactory != null) {
+      readOnly = entityManagerFactory.getProperties().get(JpaProviderProperties.READ_ONLY);
+    }
+    return readOnly != null && Boolean.parseBoolean(readOnly.toString());
+  }
+
+  private void checkTransaction() {
+    if (!transaction.isActive()) {
+      throw new TransactionRequiredException("Lock operations require active transaction!");
+    }
+  }
+
+  private String getLockClause(LockModeType lockMode, Map<String, Object> properties) {
+    return dialect.getLockClause(lockMode, getLockTimeout(properties));
+  }
+
+  private int getLockTimeout(Map<String, Object> properties) {
+    Object timeout = properties.get(JpaProviderProperties.LOCK_TIMEOUT);
+    if (timeout == null) {
+      timeout = getProperty(JpaProviderProperties.LOCK_TIMEOUT);
+    }
+    return timeout == null ? Dialect.WAIT_FOREVER : Integer.parseInt(timeout.toString());
+  }
+
+  private Object getProperty(String name) {
+    Object value = properties.get(name);
+    if (value == null && entityManagerFactory != null) {
+      value = entityManagerFactory.getProperties().get(name);
+    }
+    return value;
+  }
+
   private static class ExecutionEntry {
     private JpaExecution<?> execution;
     private Object entry;
@@ -459,14 +913,57 @@ public class JpaSession implements EntityManager {
     }
   }
 
+  private class SessionConnectionRouter implements ConnectionRouter {
+    @Override
+    public LogicalConnection primary() {
+      return connection;
+    }
+
+    @Override
+    public LogicalConnection forRead() {
+      if (replicaConnection == null) {
+        return connection;
+      }
+      if (transaction.isActive()) {
+        return transaction.isReadOnly() ? replicaConnection : connection;
+      }
+      return System.currentTimeMillis() - lastWriteTime < readYourWritesWindow ? connection
+          : replicaConnection;
+    }
+
+    @Override
+    public LogicalConnection forWrite() {
+      lastWriteTime = System.currentTimeMillis();
+      return connection;
+    }
+
+    @Override
+    public List<LogicalConnection> shards() {
+      return shards;
+    }
+
+    @Override
+    public Executor executor() {
+      return getExecutor();
+    }
+  }
+
   private class ConnectionTransaction implements EntityTransaction {
     private boolean rollbackOnly;
     private boolean isActive;
+    private boolean readOnly;
 
     @Override
     public void begin() {
+      if (isActive) {
+        throw new IllegalStateException("Transaction is already active!");
+      }
       try {
-        connection.setAutoCommit(true);
+        readOnly = isReadOnlyRequested();
+        for (LogicalConnection transactionConnection : transactionConnections()) {
+          transactionConnection.begin();
+        }
+        rollbackOnly = false;
         isActive = true;
       } catch (SQLException e) {
         throw new PersistenceException("Incorrect transaction action!", e);
@@ -475,46 +972,57 @@ public class JpaSession implements EntityManager {
 
     @Override
     public void commit() {
+      if (!isActive) {
+        throw new TransactionRequiredException();
+      }
+      if (rollbackOnly) {
+        rollback();
+        throw new IllegalStateException("Transaction is mark as rollback only!");
+      }
       try {
-        if (!isActive) {
-          throw new TransactionRequiredException();
-        }
-        if (rollbackOnly) {
-          throw new IllegalStateException("Transaction is mark as rollback only!");
-        }
-        if (flushModeType == FlushModeType.COMMIT) {
-          flush();
+        // Writes remaining changes and waits for asynchronous flushes.
+        flush();
+      } catch (PersistenceException e) {
+        rollback();
+        throw new RollbackException("Unable to flush changes on commit!", e);
+      }
+      try {
+        // Shards are committed one by one, there is no distributed transaction between them.
+        for (LogicalConnection transactionConnection : transactionConnections()) {
+          transactionConnection.commit();
         }
-        connection.commit();
       } catch (SQLException e) {
+        rollbackQuietly();
         throw new RollbackException("Incorrect transaction action!", e);
       } finally {
-        try {
-          isActive = false;
-          connection.setAutoCommit(false);
-        } catch (SQLException e) {
-          Logger.getGlobal().log(Level.SEVERE, e, () -> "Incorrect transaction action!");
-        }
+        isActive = false;
+        lockModes.clear();
       }
     }
 
     @Override
     public void rollback() {
+      if (!isActive) {
+        throw new TransactionRequiredException();
+      }
       try {
-        if (!isActive) {
-          throw new TransactionRequiredException();
-        }
         clear();
-        connection.rollback();
+        SQLException error = null;
+        for (LogicalConnection transactionConnection : transactionConnections()) {
+          try {
+            transactionConnection.rollback();
+          } catch (SQLException e) {
+            error = error == null ? e : error;
+          }
+        }
+        if (error != null) {
+          throw error;
+        }
       } catch (SQLException e) {
         throw new PersistenceException("Incorrect transaction action!", e);
       } finally {
-        try {
-          isActive = false;
-          connection.setAutoCommit(false);
-        } catch (SQLException e) {
-          Logger.getGlobal().log(Level.SEVERE, e, () -> "Incorrect transaction action!");
-        }
+        isActive = false;
+        lockModes.clear();
       }
     }
 
@@ -532,5 +1040,24 @@ public class JpaSession implements EntityManager {
     public boolean isActive() {
       return isActive;
     }
+
+    boolean isReadOnly() {
+      return readOnly;
+    }
+
+    private List<LogicalConnection> transactionConnections() {
+      return readOnly && replicaConnection != null ? Collections.singletonList(replicaConnection)
+          : shards;
+    }
+
+    private void rollbackQuietly() {
+      for (LogicalConnection transactionConnection : transactionConnections()) {
+        try {
+          transactionConnection.rollback();
+        } catch (SQLException e) {
+          Logger.getGlobal().log(Level.SEVERE, e, () -> "Unable to rollback transaction!");
+        }
+      }
+    }
   }
 }
@@ -0,0 +1,273 @@
+package ua.danit.jpa.sessions;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import javax.persistence.EntityTransaction;
+import javax.persistence.PersistenceException;
+import javax.persistence.RollbackException;
+import javax.persistence.TransactionRequiredException;
+
+import ua.danit.jpa.parsing.JpaPersistenceMetaContext;
+import ua.danit.jpa.parsing.executions.BatchExecution;
+
+/**
+ * Session for bulk operations without persistence context. Entities are not tracked,
+ * changes are written with cached execution plans in JDBC batches, so memory used by session
+ * does not depend on number of processed entities. Batch is executed when it reaches batch
+ * size, when other operation is requested, on get, flush, commit or close.
+ *
+ * @author Andrey Minov
+ */
+public class JpaStatelessSession implements AutoCloseable {
+  private LogicalConnection connection;
+  private JpaPersistenceMetaContext metaContext;
+  private int batchSize;
+  private boolean open;
+  private ConnectionTransaction transaction;
+
+  private BatchExecution batchExecution;
+  private PreparedStatement batchStatement;
+  private List<Object> batchEntities;
+  private List<Object> batchValues;
+
+  /**
+   * Instantiates a new stateless session.
+   *
+   * @param connection  the logical connection acquiring JDBC connections on demand
+   * @param metaContext the meta context for entries
+   * @param batchSize   the maximum number of statements in single JDBC batch
+   */
+  public JpaStatelessSession(LogicalConnection connection, JpaPersistenceMetaContext metaContext,
+                             int batchSize) {
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("Batch size must be positive!");
+    }
+    this.connection = connection;
+    this.metaContext = metaContext;
+    this.batchSize = batchSize;
+    this.batchEntities = new ArrayList<>(batchSize);
+    this.batchValues = new ArrayList<>(batchSize);
+    this.transaction = new ConnectionTransaction();
+    this.open = true;
+  }
+
+  /**
+   * Insert entity into database.
+   *
+   * @param entity the entity to insert
+   * @throws PersistenceException when batch execution is failed.
+   */
+  public void insert(Object entity) {
+    addBatch(metaContext.getPlan(entity.getClass()).getInsert(), entity);
+  }
+
+  /**
+   * Update entity in database.
+   *
+   * @param entity the entity to update
+   * @throws PersistenceException when batch execution is failed.
+   */
+  public void update(Object entity) {
+    addBatch(metaContext.getPlan(entity.getClass()).getUpdate(), entity);
+  }
+
+  /**
+   * Delete entity from database.
+   *
+   * @param entity the entity to delete
+   * @throws PersistenceException when batch execution is failed.
+   */
+  public void delete(Object entity) {
+    addBatch(metaContext.getPlan(entity.getClass()).getDelete(), entity);
+  }
+
+  /**
+   * Get entity from database by primary key. Pending batch is executed before select.
+   *
+   * @param <T>         the entity type
+   * @param entityClass the entity class
+   * @param primaryKey  the primary key
+   * @return the found entity or null when entity is not found.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T get(Class<T> entityClass, Object primaryKey) {
+    checkOpen();
+    flush();
+    try {
+      return (T) metaContext.getPlan(entityClass).getSelect()
+                            .execute(connection.acquire(),
+                                metaContext.get(entityClass).getId().toKey(primaryKey));
+    } finally {
+      connection.afterStatement();
+    }
+  }
+
+  /**
+   * Execute pending batch.
+   *
+   * @throws PersistenceException when batch execution is failed.
+   */
+  public void flush() {
+    checkOpen();
+    if (batchStatement == null) {
+      return;
+    }
+    try {
+      int[] counts = batchStatement.executeBatch();
+      batchExecution.completeBatch(batchStatement, batchEntities, batchValues, counts);
+    } catch (SQLException e) {
+      throw new PersistenceException("Unable to execute batch!", e);
+    } finally {
+      closeBatch();
+    }
+  }
+
+  public EntityTransaction getTransaction() {
+    return transaction;
+  }
+
+  public boolean isOpen() {
+    return open;
+  }
+
+  @Override
+  public void close() {
+    if (!open) {
+      return;
+    }
+    try {
+      if (!transaction.isActive()) {
+        flush();
+      }
+    } finally {
+      closeBatch();
+      open = false;
+      try {
+        connection.close();
+      } catch (SQLException e) {
+        throw new PersistenceException("Unable to close connection!", e);
+      }
+    }
+  }
+
+  private void addBatch(BatchExecution entityExecution, Object entity) {
+    checkOpen();
+    BatchExecution execution = entityExecution.forEntity(entity);
+    if (batchExecution != execution) {
+      flush();
+    }
+    if (batchStatement == null) {
+      try {
+        batchStatement = execution.prepare(connection.acquire());
+      } catch (SQLException e) {
+        connection.afterStatement();
+        throw new PersistenceException("Unable to prepare batch statement!", e);
+      }
+      batchExecution = execution;
+    }
+    batchValues.add(execution.addBatch(batchStatement, entity));
+    batchEntities.add(entity);
+    if (batchEntities.size() >= batchSize) {
+      flush();
+    }
+  }
+
+  private void closeBatch() {
+    if (batchStatement == null) {
+      return;
+    }
+    try {
+      batchStatement.close();
+    } catch (SQLException e) {
+      throw new PersistenceException("Unable to close batch statement!", e);
+    } finally {
+      batchStatement = null;
+      batchExecution = null;
+      batchEntities.clear();
+      batchValues.clear();
+      connection.afterStatement();
+    }
+  }
+
+  private void checkOpen() {
+    if (!open) {
+      throw new PersistenceException("Stateless session is closed!");
+    }
+  }
+
+  private class ConnectionTransaction implements EntityTransaction {
+    private boolean rollbackOnly;
+    private boolean isActive;
+
+    @Override
+    public void begin() {
+      if (isActive) {
+        throw new IllegalStateException("Transaction is already active!");
+      }
+      try {
+        flush();
+        connection.begin();
+        rollbackOnly = false;
+        isActive = true;
+      } catch (SQLException e) {
+        throw new PersistenceException("Incorrect transaction action!", e);
+      }
+    }
+
+    @Override
+    public void commit() {
+      if (!isActive) {
+        throw new TransactionRequiredException();
+      }
+      if (rollbackOnly) {
+        rollback();
+        throw new IllegalStateException("Transaction is mark as rollback only!");
+      }
+      try {
+        flush();
+      } catch (PersistenceException e) {
+        rollback();
+        throw new RollbackException("Unable to execute batch on commit!", e);
+      }
+      try {
+        connection.commit();
+      } catch (SQLException e) {
+        throw new RollbackException("Incorrect transaction action!", e);
+      } finally {
+        isActive = false;
+      }
+    }
+
+    @Override
+    public void rollback() {
+      if (!isActive) {
+        throw new TransactionRequiredException();
+      }
+      try {
+        closeBatch();
+        connection.rollback();
+      } catch (SQLException e) {
+        throw new PersistenceException("Incorrect transaction action!", e);
+      } finally {
+        isActive = false;
+      }
+    }
+
+    @Override
+    public void setRollbackOnly() {
+      rollbackOnly = true;
+    }
+
+    @Override
+    public boolean getRollbackOnly() {
+      return rollbackOnly;
+    }
+
+    @Override
+    public boolean isActive() {
+      return isActive;
+    }
+  }
+}
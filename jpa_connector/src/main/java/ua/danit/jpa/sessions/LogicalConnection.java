@@ -0,0 +1,288 @@
+package ua.danit.jpa.sessions;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.persistence.PersistenceException;
+import javax.sql.DataSource;
+
+/**
+ * Session view of JDBC connection. Physical connection is acquired from data source on demand
+ * and released back according to {@link ConnectionHandlingMode}.
+ * Work submitted asynchronously is executed in submission order and any synchronous access
+ * to the connection waits until submitted work is completed. Physical connection is not
+ * released while it is pinned by statements kept open between executions.
+ *
+ * @author Andrey Minov
+ */
+public class LogicalConnection {
+  private static final CompletableFuture<Void> COMPLETED = CompletableFuture.completedFuture(null);
+
+  private final DataSource dataSource;
+  private final ConnectionHandlingMode mode;
+  private final String schema;
+
+  private CompletableFuture<Void> pending = COMPLETED;
+  private Connection physical;
+  private boolean transactional;
+  private boolean closed;
+  private int pins;
+
+  /**
+   * Instantiates a new logical connection over already acquired JDBC connection.
+   * Connection is held until logical connection is closed.
+   *
+   * @param connection the JDBC connection
+   */
+  public LogicalConnection(Connection connection) {
+    this.dataSource = null;
+    this.mode = ConnectionHandlingMode.HOLD;
+    this.schema = null;
+    this.physical = connection;
+  }
+
+  /**
+   * Instantiates a new logical connection over data source.
+   *
+   * @param dataSource the data source to acquire connections from
+   * @param mode       the connection handling mode
+   */
+  public LogicalConnection(DataSource dataSource, ConnectionHandlingMode mode) {
+    this(dataSource, mode, null);
+  }
+
+  /**
+   * Instantiates a new logical connection over data source bound to schema. Schema is set
+   * as current schema of each acquired connection.
+   *
+   * @param dataSource the data source to acquire connections from
+   * @param mode       the connection handling mode
+   * @param schema     the schema of connection, null for default schema of data source
+   */
+  public LogicalConnection(DataSource dataSource, ConnectionHandlingMode mode, String schema) {
+    this.dataSource = dataSource;
+    this.mode = mode;
+    this.schema = schema;
+    if (mode == ConnectionHandlingMode.HOLD) {
+      acquire();
+    }
+  }
+
+  /**
+   * Get physical connection acquiring it from data source when required.
+   *
+   * @return the physical JDBC connection.
+   * @throws PersistenceException when logical connection is closed or connection
+   *                              cannot be acquired.
+   */
+  public Connection acquire() {
+    await();
+    return physical();
+  }
+
+  /**
+   * Submit work to be executed asynchronously after previously submitted work.
+   *
+   * @param work     the work using physical connection
+   * @param executor the executor to run work on
+   * @return the future completed when work is executed.
+   */
+  public CompletableFuture<Void> submit(Consumer<Connection> work, Executor executor) {
+    CompletableFuture<Void> next = pending.thenRunAsync(() -> {
+      try {
+        work.accept(physical());
+      } finally {
+        afterStatement();
+      }
+    }, executor);
+    pending = next;
+    return next;
+  }
+
+  /**
+   * Wait until all asynchronously submitted work is completed.
+   *
+   * @throws PersistenceException when submitted work is failed.
+   */
+  public void await() {
+    CompletableFuture<Void> current = pending;
+    if (current == COMPLETED) {
+      return;
+    }
+    pending = COMPLETED;
+    try {
+      current.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof PersistenceException) {
+        throw (PersistenceException) e.getCause();
+      }
+      throw new PersistenceException("Asynchronous execution is failed!", e.getCause());
+    }
+  }
+
+  private Connection physical() {
+    if (closed) {
+      throw new PersistenceException("Logical connection is closed!");
+    }
+    if (physical == null) {
+      try {
+        physical = dataSource.getConnection();
+        if (schema != null) {
+          physical.setSchema(schema);
+        }
+        if (transactional) {
+          physical.setAutoCommit(false);
+        }
+      } catch (SQLException e) {
+        throw new PersistenceException("Unable to get connection from pool!", e);
+      }
+    }
+    return physical;
+  }
+
+  /**
+   * Get schema the connection is bound to.
+   *
+   * @return the schema name or null for default schema.
+   */
+  public String getSchema() {
+    return schema;
+  }
+
+  /**
+   * Check if physical connection is currently acquired.
+   *
+   * @return true if physical connection is acquired.
+   */
+  public boolean isAcquired() {
+    return physical != null;
+  }
+
+  /**
+   * Pin physical connection, so it is not released after statements and transactions until
+   * it is unpinned. Used by statements kept prepared on connection between executions.
+   */
+  public void pin() {
+    pins++;
+  }
+
+  /**
+   * Unpin physical connection, connection is released when no pins are left and no
+   * transaction is active.
+   */
+  public void unpin() {
+    if (pins > 0) {
+      pins--;
+    }
+    afterStatement();
+  }
+
+  /**
+   * Notify that statement is completed, connection is released when no transaction is active.
+   */
+  public void afterStatement() {
+    if (!transactional) {
+      releaseIfRequired();
+    }
+  }
+
+  /**
+   * Begin transaction. Auto commit is disabled on acquired connection or once it is acquired.
+   *
+   * @throws SQLException when auto commit cannot be changed.
+   */
+  public void begin() throws SQLException {
+    await();
+    transactional = true;
+    if (physical != null) {
+      physical.setAutoCommit(false);
+    }
+  }
+
+  /**
+   * Commit transaction if any connection was acquired during transaction.
+   *
+   * @throws SQLException when commit fails.
+   */
+  public void commit() throws SQLException {
+    await();
+    try {
+      if (physical != null) {
+        physical.commit();
+      }
+    } finally {
+      afterTransaction();
+    }
+  }
+
+  /**
+   * Rollback transaction if any connection was acquired during transaction.
+   *
+   * @throws SQLException when rollback fails.
+   */
+  public void rollback() throws SQLException {
+    awaitQuietly();
+    try {
+      if (physical != null) {
+        physical.rollback();
+      }
+    } finally {
+      afterTransaction();
+    }
+  }
+
+  /**
+   * Close logical connection and return physical connection to the pool.
+   *
+   * @throws SQLException when physical connection cannot be closed.
+   */
+  public void close() throws SQLException {
+    awaitQuietly();
+    closed = true;
+    if (physical != null) {
+      Connection connection = physical;
+      physical = null;
+      connection.close();
+    }
+  }
+
+  private void awaitQuietly() {
+    try {
+      await();
+    } catch (PersistenceException e) {
+      Logger.getGlobal().log(Level.SEVERE, e, () -> "Asynchronous execution is failed!");
+    }
+  }
+
+  private void afterTransaction() {
+    transactional = false;
+    if (physical == null) {
+      return;
+    }
+    try {
+      physical.setAutoCommit(true);
+    } catch (SQLException e) {
+      Logger.getGlobal().log(Level.SEVERE, e, () -> "Incorrect transaction action!");
+    }
+    releaseIfRequired();
+  }
+
+  private void releaseIfRequired() {
+    if (mode != ConnectionHandlingMode.RELEASE_AFTER_TRANSACTION || physical == null
+        || pins > 0) {
+      return;
+    }
+    Connection connection = physical;
+    physical = null;
+    try {
+      connection.close();
+    } catch (SQLException e) {
+      Logger.getGlobal().log(Level.SEVERE, e, () -> "Unable to release connection!");
+    }
+  }
+}
@@ -0,0 +1,34 @@
+package ua.danit.jpa.sessions;
+
+/**
+ * Resolves shard owning entity by hash of its primary key.
+ *
+ * @author Andrey Minov
+ */
+public final class ShardResolver {
+
+  private ShardResolver() {
+  }
+
+  /**
+   * Get index of shard owning primary key. Key hash code is mixed before modulo, so
+   * sequential numeric keys are spread evenly over shards.
+   *
+   * @param primaryKey the entity primary key
+   * @param shards     the number of shards
+   * @return the shard index from 0 to shards - 1.
+   * @throws IllegalArgumentException when primary key is null.
+   */
+  public static int shardOf(Object primaryKey, int shards) {
+    if (primaryKey == null) {
+      throw new IllegalArgumentException("Primary key is required to resolve shard!");
+    }
+    int hash = primaryKey.hashCode();
+    hash ^= hash >>> 16;
+    hash *= 0x85ebca6b;
+    hash ^= hash >>> 13;
+    hash *= 0xc2b2ae35;
+    hash ^= hash >>> 16;
+    return Math.floorMod(hash, shards);
+  }
+}
@@ -0,0 +1,116 @@
+package ua.danit.jpa;
+
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Properties;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.metamodel.Metamodel;
+import javax.persistence.spi.PersistenceUnitInfo;
+import javax.sql.DataSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ua.danit.jpa.parsing.EntityIndex;
+import ua.danit.jpa.parsing.User;
+import ua.danit.jpa.sessions.Car;
+import ua.danit.jpa.sessions.VersionedCar;
+
+/**
+ * Test for container bootstrap of persistence provider.
+ *
+ * @author Andrey Minov
+ */
+public class JpaPersistenceProviderTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private File unitRoot;
+  private File otherRoot;
+  private PersistenceUnitInfo info;
+  private URLClassLoader classLoader;
+  private EntityManagerFactory entityManagerFactory;
+
+  @Before
+  public void setUp() throws Exception {
+    unitRoot = folder.newFolder("unit");
+    otherRoot = folder.newFolder("other");
+    writeIndex(unitRoot, Car.class.getName());
+    writeIndex(otherRoot, VersionedCar.class.getName());
+    classLoader = new URLClassLoader(new URL[] {unitRoot.toURI().toURL(),
+        otherRoot.toURI().toURL()}, getClass().getClassLoader());
+
+    info = mock(PersistenceUnitInfo.class);
+    when(info.getPersistenceUnitName()).thenReturn("container");
+    when(info.getNonJtaDataSource()).thenReturn(mock(DataSource.class));
+    when(info.getManagedClassNames()).thenReturn(singletonList(User.class.getName()));
+    when(info.getClassLoader()).thenReturn(classLoader);
+    when(info.getPersistenceUnitRootUrl()).thenReturn(unitRoot.toURI().toURL());
+    when(info.getProperties()).thenReturn(new Properties());
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    if (entityManagerFactory != null) {
+      entityManagerFactory.close();
+    }
+    classLoader.close();
+  }
+
+  @Test
+  public void testManagedAndIndexedClassesRegistered() {
+    entityManagerFactory = new JpaPersistenceProvider()
+        .createContainerEntityManagerFactory(info, Collections.emptyMap());
+
+    Metamodel metamodel = entityManagerFactory.getMetamodel();
+    assertEquals("Incorrect entities count!", 2, metamodel.getEntities().size());
+    assertNotNull(metamodel.entity(User.class));
+    assertNotNull(metamodel.entity(Car.class));
+  }
+
+  @Test
+  public void testIndexReadOnlyFromUnitRoots() throws Exception {
+    entityManagerFactory = new JpaPersistenceProvider()
+        .createContainerEntityManagerFactory(info, Collections.emptyMap());
+    assertFalse("Index of other root is read!", entityManagerFactory.getMetamodel()
+        .getEntities().stream().anyMatch(entity -> entity.getJavaType() == VersionedCar.class));
+    entityManagerFactory.close();
+
+    when(info.getJarFileUrls()).thenReturn(singletonList(otherRoot.toURI().toURL()));
+    entityManagerFactory = new JpaPersistenceProvider()
+        .createContainerEntityManagerFactory(info, Collections.emptyMap());
+    assertEquals("Incorrect entities count!", 3,
+        entityManagerFactory.getMetamodel().getEntities().size());
+    assertNotNull(entityManagerFactory.getMetamodel().entity(VersionedCar.class));
+  }
+
+  @Test
+  public void testIndexIgnoredForExcludedUnlistedClasses() {
+    when(info.excludeUnlistedClasses()).thenReturn(true);
+    entityManagerFactory = new JpaPersistenceProvider()
+        .createContainerEntityManagerFactory(info, Collections.emptyMap());
+
+    assertEquals("Incorrect entities count!", 1,
+        entityManagerFactory.getMetamodel().getEntities().size());
+  }
+
+  private static void writeIndex(File root, String className) throws Exception {
+    File index = new File(root, EntityIndex.LOCATION);
+    index.getParentFile().mkdirs();
+    Files.write(index.toPath(),
+        ("# generated\n" + className + "\n").getBytes(StandardCharsets.UTF_8));
+  }
+}
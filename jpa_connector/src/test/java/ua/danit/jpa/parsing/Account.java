@@ -0,0 +1,89 @@
+package ua.danit.jpa.parsing;
+
+import java.time.Instant;
+import java.util.UUID;
+import javax.persistence.AttributeConverter;
+import javax.persistence.Convert;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Id;
+
+/**
+ * Test account class with columns bound by type handlers.
+ *
+ * @author Andrey Minov
+ */
+@Entity
+public class Account {
+  @Id
+  private UUID id;
+  @Enumerated(EnumType.STRING)
+  private Status status;
+  private Status previousStatus;
+  private Instant created;
+  @Convert(converter = YesNoConverter.class)
+  private boolean active;
+
+  public UUID getId() {
+    return id;
+  }
+
+  public void setId(UUID id) {
+    this.id = id;
+  }
+
+  public Status getStatus() {
+    return status;
+  }
+
+  public void setStatus(Status status) {
+    this.status = status;
+  }
+
+  public Status getPreviousStatus() {
+    return previousStatus;
+  }
+
+  public void setPreviousStatus(Status previousStatus) {
+    this.previousStatus = previousStatus;
+  }
+
+  public Instant getCreated() {
+    return created;
+  }
+
+  public void setCreated(Instant created) {
+    this.created = created;
+  }
+
+  public boolean isActive() {
+    return active;
+  }
+
+  public void setActive(boolean active) {
+    this.active = active;
+  }
+
+  /**
+   * Status of account.
+   */
+  public enum Status {
+    OPEN, BLOCKED, CLOSED
+  }
+
+  /**
+   * Converter of boolean flag to Y and N characters.
+   */
+  public static class YesNoConverter implements AttributeConverter<Boolean, String> {
+    @Override
+    public String convertToDatabaseColumn(Boolean attribute) {
+      return attribute ? "Y" : "N";
+    }
+
+    @Override
+    public Boolean convertToEntityAttribute(String dbData) {
+      return "Y".equals(dbData);
+    }
+  }
+}
@@ -2,15 +2,33 @@ package ua.danit.jpa.parsing;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
 import java.sql.Types;
+import java.time.Instant;
+import java.util.Calendar;
+import java.util.UUID;
 import javax.persistence.GenerationType;
 
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
 import ua.danit.jpa.entity.ColumnMeta;
+import ua.danit.jpa.entity.EntityKey;
 import ua.danit.jpa.entity.EntityMeta;
+import ua.danit.jpa.entity.IdMeta;
 
 /**
  * Test for JPA parsing entries.
@@ -63,4 +81,108 @@ public class EntityMetaParserTest {
     assertEquals("Incorrect name for second column", "value", value.getName());
     assertEquals("Incorrect type for second column", Types.VARCHAR, value.getSqlType());
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testAccessTypes() {
+    ColumnMeta id = entityMeta.getId().getColumns().get(0);
+    assertNull("Field access must not use getter!", id.getGetter());
+    User user = new User();
+    id.getAccessor().set(user, 5);
+    assertEquals("Field is not written!", 5, id.getAccessor().get(user));
+
+    ColumnMeta value = entityMeta.getColumns().get(1);
+    assertNotNull("Property access must use getter!", value.getGetter());
+    value.getAccessor().set(user, "v");
+    assertEquals("Property is not written!", "v", user.getValue());
+  }
+
+  @Test
+  public void testPrimitiveColumnBinding() throws Exception {
+    ColumnMeta id = entityMeta.getId().getColumns().get(0);
+    User user = new User();
+    ResultSet resultSet = mock(ResultSet.class);
+    when(resultSet.getInt(1)).thenReturn(7);
+    id.getBinder().read(resultSet, 1, user);
+    assertEquals("Id is not read!", 7, user.getId());
+    verify(resultSet, never()).getObject(anyInt());
+
+    PreparedStatement statement = mock(PreparedStatement.class);
+    id.getBinder().bind(statement, 1, user);
+    verify(statement).setInt(1, 7);
+  }
+
+  @Test
+  public void testTypeHandlerColumns() throws Exception {
+    EntityMeta accountMeta = EntityMetaParser.parseEntity(Account.class);
+    ColumnMeta id = accountMeta.getId().getColumns().get(0);
+    ColumnMeta status = accountMeta.getColumns().get(0);
+    ColumnMeta previousStatus = accountMeta.getColumns().get(1);
+    ColumnMeta created = accountMeta.getColumns().get(2);
+    ColumnMeta active = accountMeta.getColumns().get(3);
+    assertEquals("UUID must be binary!", Types.BINARY, id.getSqlType());
+    assertEquals("Enum must be bound by name!", Types.VARCHAR, status.getSqlType());
+    assertEquals("Enum must be bound by ordinal!", Types.INTEGER, previousStatus.getSqlType());
+    assertEquals("Instant must be timestamp!", Types.TIMESTAMP, created.getSqlType());
+    assertEquals("Converted column must have type of converter!", Types.VARCHAR,
+        active.getSqlType());
+
+    Account account = new Account();
+    account.setId(new UUID(1, 2));
+    account.setStatus(Account.Status.BLOCKED);
+    account.setPreviousStatus(Account.Status.CLOSED);
+    account.setCreated(Instant.ofEpochMilli(1000));
+    account.setActive(true);
+    PreparedStatement statement = mock(PreparedStatement.class);
+    id.getBinder().bind(statement, 1, account);
+    status.getBinder().bind(statement, 2, account);
+    previousStatus.getBinder().bind(statement, 3, account);
+    created.getBinder().bind(statement, 4, account);
+    active.getBinder().bind(statement, 5, account);
+    verify(statement).setBytes(1, new byte[] {0, 0, 0, 0, 0, 0, 0, 1, 0, 0, 0, 0, 0, 0, 0, 2});
+    verify(statement).setString(2, "BLOCKED");
+    verify(statement).setInt(3, 2);
+    verify(statement).setTimestamp(eq(4), eq(new Timestamp(1000)),
+        argThat(calendar -> "UTC".equals(calendar.getTimeZone().getID())));
+    verify(statement).setObject(5, "Y", Types.VARCHAR);
+
+    ResultSet resultSet = mock(ResultSet.class);
+    when(resultSet.getBytes(1))
+        .thenReturn(new byte[] {0, 0, 0, 0, 0, 0, 0, 3, 0, 0, 0, 0, 0, 0, 0, 4});
+    when(resultSet.getString(2)).thenReturn("OPEN");
+    when(resultSet.getInt(3)).thenReturn(1);
+    when(resultSet.getTimestamp(eq(4), any(Calendar.class))).thenReturn(new Timestamp(2000));
+    when(resultSet.getObject(5)).thenReturn("N");
+    Account read = new Account();
+    id.getBinder().read(resultSet, 1, read);
+    status.getBinder().read(resultSet, 2, read);
+    previousStatus.getBinder().read(resultSet, 3, read);
+    created.getBinder().read(resultSet, 4, read);
+    active.getBinder().read(resultSet, 5, read);
+    assertEquals("UUID is not read!", new UUID(3, 4), read.getId());
+    assertEquals("Enum is not read by name!", Account.Status.OPEN, read.getStatus());
+    assertEquals("Enum is not read by ordinal!", Account.Status.BLOCKED,
+        read.getPreviousStatus());
+    assertEquals("Instant is not read!", Instant.ofEpochMilli(2000), read.getCreated());
+    assertEquals("Converted value is not read!", false, read.isActive());
+  }
+
+  @Test
+  public void testEmbeddedIdColumns() throws Exception {
+    EntityMeta membershipMeta = EntityMetaParser.parseEntity(Membership.class);
+    IdMeta id = membershipMeta.getId();
+    assertTrue("Embedded id must be composite!", id.isComposite());
+    assertEquals("Incorrect id columns!", "groupId", id.getColumns().get(0).getName());
+    assertEquals("Incorrect id columns!", "login", id.getColumns().get(1).getName());
+
+    Membership membership = new Membership();
+    membership.setKey(new Membership.Key(3, "login"));
+    EntityKey key = EntityKey.of(3, "login");
+    assertEquals("Incorrect key of entity!", key, id.getKey(membership));
+    assertEquals("Id class instance is not converted to key!", key,
+        id.toKey(new Membership.Key(3, "login")));
+
+    Membership read = new Membership();
+    id.getColumns().get(1).getAccessor().set(read, "other");
+    assertEquals("Embedded id is not created!", "other", read.getKey().getLogin());
+  }
+}
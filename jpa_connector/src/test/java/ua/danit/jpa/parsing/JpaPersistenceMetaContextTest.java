@@ -0,0 +1,93 @@
+package ua.danit.jpa.parsing;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import javax.persistence.PersistenceException;
+import javax.persistence.metamodel.EntityType;
+
+import org.junit.Before;
+import org.junit.Test;
+import ua.danit.jpa.entity.EntityMeta;
+import ua.danit.jpa.sessions.Car;
+import ua.danit.jpa.sessions.VersionedCar;
+
+/**
+ * Test for registration of entities in persistence metacontext.
+ *
+ * @author Andrey Minov
+ */
+public class JpaPersistenceMetaContextTest {
+  private JpaPersistenceMetaContext context;
+
+  @Before
+  public void setUp() {
+    context = new JpaPersistenceMetaContext();
+  }
+
+  @Test
+  public void testRegisterAllInParallel() {
+    List<Class<?>> classes = context.registerAll(
+        asList(User.class.getName(), Car.class.getName(), VersionedCar.class.getName()),
+        getClass().getClassLoader());
+
+    assertEquals(asList(User.class, Car.class, VersionedCar.class), classes);
+    for (Class<?> clazz : classes) {
+      assertNotNull(context.get(clazz));
+      assertNotNull(context.getPlan(clazz));
+    }
+  }
+
+  @Test
+  public void testRegisterAllReportsAllFailures() {
+    try {
+      context.registerAll(asList(User.class.getName(), "ua.danit.jpa.Missing",
+          String.class.getName()), getClass().getClassLoader());
+      fail("Registration must fail!");
+    } catch (PersistenceException e) {
+      assertTrue(e.getMessage().contains("ua.danit.jpa.Missing"));
+      assertTrue(e.getMessage().contains(String.class.getName()));
+      assertEquals("Incorrect suppressed errors!", 1, e.getSuppressed().length);
+    }
+    assertTrue("Snapshot is published partially!", context.getEntities().isEmpty());
+  }
+
+  @Test
+  public void testMetamodelBuiltOnRegistration() {
+    context.register(VersionedCar.class);
+    EntityType<VersionedCar> type = context.entity(VersionedCar.class);
+
+    assertSame("Entity type is not cached!", type, context.entity(VersionedCar.class));
+    assertSame(type, context.managedType(VersionedCar.class));
+    assertSame(type, context.getEntities().iterator().next());
+    assertEquals("Incorrect attributes count!", 3, type.getAttributes().size());
+    assertSame(type.getAttribute("id"), type.getId(Long.class));
+    assertSame(type.getAttribute("version"), type.getVersion(int.class));
+    assertEquals(String.class, type.getSingularAttribute("name", String.class).getJavaType());
+  }
+
+  @Test
+  public void testSchemaCopiesDroppedOnRegistration() {
+    context.register(VersionedCar.class);
+    EntityMeta tenantMeta = context.get(VersionedCar.class, "tenant");
+    assertSame("Schema metadata is not cached!", tenantMeta,
+        context.get(VersionedCar.class, "tenant"));
+    assertEquals("Incorrect schema!", "tenant", tenantMeta.getSchema());
+
+    context.register(VersionedCar.class);
+    assertNotSame("Stale schema metadata is kept!", tenantMeta,
+        context.get(VersionedCar.class, "tenant"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMissingAttribute() {
+    context.register(VersionedCar.class);
+    context.entity(VersionedCar.class).getAttribute("missing");
+  }
+}
@@ -0,0 +1,58 @@
+package ua.danit.jpa.parsing;
+
+import javax.persistence.Embeddable;
+import javax.persistence.EmbeddedId;
+import javax.persistence.Entity;
+
+/**
+ * Test membership class with embedded composite id.
+ *
+ * @author Andrey Minov
+ */
+@Entity
+public class Membership {
+  @EmbeddedId
+  private Key key;
+  private String role;
+
+  public Key getKey() {
+    return key;
+  }
+
+  public void setKey(Key key) {
+    this.key = key;
+  }
+
+  public String getRole() {
+    return role;
+  }
+
+  public void setRole(String role) {
+    this.role = role;
+  }
+
+  /**
+   * Embedded id of membership.
+   */
+  @Embeddable
+  public static class Key {
+    private int groupId;
+    private String login;
+
+    public Key() {
+    }
+
+    public Key(int groupId, String login) {
+      this.groupId = groupId;
+      this.login = login;
+    }
+
+    public int getGroupId() {
+      return groupId;
+    }
+
+    public String getLogin() {
+      return login;
+    }
+  }
+}
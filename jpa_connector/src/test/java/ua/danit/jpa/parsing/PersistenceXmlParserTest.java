@@ -0,0 +1,89 @@
+package ua.danit.jpa.parsing;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.stream.Collectors;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ua.danit.jpa.configuration.PersistedUnit;
+import ua.danit.jpa.configuration.PersistenceRoot;
+
+/**
+ * Test for persistence.xml parsing.
+ *
+ * @author Andrey Minov
+ */
+public class PersistenceXmlParserTest {
+  private static final String FIRST_XML =
+      "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+      + "<persistence xmlns=\"http://java.sun.com/xml/ns/persistence\" version=\"2.0\">\n"
+      + "  <persistence-unit name=\"first\">\n"
+      + "    <provider>ua.danit.jpa.JpaPersistenceProvider</provider>\n"
+      + "    <class>ua.danit.jpa.parsing.User</class>\n"
+      + "    <properties>\n"
+      + "      <property name=\"ua.danit.jpa.username\" value=\"SA\"/>\n"
+      + "    </properties>\n"
+      + "  </persistence-unit>\n"
+      + "</persistence>";
+  private static final String SECOND_XML =
+      "<persistence xmlns=\"http://xmlns.jcp.org/xml/ns/persistence\" version=\"2.1\">\n"
+      + "  <persistence-unit name=\"second\">\n"
+      + "    <description>Second unit</description>\n"
+      + "  </persistence-unit>\n"
+      + "  <persistence-unit name=\"first\"/>\n"
+      + "</persistence>";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testUnitsMergedFromAllResources() throws Exception {
+    try (URLClassLoader classLoader = classLoader(FIRST_XML, SECOND_XML)) {
+      PersistenceRoot root = PersistenceXmlParser.parse(classLoader);
+
+      assertEquals(asList("first", "second"),
+          root.getUnits().stream().map(PersistedUnit::getName).collect(Collectors.toList()));
+      PersistedUnit first = root.getUnits().get(0);
+      assertEquals("ua.danit.jpa.JpaPersistenceProvider", first.getProvider());
+      assertEquals(asList("ua.danit.jpa.parsing.User"), first.getClasses());
+      assertEquals("SA", first.getProperties().getValues().get(0).getValue());
+    }
+  }
+
+  @Test
+  public void testParsedRootCachedPerClassLoader() throws Exception {
+    try (URLClassLoader classLoader = classLoader(FIRST_XML)) {
+      assertSame(PersistenceXmlParser.parse(classLoader),
+          PersistenceXmlParser.parse(classLoader));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMissingPersistenceXml() throws Exception {
+    try (URLClassLoader classLoader = classLoader()) {
+      PersistenceXmlParser.parse(classLoader);
+    }
+  }
+
+  private URLClassLoader classLoader(String... resources) throws Exception {
+    URL[] urls = new URL[resources.length];
+    for (int i = 0; i < resources.length; i++) {
+      File root = folder.newFolder();
+      File metaInf = new File(root, "META-INF");
+      metaInf.mkdirs();
+      Files.write(new File(metaInf, "persistence.xml").toPath(),
+          resources[i].getBytes(StandardCharsets.UTF_8));
+      urls[i] = root.toURI().toURL();
+    }
+    return new URLClassLoader(urls, null);
+  }
+}
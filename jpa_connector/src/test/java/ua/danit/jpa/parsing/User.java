@@ -1,5 +1,7 @@
 package ua.danit.jpa.parsing;
 
+import javax.persistence.Access;
+import javax.persistence.AccessType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
@@ -21,6 +23,7 @@ public class User {
 
   @Column(name = "full_name", insertable = false)
   private String name;
+  @Access(AccessType.PROPERTY)
   private String value;
 
   public int getId() {
@@ -0,0 +1,311 @@
+package ua.danit.jpa.pool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.sql.DataSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ua.danit.jpa.configuration.JpaProviderProperties;
+
+/**
+ * Tests for provider connection pool.
+ *
+ * @author Andrey Minov
+ */
+public class JpaConnectionPoolTest {
+  private DataSource dataSource;
+  private List<Connection> physicalConnections;
+  private Map<String, String> properties;
+  private JpaConnectionPool pool;
+
+  @Before
+  public void setUp() throws Exception {
+    dataSource = mock(DataSource.class);
+    physicalConnections = Collections.synchronizedList(new ArrayList<>());
+    when(dataSource.getConnection()).thenAnswer(invocation -> {
+      Connection connection = mock(Connection.class);
+      when(connection.isValid(anyInt())).thenReturn(true);
+      when(connection.prepareStatement(anyString())).thenAnswer(prepare -> {
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(statement.unwrap(PreparedStatement.class)).thenReturn(statement);
+        return statement;
+      });
+      physicalConnections.add(connection);
+      return connection;
+    });
+    properties = new HashMap<>();
+    properties.put(JpaProviderProperties.POOL_MAX_SIZE, "1");
+    properties.put(JpaProviderProperties.POOL_CONNECTION_TIMEOUT, "200");
+  }
+
+  @After
+  public void tearDown() {
+    if (pool != null) {
+      pool.close();
+    }
+  }
+
+  @Test
+  public void testConnectionReusedAfterClose() throws Exception {
+    pool = new JpaConnectionPool(dataSource, properties);
+
+    pool.getConnection().close();
+    pool.getConnection().close();
+
+    verify(dataSource, times(1)).getConnection();
+    assertEquals("Incorrect total connections!", 1, pool.getTotalConnections());
+    assertEquals("Incorrect idle connections!", 1, pool.getIdleConnections());
+  }
+
+  @Test(expected = SQLException.class)
+  public void testTimeoutWhenPoolExhausted() throws Exception {
+    pool = new JpaConnectionPool(dataSource, properties);
+    pool.getConnection();
+    pool.getConnection();
+  }
+
+  @Test
+  public void testConnectionHandedOffToWaitingThread() throws Exception {
+    properties.put(JpaProviderProperties.POOL_CONNECTION_TIMEOUT, "5000");
+    pool = new JpaConnectionPool(dataSource, properties);
+    Connection connection = pool.getConnection();
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<Connection> waiting = executor.submit(() -> pool.getConnection());
+      Thread.sleep(100);
+      connection.close();
+      assertNotNull("Connection is not handed off!", waiting.get(5, TimeUnit.SECONDS));
+    } finally {
+      executor.shutdown();
+    }
+    verify(dataSource, times(1)).getConnection();
+  }
+
+  @Test
+  public void testExpiredConnectionReplaced() throws Exception {
+    // Lifetime must outlast opening of connection, otherwise it expires before first borrow.
+    properties.put(JpaProviderProperties.POOL_MAX_LIFETIME, "100");
+    pool = new JpaConnectionPool(dataSource, properties);
+
+    pool.getConnection().close();
+    Thread.sleep(150);
+    pool.getConnection();
+
+    verify(dataSource, times(2)).getConnection();
+    verify(physicalConnections.get(0)).close();
+    assertEquals("Incorrect total connections!", 1, pool.getTotalConnections());
+  }
+
+  @Test
+  public void testAutoCommitRestoredOnRelease() throws Exception {
+    pool = new JpaConnectionPool(dataSource, properties);
+    Connection connection = pool.getConnection();
+    connection.setAutoCommit(false);
+    connection.close();
+
+    Connection physical = physicalConnections.get(0);
+    verify(physical).rollback();
+    verify(physical).setAutoCommit(true);
+  }
+
+  @Test
+  public void testWarmUpOpensMinIdleConnections() throws Exception {
+    properties.put(JpaProviderProperties.POOL_MAX_SIZE, "4");
+    properties.put(JpaProviderProperties.POOL_MIN_IDLE, "3");
+    pool = new JpaConnectionPool(dataSource, properties);
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      assertEquals("Incorrect opened connections!", 3, pool.warmUp(executor));
+    } finally {
+      executor.shutdown();
+    }
+
+    assertEquals("Pool is not warmed up!", 3, pool.getIdleConnections());
+    assertEquals("Connection is borrowed!", 3, pool.getTotalConnections());
+    assertEquals("Incorrect physical connections!", 3, physicalConnections.size());
+  }
+
+  @Test
+  public void testBorrowMetricsCollected() throws Exception {
+    pool = new JpaConnectionPool(dataSource, properties);
+    Connection connection = pool.getConnection();
+    try {
+      pool.getConnection();
+    } catch (SQLException e) {
+      // Pool is exhausted.
+    }
+    assertEquals("Incorrect active connections!", 1, pool.getActiveConnections());
+    connection.close();
+
+    PoolMetrics metrics = pool.getMetrics();
+    assertEquals("Incorrect borrow count!", 1, metrics.getBorrowCount());
+    assertEquals("Incorrect timeout count!", 1, metrics.getTimeoutCount());
+    assertEquals("Incorrect histogram total!", 1,
+        Arrays.stream(metrics.getBorrowHistogram()).sum());
+    assertEquals("Incorrect active connections!", 0, pool.getActiveConnections());
+  }
+
+  @Test
+  public void testLeakDetected() throws Exception {
+    properties.put(JpaProviderProperties.POOL_LEAK_DETECTION_THRESHOLD, "50");
+    pool = new JpaConnectionPool(dataSource, properties);
+    Connection connection = pool.getConnection();
+    Thread.sleep(300);
+    connection.close();
+    pool.getConnection().close();
+
+    assertEquals("Leak is not detected!", 1, pool.getLeakedConnections());
+  }
+
+  @Test
+  public void testRegisteredInJmx() throws Exception {
+    properties.put(JpaProviderProperties.POOL_JMX, "true");
+    properties.put(JpaProviderProperties.POOL_NAME, "test-pool");
+    pool = new JpaConnectionPool(dataSource, properties);
+    pool.getConnection();
+
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = new ObjectName("ua.danit.jpa:type=Pool,name=test-pool");
+    assertEquals("Incorrect JMX active connections!", 1,
+        server.getAttribute(name, "ActiveConnections"));
+    pool.close();
+    assertFalse("Pool MBean is not unregistered!", server.isRegistered(name));
+  }
+
+  @Test
+  public void testCloseIsIdempotent() throws Exception {
+    properties.put(JpaProviderProperties.POOL_JMX, "true");
+    properties.put(JpaProviderProperties.POOL_NAME, "closed-pool");
+    pool = new JpaConnectionPool(dataSource, properties);
+    pool.getConnection().close();
+    pool.close();
+    pool.close();
+
+    verify(physicalConnections.get(0), times(1)).close();
+    assertTrue("Pool is not closed!", pool.isClosed());
+  }
+
+  @Test(expected = SQLException.class)
+  public void testClosedConnectionRejectsCalls() throws Exception {
+    pool = new JpaConnectionPool(dataSource, properties);
+    Connection connection = pool.getConnection();
+    connection.close();
+    assertTrue("Connection is not closed!", connection.isClosed());
+    connection.createStatement();
+  }
+
+  @Test
+  public void testStatementReusedFromCache() throws Exception {
+    properties.put(JpaProviderProperties.POOL_STATEMENT_CACHE_SIZE, "2");
+    pool = new JpaConnectionPool(dataSource, properties);
+    try (Connection connection = pool.getConnection()) {
+      PreparedStatement statement = connection.prepareStatement("SELECT 1");
+      statement.setInt(1, 1);
+      statement.close();
+      assertTrue("Statement is not closed!", statement.isClosed());
+    }
+    PreparedStatement physical;
+    try (Connection connection = pool.getConnection();
+         PreparedStatement statement = connection.prepareStatement("SELECT 1")) {
+      physical = statement.unwrap(PreparedStatement.class);
+      assertSame("Incorrect statement connection!", connection, statement.getConnection());
+    }
+
+    Connection connection = physicalConnections.get(0);
+    verify(connection, times(1)).prepareStatement("SELECT 1");
+    verify(physical, times(2)).clearParameters();
+    verify(physical, never()).close();
+    assertEquals("Statement is not cached!", 1, pool.getCachedStatements());
+  }
+
+  @Test
+  public void testStatementsOfSameSqlNotShared() throws Exception {
+    properties.put(JpaProviderProperties.POOL_STATEMENT_CACHE_SIZE, "2");
+    pool = new JpaConnectionPool(dataSource, properties);
+    try (Connection connection = pool.getConnection();
+         PreparedStatement first = connection.prepareStatement("SELECT 1");
+         PreparedStatement second = connection.prepareStatement("SELECT 1")) {
+      assertNotSame("Statement in use is shared!", first.unwrap(PreparedStatement.class),
+          second.unwrap(PreparedStatement.class));
+    }
+    assertEquals("Incorrect cached statements!", 1, pool.getCachedStatements());
+  }
+
+  @Test
+  public void testLeastRecentStatementEvicted() throws Exception {
+    properties.put(JpaProviderProperties.POOL_STATEMENT_CACHE_SIZE, "1");
+    pool = new JpaConnectionPool(dataSource, properties);
+    PreparedStatement evicted;
+    try (Connection connection = pool.getConnection()) {
+      try (PreparedStatement statement = connection.prepareStatement("SELECT 1")) {
+        evicted = statement.unwrap(PreparedStatement.class);
+      }
+      connection.prepareStatement("SELECT 2").close();
+    }
+
+    verify(evicted).close();
+    assertEquals("Incorrect cached statements!", 1, pool.getCachedStatements());
+  }
+
+  @Test
+  public void testChangedStatementNotCached() throws Exception {
+    properties.put(JpaProviderProperties.POOL_STATEMENT_CACHE_SIZE, "2");
+    pool = new JpaConnectionPool(dataSource, properties);
+    PreparedStatement physical;
+    try (Connection connection = pool.getConnection();
+         PreparedStatement statement = connection.prepareStatement("SELECT 1")) {
+      statement.setMaxRows(1);
+      physical = statement.unwrap(PreparedStatement.class);
+    }
+
+    verify(physical).close();
+    assertEquals("Changed statement is cached!", 0, pool.getCachedStatements());
+  }
+
+  @Test
+  public void testCachedStatementsClosedOnSchemaChange() throws Exception {
+    properties.put(JpaProviderProperties.POOL_STATEMENT_CACHE_SIZE, "2");
+    pool = new JpaConnectionPool(dataSource, properties);
+    PreparedStatement physical;
+    try (Connection connection = pool.getConnection()) {
+      try (PreparedStatement statement = connection.prepareStatement("SELECT 1")) {
+        physical = statement.unwrap(PreparedStatement.class);
+      }
+      connection.setSchema("TENANT");
+    }
+
+    verify(physical).close();
+    assertEquals("Statements of other schema are cached!", 0, pool.getCachedStatements());
+  }
+}
@@ -0,0 +1,98 @@
+package ua.danit.jpa.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+import ua.danit.jpa.parsing.JpaPersistenceMetaContext;
+import ua.danit.jpa.parsing.User;
+
+/**
+ * Test for translation of JPQL queries into native SQL.
+ *
+ * @author Andrey Minov
+ */
+public class JpqlQueryTest {
+  private JpaPersistenceMetaContext context;
+
+  @Before
+  public void setUp() {
+    context = new JpaPersistenceMetaContext();
+    context.register(User.class);
+  }
+
+  @Test
+  public void testSelectEntity() {
+    JpqlQuery query = JpqlQuery.compile("select u from User u where u.name = :name "
+                                        + "and u.id between 1 and 10L order by u.value desc",
+        context, null);
+    assertEquals("Incorrect translated SQL!",
+        "SELECT t0.id, t0.full_name, t0.value FROM users t0 WHERE t0.full_name = ? "
+        + "AND t0.id BETWEEN 1 AND 10 ORDER BY t0.value DESC", query.getTemplate().getSql());
+    assertEquals("Incorrect parameter position!", 1, query.getTemplate().getPosition("name"));
+    assertEquals("Incorrect result class!", User.class, query.getResultClass());
+    assertTrue("Query must be select!", query.isSelect());
+  }
+
+  @Test
+  public void testSelectAggregates() {
+    JpqlQuery query = JpqlQuery.compile("SELECT u.name, COUNT(u) FROM User AS u "
+                                        + "WHERE upper(u.value) NOT LIKE 'A%' OR u.name IS NULL "
+                                        + "GROUP BY u.name HAVING count(u) > 1", context, null);
+    assertEquals("Incorrect translated SQL!",
+        "SELECT t0.full_name, COUNT(t0.id) FROM users t0 WHERE UPPER(t0.value) NOT LIKE 'A%' "
+        + "OR t0.full_name IS NULL GROUP BY t0.full_name HAVING COUNT(t0.id) > 1",
+        query.getTemplate().getSql());
+    assertEquals("Several items must be returned as array!", Object[].class,
+        query.getResultClass());
+    assertNull("Aggregates are not entities!", query.getEntityMeta());
+    JpqlQuery count = JpqlQuery.compile("SELECT count(u) FROM User u", context, null);
+    count.checkResultClass(Long.class);
+  }
+
+  @Test
+  public void testUpdateAndDelete() {
+    JpqlQuery update = JpqlQuery.compile("UPDATE User u SET u.value = concat(u.value, :suffix) "
+                                         + "WHERE u.id IN (:first, :second)", context, "test");
+    assertEquals("Incorrect translated SQL!",
+        "UPDATE test.users SET value = (value || ?) WHERE id IN (?, ?)",
+        update.getTemplate().getSql());
+    assertFalse("Update is not select!", update.isSelect());
+    JpqlQuery delete = JpqlQuery.compile("DELETE FROM User WHERE id <> :id", context, null);
+    assertEquals("Incorrect translated SQL!", "DELETE FROM users WHERE id <> ?",
+        delete.getTemplate().getSql());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testJoinNotSupported() {
+    JpqlQuery.compile("SELECT u FROM User u JOIN u.groups g", context, null);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPositionalParameterNotSupported() {
+    JpqlQuery.compile("SELECT u FROM User u WHERE u.id = ?1", context, null);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMissingCommaBetweenItems() {
+    JpqlQuery.compile("SELECT u.id u.name FROM User u", context, null);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testTokensAfterEntityItem() {
+    JpqlQuery.compile("SELECT u u.name FROM User u", context, null);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownAttribute() {
+    JpqlQuery.compile("SELECT u FROM User u WHERE u.password = :password", context, null);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnexpectedResultClass() {
+    JpqlQuery.compile("SELECT u.id FROM User u", context, null).checkResultClass(String.class);
+  }
+}
@@ -0,0 +1,68 @@
+package ua.danit.jpa.query;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Test for parsing of native SQL templates.
+ *
+ * @author Andrey Minov
+ */
+public class SqlTemplateTest {
+
+  @Test
+  public void testRepeatedParameter() {
+    SqlTemplate template = SqlTemplate
+        .parse("SELECT * FROM users WHERE login = :login OR username = :name OR alias = :login");
+    assertEquals("Incorrect rewritten SQL!",
+        "SELECT * FROM users WHERE login = ? OR username = ? OR alias = ?", template.getSql());
+    assertArrayEquals("Repeated parameter must have all positions!", new int[] {1, 3},
+        template.getPositions("login"));
+    assertEquals("Incorrect parameter position!", 2, template.getPosition("name"));
+  }
+
+  @Test
+  public void testColonsOutsideParameters() {
+    String sql = "SELECT 'a:b', \"c:d\", e::int FROM t -- :comment\n"
+                 + "WHERE /* :block */ f = :value AND g = 'it''s :literal'";
+    SqlTemplate template = SqlTemplate.parse(sql);
+    assertEquals("Only parameter must be replaced!",
+        "SELECT 'a:b', \"c:d\", e::int FROM t -- :comment\n"
+        + "WHERE /* :block */ f = ? AND g = 'it''s :literal'", template.getSql());
+    assertEquals("Incorrect parameters!", 1, template.getParameterNames().size());
+  }
+
+  @Test
+  public void testNoParameters() {
+    String sql = "SELECT * FROM users";
+    SqlTemplate template = SqlTemplate.parse(sql);
+    assertSame("SQL without parameters must not be copied!", sql, template.getSql());
+    assertTrue("Parameters must be empty!", template.getParameterNames().isEmpty());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnterminatedLiteral() {
+    SqlTemplate.parse("SELECT * FROM users WHERE login = 'test");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownParameter() {
+    SqlTemplate.parse("SELECT * FROM users WHERE login = :login").getPosition("name");
+  }
+
+  @Test
+  public void testCacheEvictsLeastRecentlyUsed() {
+    QueryCache<String, SqlTemplate> cache = new QueryCache<>(2);
+    SqlTemplate first = cache.get("SELECT 1", SqlTemplate::parse);
+    cache.get("SELECT 2", SqlTemplate::parse);
+    assertSame("Template must be cached!", first, cache.get("SELECT 1", SqlTemplate::parse));
+    cache.get("SELECT 3", SqlTemplate::parse);
+    assertEquals("Cache must be bounded!", 2, cache.size());
+    assertSame("Recently used template must stay cached!", first,
+        cache.get("SELECT 1", SqlTemplate::parse));
+  }
+}
@@ -1,9 +1,11 @@
 package ua.danit.jpa.sessions;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -14,16 +16,30 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.EntityNotFoundException;
 import javax.persistence.EntityTransaction;
 import javax.persistence.FlushModeType;
+import javax.persistence.LockModeType;
+import javax.persistence.OptimisticLockException;
 import javax.persistence.TransactionRequiredException;
+import javax.sql.DataSource;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.InOrder;
+import ua.danit.jpa.configuration.JpaProviderProperties;
+import ua.danit.jpa.dialect.Dialect;
+import ua.danit.jpa.dialect.PostgreSqlDialect;
+import ua.danit.jpa.dialect.StandardDialect;
 import ua.danit.jpa.parsing.JpaPersistenceMetaContext;
+import ua.danit.jpa.query.NativeQuery;
 
 /**
  * Tests for EntitySession implementation.
@@ -36,6 +52,7 @@ public class JPASessionTest {
   private ResultSet set;
   private PreparedStatement statement;
   private Car car;
+  private JpaPersistenceMetaContext context;
 
   @Before
   public void setUp() throws Exception {
@@ -48,10 +65,12 @@ public class JPASessionTest {
         .thenReturn(statement);
     when(statement.getGeneratedKeys()).thenReturn(set);
     when(statement.executeQuery()).thenReturn(set);
-    when(set.getObject(1)).thenReturn(1L);
+    when(set.getLong(1)).thenReturn(1L);
 
-    JpaPersistenceMetaContext context = new JpaPersistenceMetaContext();
+    context = new JpaPersistenceMetaContext();
     context.register(Car.class);
+    context.register(VersionedCar.class);
+    context.register(LegacyCar.class);
     entityManager = new JpaSession(connection, context, mock(EntityManagerFactory.class));
     car = createCar();
   }
@@ -107,6 +126,71 @@ public class JPASessionTest {
   }
 
 
+  @Test
+  public void testMergeVersionedEntity() throws Exception {
+    when(statement.executeUpdate()).thenReturn(1);
+    VersionedCar versionedCar = createVersionedCar();
+
+    entityManager.setFlushMode(FlushModeType.COMMIT);
+    entityManager.persist(versionedCar);
+    entityManager.merge(versionedCar);
+    entityManager.flush();
+
+    // Verify version is checked and incremented.
+    verify(connection, times(1))
+        .prepareStatement("UPDATE versioned_car SET name=?,version=? WHERE id=? AND version=?");
+    verify(statement, times(1)).setInt(2, 4);
+    verify(statement, times(1)).setInt(4, 3);
+    assertEquals("Version is not incremented!", 4, versionedCar.getVersion());
+  }
+
+  @Test(expected = OptimisticLockException.class)
+  public void testMergeStaleVersionedEntity() throws Exception {
+    VersionedCar versionedCar = createVersionedCar();
+
+    entityManager.setFlushMode(FlushModeType.COMMIT);
+    entityManager.persist(versionedCar);
+    entityManager.merge(versionedCar);
+    entityManager.flush();
+  }
+
+  @Test(expected = OptimisticLockException.class)
+  public void testRemoveStaleVersionedEntity() throws Exception {
+    entityManager.remove(createVersionedCar());
+  }
+
+  @Test
+  public void testUpdateEntityWithNullVersion() throws Exception {
+    when(statement.executeBatch()).thenReturn(new int[] {1, 1});
+    LegacyCar legacyCar = createLegacyCar();
+    LegacyCar versionedCar = createLegacyCar();
+    versionedCar.setVersion(3L);
+
+    JpaStatelessSession session = new JpaStatelessSession(new LogicalConnection(connection),
+        context, 10);
+    session.update(legacyCar);
+    session.update(versionedCar);
+    session.flush();
+
+    // NULL version never equals bound parameter, so it is matched by IS NULL.
+    verify(connection, times(1)).prepareStatement(
+        "UPDATE legacy_car SET name=?,version=? WHERE id=? AND version IS NULL");
+    verify(connection, times(1)).prepareStatement(
+        "UPDATE legacy_car SET name=?,version=? WHERE id=? AND version=?");
+    assertEquals("Version is not initialized!", Long.valueOf(0), legacyCar.getVersion());
+    assertEquals("Version is not incremented!", Long.valueOf(4), versionedCar.getVersion());
+  }
+
+  @Test
+  public void testRemoveEntityWithNullVersion() throws Exception {
+    when(statement.executeUpdate()).thenReturn(1);
+
+    entityManager.remove(createLegacyCar());
+
+    verify(connection, times(1))
+        .prepareStatement("DELETE FROM legacy_car WHERE id=? AND version IS NULL");
+  }
+
   @Test(expected = EntityNotFoundException.class)
   public void testRefreshNotExisted() throws Exception {
     when(connection.prepareStatement(anyString())).thenReturn(statement);
@@ -115,8 +199,8 @@ public class JPASessionTest {
 
   @Test
   public void testRefreshEntity() throws Exception {
-    when(set.getObject("id")).thenReturn(1);
-    when(set.getObject("name")).thenReturn("new name");
+    when(set.getLong(1)).thenReturn(1L);
+    when(set.getObject(2)).thenReturn("new name");
     when(set.next()).thenReturn(true);
 
     entityManager.setFlushMode(FlushModeType.COMMIT);
@@ -139,8 +223,8 @@ public class JPASessionTest {
 
   @Test
   public void testFindEntityInDatabase() throws Exception {
-    when(set.getObject("id")).thenReturn(1);
-    when(set.getObject("name")).thenReturn("new name");
+    when(set.getLong(1)).thenReturn(1L);
+    when(set.getObject(2)).thenReturn("new name");
     when(set.next()).thenReturn(true);
 
     Car car = entityManager.find(Car.class, 1);
@@ -154,6 +238,49 @@ public class JPASessionTest {
     assertEquals("Incorrect selected car name", "new name", car.getName());
   }
 
+  @Test
+  public void testFindWithPessimisticLock() throws Exception {
+    when(set.getLong(1)).thenReturn(1L);
+    when(set.getObject(2)).thenReturn("locked name");
+    when(set.next()).thenReturn(true);
+
+    entityManager = new JpaSession(connection, context, mock(EntityManagerFactory.class),
+        new PostgreSqlDialect());
+    entityManager.getTransaction().begin();
+    Car car = entityManager.find(Car.class, 1, LockModeType.PESSIMISTIC_WRITE,
+        Collections.singletonMap(JpaProviderProperties.LOCK_TIMEOUT, Dialect.SKIP_LOCKED));
+
+    // Verify object is selected with lock.
+    verify(connection, times(1))
+        .prepareStatement("SELECT id,name FROM car WHERE id=? FOR UPDATE SKIP LOCKED");
+    assertEquals("Incorrect selected car name", "locked name", car.getName());
+    assertEquals("Incorrect lock mode", LockModeType.PESSIMISTIC_WRITE,
+        entityManager.getLockMode(car));
+  }
+
+  @Test
+  public void testLockForceIncrement() throws Exception {
+    when(set.next()).thenReturn(true);
+    when(set.getInt(1)).thenReturn(3);
+    when(statement.executeUpdate()).thenReturn(1);
+    VersionedCar versionedCar = createVersionedCar();
+
+    entityManager.getTransaction().begin();
+    entityManager.persist(versionedCar);
+    entityManager.lock(versionedCar, LockModeType.PESSIMISTIC_FORCE_INCREMENT);
+
+    verify(connection, times(1))
+        .prepareStatement("SELECT version FROM versioned_car WHERE id=? FOR UPDATE");
+    verify(connection, times(1))
+        .prepareStatement("UPDATE versioned_car SET version=? WHERE id=? AND version=?");
+    assertEquals("Version is not incremented!", 4, versionedCar.getVersion());
+  }
+
+  @Test(expected = TransactionRequiredException.class)
+  public void testLockWithoutTransaction() throws Exception {
+    entityManager.find(Car.class, 1, LockModeType.PESSIMISTIC_READ);
+  }
+
   @Test
   public void testNeverFlushChanged() throws Exception {
     entityManager.setFlushMode(FlushModeType.COMMIT);
@@ -167,6 +294,78 @@ public class JPASessionTest {
     verify(connection, never()).prepareStatement(anyString(), anyInt());
   }
 
+  @Test
+  public void testBatchCountsMergedFromShards() throws Exception {
+    PreparedStatement first = mock(PreparedStatement.class);
+    Connection firstShard = mock(Connection.class);
+    when(firstShard.prepareStatement(anyString())).thenReturn(first);
+    when(first.executeBatch()).thenReturn(new int[] {Statement.SUCCESS_NO_INFO, 1},
+        new int[] {Statement.EXECUTE_FAILED});
+    PreparedStatement second = mock(PreparedStatement.class);
+    Connection secondShard = mock(Connection.class);
+    when(secondShard.prepareStatement(anyString())).thenReturn(second);
+    when(second.executeBatch()).thenReturn(new int[] {1, 1}, new int[] {1});
+    JpaSession session = new JpaSession(
+        Arrays.asList(new LogicalConnection(firstShard), new LogicalConnection(secondShard)),
+        context, mock(EntityManagerFactory.class), new StandardDialect());
+
+    NativeQuery<?> query = (NativeQuery<?>) session
+        .createNativeQuery("UPDATE car SET name = :name")
+        .setHint(JpaProviderProperties.BATCH_SIZE, 2);
+    for (int i = 0; i < 3; i++) {
+      query.setParameter("name", "car-" + i).addBatch();
+    }
+
+    // Unknown and failed counts of any shard are kept in merged counts.
+    assertArrayEquals("Incorrect merged counts!",
+        new int[] {Statement.SUCCESS_NO_INFO, 2, Statement.EXECUTE_FAILED}, query.executeBatch());
+    verify(first, times(2)).executeBatch();
+    verify(second, times(2)).executeBatch();
+  }
+
+  @Test
+  public void testFlushAsync() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      entityManager.setFlushMode(FlushModeType.COMMIT);
+      entityManager.persist(car);
+      entityManager.merge(car);
+      entityManager.merge(car);
+      entityManager.unwrap(JpaSession.class).flushAsync(executor).get();
+    } finally {
+      executor.shutdown();
+    }
+
+    // Verify repeated update is coalesced.
+    verify(connection, times(1))
+        .prepareStatement("INSERT INTO car (name) VALUES (?)", Statement.RETURN_GENERATED_KEYS);
+    verify(connection, times(1)).prepareStatement("UPDATE car SET name=? WHERE id=?");
+  }
+
+  @Test
+  public void testCommitWaitsForFlushAsync() throws Exception {
+    Executor delayedExecutor = runnable -> new Thread(() -> {
+      try {
+        Thread.sleep(100);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      runnable.run();
+    }).start();
+
+    EntityTransaction entityTransaction = entityManager.getTransaction();
+    entityTransaction.begin();
+    entityManager.setFlushMode(FlushModeType.COMMIT);
+    entityManager.persist(car);
+    entityManager.unwrap(JpaSession.class).flushAsync(delayedExecutor);
+    entityTransaction.commit();
+
+    InOrder inOrder = inOrder(connection);
+    inOrder.verify(connection)
+        .prepareStatement("INSERT INTO car (name) VALUES (?)", Statement.RETURN_GENERATED_KEYS);
+    inOrder.verify(connection).commit();
+  }
+
   @Test
   public void testTransactionCommit() throws Exception {
     EntityTransaction entityTransaction = entityManager.getTransaction();
@@ -189,6 +388,44 @@ public class JPASessionTest {
     verify(connection, times(1)).setAutoCommit(true);
   }
 
+  @Test
+  public void testConnectionReleasedAfterStatement() throws Exception {
+    DataSource dataSource = mock(DataSource.class);
+    when(dataSource.getConnection()).thenReturn(connection);
+    entityManager = new JpaSession(new LogicalConnection(dataSource,
+        ConnectionHandlingMode.RELEASE_AFTER_TRANSACTION), context,
+        mock(EntityManagerFactory.class), new StandardDialect());
+
+    // Verify connection is not acquired until first statement.
+    verify(dataSource, never()).getConnection();
+    entityManager.persist(car);
+    entityManager.remove(car);
+
+    verify(dataSource, times(2)).getConnection();
+    verify(connection, times(2)).close();
+  }
+
+  @Test
+  public void testConnectionReleasedAfterTransaction() throws Exception {
+    DataSource dataSource = mock(DataSource.class);
+    when(dataSource.getConnection()).thenReturn(connection);
+    entityManager = new JpaSession(new LogicalConnection(dataSource,
+        ConnectionHandlingMode.RELEASE_AFTER_TRANSACTION), context,
+        mock(EntityManagerFactory.class), new StandardDialect());
+
+    EntityTransaction entityTransaction = entityManager.getTransaction();
+    entityTransaction.begin();
+    entityManager.persist(car);
+    entityManager.remove(car);
+    verify(connection, never()).close();
+    entityTransaction.commit();
+
+    verify(dataSource, times(1)).getConnection();
+    verify(connection, times(1)).setAutoCommit(false);
+    verify(connection, times(1)).commit();
+    verify(connection, times(1)).close();
+  }
+
   @Test(expected = IllegalStateException.class)
   public void testTransactionRollbackOnly() throws Exception {
     EntityTransaction entityTransaction = entityManager.getTransaction();
@@ -210,4 +447,19 @@ public class JPASessionTest {
     return car;
   }
 
+  private LegacyCar createLegacyCar() {
+    LegacyCar legacyCar = new LegacyCar();
+    legacyCar.setName("legacy car!");
+    legacyCar.setId(3);
+    return legacyCar;
+  }
+
+  private VersionedCar createVersionedCar() {
+    VersionedCar versionedCar = new VersionedCar();
+    versionedCar.setName("versioned car!");
+    versionedCar.setId(2);
+    versionedCar.setVersion(3);
+    return versionedCar;
+  }
+
 }
\ No newline at end of file
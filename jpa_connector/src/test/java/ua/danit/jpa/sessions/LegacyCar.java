@@ -0,0 +1,45 @@
+package ua.danit.jpa.sessions;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.Version;
+
+/**
+ * Test car class entry which rows may be inserted with NULL version.
+ *
+ * @author Andrey Minov
+ */
+@Entity
+@Table(name = "legacy_car")
+public class LegacyCar {
+  @Id
+  private long id;
+  private String name;
+  @Version
+  private Long version;
+
+  public long getId() {
+    return id;
+  }
+
+  public void setId(long id) {
+    this.id = id;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public void setName(String name) {
+    this.name = name;
+  }
+
+  public Long getVersion() {
+    return version;
+  }
+
+  public void setVersion(Long version) {
+    this.version = version;
+  }
+}
@@ -0,0 +1,45 @@
+package ua.danit.jpa.sessions;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.Version;
+
+/**
+ * Test car class entry with optimistic lock version.
+ *
+ * @author Andrey Minov
+ */
+@Entity
+@Table(name = "versioned_car")
+public class VersionedCar {
+  @Id
+  private long id;
+  private String name;
+  @Version
+  private int version;
+
+  public long getId() {
+    return id;
+  }
+
+  public void setId(long id) {
+    this.id = id;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public void setName(String name) {
+    this.name = name;
+  }
+
+  public int getVersion() {
+    return version;
+  }
+
+  public void setVersion(int version) {
+    this.version = version;
+  }
+}
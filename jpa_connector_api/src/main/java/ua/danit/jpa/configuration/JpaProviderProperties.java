@@ -22,6 +22,144 @@ public final class JpaProviderProperties {
    * The constant JDBC driver class name.
    */
   public static final String DRIVER = "ua.danit.jpa.driver";
-
+  /**
+   * The constant for SQL dialect class name. Resolved from connection URL when absent.
+   */
+  public static final String DIALECT = "ua.danit.jpa.dialect";
+  /**
+   * The constant for pessimistic lock timeout in milliseconds. Value 0 means NOWAIT,
+   * value -2 means SKIP LOCKED. May be set as query hint or entity manager property.
+   */
+  public static final String LOCK_TIMEOUT = "javax.persistence.lock.timeout";
+  /**
+   * The constant for connection handling mode: HOLD (default) to hold connection for whole
+   * entity manager lifetime or RELEASE_AFTER_TRANSACTION to acquire connection lazily and
+   * return it to the pool after each transaction or statement outside of transaction.
+   */
+  public static final String CONNECTION_HANDLING = "ua.danit.jpa.connection_handling";
+  /**
+   * The constant for number of threads used for asynchronous flushes.
+   * Defaults to number of available processors.
+   */
+  public static final String ASYNC_FLUSH_THREADS = "ua.danit.jpa.flush.async_threads";
+  /**
+   * The constant for number of asynchronous flushes waiting for execution, when exceeded
+   * flush is executed by calling thread. Defaults to 256.
+   */
+  public static final String ASYNC_FLUSH_QUEUE_SIZE = "ua.danit.jpa.flush.async_queue_size";
+  /**
+   * The constant for maximum number of statements in JDBC batch used by stateless sessions
+   * and batched native queries, where it may also be set as query hint. Defaults to 50.
+   */
+  public static final String BATCH_SIZE = "ua.danit.jpa.jdbc.batch_size";
+  /**
+   * The constant for maximum number of connections in provider connection pool.
+   * Defaults to 10.
+   */
+  public static final String POOL_MAX_SIZE = "ua.danit.jpa.pool.max_size";
+  /**
+   * The constant for minimum number of idle connections kept by provider connection pool.
+   * Defaults to 0.
+   */
+  public static final String POOL_MIN_IDLE = "ua.danit.jpa.pool.min_idle";
+  /**
+   * The constant for maximum time in milliseconds to wait for pooled connection.
+   * Defaults to 30 seconds.
+   */
+  public static final String POOL_CONNECTION_TIMEOUT = "ua.danit.jpa.pool.connection_timeout";
+  /**
+   * The constant for time in milliseconds after which idle connection above min idle
+   * is closed, 0 to keep idle connections. Defaults to 10 minutes.
+   */
+  public static final String POOL_IDLE_TIMEOUT = "ua.danit.jpa.pool.idle_timeout";
+  /**
+   * The constant for maximum lifetime in milliseconds of pooled connection, 0 for unlimited
+   * lifetime. Defaults to 30 minutes.
+   */
+  public static final String POOL_MAX_LIFETIME = "ua.danit.jpa.pool.max_lifetime";
+  /**
+   * The constant for timeout in milliseconds of connection validation. Defaults to 5 seconds.
+   */
+  public static final String POOL_VALIDATION_TIMEOUT = "ua.danit.jpa.pool.validation_timeout";
+  /**
+   * The constant for time in milliseconds after which borrowed and not returned connection
+   * is reported as leak with stack trace of borrowing code, 0 to disable. Defaults to 0.
+   */
+  public static final String POOL_LEAK_DETECTION_THRESHOLD =
+      "ua.danit.jpa.pool.leak_detection_threshold";
+  /**
+   * The constant for maximum number of prepared statements cached by each pooled connection,
+   * so statements of the same SQL are prepared once per connection. Zero disables caching.
+   * Defaults to 0.
+   */
+  public static final String POOL_STATEMENT_CACHE_SIZE =
+      "ua.danit.jpa.pool.statement_cache_size";
+  /**
+   * The constant for connection pool name used for housekeeper thread and JMX object name.
+   */
+  public static final String POOL_NAME = "ua.danit.jpa.pool.name";
+  /**
+   * The constant for flag whether connection pool MBean is registered in platform MBean
+   * server as ua.danit.jpa:type=Pool,name=&lt;pool name&gt;. Defaults to false.
+   */
+  public static final String POOL_JMX = "ua.danit.jpa.pool.register_mbeans";
+  /**
+   * The constant for comma separated connection URLs of read replicas. Replicas use same
+   * credentials, driver and pool settings as primary connection.
+   */
+  public static final String REPLICA_CONNECTION_URLS = "ua.danit.jpa.replica.connection_urls";
+  /**
+   * The constant for replica selection: ROUND_ROBIN (default) or LEAST_LOADED.
+   */
+  public static final String REPLICA_SELECTION = "ua.danit.jpa.replica.selection";
+  /**
+   * The constant for time in milliseconds after session write during which session reads
+   * are routed to primary. Defaults to 1000.
+   */
+  public static final String READ_YOUR_WRITES_WINDOW =
+      "ua.danit.jpa.replica.read_your_writes_window";
+  /**
+   * The constant for read-only flag. As entity manager property it makes following
+   * transactions read-only, as query hint it allows query to be routed to replica.
+   */
+  public static final String READ_ONLY = "ua.danit.jpa.read_only";
+  /**
+   * The constant for comma separated connection URLs of shards. When set entities are
+   * distributed over shards by hash of primary key and connection URL is ignored.
+   */
+  public static final String SHARD_CONNECTION_URLS = "ua.danit.jpa.shard.connection_urls";
+  /**
+   * The constant for tenant identifier. As entity manager property it binds all statements
+   * of entity manager to the schema of tenant.
+   */
+  public static final String TENANT_ID = "ua.danit.jpa.tenant_id";
+  /**
+   * The constant for format of tenant schema name, where tenant identifier is the only
+   * argument. Default value is "%s", so schema is named as tenant itself.
+   */
+  public static final String TENANT_SCHEMA_FORMAT = "ua.danit.jpa.tenant.schema_format";
+  /**
+   * The constant for warm-up flag. When true factory opens minimum idle connections
+   * of all pools in parallel during startup. When statement cache is enabled, generated
+   * statements of all entities are prepared on each of opened connections. Defaults to false.
+   */
+  public static final String WARM_UP = "ua.danit.jpa.warm_up";
+  /**
+   * The constant for comma separated class names of custom type handlers. Listed handlers
+   * are registered after handlers found by service loader and replace built-in handlers
+   * of the same type.
+   */
+  public static final String TYPE_HANDLERS = "ua.danit.jpa.type_handlers";
+  /**
+   * The constant for maximum number of parsed native SQL templates and of translated JPQL
+   * queries, each cached by factory. Zero disables caching. Defaults to 256.
+   */
+  public static final String QUERY_TEMPLATE_CACHE_SIZE = "ua.danit.jpa.query.template_cache_size";
+  /**
+   * The constant for strict validation of named queries. When true named query which SQL
+   * cannot be prepared fails factory creation or query registration, otherwise it is only
+   * logged. Defaults to false.
+   */
+  public static final String NAMED_QUERY_VALIDATION = "ua.danit.jpa.query.validate_named";
 
 }
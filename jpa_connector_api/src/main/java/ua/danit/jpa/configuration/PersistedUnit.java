@@ -26,6 +26,26 @@ public class PersistedUnit {
   @XmlElement(name = "class", namespace = "http://java.sun.com/xml/ns/persistence")
   private List<String> classes;
 
+  private PersistedUnit() {
+    // Used by JAXB.
+  }
+
+  /**
+   * Instantiates a new persisted unit.
+   *
+   * @param name       the unit name
+   * @param provider   the persistence provider class name
+   * @param properties the unit properties
+   * @param classes    the managed class names
+   */
+  public PersistedUnit(String name, String provider, PersistenceRoot.Properties properties,
+                       List<String> classes) {
+    this.name = name;
+    this.provider = provider;
+    this.properties = properties;
+    this.classes = classes;
+  }
+
   public String getName() {
     return name;
   }
@@ -18,6 +18,19 @@ public class PersistenceRoot {
   @XmlElement(name = "persistence-unit", namespace = "http://java.sun.com/xml/ns/persistence")
   private List<PersistedUnit> units;
 
+  private PersistenceRoot() {
+    // Used by JAXB.
+  }
+
+  /**
+   * Instantiates a new persistence root.
+   *
+   * @param units the persisted units
+   */
+  public PersistenceRoot(List<PersistedUnit> units) {
+    this.units = units;
+  }
+
   public List<PersistedUnit> getUnits() {
     return units;
   }
@@ -33,6 +46,18 @@ public class PersistenceRoot {
     @XmlElement(name = "property", namespace = "http://java.sun.com/xml/ns/persistence")
     private List<Property> values;
 
+    private Properties() {
+      // Used by JAXB.
+    }
+
+    /**
+     * Instantiates a new properties element.
+     *
+     * @param values the property values
+     */
+    public Properties(List<Property> values) {
+      this.values = values;
+    }
 
     public List<Property> getValues() {
       return values;
@@ -19,6 +19,21 @@ public class Property {
   @XmlAttribute
   private String value;
 
+  private Property() {
+    // Used by JAXB.
+  }
+
+  /**
+   * Instantiates a new property.
+   *
+   * @param name  the property name
+   * @param value the property value
+   */
+  public Property(String name, String value) {
+    this.name = name;
+    this.value = value;
+  }
+
   public String getName() {
     return name;
   }
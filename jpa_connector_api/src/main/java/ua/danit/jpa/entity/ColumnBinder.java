@@ -0,0 +1,323 @@
+package ua.danit.jpa.entity;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import javax.persistence.AttributeConverter;
+
+import ua.danit.jpa.types.TypeHandler;
+import ua.danit.jpa.types.TypeHandlerRegistry;
+
+/**
+ * Strategy binding column value of entity into statement and reading it from result set.
+ * Binder is chosen once per column by its type, so int, long and double columns are
+ * transferred with typed JDBC methods and primitive attributes are never boxed. Other types
+ * are transferred by their {@link TypeHandler}, optionally after attribute conversion.
+ *
+ * @author Andrey Minov
+ */
+public abstract class ColumnBinder {
+  private final int sqlType;
+  private final PropertyAccessor accessor;
+
+  private ColumnBinder(int sqlType, PropertyAccessor accessor) {
+    this.sqlType = sqlType;
+    this.accessor = accessor;
+  }
+
+  /**
+   * Choose binder for column of provided type.
+   *
+   * @param type     the class type of column attribute
+   * @param sqlType  the sql type one of {@link java.sql.Types}
+   * @param accessor the accessor of attribute value
+   * @return the column binder.
+   */
+  static ColumnBinder of(Class<?> type, int sqlType, PropertyAccessor accessor) {
+    if (type == int.class || type == Integer.class) {
+      return new IntBinder(sqlType, accessor, type.isPrimitive());
+    }
+    if (type == long.class || type == Long.class) {
+      return new LongBinder(sqlType, accessor, type.isPrimitive());
+    }
+    if (type == double.class || type == Double.class) {
+      return new DoubleBinder(sqlType, accessor, type.isPrimitive());
+    }
+    return new ObjectBinder(sqlType, accessor);
+  }
+
+  /**
+   * Choose binder for column transferred by type handler. Columns without converter whose
+   * handler binds values natively through JDBC driver get binders specialized for type.
+   *
+   * @param type      the class type of column attribute
+   * @param handler   the handler of column type
+   * @param converter the converter of attribute to column type, null when not converted
+   * @param accessor  the accessor of attribute value
+   * @return the column binder.
+   */
+  @SuppressWarnings("unchecked")
+  static ColumnBinder of(Class<?> type, TypeHandler<?> handler,
+                         AttributeConverter<?, ?> converter, PropertyAccessor accessor) {
+    if (converter == null && TypeHandlerRegistry.isJdbcHandler(handler)) {
+      return of(type, handler.getSqlType(), accessor);
+    }
+    return new HandlerBinder((TypeHandler<Object>) handler,
+        (AttributeConverter<Object, Object>) converter, accessor);
+  }
+
+  /**
+   * Bind column value of entity as statement parameter.
+   *
+   * @param statement the statement
+   * @param index     the parameter index
+   * @param entity    the entity to read value from
+   * @throws SQLException when parameter cannot be set.
+   */
+  public abstract void bind(PreparedStatement statement, int index, Object entity)
+      throws SQLException;
+
+  /**
+   * Bind provided column value as statement parameter.
+   *
+   * @param statement the statement
+   * @param index     the parameter index
+   * @param value     the column value, may be null
+   * @throws SQLException when parameter cannot be set.
+   */
+  public void bindValue(PreparedStatement statement, int index, Object value)
+      throws SQLException {
+    if (value == null) {
+      statement.setNull(index, sqlType);
+    } else {
+      statement.setObject(index, value, sqlType);
+    }
+  }
+
+  /**
+   * Read column value from current row of result set into entity.
+   *
+   * @param resultSet the result set
+   * @param index     the column index
+   * @param entity    the entity to write value to
+   * @throws SQLException when column cannot be read.
+   */
+  public abstract void read(ResultSet resultSet, int index, Object entity) throws SQLException;
+
+  /**
+   * Read column value from current row of result set.
+   *
+   * @param resultSet the result set
+   * @param index     the column index
+   * @return the column value or null for SQL NULL.
+   * @throws SQLException when column cannot be read.
+   */
+  public Object readValue(ResultSet resultSet, int index) throws SQLException {
+    return resultSet.getObject(index);
+  }
+
+  int getSqlType() {
+    return sqlType;
+  }
+
+  PropertyAccessor getAccessor() {
+    return accessor;
+  }
+
+  private static final class ObjectBinder extends ColumnBinder {
+    private ObjectBinder(int sqlType, PropertyAccessor accessor) {
+      super(sqlType, accessor);
+    }
+
+    @Override
+    public void bind(PreparedStatement statement, int index, Object entity)
+        throws SQLException {
+      bindValue(statement, index, getAccessor().get(entity));
+    }
+
+    @Override
+    public void read(ResultSet resultSet, int index, Object entity) throws SQLException {
+      getAccessor().set(entity, resultSet.getObject(index));
+    }
+  }
+
+  private static final class IntBinder extends ColumnBinder {
+    private final boolean primitive;
+
+    private IntBinder(int sqlType, PropertyAccessor accessor, boolean primitive) {
+      super(sqlType, accessor);
+      this.primitive = primitive;
+    }
+
+    @Override
+    public void bind(PreparedStatement statement, int index, Object entity)
+        throws SQLException {
+      if (primitive) {
+        statement.setInt(index, getAccessor().getInt(entity));
+      } else {
+        bindValue(statement, index, getAccessor().get(entity));
+      }
+    }
+
+    @Override
+    public void bindValue(PreparedStatement statement, int index, Object value)
+        throws SQLException {
+      if (value instanceof Number) {
+        statement.setInt(index, ((Number) value).intValue());
+      } else {
+        super.bindValue(statement, index, value);
+      }
+    }
+
+    @Override
+    public void read(ResultSet resultSet, int index, Object entity) throws SQLException {
+      if (primitive) {
+        // SQL NULL is read as 0, the default value of primitive attribute.
+        getAccessor().setInt(entity, resultSet.getInt(index));
+      } else {
+        getAccessor().set(entity, readValue(resultSet, index));
+      }
+    }
+
+    @Override
+    public Object readValue(ResultSet resultSet, int index) throws SQLException {
+      int value = resultSet.getInt(index);
+      return resultSet.wasNull() ? null : value;
+    }
+  }
+
+  private static final class LongBinder extends ColumnBinder {
+    private final boolean primitive;
+
+    private LongBinder(int sqlType, PropertyAccessor accessor, boolean primitive) {
+      super(sqlType, accessor);
+      this.primitive = primitive;
+    }
+
+    @Override
+    public void bind(PreparedStatement statement, int index, Object entity)
+        throws SQLException {
+      if (primitive) {
+        statement.setLong(index, getAccessor().getLong(entity));
+      } else {
+        bindValue(statement, index, getAccessor().get(entity));
+      }
+    }
+
+    @Override
+    public void bindValue(PreparedStatement statement, int index, Object value)
+        throws SQLException {
+      if (value instanceof Number) {
+        statement.setLong(index, ((Number) value).longValue());
+      } else {
+        super.bindValue(statement, index, value);
+      }
+    }
+
+    @Override
+    public void read(ResultSet resultSet, int index, Object entity) throws SQLException {
+      if (primitive) {
+        getAccessor().setLong(entity, resultSet.getLong(index));
+      } else {
+        getAccessor().set(entity, readValue(resultSet, index));
+      }
+    }
+
+    @Override
+    public Object readValue(ResultSet resultSet, int index) throws SQLException {
+      long value = resultSet.getLong(index);
+      return resultSet.wasNull() ? null : value;
+    }
+  }
+
+  private static final class DoubleBinder extends ColumnBinder {
+    private final boolean primitive;
+
+    private DoubleBinder(int sqlType, PropertyAccessor accessor, boolean primitive) {
+      super(sqlType, accessor);
+      this.primitive = primitive;
+    }
+
+    @Override
+    public void bind(PreparedStatement statement, int index, Object entity)
+        throws SQLException {
+      if (primitive) {
+        statement.setDouble(index, getAccessor().getDouble(entity));
+      } else {
+        bindValue(statement, index, getAccessor().get(entity));
+      }
+    }
+
+    @Override
+    public void bindValue(PreparedStatement statement, int index, Object value)
+        throws SQLException {
+      if (value instanceof Number) {
+        statement.setDouble(index, ((Number) value).doubleValue());
+      } else {
+        super.bindValue(statement, index, value);
+      }
+    }
+
+    @Override
+    public void read(ResultSet resultSet, int index, Object entity) throws SQLException {
+      if (primitive) {
+        getAccessor().setDouble(entity, resultSet.getDouble(index));
+      } else {
+        getAccessor().set(entity, readValue(resultSet, index));
+      }
+    }
+
+    @Override
+    public Object readValue(ResultSet resultSet, int index) throws SQLException {
+      double value = resultSet.getDouble(index);
+      return resultSet.wasNull() ? null : value;
+    }
+  }
+
+  /**
+   * Binder transferring column by type handler. Converter is not called for null values,
+   * which are always bound as SQL NULL and read as null attributes.
+   */
+  private static final class HandlerBinder extends ColumnBinder {
+    private final TypeHandler<Object> handler;
+    private final AttributeConverter<Object, Object> converter;
+
+    private HandlerBinder(TypeHandler<Object> handler,
+                          AttributeConverter<Object, Object> converter,
+                          PropertyAccessor accessor) {
+      super(handler.getSqlType(), accessor);
+      this.handler = handler;
+      this.converter = converter;
+    }
+
+    @Override
+    public void bind(PreparedStatement statement, int index, Object entity)
+        throws SQLException {
+      bindValue(statement, index, getAccessor().get(entity));
+    }
+
+    @Override
+    public void bindValue(PreparedStatement statement, int index, Object value)
+        throws SQLException {
+      Object column = value == null || converter == null ? value
+          : converter.convertToDatabaseColumn(value);
+      if (column == null) {
+        statement.setNull(index, getSqlType());
+      } else {
+        handler.bind(statement, index, column);
+      }
+    }
+
+    @Override
+    public void read(ResultSet resultSet, int index, Object entity) throws SQLException {
+      getAccessor().set(entity, readValue(resultSet, index));
+    }
+
+    @Override
+    public Object readValue(ResultSet resultSet, int index) throws SQLException {
+      Object column = handler.read(resultSet, index);
+      return column == null || converter == null ? column
+          : converter.convertToEntityAttribute(column);
+    }
+  }
+}
@@ -4,7 +4,9 @@ import static ua.danit.jpa.utils.Utils.checkNonEmpty;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import javax.persistence.AttributeConverter;
 
+import ua.danit.jpa.types.TypeHandler;
 import ua.danit.jpa.utils.Utils;
 
 /**
@@ -13,6 +15,7 @@ import ua.danit.jpa.utils.Utils;
  * @author Andrey Minov
  */
 public class ColumnMeta {
+  private String attribute;
   private String name;
   private int sqlType;
   private Class<?> type;
@@ -20,6 +23,8 @@ public class ColumnMeta {
   private Field field;
   private Method getter;
   private Method setter;
+  private PropertyAccessor accessor;
+  private ColumnBinder binder;
   /**
    * (Optional) Whether the database column is nullable.
    */
@@ -73,15 +78,16 @@ public class ColumnMeta {
   }
 
   /**
-   * Instantiates a new Column meta.
+   * Instantiates a new Column meta. Value is accessed through getter and setter when both
+   * are provided, otherwise directly through the field.
    *
    * @param name       the name of column
    * @param table      the name of the table
    * @param sqlType    the sql type one of {@link java.sql.Types}
    * @param type       the class type for fields
    * @param field      field corresponding to this column
-   * @param getter     the getter for field corresponding to column
-   * @param setter     the setter for field corresponding to column
+   * @param getter     the getter for field corresponding to column, null for field access
+   * @param setter     the setter for field corresponding to column, null for field access
    * @param nullable   whether the database column is nullable.
    * @param insertable whether the column is included in SQL INSERT
    *                   statements generated by the persistence provider.
@@ -96,14 +102,46 @@ public class ColumnMeta {
   public ColumnMeta(String name, String table, int sqlType, Class<?> type, Field field,
                     Method getter, Method setter, boolean nullable, boolean insertable,
                     boolean updatable, int length, int scale) {
+    this(field != null ? field.getName() : name, name, table, sqlType, type,
+        getter != null && setter != null ? new MethodAccessor(getter, setter)
+            : FieldAccessor.of(field), nullable, insertable, updatable, length, scale);
+    this.field = field;
+    this.getter = getter;
+    this.setter = setter;
+  }
+
+  /**
+   * Instantiates a new Column meta with provided accessor and without reflective members,
+   * as in factories generated at compile time.
+   *
+   * @param attribute  the name of entity attribute
+   * @param name       the name of column
+   * @param table      the name of the table
+   * @param sqlType    the sql type one of {@link java.sql.Types}
+   * @param type       the class type for fields
+   * @param accessor   the accessor of attribute value
+   * @param nullable   whether the database column is nullable.
+   * @param insertable whether the column is included in SQL INSERT
+   *                   statements generated by the persistence provider.
+   * @param updatable  whether the column is included in SQL UPDATE
+   *                   statements generated by the persistence provider.
+   * @param length     the column length. (Applies only if a
+   *                   string-valued column is used.)
+   * @param scale      the scale for a decimal (exact numeric) column.
+   *                   (Applies only if a decimal column is used.)
+   * @throws IllegalArgumentException when name of column is empty.
+   */
+  public ColumnMeta(String attribute, String name, String table, int sqlType, Class<?> type,
+                    PropertyAccessor accessor, boolean nullable, boolean insertable,
+                    boolean updatable, int length, int scale) {
     checkNonEmpty("name", name);
 
-    this.field = field;
+    this.attribute = attribute;
     this.name = name;
     this.sqlType = sqlType;
     this.type = type;
-    this.getter = getter;
-    this.setter = setter;
+    this.accessor = accessor;
+    this.binder = ColumnBinder.of(type, sqlType, accessor);
     this.nullable = nullable;
     this.insertable = insertable;
     this.updatable = updatable;
@@ -112,6 +150,32 @@ public class ColumnMeta {
     this.scale = scale;
   }
 
+  private ColumnMeta(ColumnMeta column, int sqlType, ColumnBinder binder) {
+    this(column.attribute, column.name, column.table, sqlType, column.type, column.accessor,
+        column.nullable, column.insertable, column.updatable, column.length, column.scale);
+    this.field = column.field;
+    this.getter = column.getter;
+    this.setter = column.setter;
+    this.binder = binder;
+  }
+
+  /**
+   * Create copy of column transferred by provided type handler.
+   *
+   * @param handler   the handler of column type
+   * @param converter the converter of attribute to column type, null when not converted
+   * @return the column meta with sql type of handler.
+   */
+  public ColumnMeta withTypeHandler(TypeHandler<?> handler,
+                                    AttributeConverter<?, ?> converter) {
+    return new ColumnMeta(this, handler.getSqlType(),
+        ColumnBinder.of(type, handler, converter, accessor));
+  }
+
+  public String getAttribute() {
+    return attribute;
+  }
+
   public String getName() {
     return name;
   }
@@ -128,6 +192,14 @@ public class ColumnMeta {
     return setter;
   }
 
+  public PropertyAccessor getAccessor() {
+    return accessor;
+  }
+
+  public ColumnBinder getBinder() {
+    return binder;
+  }
+
   public boolean isNullable() {
     return nullable;
   }
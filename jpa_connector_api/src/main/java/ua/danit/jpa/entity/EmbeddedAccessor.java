@@ -0,0 +1,65 @@
+package ua.danit.jpa.entity;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import javax.persistence.PersistenceException;
+
+/**
+ * Property accessor of field of object embedded into entity, such as column of embedded id.
+ * Embedded object is created when value is written into entity without one.
+ *
+ * @author Andrey Minov
+ */
+public final class EmbeddedAccessor implements PropertyAccessor {
+  private final PropertyAccessor owner;
+  private final PropertyAccessor property;
+  private final Constructor<?> constructor;
+
+  private EmbeddedAccessor(PropertyAccessor owner, PropertyAccessor property,
+                           Constructor<?> constructor) {
+    this.owner = owner;
+    this.property = property;
+    this.constructor = constructor;
+  }
+
+  /**
+   * Create accessor of field of embedded object.
+   *
+   * @param owner    the entity field holding embedded object
+   * @param property the field of embedded object
+   * @return the embedded field accessor.
+   * @throws IllegalArgumentException when fields are not accessible or embedded class has no
+   *                                  constructor without arguments.
+   */
+  public static EmbeddedAccessor of(Field owner, Field property) {
+    try {
+      Constructor<?> constructor = owner.getType().getDeclaredConstructor();
+      constructor.setAccessible(true);
+      return new EmbeddedAccessor(FieldAccessor.of(owner), FieldAccessor.of(property),
+          constructor);
+    } catch (NoSuchMethodException e) {
+      throw new IllegalArgumentException(
+          "Embedded class " + owner.getType() + " must have constructor without arguments!", e);
+    }
+  }
+
+  @Override
+  public Object get(Object entity) {
+    Object embedded = owner.get(entity);
+    return embedded == null ? null : property.get(embedded);
+  }
+
+  @Override
+  public void set(Object entity, Object value) {
+    Object embedded = owner.get(entity);
+    if (embedded == null) {
+      try {
+        embedded = constructor.newInstance();
+      } catch (ReflectiveOperationException e) {
+        throw new PersistenceException("Unable to create " + constructor.getDeclaringClass(), e);
+      }
+      owner.set(entity, embedded);
+    }
+    property.set(embedded, value);
+  }
+}
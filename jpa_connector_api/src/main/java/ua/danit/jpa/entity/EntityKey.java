@@ -0,0 +1,66 @@
+package ua.danit.jpa.entity;
+
+import java.util.Arrays;
+
+/**
+ * Immutable key of entity with composite primary key. Key holds values of id columns in order
+ * of columns and computes its hash code once, so it is cheap to use in persistence context,
+ * caches and sets of keys loaded together.
+ *
+ * @author Andrey Minov
+ */
+public final class EntityKey {
+  private final Object[] values;
+  private final int hash;
+
+  EntityKey(Object[] values) {
+    this.values = values;
+    this.hash = Arrays.hashCode(values);
+  }
+
+  /**
+   * Create key from values of id columns.
+   *
+   * @param values the values of id columns in order of columns
+   * @return the entity key.
+   */
+  public static EntityKey of(Object... values) {
+    return new EntityKey(values.clone());
+  }
+
+  /**
+   * Get value of id column.
+   *
+   * @param index the index of id column
+   * @return the value of id column.
+   */
+  public Object get(int index) {
+    return values[index];
+  }
+
+  public int size() {
+    return values.length;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof EntityKey)) {
+      return false;
+    }
+    EntityKey other = (EntityKey) o;
+    return hash == other.hash && Arrays.equals(values, other.values);
+  }
+
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+
+  @Override
+  public String toString() {
+    return "EntityKey" + Arrays.toString(values);
+  }
+}
@@ -3,7 +3,10 @@ package ua.danit.jpa.entity;
 import static ua.danit.jpa.utils.Utils.checkNonNull;
 
 import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
 import java.util.List;
+import java.util.function.Supplier;
+import javax.persistence.PersistenceException;
 
 /**
  * Meta information entity describing mapping to relational structure.
@@ -15,8 +18,10 @@ public class EntityMeta {
   private String schema;
   private String catalog;
   private Constructor<?> constructor;
+  private Supplier<?> instantiator;
   private IdMeta id;
   private List<ColumnMeta> columns;
+  private ColumnMeta version;
 
   /**
    * Instantiates a new metadata for table entity.
@@ -30,22 +35,81 @@ public class EntityMeta {
    */
   public EntityMeta(String tableName, String schema, String catalog, Constructor<?> constructor,
                     IdMeta id, List<ColumnMeta> columns) {
-    checkNonNull("constructor", constructor);
+    this(tableName, schema, catalog, constructor, id, columns, null);
+  }
+
+  /**
+   * Instantiates a new metadata for versioned table entity.
+   *
+   * @param tableName   the table name
+   * @param schema      the schema name
+   * @param catalog     the catalog name
+   * @param constructor the constructor for entity
+   * @param id          the identity column for this table.
+   * @param columns     the list of columns for this table.
+   * @param version     the optimistic lock version column, must be one of columns or null
+   *                    when entity is not versioned.
+   */
+  public EntityMeta(String tableName, String schema, String catalog, Constructor<?> constructor,
+                    IdMeta id, List<ColumnMeta> columns, ColumnMeta version) {
+    this(tableName, schema, catalog, constructor, instantiator(constructor), id, columns,
+        version);
+  }
+
+  /**
+   * Instantiates a new metadata for table entity created without reflection, as in
+   * factories generated at compile time.
+   *
+   * @param tableName    the table name
+   * @param schema       the schema name
+   * @param catalog      the catalog name
+   * @param instantiator the supplier of new entity instances
+   * @param id           the identity column for this table.
+   * @param columns      the list of columns for this table.
+   * @param version      the optimistic lock version column, must be one of columns or null
+   *                     when entity is not versioned.
+   */
+  public EntityMeta(String tableName, String schema, String catalog, Supplier<?> instantiator,
+                    IdMeta id, List<ColumnMeta> columns, ColumnMeta version) {
+    this(tableName, schema, catalog, null, instantiator, id, columns, version);
+  }
+
+  private EntityMeta(String tableName, String schema, String catalog, Constructor<?> constructor,
+                     Supplier<?> instantiator, IdMeta id, List<ColumnMeta> columns,
+                     ColumnMeta version) {
+    checkNonNull("instantiator", instantiator);
     checkNonNull("id", id);
     checkNonNull("tableName", tableName);
 
     this.constructor = constructor;
+    this.instantiator = instantiator;
     this.tableName = tableName;
     this.schema = schema;
     this.catalog = catalog;
     this.id = id;
     this.columns = columns;
+    this.version = version;
   }
 
+  /**
+   * Get entity constructor.
+   *
+   * @return the constructor or null when metadata was generated at compile time.
+   */
   public Constructor<?> getConstructor() {
     return constructor;
   }
 
+  /**
+   * Create new empty entity instance.
+   *
+   * @return the new entity.
+   * @throws PersistenceException when entity cannot be instantiated.
+   */
+  public Object newInstance() {
+    return instantiator.get();
+  }
+
   public String getCatalog() {
     return catalog;
   }
@@ -66,9 +130,40 @@ public class EntityMeta {
     return columns;
   }
 
+  public ColumnMeta getVersion() {
+    return version;
+  }
+
+  /**
+   * Create copy of metadata for same table in other schema.
+   *
+   * @param schema the schema name
+   * @return the metadata with provided schema.
+   */
+  public EntityMeta withSchema(String schema) {
+    return new EntityMeta(tableName, schema, catalog, constructor, instantiator, id, columns,
+        version);
+  }
+
   @Override
   public String toString() {
     return "EntityMeta{" + "tableName='" + tableName + '\'' + ", schema='" + schema + '\''
-           + ", catalog='" + catalog + '\'' + ", id=" + id + ", columns=" + columns + '}';
+           + ", catalog='" + catalog + '\'' + ", id=" + id + ", columns=" + columns + ", version="
+           + version + '}';
+  }
+
+  private static Supplier<?> instantiator(Constructor<?> constructor) {
+    checkNonNull("constructor", constructor);
+    return () -> construct(constructor);
+  }
+
+  private static Object construct(Constructor<?> constructor) {
+    try {
+      return constructor.newInstance();
+    } catch (InvocationTargetException e) {
+      throw new PersistenceException("Unable to create new object entity!", e.getCause());
+    } catch (ReflectiveOperationException e) {
+      throw new PersistenceException("Unable to create new object entity!", e);
+    }
   }
 }
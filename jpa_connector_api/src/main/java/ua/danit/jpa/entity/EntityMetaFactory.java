@@ -0,0 +1,17 @@
+package ua.danit.jpa.entity;
+
+/**
+ * Factory of entity metadata generated at compile time. Factory of entity class
+ * {@code Foo} is named {@code Foo_Meta} and placed in the same package, when present
+ * it is used in place of reflective entity parsing.
+ *
+ * @author Andrey Minov
+ */
+public interface EntityMetaFactory {
+  /**
+   * Create metadata of entity.
+   *
+   * @return the entity metadata.
+   */
+  EntityMeta create();
+}
@@ -0,0 +1,180 @@
+package ua.danit.jpa.entity;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import javax.persistence.PersistenceException;
+
+/**
+ * Property accessor reading and writing entity field directly through method handles,
+ * so getters and setters with their side effects are bypassed.
+ *
+ * @author Andrey Minov
+ */
+public final class FieldAccessor implements PropertyAccessor {
+  private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class,
+      Object.class);
+  private static final MethodType SETTER_TYPE = MethodType.methodType(void.class,
+      Object.class, Object.class);
+
+  private final Field field;
+  private final MethodHandle getter;
+  private final MethodHandle setter;
+  // Handles with exact primitive type of field, used by primitive accessor methods.
+  private final MethodHandle primitiveGetter;
+  private final MethodHandle primitiveSetter;
+
+  private FieldAccessor(Field field, MethodHandle getter, MethodHandle setter) {
+    this.field = field;
+    Class<?> type = field.getType();
+    this.getter = getter.asType(GETTER_TYPE);
+    this.setter = setter.asType(SETTER_TYPE);
+    this.primitiveGetter = getter.asType(MethodType.methodType(type, Object.class));
+    this.primitiveSetter = setter.asType(MethodType.methodType(void.class, Object.class,
+        type));
+  }
+
+  /**
+   * Create accessor of entity field.
+   *
+   * @param field the entity field
+   * @return the field accessor.
+   * @throws IllegalArgumentException when field handles cannot be created.
+   */
+  public static FieldAccessor of(Field field) {
+    try {
+      field.setAccessible(true);
+      MethodHandles.Lookup lookup = MethodHandles.lookup();
+      return new FieldAccessor(field, lookup.unreflectGetter(field),
+          lookup.unreflectSetter(field));
+    } catch (IllegalAccessException | SecurityException e) {
+      throw new IllegalArgumentException("Field " + field + " is not accessible!", e);
+    }
+  }
+
+  /**
+   * Create accessor of field declared in entity class.
+   *
+   * @param clazz the entity class
+   * @param name  the field name
+   * @return the field accessor.
+   * @throws IllegalArgumentException when field is not found or cannot be accessed.
+   */
+  public static FieldAccessor of(Class<?> clazz, String name) {
+    try {
+      return of(clazz.getDeclaredField(name));
+    } catch (NoSuchFieldException e) {
+      throw new IllegalArgumentException("Field " + name + " is not found in " + clazz + "!", e);
+    }
+  }
+
+  @Override
+  public Object get(Object entity) {
+    try {
+      return (Object) getter.invokeExact(entity);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new PersistenceException("Unable to read " + field + "!", e);
+    }
+  }
+
+  @Override
+  public void set(Object entity, Object value) {
+    try {
+      setter.invokeExact(entity, value);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new PersistenceException("Unable to write " + field + "!", e);
+    }
+  }
+
+  @Override
+  public int getInt(Object entity) {
+    if (field.getType() != int.class) {
+      return PropertyAccessor.super.getInt(entity);
+    }
+    try {
+      return (int) primitiveGetter.invokeExact(entity);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new PersistenceException("Unable to read " + field + "!", e);
+    }
+  }
+
+  @Override
+  public void setInt(Object entity, int value) {
+    if (field.getType() != int.class) {
+      PropertyAccessor.super.setInt(entity, value);
+      return;
+    }
+    try {
+      primitiveSetter.invokeExact(entity, value);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new PersistenceException("Unable to write " + field + "!", e);
+    }
+  }
+
+  @Override
+  public long getLong(Object entity) {
+    if (field.getType() != long.class) {
+      return PropertyAccessor.super.getLong(entity);
+    }
+    try {
+      return (long) primitiveGetter.invokeExact(entity);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new PersistenceException("Unable to read " + field + "!", e);
+    }
+  }
+
+  @Override
+  public void setLong(Object entity, long value) {
+    if (field.getType() != long.class) {
+      PropertyAccessor.super.setLong(entity, value);
+      return;
+    }
+    try {
+      primitiveSetter.invokeExact(entity, value);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new PersistenceException("Unable to write " + field + "!", e);
+    }
+  }
+
+  @Override
+  public double getDouble(Object entity) {
+    if (field.getType() != double.class) {
+      return PropertyAccessor.super.getDouble(entity);
+    }
+    try {
+      return (double) primitiveGetter.invokeExact(entity);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new PersistenceException("Unable to read " + field + "!", e);
+    }
+  }
+
+  @Override
+  public void setDouble(Object entity, double value) {
+    if (field.getType() != double.class) {
+      PropertyAccessor.super.setDouble(entity, value);
+      return;
+    }
+    try {
+      primitiveSetter.invokeExact(entity, value);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new PersistenceException("Unable to write " + field + "!", e);
+    }
+  }
+}
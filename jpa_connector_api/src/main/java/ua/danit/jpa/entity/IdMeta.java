@@ -6,7 +6,9 @@ import java.util.List;
 import javax.persistence.GenerationType;
 
 /**
- * Meta information about unique identity value of entity.
+ * Meta information about unique identity value of entity. Entity with single id column is
+ * identified by value of the column, entity with composite id by {@link EntityKey} of values
+ * of all id columns.
  *
  * @author Andrey Minov
  */
@@ -14,6 +16,8 @@ public class IdMeta {
   private List<ColumnMeta> columns;
   private GenerationType generationType;
   private String strategy;
+  private Class<?> idClass;
+  private PropertyAccessor[] idAccessors;
 
   /**
    * Instantiates a new Identity metadata with generation type AUTO.
@@ -34,11 +38,35 @@ public class IdMeta {
    * @throws IllegalArgumentException when columns list is empty
    */
   public IdMeta(List<ColumnMeta> columns, GenerationType generationType, String strategy) {
+    this(columns, generationType, strategy, null);
+  }
+
+  /**
+   * Instantiates a new Identity metadata with class of primary key, such as class declared by
+   * {@link javax.persistence.IdClass} or class of {@link javax.persistence.EmbeddedId}.
+   * Primary key class must declare field for each id column named as column attribute.
+   *
+   * @param columns        the columns used in generation of column
+   * @param generationType the generation type for identity field.
+   * @param strategy       the strategy for identity field generation.
+   * @param idClass        the class of primary key, null when key is value of id column
+   * @throws IllegalArgumentException when columns list is empty or primary key class
+   *                                  has no field for some of id columns.
+   */
+  public IdMeta(List<ColumnMeta> columns, GenerationType generationType, String strategy,
+                Class<?> idClass) {
     checkNonEmpty("columns", columns);
 
     this.columns = columns;
     this.generationType = generationType;
     this.strategy = strategy;
+    this.idClass = idClass;
+    if (idClass != null) {
+      this.idAccessors = new PropertyAccessor[columns.size()];
+      for (int i = 0; i < columns.size(); i++) {
+        idAccessors[i] = FieldAccessor.of(idClass, columns.get(i).getAttribute());
+      }
+    }
   }
 
   public GenerationType getGenerationType() {
@@ -53,9 +81,76 @@ public class IdMeta {
     return columns;
   }
 
+  public Class<?> getIdClass() {
+    return idClass;
+  }
+
+  public boolean isComposite() {
+    return columns.size() > 1;
+  }
+
+  /**
+   * Get key identifying entity.
+   *
+   * @param entity the entity
+   * @return the value of id column or entity key for composite id.
+   */
+  public Object getKey(Object entity) {
+    if (columns.size() == 1) {
+      return columns.get(0).getAccessor().get(entity);
+    }
+    Object[] values = new Object[columns.size()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = columns.get(i).getAccessor().get(entity);
+    }
+    return new EntityKey(values);
+  }
+
+  /**
+   * Convert primary key provided by application to key identifying entity.
+   *
+   * @param primaryKey the value of id column, instance of primary key class or entity key
+   * @return the value of id column or entity key for composite id.
+   * @throws IllegalArgumentException when primary key does not match composite id.
+   */
+  public Object toKey(Object primaryKey) {
+    if (primaryKey instanceof EntityKey) {
+      if (((EntityKey) primaryKey).size() != columns.size()) {
+        throw new IllegalArgumentException("Key " + primaryKey + " does not match id columns!");
+      }
+      return columns.size() == 1 ? ((EntityKey) primaryKey).get(0) : primaryKey;
+    }
+    if (idClass == null || !idClass.isInstance(primaryKey)) {
+      if (columns.size() > 1) {
+        throw new IllegalArgumentException(
+            "Primary key must be instance of " + idClass + " or entity key!");
+      }
+      return primaryKey;
+    }
+    if (columns.size() == 1) {
+      return idAccessors[0].get(primaryKey);
+    }
+    Object[] values = new Object[columns.size()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = idAccessors[i].get(primaryKey);
+    }
+    return new EntityKey(values);
+  }
+
+  /**
+   * Get value of id column from key identifying entity.
+   *
+   * @param key   the key returned by {@link #getKey(Object)} or {@link #toKey(Object)}
+   * @param index the index of id column
+   * @return the value of id column.
+   */
+  public Object getValue(Object key, int index) {
+    return key instanceof EntityKey ? ((EntityKey) key).get(index) : key;
+  }
+
   @Override
   public String toString() {
     return "IdMeta{" + "columns=" + columns + ", generationType=" + generationType + ", strategy='"
-           + strategy + '\'' + '}';
+           + strategy + '\'' + ", idClass=" + idClass + '}';
   }
 }
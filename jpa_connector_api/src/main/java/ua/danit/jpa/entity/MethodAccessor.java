@@ -0,0 +1,42 @@
+package ua.danit.jpa.entity;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import javax.persistence.PersistenceException;
+
+/**
+ * Property accessor invoking getter and setter by reflection.
+ *
+ * @author Andrey Minov
+ */
+final class MethodAccessor implements PropertyAccessor {
+  private final Method getter;
+  private final Method setter;
+
+  MethodAccessor(Method getter, Method setter) {
+    this.getter = getter;
+    this.setter = setter;
+  }
+
+  @Override
+  public Object get(Object entity) {
+    try {
+      return getter.invoke(entity);
+    } catch (InvocationTargetException e) {
+      throw new PersistenceException("Unable to invoke " + getter + "!", e.getCause());
+    } catch (IllegalAccessException e) {
+      throw new PersistenceException("Unable to invoke " + getter + "!", e);
+    }
+  }
+
+  @Override
+  public void set(Object entity, Object value) {
+    try {
+      setter.invoke(entity, value);
+    } catch (InvocationTargetException e) {
+      throw new PersistenceException("Unable to invoke " + setter + "!", e.getCause());
+    } catch (IllegalAccessException e) {
+      throw new PersistenceException("Unable to invoke " + setter + "!", e);
+    }
+  }
+}
@@ -0,0 +1,93 @@
+package ua.danit.jpa.entity;
+
+/**
+ * Accessor for value of entity property mapped to column. Primitive methods box values
+ * by default and are overridden by accessors able to read and write them directly.
+ *
+ * @author Andrey Minov
+ */
+public interface PropertyAccessor {
+  /**
+   * Read property value of entity.
+   *
+   * @param entity the entity
+   * @return the property value.
+   * @throws javax.persistence.PersistenceException when property cannot be read.
+   */
+  Object get(Object entity);
+
+  /**
+   * Write property value of entity.
+   *
+   * @param entity the entity
+   * @param value  the property value
+   * @throws javax.persistence.PersistenceException when property cannot be written.
+   */
+  void set(Object entity, Object value);
+
+  /**
+   * Read value of property with primitive int type without boxing.
+   *
+   * @param entity the entity
+   * @return the property value.
+   * @throws javax.persistence.PersistenceException when property cannot be read.
+   */
+  default int getInt(Object entity) {
+    return (Integer) get(entity);
+  }
+
+  /**
+   * Write value of property with primitive int type without boxing.
+   *
+   * @param entity the entity
+   * @param value  the property value
+   * @throws javax.persistence.PersistenceException when property cannot be written.
+   */
+  default void setInt(Object entity, int value) {
+    set(entity, value);
+  }
+
+  /**
+   * Read value of property with primitive long type without boxing.
+   *
+   * @param entity the entity
+   * @return the property value.
+   * @throws javax.persistence.PersistenceException when property cannot be read.
+   */
+  default long getLong(Object entity) {
+    return (Long) get(entity);
+  }
+
+  /**
+   * Write value of property with primitive long type without boxing.
+   *
+   * @param entity the entity
+   * @param value  the property value
+   * @throws javax.persistence.PersistenceException when property cannot be written.
+   */
+  default void setLong(Object entity, long value) {
+    set(entity, value);
+  }
+
+  /**
+   * Read value of property with primitive double type without boxing.
+   *
+   * @param entity the entity
+   * @return the property value.
+   * @throws javax.persistence.PersistenceException when property cannot be read.
+   */
+  default double getDouble(Object entity) {
+    return (Double) get(entity);
+  }
+
+  /**
+   * Write value of property with primitive double type without boxing.
+   *
+   * @param entity the entity
+   * @param value  the property value
+   * @throws javax.persistence.PersistenceException when property cannot be written.
+   */
+  default void setDouble(Object entity, double value) {
+    set(entity, value);
+  }
+}
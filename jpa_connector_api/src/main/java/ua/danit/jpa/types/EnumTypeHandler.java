@@ -0,0 +1,75 @@
+package ua.danit.jpa.types;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.Map;
+import javax.persistence.EnumType;
+
+/**
+ * Handler binding enum constants by ordinal or by name. Constants are looked up in tables
+ * built once per enum type, so reading does neither copy values array nor search by name.
+ *
+ * @param <E> the enum type
+ * @author Andrey Minov
+ */
+final class EnumTypeHandler<E extends Enum<E>> implements TypeHandler<E> {
+  private final Class<E> type;
+  private final EnumType enumType;
+  private final E[] constants;
+  private final Map<String, E> names;
+
+  EnumTypeHandler(Class<E> type, EnumType enumType) {
+    this.type = type;
+    this.enumType = enumType;
+    this.constants = type.getEnumConstants();
+    this.names = new HashMap<>();
+    for (E constant : constants) {
+      names.put(constant.name(), constant);
+    }
+  }
+
+  @Override
+  public Class<E> getType() {
+    return type;
+  }
+
+  @Override
+  public int getSqlType() {
+    return enumType == EnumType.ORDINAL ? Types.INTEGER : Types.VARCHAR;
+  }
+
+  @Override
+  public void bind(PreparedStatement statement, int index, E value) throws SQLException {
+    if (enumType == EnumType.ORDINAL) {
+      statement.setInt(index, value.ordinal());
+    } else {
+      statement.setString(index, value.name());
+    }
+  }
+
+  @Override
+  public E read(ResultSet resultSet, int index) throws SQLException {
+    if (enumType == EnumType.ORDINAL) {
+      int ordinal = resultSet.getInt(index);
+      if (resultSet.wasNull()) {
+        return null;
+      }
+      if (ordinal < 0 || ordinal >= constants.length) {
+        throw new SQLException("Ordinal " + ordinal + " is out of range of " + type + "!");
+      }
+      return constants[ordinal];
+    }
+    String name = resultSet.getString(index);
+    if (name == null) {
+      return null;
+    }
+    E constant = names.get(name);
+    if (constant == null) {
+      throw new SQLException("Constant " + name + " is not found in " + type + "!");
+    }
+    return constant;
+  }
+}
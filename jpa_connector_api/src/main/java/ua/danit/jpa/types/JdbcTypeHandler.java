@@ -0,0 +1,51 @@
+package ua.danit.jpa.types;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Handler of types mapped natively by JDBC driver. Values are bound with
+ * {@link PreparedStatement#setObject(int, Object, int)} and read with
+ * {@link ResultSet#getObject(int)}, so columns of such types are bound by column binders
+ * specialized for primitive types instead of the handler itself.
+ *
+ * @param <T> the handled Java type
+ * @author Andrey Minov
+ */
+public class JdbcTypeHandler<T> implements TypeHandler<T> {
+  private final Class<T> type;
+  private final int sqlType;
+
+  /**
+   * Instantiates a new handler of type mapped by JDBC driver.
+   *
+   * @param type    the handled Java type
+   * @param sqlType the sql type one of {@link java.sql.Types}
+   */
+  public JdbcTypeHandler(Class<T> type, int sqlType) {
+    this.type = type;
+    this.sqlType = sqlType;
+  }
+
+  @Override
+  public Class<T> getType() {
+    return type;
+  }
+
+  @Override
+  public int getSqlType() {
+    return sqlType;
+  }
+
+  @Override
+  public void bind(PreparedStatement statement, int index, T value) throws SQLException {
+    statement.setObject(index, value, sqlType);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public T read(ResultSet resultSet, int index) throws SQLException {
+    return (T) resultSet.getObject(index);
+  }
+}
@@ -0,0 +1,127 @@
+package ua.danit.jpa.types;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Handlers of {@code java.time} types. Local date time is transferred natively as JDBC 4.2
+ * object, so it is not shifted by daylight saving time of JVM time zone. Instants are
+ * transferred as timestamps in UTC. Local dates and local times are transferred as
+ * {@code java.sql} temporal types, as not every JDBC driver maps them correctly, time of day
+ * is kept on 1970-01-01 where it is not shifted.
+ *
+ * @author Andrey Minov
+ */
+final class TimeTypeHandlers {
+  private static final ThreadLocal<Calendar> UTC =
+      ThreadLocal.withInitial(() -> Calendar.getInstance(TimeZone.getTimeZone("UTC")));
+
+  private TimeTypeHandlers() {
+  }
+
+  static final class InstantHandler implements TypeHandler<Instant> {
+    @Override
+    public Class<Instant> getType() {
+      return Instant.class;
+    }
+
+    @Override
+    public int getSqlType() {
+      return Types.TIMESTAMP;
+    }
+
+    @Override
+    public void bind(PreparedStatement statement, int index, Instant value)
+        throws SQLException {
+      statement.setTimestamp(index, Timestamp.from(value), UTC.get());
+    }
+
+    @Override
+    public Instant read(ResultSet resultSet, int index) throws SQLException {
+      Timestamp value = resultSet.getTimestamp(index, UTC.get());
+      return value == null ? null : value.toInstant();
+    }
+  }
+
+  static final class LocalDateTimeHandler implements TypeHandler<LocalDateTime> {
+    @Override
+    public Class<LocalDateTime> getType() {
+      return LocalDateTime.class;
+    }
+
+    @Override
+    public int getSqlType() {
+      return Types.TIMESTAMP;
+    }
+
+    @Override
+    public void bind(PreparedStatement statement, int index, LocalDateTime value)
+        throws SQLException {
+      statement.setObject(index, value, Types.TIMESTAMP);
+    }
+
+    @Override
+    public LocalDateTime read(ResultSet resultSet, int index) throws SQLException {
+      return resultSet.getObject(index, LocalDateTime.class);
+    }
+  }
+
+  static final class LocalDateHandler implements TypeHandler<LocalDate> {
+    @Override
+    public Class<LocalDate> getType() {
+      return LocalDate.class;
+    }
+
+    @Override
+    public int getSqlType() {
+      return Types.DATE;
+    }
+
+    @Override
+    public void bind(PreparedStatement statement, int index, LocalDate value)
+        throws SQLException {
+      statement.setDate(index, Date.valueOf(value));
+    }
+
+    @Override
+    public LocalDate read(ResultSet resultSet, int index) throws SQLException {
+      Date value = resultSet.getDate(index);
+      return value == null ? null : value.toLocalDate();
+    }
+  }
+
+  static final class LocalTimeHandler implements TypeHandler<LocalTime> {
+    @Override
+    public Class<LocalTime> getType() {
+      return LocalTime.class;
+    }
+
+    @Override
+    public int getSqlType() {
+      return Types.TIME;
+    }
+
+    @Override
+    public void bind(PreparedStatement statement, int index, LocalTime value)
+        throws SQLException {
+      statement.setTime(index, Time.valueOf(value));
+    }
+
+    @Override
+    public LocalTime read(ResultSet resultSet, int index) throws SQLException {
+      Time value = resultSet.getTime(index);
+      return value == null ? null : value.toLocalTime();
+    }
+  }
+}
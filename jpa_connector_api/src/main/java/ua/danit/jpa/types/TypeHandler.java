@@ -0,0 +1,52 @@
+package ua.danit.jpa.types;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Handler transferring values of one Java type to and from JDBC. Handlers are looked up once
+ * per column when entity is registered, so implementations should bind values with typed
+ * JDBC methods and keep any lookup tables they need precomputed. Custom handlers are
+ * registered through {@link java.util.ServiceLoader} or listed in
+ * {@link ua.danit.jpa.configuration.JpaProviderProperties#TYPE_HANDLERS} property, and
+ * replace built-in handlers of the same type.
+ *
+ * @param <T> the handled Java type
+ * @author Andrey Minov
+ */
+public interface TypeHandler<T> {
+  /**
+   * Gets Java type handled.
+   *
+   * @return the handled Java type.
+   */
+  Class<T> getType();
+
+  /**
+   * Gets SQL type of column, used to bind SQL NULL.
+   *
+   * @return the sql type one of {@link java.sql.Types}.
+   */
+  int getSqlType();
+
+  /**
+   * Bind non null value as statement parameter.
+   *
+   * @param statement the statement
+   * @param index     the parameter index
+   * @param value     the value, never null
+   * @throws SQLException when parameter cannot be set.
+   */
+  void bind(PreparedStatement statement, int index, T value) throws SQLException;
+
+  /**
+   * Read value from current row of result set.
+   *
+   * @param resultSet the result set
+   * @param index     the column index
+   * @return the value or null for SQL NULL.
+   * @throws SQLException when column cannot be read.
+   */
+  T read(ResultSet resultSet, int index) throws SQLException;
+}
@@ -0,0 +1,175 @@
+package ua.danit.jpa.types;
+
+import java.lang.invoke.MethodType;
+import java.math.BigDecimal;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.persistence.EnumType;
+import javax.persistence.PersistenceException;
+
+import ua.danit.jpa.configuration.JpaProviderProperties;
+
+/**
+ * Registry of type handlers used by entity manager factory. Registry contains built-in
+ * handlers of types mapped natively by JDBC, {@code java.time} types, {@link java.util.UUID}
+ * and enums, overridden by custom handlers. Handlers are immutable after registry is
+ * created, except enum handlers which are created once per enum type on first use.
+ *
+ * @author Andrey Minov
+ */
+public final class TypeHandlerRegistry {
+  private static final TypeHandlerRegistry DEFAULTS = new TypeHandlerRegistry(builtIns());
+
+  private final Map<Class<?>, TypeHandler<?>> handlers;
+  private final ConcurrentMap<Class<?>, TypeHandler<?>> ordinalHandlers;
+  private final ConcurrentMap<Class<?>, TypeHandler<?>> stringHandlers;
+
+  private TypeHandlerRegistry(Map<Class<?>, TypeHandler<?>> handlers) {
+    this.handlers = handlers;
+    this.ordinalHandlers = new ConcurrentHashMap<>();
+    this.stringHandlers = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Gets registry of built-in type handlers.
+   *
+   * @return the shared registry with built-in handlers only.
+   */
+  public static TypeHandlerRegistry defaults() {
+    return DEFAULTS;
+  }
+
+  /**
+   * Create registry from properties. Built-in handlers are overridden by handlers found by
+   * {@link ServiceLoader} in provided class loader and then by handlers listed in
+   * {@link JpaProviderProperties#TYPE_HANDLERS} property.
+   *
+   * @param properties  the properties of entity manager factory
+   * @param classLoader the class loader used to find and load handlers
+   * @return the type handler registry.
+   * @throws PersistenceException when handler cannot be loaded or created.
+   */
+  public static TypeHandlerRegistry fromProperties(Map<String, String> properties,
+                                                   ClassLoader classLoader) {
+    Map<Class<?>, TypeHandler<?>> handlers = builtIns();
+    try {
+      for (TypeHandler<?> handler : ServiceLoader.load(TypeHandler.class, classLoader)) {
+        handlers.put(handler.getType(), handler);
+      }
+    } catch (ServiceConfigurationError e) {
+      throw new PersistenceException("Unable to load type handlers!", e);
+    }
+    String classNames = properties.get(JpaProviderProperties.TYPE_HANDLERS);
+    if (classNames != null) {
+      for (String className : classNames.split(",")) {
+        if (className.trim().isEmpty()) {
+          continue;
+        }
+        TypeHandler<?> handler = create(className.trim(), classLoader);
+        handlers.put(handler.getType(), handler);
+      }
+    }
+    return new TypeHandlerRegistry(handlers);
+  }
+
+  /**
+   * Gets handler of provided type. Enum types without own handler are bound by ordinal.
+   *
+   * @param <T>  the handled type
+   * @param type the handled type, primitive types are handled as their wrappers
+   * @return the type handler.
+   * @throws IllegalArgumentException when type has no handler.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  public <T> TypeHandler<T> get(Class<T> type) {
+    Class<?> wrapper = type.isPrimitive() ? MethodType.methodType(type).wrap().returnType()
+        : type;
+    TypeHandler<?> handler = handlers.get(wrapper);
+    if (handler == null) {
+      if (!type.isEnum()) {
+        throw new IllegalArgumentException("Class " + type + " is not supported as SQL type!");
+      }
+      handler = getEnum((Class) type, EnumType.ORDINAL);
+    }
+    return (TypeHandler<T>) handler;
+  }
+
+  /**
+   * Gets handler of enum type bound by ordinal or by name. Handler registered for enum type
+   * itself takes precedence over both.
+   *
+   * @param <E>      the enum type
+   * @param type     the enum type
+   * @param enumType the way enum constants are bound
+   * @return the enum type handler.
+   */
+  @SuppressWarnings("unchecked")
+  public <E extends Enum<E>> TypeHandler<E> getEnum(Class<E> type, EnumType enumType) {
+    TypeHandler<?> handler = handlers.get(type);
+    if (handler == null) {
+      handler = (enumType == EnumType.STRING ? stringHandlers : ordinalHandlers)
+          .computeIfAbsent(type, t -> new EnumTypeHandler<>(type, enumType));
+    }
+    return (TypeHandler<E>) handler;
+  }
+
+  /**
+   * Check whether provided handler binds values natively through JDBC driver, so column
+   * may be bound by binder specialized for its type instead.
+   *
+   * @param handler the type handler
+   * @return true if handler is {@link JdbcTypeHandler}.
+   */
+  public static boolean isJdbcHandler(TypeHandler<?> handler) {
+    return handler instanceof JdbcTypeHandler;
+  }
+
+  private static TypeHandler<?> create(String className, ClassLoader classLoader) {
+    try {
+      Class<?> clazz = Class.forName(className, true, classLoader);
+      if (!TypeHandler.class.isAssignableFrom(clazz)) {
+        throw new PersistenceException("Class " + className + " is not a type handler!");
+      }
+      return (TypeHandler<?>) clazz.getConstructor().newInstance();
+    } catch (ReflectiveOperationException e) {
+      throw new PersistenceException("Unable to create type handler " + className, e);
+    }
+  }
+
+  private static Map<Class<?>, TypeHandler<?>> builtIns() {
+    Map<Class<?>, TypeHandler<?>> handlers = new HashMap<>();
+    jdbc(handlers, Integer.class, Types.INTEGER);
+    jdbc(handlers, Long.class, Types.BIGINT);
+    jdbc(handlers, Double.class, Types.DOUBLE);
+    jdbc(handlers, Character.class, Types.CHAR);
+    jdbc(handlers, BigDecimal.class, Types.DECIMAL);
+    jdbc(handlers, String.class, Types.VARCHAR);
+    jdbc(handlers, Date.class, Types.TIMESTAMP);
+    jdbc(handlers, Timestamp.class, Types.TIMESTAMP);
+    jdbc(handlers, java.sql.Date.class, Types.DATE);
+    jdbc(handlers, Time.class, Types.TIME);
+    register(handlers, new TimeTypeHandlers.InstantHandler());
+    register(handlers, new TimeTypeHandlers.LocalDateTimeHandler());
+    register(handlers, new TimeTypeHandlers.LocalDateHandler());
+    register(handlers, new TimeTypeHandlers.LocalTimeHandler());
+    register(handlers, new UuidTypeHandler());
+    return handlers;
+  }
+
+  private static <T> void jdbc(Map<Class<?>, TypeHandler<?>> handlers, Class<T> type,
+                               int sqlType) {
+    register(handlers, new JdbcTypeHandler<>(type, sqlType));
+  }
+
+  private static void register(Map<Class<?>, TypeHandler<?>> handlers, TypeHandler<?> handler) {
+    handlers.put(handler.getType(), handler);
+  }
+}
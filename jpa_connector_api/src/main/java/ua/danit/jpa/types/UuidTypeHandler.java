@@ -0,0 +1,63 @@
+package ua.danit.jpa.types;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.UUID;
+
+/**
+ * Handler binding {@link UUID} as 16 bytes of binary column in big-endian order, instead of
+ * 36 characters of its string form.
+ *
+ * @author Andrey Minov
+ */
+final class UuidTypeHandler implements TypeHandler<UUID> {
+  private static final int SIZE = 16;
+
+  @Override
+  public Class<UUID> getType() {
+    return UUID.class;
+  }
+
+  @Override
+  public int getSqlType() {
+    return Types.BINARY;
+  }
+
+  @Override
+  public void bind(PreparedStatement statement, int index, UUID value) throws SQLException {
+    byte[] bytes = new byte[SIZE];
+    writeLong(bytes, 0, value.getMostSignificantBits());
+    writeLong(bytes, SIZE / 2, value.getLeastSignificantBits());
+    statement.setBytes(index, bytes);
+  }
+
+  @Override
+  public UUID read(ResultSet resultSet, int index) throws SQLException {
+    byte[] bytes = resultSet.getBytes(index);
+    if (bytes == null) {
+      return null;
+    }
+    if (bytes.length != SIZE) {
+      throw new SQLException("UUID column must have " + SIZE + " bytes, but has "
+                             + bytes.length + "!");
+    }
+    return new UUID(readLong(bytes, 0), readLong(bytes, SIZE / 2));
+  }
+
+  private static void writeLong(byte[] bytes, int offset, long value) {
+    for (int i = SIZE / 2 - 1; i >= 0; i--) {
+      bytes[offset + i] = (byte) value;
+      value >>>= Byte.SIZE;
+    }
+  }
+
+  private static long readLong(byte[] bytes, int offset) {
+    long value = 0;
+    for (int i = 0; i < SIZE / 2; i++) {
+      value = value << Byte.SIZE | bytes[offset + i] & 0xFF;
+    }
+    return value;
+  }
+}
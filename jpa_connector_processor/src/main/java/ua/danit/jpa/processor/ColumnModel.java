@@ -0,0 +1,124 @@
+package ua.danit.jpa.processor;
+
+/**
+ * Column of entity class parsed from source.
+ *
+ * @author Andrey Minov
+ */
+final class ColumnModel {
+  private final String attribute;
+  private final String name;
+  private final String type;
+  private final String boxedType;
+  private final String sqlType;
+  private final String getter;
+  private final String setter;
+  private final boolean direct;
+  private final boolean nullable;
+  private final boolean insertable;
+  private final boolean updatable;
+  private final int length;
+  private final int scale;
+  private final boolean id;
+  private final boolean version;
+
+  /**
+   * Instantiates a new column model.
+   *
+   * @param attribute  the name of entity attribute
+   * @param name       the name of column
+   * @param type       the source name of attribute type
+   * @param boxedType  the source name of boxed attribute type
+   * @param sqlType    the name of {@link java.sql.Types} constant, null when bound by handler
+   * @param getter     the getter name, null for field access
+   * @param setter     the setter name, null for field access
+   * @param direct     whether field is read and written directly by generated factory
+   * @param nullable   whether the database column is nullable
+   * @param insertable whether the column is included in SQL INSERT statements
+   * @param updatable  whether the column is included in SQL UPDATE statements
+   * @param length     the column length
+   * @param scale      the scale for a decimal column
+   * @param id         whether the column is part of identifier
+   * @param version    whether the column is optimistic lock version
+   */
+  ColumnModel(String attribute, String name, String type, String boxedType, String sqlType,
+              String getter, String setter, boolean direct, boolean nullable,
+              boolean insertable, boolean updatable, int length, int scale, boolean id,
+              boolean version) {
+    this.attribute = attribute;
+    this.name = name;
+    this.type = type;
+    this.boxedType = boxedType;
+    this.sqlType = sqlType;
+    this.getter = getter;
+    this.setter = setter;
+    this.direct = direct;
+    this.nullable = nullable;
+    this.insertable = insertable;
+    this.updatable = updatable;
+    this.length = length;
+    this.scale = scale;
+    this.id = id;
+    this.version = version;
+  }
+
+  String getAttribute() {
+    return attribute;
+  }
+
+  String getName() {
+    return name;
+  }
+
+  String getType() {
+    return type;
+  }
+
+  String getBoxedType() {
+    return boxedType;
+  }
+
+  String getSqlType() {
+    return sqlType;
+  }
+
+  String getGetter() {
+    return getter;
+  }
+
+  String getSetter() {
+    return setter;
+  }
+
+  boolean isDirect() {
+    return direct;
+  }
+
+  boolean isNullable() {
+    return nullable;
+  }
+
+  boolean isInsertable() {
+    return insertable;
+  }
+
+  boolean isUpdatable() {
+    return updatable;
+  }
+
+  int getLength() {
+    return length;
+  }
+
+  int getScale() {
+    return scale;
+  }
+
+  boolean isId() {
+    return id;
+  }
+
+  boolean isVersion() {
+    return version;
+  }
+}
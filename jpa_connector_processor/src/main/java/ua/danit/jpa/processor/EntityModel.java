@@ -0,0 +1,259 @@
+package ua.danit.jpa.processor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.persistence.Access;
+import javax.persistence.AccessType;
+import javax.persistence.Column;
+import javax.persistence.Convert;
+import javax.persistence.EmbeddedId;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Table;
+import javax.persistence.Version;
+import javax.tools.Diagnostic;
+
+/**
+ * Model of entity class parsed from source with the same mapping rules as reflective
+ * entity parser applies at runtime.
+ *
+ * @author Andrey Minov
+ */
+final class EntityModel {
+  private static final Map<String, String> TYPES_MAP;
+  private static final Set<String> VERSION_TYPES = new HashSet<>(Arrays
+      .asList("int", "java.lang.Integer", "long", "java.lang.Long", "java.sql.Timestamp"));
+
+  static {
+    TYPES_MAP = new HashMap<>();
+    TYPES_MAP.put("java.lang.Integer", "INTEGER");
+    TYPES_MAP.put("int", "INTEGER");
+    TYPES_MAP.put("java.lang.Long", "BIGINT");
+    TYPES_MAP.put("long", "BIGINT");
+    TYPES_MAP.put("java.lang.Double", "DOUBLE");
+    TYPES_MAP.put("double", "DOUBLE");
+    TYPES_MAP.put("char", "CHAR");
+    TYPES_MAP.put("java.math.BigDecimal", "DECIMAL");
+    TYPES_MAP.put("java.lang.String", "VARCHAR");
+    TYPES_MAP.put("java.util.Date", "TIMESTAMP");
+    TYPES_MAP.put("java.sql.Timestamp", "TIMESTAMP");
+    TYPES_MAP.put("java.sql.Date", "DATE");
+    TYPES_MAP.put("java.sql.Time", "TIME");
+  }
+
+  private final TypeElement element;
+  private final String tableName;
+  private final String schema;
+  private final List<ColumnModel> columns;
+  private final GenerationType generationType;
+  private final String generator;
+  private final boolean factory;
+
+  private EntityModel(TypeElement element, String tableName, String schema,
+                      List<ColumnModel> columns, GenerationType generationType,
+                      String generator, boolean factory) {
+    this.element = element;
+    this.tableName = tableName;
+    this.schema = schema;
+    this.columns = columns;
+    this.generationType = generationType;
+    this.generator = generator;
+    this.factory = factory;
+  }
+
+  /**
+   * Parse entity model from entity class source. Mapping errors are reported as compilation
+   * errors on corresponding elements. Getters and setters are required only for fields
+   * with property access. Entities with fields bound by type handlers or converted by
+   * attribute converters are modelled without metadata factory, so they are parsed at
+   * runtime with type handlers registered on entity manager factory. The same applies to
+   * entities with composite id.
+   *
+   * @param element     the entity class element
+   * @param environment the processing environment
+   * @return the entity model or null when entity class has mapping errors.
+   */
+  static EntityModel parse(TypeElement element, ProcessingEnvironment environment) {
+    Messager messager = environment.getMessager();
+    boolean valid = true;
+    String tableName = element.getSimpleName().toString();
+    String schema = null;
+    Table table = element.getAnnotation(Table.class);
+    if (table != null) {
+      if (!table.name().isEmpty()) {
+        tableName = table.name();
+      }
+      schema = table.schema();
+    }
+    if (!hasPublicConstructor(element)) {
+      messager.printMessage(Diagnostic.Kind.ERROR,
+          "Entity class must have public constructor without arguments!", element);
+      valid = false;
+    }
+    Access access = element.getAnnotation(Access.class);
+    AccessType defaultAccess = access != null ? access.value() : AccessType.FIELD;
+    List<ColumnModel> columns = new ArrayList<>();
+    GenerationType generationType = GenerationType.AUTO;
+    String generator = "";
+    boolean hasId = false;
+    boolean hasVersion = false;
+    boolean factory = true;
+    if (element.getAnnotation(IdClass.class) != null) {
+      messager.printMessage(Diagnostic.Kind.NOTE,
+          "Metadata factory is not generated, composite id is parsed at runtime.", element);
+      factory = false;
+    }
+    for (VariableElement field : ElementFilter.fieldsIn(element.getEnclosedElements())) {
+      if (field.getModifiers().contains(Modifier.STATIC)) {
+        continue;
+      }
+      if (field.getAnnotation(EmbeddedId.class) != null) {
+        // Columns of embedded id are not attributes of entity, so they are not modelled.
+        messager.printMessage(Diagnostic.Kind.NOTE,
+            "Metadata factory is not generated, composite id is parsed at runtime.", field);
+        factory = false;
+        hasId = true;
+        continue;
+      }
+      String type = field.asType().toString();
+      String sqlType = field.getAnnotation(Convert.class) == null ? TYPES_MAP.get(type) : null;
+      if (sqlType == null && factory) {
+        messager.printMessage(Diagnostic.Kind.NOTE,
+            "Metadata factory is not generated, field of type " + type
+            + " is bound by type handler at runtime.", field);
+        factory = false;
+      }
+      String attribute = field.getSimpleName().toString();
+      String property = attribute.substring(0, 1).toUpperCase() + attribute.substring(1);
+      Access fieldAccess = field.getAnnotation(Access.class);
+      String getter = null;
+      String setter = null;
+      if ((fieldAccess != null ? fieldAccess.value() : defaultAccess) == AccessType.PROPERTY) {
+        getter = "get" + property;
+        setter = "set" + property;
+        if (!hasMethod(element, getter, null, environment)
+            || !hasMethod(element, setter, field.asType(), environment)) {
+          messager.printMessage(Diagnostic.Kind.ERROR,
+              "Getter or setter for field " + attribute + " not found!", field);
+          valid = false;
+          continue;
+        }
+      }
+      // Fields visible in entity package are accessed by generated code without reflection.
+      boolean direct = getter == null && !field.getModifiers().contains(Modifier.PRIVATE)
+                       && !field.getModifiers().contains(Modifier.FINAL);
+      boolean version = field.getAnnotation(Version.class) != null;
+      if (version && hasVersion) {
+        messager.printMessage(Diagnostic.Kind.ERROR,
+            "Entity class must have single @Version field!", field);
+        valid = false;
+      } else if (version && !VERSION_TYPES.contains(type)) {
+        messager.printMessage(Diagnostic.Kind.ERROR,
+            "Not supported class for version:" + type, field);
+        valid = false;
+      }
+      hasVersion |= version;
+      boolean id = field.getAnnotation(Id.class) != null;
+      hasId |= id;
+      Types types = environment.getTypeUtils();
+      String boxedType = field.asType().getKind().isPrimitive()
+          ? types.boxedClass(types.getPrimitiveType(field.asType().getKind()))
+                 .getQualifiedName().toString() : type;
+      Column column = field.getAnnotation(Column.class);
+      if (column == null) {
+        columns.add(new ColumnModel(attribute, attribute, type, boxedType, sqlType,
+            getter, setter, direct, true, true, true, 256, 0, id, version));
+      } else {
+        columns.add(new ColumnModel(attribute, column.name().isEmpty() ? attribute
+            : column.name(), type, boxedType, sqlType, getter, setter, direct,
+            column.nullable(), column.insertable(), column.updatable(), column.length(),
+            column.scale(), id, version));
+      }
+      GeneratedValue generatedValue = field.getAnnotation(GeneratedValue.class);
+      if (generatedValue != null) {
+        generationType = generatedValue.strategy();
+        generator = generatedValue.generator();
+      }
+    }
+    if (!hasId) {
+      messager.printMessage(Diagnostic.Kind.ERROR,
+          "Table entity class must have @Id field!", element);
+      valid = false;
+    }
+    return valid ? new EntityModel(element, tableName, schema, columns, generationType,
+        generator, factory) : null;
+  }
+
+  TypeElement getElement() {
+    return element;
+  }
+
+  String getTableName() {
+    return tableName;
+  }
+
+  String getSchema() {
+    return schema;
+  }
+
+  List<ColumnModel> getColumns() {
+    return columns;
+  }
+
+  GenerationType getGenerationType() {
+    return generationType;
+  }
+
+  String getGenerator() {
+    return generator;
+  }
+
+  boolean hasFactory() {
+    return factory;
+  }
+
+  private static boolean hasPublicConstructor(TypeElement element) {
+    for (ExecutableElement constructor : ElementFilter
+        .constructorsIn(element.getEnclosedElements())) {
+      if (constructor.getParameters().isEmpty()
+          && constructor.getModifiers().contains(Modifier.PUBLIC)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean hasMethod(TypeElement element, String name, TypeMirror parameter,
+                                   ProcessingEnvironment environment) {
+    Elements elements = environment.getElementUtils();
+    for (ExecutableElement method : ElementFilter.methodsIn(elements.getAllMembers(element))) {
+      if (!method.getModifiers().contains(Modifier.PUBLIC)
+          || !method.getSimpleName().contentEquals(name)) {
+        continue;
+      }
+      List<? extends VariableElement> parameters = method.getParameters();
+      if (parameter == null ? parameters.isEmpty() : parameters.size() == 1
+          && environment.getTypeUtils().isSameType(parameters.get(0).asType(), parameter)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,256 @@
+package ua.danit.jpa.processor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.persistence.Entity;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Annotation processor generating for every top level {@link Entity} class {@code Foo}
+ * metadata factory {@code Foo_Meta}, used by connector in place of reflective entity parsing,
+ * and static metamodel {@code Foo_}. Attributes with property access are accessed by direct
+ * getter and setter calls, fields which are not private or final are read and written directly
+ * and only private fields are accessed through field handles. Column binders and row mapping
+ * are not generated, since binders are already chosen once per column by attribute type and
+ * transfer primitives without boxing through generated accessors. Factory is not generated for
+ * entities with columns bound by type handlers or with composite id, such entities are parsed
+ * at runtime.
+ * Names of processed entities are written into entity index resource, so they are registered on
+ * container bootstrap.
+ *
+ * @author Andrey Minov
+ */
+@SupportedAnnotationTypes("javax.persistence.Entity")
+@SupportedOptions(EntityProcessor.METAMODEL_OPTION)
+public class EntityProcessor extends AbstractProcessor {
+  /**
+   * Processor option disabling generation of static metamodel when set to false.
+   */
+  public static final String METAMODEL_OPTION = "ua.danit.jpa.processor.metamodel";
+
+  private static final String INDEX_LOCATION = "META-INF/ua.danit.jpa.entities";
+  private static final String ENTITY_PACKAGE = "ua.danit.jpa.entity.";
+
+  private final List<String> entities = new ArrayList<>();
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    boolean metamodel = !"false".equals(processingEnv.getOptions().get(METAMODEL_OPTION));
+    for (Element element : roundEnv.getElementsAnnotatedWith(Entity.class)) {
+      if (!(element instanceof TypeElement)) {
+        continue;
+      }
+      TypeElement type = (TypeElement) element;
+      if (type.getNestingKind() != NestingKind.TOP_LEVEL) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+            "Metadata is not generated for nested entity class!", type);
+        continue;
+      }
+      EntityModel model = EntityModel.parse(type, processingEnv);
+      if (model == null) {
+        continue;
+      }
+      try {
+        if (model.hasFactory()) {
+          writeMetaFactory(model);
+        }
+        if (metamodel) {
+          writeMetamodel(model);
+        }
+      } catch (IOException e) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+            "Unable to generate metadata: " + e.getMessage(), type);
+      }
+      entities.add(type.getQualifiedName().toString());
+    }
+    if (roundEnv.processingOver() && !entities.isEmpty()) {
+      writeIndex();
+    }
+    return false;
+  }
+
+  private void writeMetaFactory(EntityModel model) throws IOException {
+    TypeElement type = model.getElement();
+    String entity = type.getQualifiedName().toString();
+    String name = type.getSimpleName() + "_Meta";
+    try (PrintWriter out = source(type, name)) {
+      out.println("@javax.annotation.Generated(\"" + getClass().getName() + "\")");
+      out.println("public final class " + name + " implements " + ENTITY_PACKAGE
+                  + "EntityMetaFactory {");
+      out.println("  @Override");
+      out.println("  public " + ENTITY_PACKAGE + "EntityMeta create() {");
+      out.println("    java.util.List<" + ENTITY_PACKAGE + "ColumnMeta> ids = "
+                  + "new java.util.ArrayList<>();");
+      out.println("    java.util.List<" + ENTITY_PACKAGE + "ColumnMeta> columns = "
+                  + "new java.util.ArrayList<>();");
+      out.println("    " + ENTITY_PACKAGE + "ColumnMeta version = null;");
+      out.println("    " + ENTITY_PACKAGE + "ColumnMeta column;");
+      for (ColumnModel column : model.getColumns()) {
+        out.println("    column = new " + ENTITY_PACKAGE + "ColumnMeta("
+                    + literal(column.getAttribute()) + ", " + literal(column.getName()) + ", "
+                    + literal(model.getTableName()) + ", java.sql.Types."
+                    + column.getSqlType() + ", " + column.getType() + ".class,");
+        if (column.getGetter() == null && !column.isDirect()) {
+          out.print("        " + ENTITY_PACKAGE + "FieldAccessor.of(" + entity + ".class, "
+                    + literal(column.getAttribute()) + ")");
+        } else {
+          writeAccessor(out, entity, column);
+        }
+        out.println(", " + column.isNullable() + ", " + column.isInsertable() + ", "
+                    + column.isUpdatable() + ", " + column.getLength() + ", "
+                    + column.getScale() + ");");
+        out.println("    " + (column.isId() ? "ids" : "columns") + ".add(column);");
+        if (column.isVersion()) {
+          out.println("    version = column;");
+        }
+      }
+      out.println("    return new " + ENTITY_PACKAGE + "EntityMeta("
+                  + literal(model.getTableName()) + ", " + literal(model.getSchema())
+                  + ", null, " + entity + "::new,");
+      out.println("        new " + ENTITY_PACKAGE + "IdMeta(ids, "
+                  + "javax.persistence.GenerationType." + model.getGenerationType() + ", "
+                  + literal(model.getGenerator()) + "), columns, version);");
+      out.println("  }");
+      out.println("}");
+    }
+  }
+
+  private static void writeAccessor(PrintWriter out, String entity, ColumnModel column) {
+    String target = "((" + entity + ") entity)";
+    out.println("        new " + ENTITY_PACKAGE + "PropertyAccessor() {");
+    out.println("          @Override");
+    out.println("          public Object get(Object entity) {");
+    out.println("            return " + read(target, column) + ";");
+    out.println("          }");
+    out.println();
+    out.println("          @Override");
+    out.println("          public void set(Object entity, Object value) {");
+    out.println("            " + write(target, column, "(" + column.getBoxedType() + ") value")
+                + ";");
+    out.println("          }");
+    String type = column.getType();
+    if (type.equals("int") || type.equals("long") || type.equals("double")) {
+      String suffix = Character.toUpperCase(type.charAt(0)) + type.substring(1);
+      out.println();
+      out.println("          @Override");
+      out.println("          public " + type + " get" + suffix + "(Object entity) {");
+      out.println("            return " + read(target, column) + ";");
+      out.println("          }");
+      out.println();
+      out.println("          @Override");
+      out.println("          public void set" + suffix + "(Object entity, " + type
+                  + " value) {");
+      out.println("            " + write(target, column, "value") + ";");
+      out.println("          }");
+    }
+    out.print("        }");
+  }
+
+  private static String read(String target, ColumnModel column) {
+    return column.getGetter() != null ? target + "." + column.getGetter() + "()"
+        : target + "." + column.getAttribute();
+  }
+
+  private static String write(String target, ColumnModel column, String value) {
+    return column.getSetter() != null ? target + "." + column.getSetter() + "(" + value + ")"
+        : target + "." + column.getAttribute() + " = " + value;
+  }
+
+  private void writeMetamodel(EntityModel model) throws IOException {
+    TypeElement type = model.getElement();
+    String entity = type.getQualifiedName().toString();
+    String name = type.getSimpleName() + "_";
+    try (PrintWriter out = source(type, name)) {
+      out.println("@javax.annotation.Generated(\"" + getClass().getName() + "\")");
+      out.println("@javax.persistence.metamodel.StaticMetamodel(" + entity + ".class)");
+      out.println("public abstract class " + name + " {");
+      for (ColumnModel column : model.getColumns()) {
+        String constant = constant(column.getAttribute());
+        if (!constant.equals(column.getAttribute())) {
+          out.println("  public static final String " + constant + " = "
+                      + literal(column.getAttribute()) + ";");
+        }
+      }
+      for (ColumnModel column : model.getColumns()) {
+        out.println("  public static volatile javax.persistence.metamodel.SingularAttribute<"
+                    + entity + ", " + column.getBoxedType() + "> " + column.getAttribute()
+                    + ";");
+      }
+      out.println("}");
+    }
+  }
+
+  private PrintWriter source(TypeElement type, String name) throws IOException {
+    String packageName = processingEnv.getElementUtils().getPackageOf(type)
+                                      .getQualifiedName().toString();
+    String qualifiedName = packageName.isEmpty() ? name : packageName + "." + name;
+    Writer writer = processingEnv.getFiler().createSourceFile(qualifiedName, type)
+                                 .openWriter();
+    PrintWriter out = new PrintWriter(writer);
+    if (!packageName.isEmpty()) {
+      out.println("package " + packageName + ";");
+      out.println();
+    }
+    return out;
+  }
+
+  private void writeIndex() {
+    try {
+      FileObject index = processingEnv.getFiler()
+                                      .createResource(StandardLocation.CLASS_OUTPUT, "",
+                                          INDEX_LOCATION);
+      try (PrintWriter out = new PrintWriter(index.openWriter())) {
+        out.println("# Generated by " + getClass().getName());
+        entities.forEach(out::println);
+      }
+    } catch (IOException e) {
+      processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+          "Unable to write entity index: " + e.getMessage());
+    }
+  }
+
+  private static String constant(String attribute) {
+    StringBuilder out = new StringBuilder();
+    for (int i = 0; i < attribute.length(); i++) {
+      char c = attribute.charAt(i);
+      if (Character.isUpperCase(c) && i > 0) {
+        out.append('_');
+      }
+      out.append(Character.toUpperCase(c));
+    }
+    return out.toString();
+  }
+
+  private static String literal(String value) {
+    if (value == null) {
+      return "null";
+    }
+    StringBuilder out = new StringBuilder("\"");
+    for (char c : value.toCharArray()) {
+      if (c == '"' || c == '\\') {
+        out.append('\\');
+      }
+      out.append(c);
+    }
+    return out.append('"').toString();
+  }
+}
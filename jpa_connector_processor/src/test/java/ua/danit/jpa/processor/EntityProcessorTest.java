@@ -0,0 +1,178 @@
+package ua.danit.jpa.processor;
+
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.persistence.Entity;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ua.danit.jpa.entity.ColumnMeta;
+import ua.danit.jpa.entity.EntityMeta;
+import ua.danit.jpa.entity.EntityMetaFactory;
+
+/**
+ * Test for generation of entity metadata by annotation processor.
+ *
+ * @author Andrey Minov
+ */
+public class EntityProcessorTest {
+  private static final String ITEM =
+      "package sample;\n"
+      + "\n"
+      + "import javax.persistence.*;\n"
+      + "\n"
+      + "@Entity\n"
+      + "@Table(name = \"items\")\n"
+      + "public class Item {\n"
+      + "  @Id\n"
+      + "  @GeneratedValue(strategy = GenerationType.IDENTITY)\n"
+      + "  int id;\n"
+      + "  @Column(name = \"item_name\", length = 64)\n"
+      + "  protected String name;\n"
+      + "  private long size;\n"
+      + "  @Access(AccessType.PROPERTY)\n"
+      + "  private double price;\n"
+      + "\n"
+      + "  public double getPrice() {\n"
+      + "    return price;\n"
+      + "  }\n"
+      + "\n"
+      + "  public void setPrice(double price) {\n"
+      + "    this.price = price;\n"
+      + "  }\n"
+      + "}\n";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private File sources;
+  private File classes;
+
+  @Before
+  public void setUp() throws Exception {
+    sources = folder.newFolder("sources");
+    classes = folder.newFolder("classes");
+  }
+
+  @Test
+  public void testFactoryAccessesVisibleFieldsDirectly() throws Exception {
+    assertTrue(compile(ITEM).isEmpty());
+
+    String factory = generated("sample/Item_Meta.java");
+    assertTrue(factory.contains("((sample.Item) entity).id = value;"));
+    assertTrue(factory.contains("return ((sample.Item) entity).name;"));
+    assertTrue(factory.contains("((sample.Item) entity).setPrice(value);"));
+    assertTrue(factory.contains("FieldAccessor.of(sample.Item.class, \"size\")"));
+    assertFalse(factory.contains("FieldAccessor.of(sample.Item.class, \"id\")"));
+    assertFalse(factory.contains("FieldAccessor.of(sample.Item.class, \"name\")"));
+  }
+
+  @Test
+  public void testGeneratedFactoryCreatesMeta() throws Exception {
+    assertTrue(compile(ITEM).isEmpty());
+
+    try (URLClassLoader classLoader = new URLClassLoader(new URL[] {classes.toURI().toURL()},
+        getClass().getClassLoader())) {
+      EntityMeta meta = ((EntityMetaFactory) classLoader.loadClass("sample.Item_Meta")
+                                                        .getConstructor().newInstance()).create();
+      assertEquals("items", meta.getTableName());
+      ColumnMeta id = meta.getId().getColumns().get(0);
+      List<ColumnMeta> columns = meta.getColumns();
+      assertEquals("item_name", columns.get(0).getName());
+      assertEquals(64, columns.get(0).getLength());
+
+      Object item = meta.newInstance();
+      id.getAccessor().setInt(item, 7);
+      columns.get(0).getAccessor().set(item, "book");
+      columns.get(1).getAccessor().setLong(item, 3L);
+      columns.get(2).getAccessor().setDouble(item, 1.5);
+      assertEquals(7, id.getAccessor().get(item));
+      assertEquals("book", columns.get(0).getAccessor().get(item));
+      assertEquals(3L, columns.get(1).getAccessor().getLong(item));
+      assertEquals(1.5, columns.get(2).getAccessor().getDouble(item), 0);
+    }
+  }
+
+  @Test
+  public void testMetamodelAndIndexGenerated() throws Exception {
+    assertTrue(compile(ITEM).isEmpty());
+
+    String metamodel = generated("sample/Item_.java");
+    assertTrue(metamodel.contains("StaticMetamodel(sample.Item.class)"));
+    assertTrue(metamodel.contains("SingularAttribute<sample.Item, java.lang.Integer> id;"));
+    assertTrue(metamodel.contains("SingularAttribute<sample.Item, java.lang.Long> size;"));
+    List<String> index = Files.readAllLines(new File(classes, "META-INF/ua.danit.jpa.entities")
+        .toPath(), StandardCharsets.UTF_8);
+    assertEquals("sample.Item", index.get(index.size() - 1));
+  }
+
+  @Test
+  public void testFactoryNotGeneratedForHandlerType() throws Exception {
+    assertTrue(compile(ITEM.replace("private long size;", "private java.util.UUID size;"))
+                   .isEmpty());
+
+    assertFalse(new File(sources, "sample/Item_Meta.java").exists());
+    assertTrue(new File(sources, "sample/Item_.java").exists());
+  }
+
+  @Test
+  public void testMissingIdReported() throws Exception {
+    List<String> errors = compile(ITEM.replace("  @Id\n", ""));
+
+    assertEquals(singletonList("Table entity class must have @Id field!"), errors);
+    assertFalse(new File(sources, "sample/Item_Meta.java").exists());
+  }
+
+  private List<String> compile(String source) throws Exception {
+    File file = new File(folder.newFolder("sample"), "Item.java");
+    Files.write(file.toPath(), source.getBytes(StandardCharsets.UTF_8));
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+    try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics,
+        null, StandardCharsets.UTF_8)) {
+      List<String> options = Arrays.asList("-d", classes.getPath(), "-s", sources.getPath(),
+          "-classpath", classPath(Entity.class) + File.pathSeparator
+                        + classPath(EntityMetaFactory.class));
+      JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics,
+          options, null, fileManager.getJavaFileObjects(file));
+      task.setProcessors(singletonList(new EntityProcessor()));
+      task.call();
+    }
+    List<String> errors = new ArrayList<>();
+    for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+      if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+        errors.add(diagnostic.getMessage(null));
+      }
+    }
+    return errors;
+  }
+
+  private String generated(String path) throws Exception {
+    return new String(Files.readAllBytes(new File(sources, path).toPath()),
+        StandardCharsets.UTF_8);
+  }
+
+  private static String classPath(Class<?> clazz) throws Exception {
+    return new File(clazz.getProtectionDomain().getCodeSource().getLocation().toURI())
+        .getPath();
+  }
+}
@@ -4,10 +4,14 @@ import java.sql.Timestamp;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.NamedNativeQuery;
 import javax.persistence.Table;
 
 @Entity
 @Table(name = "users")
+@NamedNativeQuery(name = "User.byUsername",
+    query = "SELECT LOGIN, PASSWORD, USERNAME FROM USERS WHERE USERNAME = :username",
+    resultClass = User.class)
 public class User {
   @Id
   private String login;
@@ -0,0 +1,45 @@
+package ua.danit.users.entity;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Table;
+
+/**
+ * Membership of user in group mapping, identified by both group and user.
+ *
+ * @author Andrey Minov
+ */
+@Entity
+@Table(name = "USER_GROUPS")
+@IdClass(UserGroupId.class)
+public class UserGroup {
+  @Id
+  @Column(name = "group_id")
+  private int groupId;
+  @Id
+  @Column(name = "user_login")
+  private String userLogin;
+
+  public int getGroupId() {
+    return groupId;
+  }
+
+  public void setGroupId(int groupId) {
+    this.groupId = groupId;
+  }
+
+  public String getUserLogin() {
+    return userLogin;
+  }
+
+  public void setUserLogin(String userLogin) {
+    this.userLogin = userLogin;
+  }
+
+  @Override
+  public String toString() {
+    return "UserGroup{" + "groupId=" + groupId + ", userLogin='" + userLogin + '\'' + '}';
+  }
+}
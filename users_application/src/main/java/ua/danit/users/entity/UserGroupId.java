@@ -0,0 +1,54 @@
+package ua.danit.users.entity;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Composite identifier of user membership in group.
+ *
+ * @author Andrey Minov
+ */
+public class UserGroupId implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  private int groupId;
+  private String userLogin;
+
+  public UserGroupId() {
+  }
+
+  public UserGroupId(int groupId, String userLogin) {
+    this.groupId = groupId;
+    this.userLogin = userLogin;
+  }
+
+  public int getGroupId() {
+    return groupId;
+  }
+
+  public String getUserLogin() {
+    return userLogin;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    UserGroupId that = (UserGroupId) o;
+    return groupId == that.groupId && Objects.equals(userLogin, that.userLogin);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(groupId, userLogin);
+  }
+
+  @Override
+  public String toString() {
+    return "UserGroupId{" + "groupId=" + groupId + ", userLogin='" + userLogin + '\'' + '}';
+  }
+}
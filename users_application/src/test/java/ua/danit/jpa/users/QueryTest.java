@@ -1,18 +1,31 @@
 package ua.danit.jpa.users;
 
 import static java.util.Arrays.asList;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.FlushModeType;
+import javax.persistence.LockModeType;
 import javax.persistence.Persistence;
+import javax.persistence.PersistenceException;
 
 import org.hsqldb.cmdline.SqlFile;
 import org.junit.After;
@@ -20,7 +33,18 @@ import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import ua.danit.jpa.configuration.JpaProviderProperties;
+import ua.danit.jpa.pool.JpaConnectionPool;
+import ua.danit.jpa.query.CompiledQuery;
+import ua.danit.jpa.query.NativeQuery;
+import ua.danit.jpa.sessions.JpaEntityManagerFactory;
+import ua.danit.jpa.sessions.JpaSession;
+import ua.danit.jpa.sessions.JpaStatelessSession;
+import ua.danit.users.entity.Group;
 import ua.danit.users.entity.User;
+import ua.danit.users.entity.UserGroup;
+import ua.danit.users.entity.UserGroupId;
+import ua.danit.users.entity.User_;
 
 /**
  * Test for JPA connector using HSQL database.
@@ -30,6 +54,7 @@ import ua.danit.users.entity.User;
 public class QueryTest {
   private static final String DB_INIT_SCRIPT_LOCATION = "/tables_creation.sql";
   private static final int USERS_SIZE = 10;
+  private static final int GROUPS_SIZE = 120;
 
   private static final String SELECT_ALL_USERS_SQL = "SELECT LOGIN, PASSWORD, USERNAME FROM USERS";
   private static final String SELECT_SINGLE_USER =
@@ -93,6 +118,269 @@ public class QueryTest {
         .getSingleResult());
   }
 
+  @Test
+  public void testSelectUserForUpdate() {
+    entityManager.getTransaction().begin();
+    assertEquals("Incorrect locked user result!", createUser(3), entityManager
+        .createNativeQuery(SELECT_SINGLE_USER, User.class).setParameter("login", "test-u-3")
+        .setLockMode(LockModeType.PESSIMISTIC_WRITE).getSingleResult());
+    entityManager.getTransaction().commit();
+  }
+
+  @Test
+  public void testRepeatedParameter() {
+    assertEquals("Incorrect selection result!", createUser(4), entityManager
+        .createNativeQuery("SELECT LOGIN, PASSWORD, USERNAME FROM USERS "
+                           + "WHERE LOGIN = :login AND LOGIN <> ':login' AND LOGIN = :login",
+            User.class).setParameter("login", "test-u-4").getSingleResult());
+  }
+
+  @Test
+  public void testCompiledQueryReused() {
+    CompiledQuery<User> compiled = ((JpaEntityManagerFactory) entityManagerFactory)
+        .compileQuery(SELECT_SINGLE_USER, User.class);
+    try (NativeQuery<User> query = ((JpaSession) entityManager).createQuery(compiled)) {
+      PreparedStatement statement = null;
+      for (int i = 0; i < USERS_SIZE; i++) {
+        assertEquals("Incorrect user result!", createUser(i), query.clearParameters()
+            .setParameter("login", "test-u-" + i).getSingleResult());
+        PreparedStatement current = query.unwrap(PreparedStatement.class);
+        if (statement != null) {
+          assertSame("Statement is not reused!", statement, current);
+        }
+        statement = current;
+      }
+    }
+  }
+
+  @Test
+  public void testCompiledQueryPinsReleasedConnection() throws Exception {
+    Map<String, String> properties = new HashMap<>();
+    entityManagerFactory.getProperties().forEach((name, value) -> properties.put(name,
+        String.valueOf(value)));
+    properties.put(JpaProviderProperties.CONNECTION_HANDLING, "RELEASE_AFTER_TRANSACTION");
+    JpaEntityManagerFactory releasingFactory = new JpaEntityManagerFactory(properties,
+        Collections.singletonList(User.class.getName()));
+    JpaSession session = (JpaSession) releasingFactory.createEntityManager();
+    try (NativeQuery<User> query = session.createQuery(releasingFactory
+        .compileQuery(SELECT_SINGLE_USER, User.class))) {
+      assertEquals("Incorrect user result!", createUser(1),
+          query.setParameter("login", "test-u-1").getSingleResult());
+      PreparedStatement statement = query.unwrap(PreparedStatement.class);
+      // Statement outside of transaction must not release connection of reusable query.
+      assertEquals("Incorrect found user!", createUser(2), session.find(User.class, "test-u-2"));
+      assertEquals("Incorrect user result!", createUser(3), query.clearParameters()
+          .setParameter("login", "test-u-3").getSingleResult());
+      assertSame("Statement is not reused!", statement, query.unwrap(PreparedStatement.class));
+      assertFalse("Statement is closed!", statement.isClosed());
+    } finally {
+      session.close();
+      releasingFactory.close();
+    }
+  }
+
+  @Test
+  public void testWarmUpPreparesEntityStatements() throws Exception {
+    Map<String, String> properties = new HashMap<>();
+    entityManagerFactory.getProperties().forEach((name, value) -> properties.put(name,
+        String.valueOf(value)));
+    properties.put(JpaProviderProperties.WARM_UP, "true");
+    properties.put(JpaProviderProperties.POOL_MIN_IDLE, "2");
+    properties.put(JpaProviderProperties.POOL_STATEMENT_CACHE_SIZE, "16");
+    JpaEntityManagerFactory warmFactory = new JpaEntityManagerFactory(properties,
+        Collections.singletonList(User.class.getName()));
+    try {
+      JpaConnectionPool pool = warmFactory.unwrap(JpaConnectionPool.class);
+      // Insert, update, delete and select statements are prepared on both connections,
+      // validated named queries are cached as well.
+      int cached = pool.getCachedStatements();
+      assertTrue("Statements are not prepared!", cached >= 8);
+      EntityManager warmManager = warmFactory.createEntityManager();
+      try {
+        assertEquals("Incorrect found user!", createUser(4),
+            warmManager.find(User.class, "test-u-4"));
+      } finally {
+        warmManager.close();
+      }
+      assertEquals("Cached statement is not reused!", cached, pool.getCachedStatements());
+    } finally {
+      warmFactory.close();
+    }
+  }
+
+  @Test
+  public void testBatchUpdate() {
+    NativeQuery<?> insert = (NativeQuery<?>) entityManager
+        .createNativeQuery("INSERT INTO GROUPS (NAME) VALUES (:name)")
+        .setHint(JpaProviderProperties.BATCH_SIZE, 2);
+    for (int i = 0; i < 5; i++) {
+      insert.setParameter("name", "batch-" + i).addBatch();
+    }
+    assertArrayEquals("Incorrect insert counts!", new int[] {1, 1, 1, 1, 1},
+        insert.executeBatch());
+
+    NativeQuery<?> delete = (NativeQuery<?>) entityManager
+        .createNativeQuery("DELETE FROM GROUPS WHERE NAME = :name");
+    delete.setParameter("name", "batch-0").addBatch();
+    delete.setParameter("name", "missing").addBatch();
+    delete.setParameter("name", "batch-4").addBatch();
+    assertArrayEquals("Incorrect delete counts!", new int[] {1, 0, 1}, delete.executeBatch());
+  }
+
+  @Test
+  public void testNullParameter() {
+    NativeQuery<?> insert = (NativeQuery<?>) entityManager
+        .createNativeQuery("INSERT INTO GROUPS (NAME) VALUES (:name)");
+    insert.setParameter("name", "nullable").addBatch();
+    insert.setParameter("name", null).addBatch();
+    assertArrayEquals("Incorrect insert counts!", new int[] {1, 1}, insert.executeBatch());
+
+    assertEquals("Incorrect updated groups!", 1, entityManager
+        .createNativeQuery("UPDATE GROUPS SET NAME = :name WHERE NAME = :old")
+        .setParameter("name", null).setParameter("old", "nullable").executeUpdate());
+  }
+
+  @Test
+  public void testNamedQuery() {
+    assertEquals("Incorrect named query result!", createUser(5), entityManager
+        .createNamedQuery("User.byUsername", User.class).setParameter("username", "name-u-5")
+        .getSingleResult());
+  }
+
+  @Test
+  public void testAddedNamedQuery() {
+    entityManagerFactory.addNamedQuery("User.firstTwo", entityManager
+        .createNativeQuery(SELECT_ALL_USERS_SQL, User.class).setMaxResults(2));
+    assertEquals("Query settings are not kept!", asList(createUser(0), createUser(1)),
+        entityManager.createNamedQuery("User.firstTwo").getResultList());
+  }
+
+  @Test
+  public void testInvalidNamedQueryRejected() {
+    Map<String, String> properties = new HashMap<>();
+    entityManagerFactory.getProperties().forEach((name, value) -> properties.put(name,
+        String.valueOf(value)));
+    properties.put(JpaProviderProperties.NAMED_QUERY_VALIDATION, "true");
+    EntityManagerFactory strictFactory = new JpaEntityManagerFactory(properties,
+        Collections.singletonList(Group.class.getName()));
+    try {
+      strictFactory.addNamedQuery("Group.invalid",
+          entityManager.createNativeQuery("SELECT MISSING FROM GROUPS"));
+      fail("Invalid named query is registered!");
+    } catch (PersistenceException e) {
+      assertTrue("Incorrect error!", e.getMessage().contains("Group.invalid"));
+    } finally {
+      strictFactory.close();
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUndefinedNamedQuery() {
+    entityManager.createNamedQuery("User.undefined");
+  }
+
+  @Test
+  public void testGeneratedMetadataRegistered() {
+    assertTrue("Static metamodel is not populated!", User_.login.isId());
+    assertEquals("Incorrect attribute constant!", "registrationDate", User_.REGISTRATION_DATE);
+    // Generated metadata is built without reflective members.
+    assertNull("Reflective metadata is used!", User_.login.getJavaMember());
+  }
+
+  @Test
+  public void testStatelessSessionBatch() {
+    List<Group> groups = new ArrayList<>();
+    try (JpaStatelessSession session = ((JpaEntityManagerFactory) entityManagerFactory)
+        .createStatelessSession()) {
+      session.getTransaction().begin();
+      for (int i = 0; i < GROUPS_SIZE; i++) {
+        Group group = new Group();
+        group.setName("group-" + i);
+        session.insert(group);
+        groups.add(group);
+      }
+      session.getTransaction().commit();
+      assertNotEquals("Generated id is not set!", groups.get(0).getId(),
+          groups.get(GROUPS_SIZE - 1).getId());
+
+      Group last = groups.get(GROUPS_SIZE - 1);
+      last.setName("renamed");
+      session.update(last);
+      assertEquals("Incorrect updated group!", "renamed",
+          session.get(Group.class, last.getId()).getName());
+
+      groups.forEach(session::delete);
+      session.flush();
+      assertNull("Group is not deleted!", session.get(Group.class, last.getId()));
+    }
+  }
+
+  @Test
+  public void testCompositeIdEntity() {
+    Group group = new Group();
+    group.setName("members");
+    entityManager.persist(group);
+    for (int i = 0; i < 3; i++) {
+      UserGroup userGroup = new UserGroup();
+      userGroup.setGroupId(group.getId());
+      userGroup.setUserLogin("test-u-" + i);
+      entityManager.persist(userGroup);
+    }
+    entityManager.close();
+
+    entityManager = entityManagerFactory.createEntityManager();
+    UserGroup found = entityManager.find(UserGroup.class,
+        new UserGroupId(group.getId(), "test-u-1"));
+    assertEquals("Incorrect composite id entity!", "test-u-1", found.getUserLogin());
+    List<UserGroup> all = ((JpaSession) entityManager).findAll(UserGroup.class,
+        asList(new UserGroupId(group.getId(), "test-u-2"),
+            new UserGroupId(group.getId(), "test-u-9"),
+            new UserGroupId(group.getId(), "test-u-1")));
+    assertEquals("Incorrect number of found entities!", 2, all.size());
+    assertEquals("Entities are not in order of keys!", "test-u-2", all.get(0).getUserLogin());
+    assertSame("Entity of persistence context is not reused!", found, all.get(1));
+
+    entityManager.remove(found);
+    entityManager.close();
+    entityManager = entityManagerFactory.createEntityManager();
+    assertNull("Entity is not removed!", entityManager.find(UserGroup.class,
+        new UserGroupId(group.getId(), "test-u-1")));
+  }
+
+  @Test
+  public void testJpqlSelect() {
+    List<User> found = entityManager
+        .createQuery("SELECT u FROM User u WHERE u.login IN (:first, :second) "
+                     + "ORDER BY u.login DESC", User.class)
+        .setParameter("first", "test-u-1").setParameter("second", "test-u-3").getResultList();
+    assertEquals("Incorrect users!", asList(users.get(3), users.get(1)), found);
+  }
+
+  @Test
+  public void testJpqlAggregate() {
+    Long count = entityManager
+        .createQuery("SELECT COUNT(u) FROM User u WHERE u.login BETWEEN :from AND :to",
+            Long.class)
+        .setParameter("from", "test-u-0").setParameter("to", "test-u-2").getSingleResult();
+    assertEquals("Incorrect count of users!", Long.valueOf(3), count);
+  }
+
+  @Test
+  public void testJpqlBulkUpdate() {
+    NativeQuery<?> insert = (NativeQuery<?>) entityManager
+        .createNativeQuery("INSERT INTO GROUPS (NAME) VALUES (:name)");
+    for (int i = 0; i < 3; i++) {
+      insert.setParameter("name", "bulk-" + i).addBatch();
+    }
+    insert.executeBatch();
+    assertEquals("Incorrect updated groups!", 3, entityManager
+        .createQuery("UPDATE Group g SET g.name = CONCAT(g.name, '-renamed') "
+                     + "WHERE g.name LIKE 'bulk-%'").executeUpdate());
+    assertEquals("Incorrect deleted groups!", 3, entityManager
+        .createQuery("DELETE FROM Group WHERE name LIKE :pattern")
+        .setParameter("pattern", "bulk-%-renamed").executeUpdate());
+  }
+
   @After
   public void tearDown() throws Exception {
     if (entityManager != null) {
@@ -0,0 +1,168 @@
+package ua.danit.jpa.users;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import javax.management.ObjectName;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import javax.persistence.PersistenceException;
+
+import org.hsqldb.cmdline.SqlFile;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import ua.danit.jpa.configuration.JpaProviderProperties;
+import ua.danit.jpa.sessions.JpaEntityManagerFactory;
+import ua.danit.users.entity.User;
+
+/**
+ * Test for routing reads to replica using two HSQL databases.
+ *
+ * @author Andrey Minov
+ */
+public class ReplicaRoutingTest {
+  private static final String DB_INIT_SCRIPT_LOCATION = "/tables_creation.sql";
+  private static final String REPLICA_URL = "jdbc:hsqldb:mem:users-replica-db;create=true";
+  private static final String INSERT_USER_SQL =
+      "INSERT INTO USERS (LOGIN, PASSWORD, USERNAME) VALUES (?, ?, ?)";
+  private static final String SELECT_ALL_USERS_SQL = "SELECT LOGIN, PASSWORD, USERNAME FROM USERS";
+
+  private static EntityManagerFactory entityManagerFactory;
+
+  private EntityManager entityManager;
+
+  @BeforeClass
+  public static void initDB() throws Exception {
+    entityManagerFactory = Persistence.createEntityManagerFactory("replicated");
+    EntityManager entityManager = entityManagerFactory.createEntityManager();
+    try (Connection replica = DriverManager.getConnection(REPLICA_URL, "SA", "")) {
+      Connection primary = entityManager.unwrap(Connection.class);
+      createDatabase(primary);
+      createDatabase(replica);
+      insertUser(primary, "primary-only");
+      insertUser(replica, "replica-only");
+    } finally {
+      entityManager.close();
+    }
+  }
+
+  @AfterClass
+  public static void closeDB() throws Exception {
+    if (entityManagerFactory != null) {
+      entityManagerFactory.close();
+    }
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    entityManager = entityManagerFactory.createEntityManager();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    if (entityManager != null) {
+      entityManager.close();
+    }
+  }
+
+  @Test
+  public void testFindRoutedToReplica() {
+    assertNotNull("Replica user is not found!", entityManager.find(User.class, "replica-only"));
+    assertNull("Primary is used for read!", entityManager.find(User.class, "primary-only"));
+  }
+
+  @Test
+  public void testReadOnlyQueryRoutedToReplica() {
+    assertEquals("Incorrect replica result!", "replica-only", ((User) entityManager
+        .createNativeQuery(SELECT_ALL_USERS_SQL, User.class)
+        .setHint(JpaProviderProperties.READ_ONLY, true).getSingleResult()).getLogin());
+    assertEquals("Incorrect primary result!", "primary-only", ((User) entityManager
+        .createNativeQuery(SELECT_ALL_USERS_SQL, User.class).getSingleResult()).getLogin());
+  }
+
+  @Test
+  public void testReadYourWrites() {
+    entityManager.persist(createUser("written"));
+    entityManager.clear();
+    assertNotNull("Written user is not found!", entityManager.find(User.class, "written"));
+
+    entityManager.remove(entityManager.find(User.class, "written"));
+  }
+
+  @Test
+  public void testWriteTransactionReadsPrimary() {
+    entityManager.getTransaction().begin();
+    assertNotNull("Primary user is not found!", entityManager.find(User.class, "primary-only"));
+    entityManager.getTransaction().commit();
+  }
+
+  @Test(expected = PersistenceException.class)
+  public void testReadOnlyTransaction() {
+    entityManager.setProperty(JpaProviderProperties.READ_ONLY, true);
+    entityManager.getTransaction().begin();
+    try {
+      assertNotNull("Replica user is not found!",
+          entityManager.find(User.class, "replica-only"));
+      entityManager.persist(createUser("rejected"));
+    } finally {
+      entityManager.getTransaction().rollback();
+    }
+  }
+
+  @Test
+  public void testPoolsClosedWhenFactoryRejected() throws Exception {
+    Map<String, String> properties = new HashMap<>();
+    entityManagerFactory.getProperties().forEach((name, value) -> properties.put(name,
+        String.valueOf(value)));
+    properties.put(JpaProviderProperties.REPLICA_SELECTION, "UNKNOWN");
+    properties.put(JpaProviderProperties.POOL_JMX, "true");
+    properties.put(JpaProviderProperties.POOL_NAME, "rejected-primary");
+    try {
+      new JpaEntityManagerFactory(properties, Collections.singletonList(User.class.getName()));
+      fail("Unknown replica selection is accepted!");
+    } catch (PersistenceException e) {
+      assertFalse("Primary pool is not closed!", ManagementFactory.getPlatformMBeanServer()
+          .isRegistered(new ObjectName("ua.danit.jpa:type=Pool,name=rejected-primary")));
+    }
+  }
+
+  private static User createUser(String login) {
+    User user = new User();
+    user.setLogin(login);
+    user.setPassword("pass-" + login);
+    user.setUsername("name-" + login);
+    return user;
+  }
+
+  private static void insertUser(Connection connection, String login) throws Exception {
+    try (PreparedStatement statement = connection.prepareStatement(INSERT_USER_SQL)) {
+      statement.setString(1, login);
+      statement.setString(2, "pass-" + login);
+      statement.setString(3, "name-" + login);
+      statement.executeUpdate();
+    }
+  }
+
+  private static void createDatabase(Connection connection) throws Exception {
+    Path path = Paths.get(ReplicaRoutingTest.class.getResource(DB_INIT_SCRIPT_LOCATION).toURI());
+    SqlFile file = new SqlFile(path.toFile());
+    file.setConnection(connection);
+    file.execute();
+  }
+}
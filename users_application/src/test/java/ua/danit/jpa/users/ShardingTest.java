@@ -0,0 +1,198 @@
+package ua.danit.jpa.users;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import javax.persistence.PersistenceException;
+
+import org.hsqldb.cmdline.SqlFile;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import ua.danit.jpa.configuration.JpaProviderProperties;
+import ua.danit.jpa.query.NativeQuery;
+import ua.danit.users.entity.User;
+
+/**
+ * Test for hash sharding of entities over three HSQL databases.
+ *
+ * @author Andrey Minov
+ */
+public class ShardingTest {
+  private static final String DB_INIT_SCRIPT_LOCATION = "/tables_creation.sql";
+  private static final String SHARD_URL_FORMAT = "jdbc:hsqldb:mem:users-shard-%d;create=true";
+  private static final int SHARDS = 3;
+  private static final int USERS_SIZE = 30;
+  private static final String SELECT_ORDERED_USERS_SQL =
+      "SELECT LOGIN, PASSWORD, USERNAME FROM USERS ORDER BY LOGIN DESC";
+
+  private static EntityManagerFactory entityManagerFactory;
+  private static List<String> logins;
+
+  private EntityManager entityManager;
+
+  @BeforeClass
+  public static void initDB() throws Exception {
+    for (int i = 0; i < SHARDS; i++) {
+      try (Connection connection = shardConnection(i)) {
+        Path path = Paths.get(ShardingTest.class.getResource(DB_INIT_SCRIPT_LOCATION).toURI());
+        SqlFile file = new SqlFile(path.toFile());
+        file.setConnection(connection);
+        file.execute();
+      }
+    }
+    entityManagerFactory = Persistence.createEntityManagerFactory("sharded");
+    logins = new ArrayList<>();
+    EntityManager entityManager = entityManagerFactory.createEntityManager();
+    try {
+      entityManager.getTransaction().begin();
+      for (int i = 0; i < USERS_SIZE; i++) {
+        User user = createUser(String.format("shard-u-%02d", i));
+        entityManager.persist(user);
+        logins.add(user.getLogin());
+      }
+      entityManager.getTransaction().commit();
+    } finally {
+      entityManager.close();
+    }
+  }
+
+  @AfterClass
+  public static void closeDB() throws Exception {
+    if (entityManagerFactory != null) {
+      entityManagerFactory.close();
+    }
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    entityManager = entityManagerFactory.createEntityManager();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    if (entityManager != null) {
+      entityManager.close();
+    }
+  }
+
+  @Test
+  public void testUsersDistributedOverShards() throws Exception {
+    int total = 0;
+    for (int i = 0; i < SHARDS; i++) {
+      try (Connection connection = shardConnection(i);
+           Statement statement = connection.createStatement();
+           ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM USERS")) {
+        resultSet.next();
+        int count = resultSet.getInt(1);
+        assertTrue("Shard " + i + " is empty!", count > 0);
+        total += count;
+      }
+    }
+    assertEquals("Incorrect users count!", USERS_SIZE, total);
+  }
+
+  @Test
+  public void testFindRoutedToOwningShard() {
+    for (String login : logins) {
+      assertNotNull("User " + login + " is not found!", entityManager.find(User.class, login));
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void testOrderedQueryMergedFromShards() {
+    List<String> expected = new ArrayList<>(logins);
+    Collections.reverse(expected);
+    List<User> users = entityManager.createNativeQuery(SELECT_ORDERED_USERS_SQL, User.class)
+                                    .setFirstResult(2).setMaxResults(5).getResultList();
+    assertEquals("Incorrect merged result!", expected.subList(2, 7),
+        users.stream().map(User::getLogin).collect(Collectors.toList()));
+  }
+
+  @Test(expected = PersistenceException.class)
+  public void testExpressionOrderRejected() {
+    entityManager.createNativeQuery("SELECT LOGIN, PASSWORD, USERNAME FROM USERS "
+                                    + "ORDER BY UPPER(LOGIN)", User.class)
+                 .setMaxResults(5).getResultList();
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void testNullsMergedInExplicitOrder() {
+    // Registration date is null for all users except one.
+    String login = logins.get(5);
+    String sql = "SELECT LOGIN, PASSWORD, USERNAME, REGISTRATION_DATE FROM USERS "
+                 + "ORDER BY REGISTRATION_DATE";
+    entityManager.createNativeQuery("UPDATE USERS SET REGISTRATION_DATE = NOW() "
+                                    + "WHERE LOGIN = :login")
+                 .setParameter("login", login).executeUpdate();
+    try {
+      List<User> nullsLast = entityManager.createNativeQuery(sql + " NULLS LAST", User.class)
+                                          .setMaxResults(1).getResultList();
+      assertEquals("Nulls must be last!", login, nullsLast.get(0).getLogin());
+      List<User> nullsFirst = entityManager.createNativeQuery(sql + " DESC NULLS FIRST",
+          User.class).getResultList();
+      assertEquals("Nulls must be first!", login,
+          nullsFirst.get(nullsFirst.size() - 1).getLogin());
+      try {
+        entityManager.createNativeQuery(sql, User.class).getResultList();
+        fail("Nulls are merged without explicit order!");
+      } catch (PersistenceException e) {
+        assertTrue("Incorrect error!", e.getMessage().contains("NULLS FIRST"));
+      }
+    } finally {
+      entityManager.createNativeQuery("UPDATE USERS SET REGISTRATION_DATE = NULL")
+                   .executeUpdate();
+    }
+  }
+
+  @Test
+  public void testUpdateExecutedOnAllShards() {
+    assertEquals("Incorrect updated count!", USERS_SIZE, entityManager
+        .createNativeQuery("UPDATE USERS SET USERNAME = USERNAME").executeUpdate());
+  }
+
+  @Test
+  public void testBatchExecutedOnAllShards() {
+    NativeQuery<?> update = (NativeQuery<?>) entityManager
+        .createNativeQuery("UPDATE USERS SET USERNAME = USERNAME WHERE LOGIN = :login")
+        .setHint(JpaProviderProperties.BATCH_SIZE, 2);
+    for (int i = 0; i < 5; i++) {
+      update.setParameter("login", logins.get(i)).addBatch();
+    }
+    update.setParameter("login", "missing").addBatch();
+    assertArrayEquals("Incorrect merged counts!", new int[] {1, 1, 1, 1, 1, 0},
+        update.executeBatch());
+  }
+
+  private static Connection shardConnection(int shard) throws Exception {
+    return DriverManager.getConnection(String.format(SHARD_URL_FORMAT, shard), "SA", "");
+  }
+
+  private static User createUser(String login) {
+    User user = new User();
+    user.setLogin(login);
+    user.setPassword("pass-" + login);
+    user.setUsername("name-" + login);
+    return user;
+  }
+}
@@ -0,0 +1,136 @@
+package ua.danit.jpa.users;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.function.Consumer;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import org.hsqldb.cmdline.SqlFile;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import ua.danit.jpa.configuration.JpaProviderProperties;
+import ua.danit.jpa.pool.JpaConnectionPool;
+import ua.danit.users.entity.User;
+
+/**
+ * Test for schema per tenant routing over single HSQL database.
+ *
+ * @author Andrey Minov
+ */
+public class TenantTest {
+  private static final String DB_INIT_SCRIPT_LOCATION = "/tables_creation.sql";
+  private static final String DB_URL = "jdbc:hsqldb:mem:users-tenants-db;create=true";
+  private static final String SELECT_USERS_SQL = "SELECT LOGIN, PASSWORD, USERNAME FROM USERS";
+
+  private static EntityManagerFactory entityManagerFactory;
+
+  @BeforeClass
+  public static void initDB() throws Exception {
+    Path path = Paths.get(TenantTest.class.getResource(DB_INIT_SCRIPT_LOCATION).toURI());
+    try (Connection connection = DriverManager.getConnection(DB_URL, "SA", "")) {
+      for (String schema : new String[] {"PUBLIC", "TENANT_A", "TENANT_B"}) {
+        try (Statement statement = connection.createStatement()) {
+          if (!"PUBLIC".equals(schema)) {
+            statement.execute("CREATE SCHEMA " + schema);
+          }
+          statement.execute("SET SCHEMA " + schema);
+        }
+        SqlFile file = new SqlFile(path.toFile());
+        file.setConnection(connection);
+        file.execute();
+      }
+    }
+    entityManagerFactory = Persistence.createEntityManagerFactory("multitenant");
+    inTenant("A", entityManager -> {
+      entityManager.persist(createUser("tenant-a-1"));
+      entityManager.persist(createUser("tenant-a-2"));
+    });
+    inTenant("B", entityManager -> entityManager.persist(createUser("tenant-b-1")));
+  }
+
+  @AfterClass
+  public static void closeDB() throws Exception {
+    if (entityManagerFactory != null) {
+      entityManagerFactory.close();
+    }
+  }
+
+  @Test
+  public void testFindIsolatedByTenant() {
+    inTenant("A", entityManager -> {
+      assertNotNull("User is not found!", entityManager.find(User.class, "tenant-a-1"));
+      assertNull("User of other tenant is found!",
+          entityManager.find(User.class, "tenant-b-1"));
+    });
+    inTenant("B", entityManager ->
+        assertNull("User of other tenant is found!",
+            entityManager.find(User.class, "tenant-a-1")));
+  }
+
+  @Test
+  public void testNativeQueryUsesTenantSchema() {
+    inTenant("A", entityManager -> assertEquals("Incorrect users count!", 2,
+        countUsers(entityManager)));
+    inTenant("B", entityManager -> assertEquals("Incorrect users count!", 1,
+        countUsers(entityManager)));
+  }
+
+  @Test
+  public void testPooledConnectionSchemaRestored() {
+    inTenant("A", entityManager -> entityManager.find(User.class, "tenant-a-1"));
+    EntityManager entityManager = entityManagerFactory.createEntityManager();
+    try {
+      assertEquals("Default schema is not restored!", 0, countUsers(entityManager));
+    } finally {
+      entityManager.close();
+    }
+  }
+
+  @Test
+  public void testPoolWarmedUp() {
+    JpaConnectionPool pool = entityManagerFactory.unwrap(JpaConnectionPool.class);
+    assertTrue("Pool is not warmed up!", pool.getTotalConnections() >= 2);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testIllegalTenantRejected() {
+    entityManagerFactory.createEntityManager(
+        Collections.singletonMap(JpaProviderProperties.TENANT_ID, "a; DROP SCHEMA PUBLIC"));
+  }
+
+  private static void inTenant(String tenant, Consumer<EntityManager> action) {
+    EntityManager entityManager = entityManagerFactory
+        .createEntityManager(Collections.singletonMap(JpaProviderProperties.TENANT_ID, tenant));
+    try {
+      entityManager.getTransaction().begin();
+      action.accept(entityManager);
+      entityManager.getTransaction().commit();
+    } finally {
+      entityManager.close();
+    }
+  }
+
+  private static int countUsers(EntityManager entityManager) {
+    return entityManager.createNativeQuery(SELECT_USERS_SQL, User.class).getResultList().size();
+  }
+
+  private static User createUser(String login) {
+    User user = new User();
+    user.setLogin(login);
+    user.setPassword("pass-" + login);
+    user.setUsername("name-" + login);
+    return user;
+  }
+}
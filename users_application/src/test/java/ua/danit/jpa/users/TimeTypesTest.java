@@ -0,0 +1,88 @@
+package ua.danit.jpa.users;
+
+import static org.junit.Assert.assertEquals;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.TimeZone;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ua.danit.jpa.types.TypeHandler;
+import ua.danit.jpa.types.TypeHandlerRegistry;
+
+/**
+ * Test for transfer of {@code java.time} values by type handlers in JVM time zone
+ * with daylight saving time.
+ *
+ * @author Andrey Minov
+ */
+public class TimeTypesTest {
+  private static final String DB_URL = "jdbc:hsqldb:mem:users-time-db;create=true";
+  // Clocks in Kyiv were moved from 03:00 to 04:00 on 2021-03-28.
+  private static final TimeZone DST_ZONE = TimeZone.getTimeZone("Europe/Kiev");
+
+  private TimeZone defaultZone;
+  private Connection connection;
+
+  @Before
+  public void setUp() throws Exception {
+    defaultZone = TimeZone.getDefault();
+    TimeZone.setDefault(DST_ZONE);
+    connection = DriverManager.getConnection(DB_URL, "SA", "");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    TimeZone.setDefault(defaultZone);
+    if (connection != null) {
+      connection.close();
+    }
+  }
+
+  @Test
+  public void testLocalDateTimeInDaylightSavingGap() throws Exception {
+    LocalDateTime value = LocalDateTime.of(2021, 3, 28, 3, 30);
+    assertEquals("Local date time is shifted!", value,
+        roundTrip(LocalDateTime.class, "TIMESTAMP", value));
+  }
+
+  @Test
+  public void testLocalTime() throws Exception {
+    LocalTime value = LocalTime.of(3, 30, 15);
+    assertEquals("Local time is changed!", value, roundTrip(LocalTime.class, "TIME", value));
+  }
+
+  @Test
+  public void testInstantStoredInUtc() throws Exception {
+    Instant value = Instant.parse("2021-03-28T01:30:00Z");
+    assertEquals("Instant is changed!", value, roundTrip(Instant.class, "TIMESTAMP", value));
+    try (PreparedStatement statement = connection
+        .prepareStatement("SELECT CAST(? AS TIMESTAMP) FROM (VALUES(0))")) {
+      TypeHandlerRegistry.defaults().get(Instant.class).bind(statement, 1, value);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        resultSet.next();
+        assertEquals("Instant is not stored in UTC!", LocalDateTime.of(2021, 3, 28, 1, 30),
+            resultSet.getTimestamp(1).toLocalDateTime());
+      }
+    }
+  }
+
+  private <T> T roundTrip(Class<T> type, String sqlType, T value) throws Exception {
+    TypeHandler<T> handler = TypeHandlerRegistry.defaults().get(type);
+    try (PreparedStatement statement = connection
+        .prepareStatement("SELECT CAST(? AS " + sqlType + ") FROM (VALUES(0))")) {
+      handler.bind(statement, 1, value);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        resultSet.next();
+        return handler.read(resultSet, 1);
+      }
+    }
+  }
+}